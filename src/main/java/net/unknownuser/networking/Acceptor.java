@@ -0,0 +1,32 @@
+package net.unknownuser.networking;
+
+import java.io.*;
+
+/**
+ * Accepts the transports of inbound connections for a {@link Server}.
+ */
+public interface Acceptor extends Closeable {
+	/**
+	 * Waits for the next inbound connection.
+	 * 
+	 * @return The new, not yet opened, transport.
+	 * 
+	 * @throws IOException When the acceptor has been closed or broke down. A closed acceptor throws a {@link java.net.SocketException SocketException} with the message
+	 *                     {@code "Socket closed"}.
+	 */
+	Transport accept() throws IOException;
+	
+	/**
+	 * Returns whether this acceptor has been closed.
+	 * 
+	 * @return {@code true} if this acceptor is closed.
+	 */
+	boolean isClosed();
+	
+	/**
+	 * Gets the port this acceptor listens on.
+	 * 
+	 * @return The local port.
+	 */
+	int getPort();
+}
@@ -0,0 +1,20 @@
+package net.unknownuser.networking;
+
+import java.io.*;
+
+/**
+ * Creates the acceptor of a {@link Server}, whenever it is started.
+ */
+@FunctionalInterface
+public interface AcceptorFactory {
+	/**
+	 * Starts to listen for inbound connections.
+	 * 
+	 * @param port The port of the server.
+	 * 
+	 * @return The new acceptor.
+	 * 
+	 * @throws IOException When the acceptor could not be created.
+	 */
+	Acceptor open(int port) throws IOException;
+}
@@ -0,0 +1,212 @@
+package net.unknownuser.networking;
+
+import java.net.*;
+import java.util.*;
+
+/**
+ * A set of CIDR ranges, stored as a binary prefix trie.<br>
+ * The nodes are kept in flat {@code int} arrays, so a lookup is at most 32 (IPv4) or 128 (IPv6) array reads and never allocates.
+ */
+public class AddressTrie {
+	private static final int NO_NODE = 0;
+	private static final int INITIAL_CAPACITY = 64;
+	
+	/**
+	 * The node arrays. Replaced as a whole on growth, so readers always see a consistent snapshot.
+	 */
+	private static final class Nodes {
+		final int[] zero;
+		final int[] one;
+		final boolean[] terminal;
+		
+		Nodes(int capacity) {
+			zero = new int[capacity];
+			one = new int[capacity];
+			terminal = new boolean[capacity];
+		}
+		
+		Nodes grow() {
+			Nodes grown = new Nodes(zero.length * 2);
+			System.arraycopy(zero, 0, grown.zero, 0, zero.length);
+			System.arraycopy(one, 0, grown.one, 0, one.length);
+			System.arraycopy(terminal, 0, grown.terminal, 0, terminal.length);
+			return grown;
+		}
+	}
+	
+	// node 0 is unused (it marks "no child"), node 1 is the IPv4 root, node 2 the IPv6 root
+	private static final int IPV4_ROOT = 1;
+	private static final int IPV6_ROOT = 2;
+	
+	private volatile Nodes nodes = new Nodes(INITIAL_CAPACITY);
+	private int nodeCount = 3;
+	private volatile int rangeCount = 0;
+	
+	/**
+	 * Adds a range in CIDR notation, for example {@code 10.0.0.0/8} or {@code fd00::/8}.<br>
+	 * An address without a prefix length is added as a single host.
+	 * 
+	 * @param cidr The range to add.
+	 * 
+	 * @throws IllegalArgumentException If the range is not a valid IP literal and prefix length.
+	 */
+	public void add(String cidr) {
+		int slash = cidr.indexOf('/');
+		String host = slash < 0 ? cidr : cidr.substring(0, slash);
+		InetAddress address = parseLiteral(host.trim());
+		if(address == null) {
+			throw new IllegalArgumentException("not an IP address: " + cidr);
+		}
+		int maxLength = address.getAddress().length * 8;
+		int prefixLength = maxLength;
+		if(slash >= 0) {
+			try {
+				prefixLength = Integer.parseInt(cidr.substring(slash + 1).trim());
+			} catch(NumberFormatException exc) {
+				throw new IllegalArgumentException("invalid prefix length: " + cidr, exc);
+			}
+		}
+		add(address, prefixLength);
+	}
+	
+	/**
+	 * Adds the range of all addresses sharing the first {@code prefixLength} bits with the given address.
+	 * 
+	 * @param address      The base address of the range.
+	 * @param prefixLength The amount of significant bits.
+	 */
+	public synchronized void add(InetAddress address, int prefixLength) {
+		byte[] bytes = address.getAddress();
+		if(prefixLength < 0 || prefixLength > bytes.length * 8) {
+			throw new IllegalArgumentException("invalid prefix length " + prefixLength + " for " + address);
+		}
+		
+		Nodes current = nodes;
+		int node = bytes.length == 4 ? IPV4_ROOT : IPV6_ROOT;
+		for(int bit = 0; bit < prefixLength; bit++) {
+			if(current.terminal[node]) {
+				// a shorter prefix already covers this range
+				return;
+			}
+			int[] children = bitAt(bytes, bit) == 0 ? current.zero : current.one;
+			int child = children[node];
+			if(child == NO_NODE) {
+				if(nodeCount == current.zero.length) {
+					current = current.grow();
+					children = bitAt(bytes, bit) == 0 ? current.zero : current.one;
+				}
+				child = nodeCount++;
+				children[node] = child;
+			}
+			node = child;
+		}
+		current.terminal[node] = true;
+		rangeCount++;
+		// publish all writes above
+		nodes = current;
+	}
+	
+	/**
+	 * Checks whether the given address is inside any of the added ranges.
+	 * 
+	 * @param address The address to check.
+	 * 
+	 * @return {@code true} if the address is covered by a range, {@code false} otherwise.
+	 */
+	public boolean contains(InetAddress address) {
+		Nodes current = nodes;
+		byte[] bytes = address.getAddress();
+		int node = bytes.length == 4 ? IPV4_ROOT : IPV6_ROOT;
+		int bits = bytes.length * 8;
+		for(int bit = 0; bit < bits; bit++) {
+			if(current.terminal[node]) {
+				return true;
+			}
+			node = bitAt(bytes, bit) == 0 ? current.zero[node] : current.one[node];
+			if(node == NO_NODE) {
+				return false;
+			}
+		}
+		return current.terminal[node];
+	}
+	
+	/**
+	 * Returns whether no range has been added yet.
+	 * 
+	 * @return {@code true} if this trie contains no ranges.
+	 */
+	public boolean isEmpty() {
+		return rangeCount == 0;
+	}
+	
+	/**
+	 * Removes all ranges.
+	 */
+	public synchronized void clear() {
+		nodeCount = 3;
+		rangeCount = 0;
+		nodes = new Nodes(INITIAL_CAPACITY);
+	}
+	
+	/**
+	 * Parses an IP literal without ever resolving a host name.
+	 * 
+	 * @param host The IPv4 address in dotted decimal notation, or the IPv6 address, with or without brackets.
+	 * 
+	 * @return The address, or {@code null} if the host is no IP literal.
+	 */
+	private static InetAddress parseLiteral(String host) {
+		if(host.indexOf(':') >= 0) {
+			try {
+				// with brackets, an invalid IPv6 literal fails instead of being looked up
+				return InetAddress.getByName(host.startsWith("[") ? host : "[" + host + "]");
+			} catch(UnknownHostException exc) {
+				return null;
+			}
+		}
+		String[] parts = host.split("\\.", -1);
+		if(parts.length != 4) {
+			return null;
+		}
+		byte[] bytes = new byte[4];
+		for(int i = 0; i < 4; i++) {
+			String part = parts[i];
+			if(part.isEmpty() || part.length() > 3 || !part.chars().allMatch(c -> c >= '0' && c <= '9')) {
+				return null;
+			}
+			int value = Integer.parseInt(part);
+			if(value > 255) {
+				return null;
+			}
+			bytes[i] = (byte) value;
+		}
+		try {
+			return InetAddress.getByAddress(bytes);
+		} catch(UnknownHostException exc) {
+			// can't happen with 4 bytes
+			return null;
+		}
+	}
+	
+	private static int bitAt(byte[] bytes, int bit) {
+		return (bytes[bit >>> 3] >>> (7 - (bit & 7))) & 1;
+	}
+	
+	@Override
+	public String toString() {
+		return "AddressTrie{ranges=" + rangeCount + ", nodes=" + nodeCount + "}";
+	}
+	
+	/**
+	 * Creates a trie containing the given ranges.
+	 * 
+	 * @param cidrs The ranges in CIDR notation.
+	 * 
+	 * @return The new trie.
+	 */
+	public static AddressTrie of(String... cidrs) {
+		AddressTrie trie = new AddressTrie();
+		Arrays.stream(cidrs).forEach(trie::add);
+		return trie;
+	}
+}
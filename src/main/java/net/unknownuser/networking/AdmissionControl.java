@@ -0,0 +1,184 @@
+package net.unknownuser.networking;
+
+import java.net.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Built-in limits, which are checked for every inbound connection before any streams are opened.<br>
+ * Every limit is disabled by default. Rejecting a connection here only costs a few comparisons and closing the raw socket.
+ */
+public class AdmissionControl {
+	private volatile int maxConnections = 0;
+	private volatile int maxConnectionsPerAddress = 0;
+	
+	// token bucket for the accept rate
+	private double acceptsPerSecond = 0;
+	private double burst = 0;
+	private double tokens = 0;
+	private long lastRefill = System.nanoTime();
+	
+	private final AddressTrie allowList = new AddressTrie();
+	private final AddressTrie denyList = new AddressTrie();
+	
+	private final AtomicInteger connectionCount = new AtomicInteger();
+	private final ConcurrentHashMap<InetAddress, Integer> connectionsPerAddress = new ConcurrentHashMap<>();
+	
+	private final LongAdder rejected = new LongAdder();
+	
+	/**
+	 * Checks whether a connection from the given address may be admitted. If it is admitted, it is counted against the limits until {@link #release(InetAddress) release} is called.
+	 * 
+	 * @param address The remote address of the inbound connection.
+	 * 
+	 * @return {@code true} if the connection is admitted, {@code false} if it should be rejected.
+	 */
+	public boolean tryAdmit(InetAddress address) {
+		if(!denyList.isEmpty() && denyList.contains(address)) {
+			rejected.increment();
+			return false;
+		}
+		if(!allowList.isEmpty() && !allowList.contains(address)) {
+			rejected.increment();
+			return false;
+		}
+		int max = maxConnections;
+		if(max > 0) {
+			int current;
+			do {
+				current = connectionCount.get();
+				if(current >= max) {
+					rejected.increment();
+					return false;
+				}
+			} while(!connectionCount.compareAndSet(current, current + 1));
+		} else {
+			connectionCount.incrementAndGet();
+		}
+		
+		int maxPerAddress = maxConnectionsPerAddress;
+		if(maxPerAddress > 0) {
+			boolean[] admitted = { true };
+			connectionsPerAddress.compute(address, (key, count) -> {
+				if(count == null) {
+					return 1;
+				}
+				if(count >= maxPerAddress) {
+					admitted[0] = false;
+					return count;
+				}
+				return count + 1;
+			});
+			if(!admitted[0]) {
+				connectionCount.decrementAndGet();
+				rejected.increment();
+				return false;
+			}
+		}
+		
+		// taken last, so connections, which are rejected by the other limits, don't use up the rate
+		if(!takeToken()) {
+			release(address);
+			rejected.increment();
+			return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Releases a connection, which has been admitted by {@link #tryAdmit(InetAddress) tryAdmit}.
+	 * 
+	 * @param address The remote address of the closed connection.
+	 */
+	public void release(InetAddress address) {
+		connectionCount.decrementAndGet();
+		connectionsPerAddress.computeIfPresent(address, (key, count) -> count <= 1 ? null : count - 1);
+	}
+	
+	private synchronized boolean takeToken() {
+		if(acceptsPerSecond <= 0) {
+			return true;
+		}
+		long now = System.nanoTime();
+		tokens = Math.min(burst, tokens + (now - lastRefill) * acceptsPerSecond / 1_000_000_000d);
+		lastRefill = now;
+		if(tokens < 1) {
+			return false;
+		}
+		tokens--;
+		return true;
+	}
+	
+	/**
+	 * Sets the maximum amount of simultaneously admitted connections.
+	 * 
+	 * @param maxConnections The new limit. {@code 0} disables the limit.
+	 */
+	public void setMaxConnections(int maxConnections) {
+		this.maxConnections = maxConnections;
+	}
+	
+	/**
+	 * Sets the maximum amount of simultaneously admitted connections from a single IP.<br>
+	 * Connections are only counted per IP while the limit is enabled, so connections, which have been admitted before, don't count against a new limit.
+	 * 
+	 * @param maxConnectionsPerAddress The new limit. {@code 0} disables the limit.
+	 */
+	public void setMaxConnectionsPerAddress(int maxConnectionsPerAddress) {
+		this.maxConnectionsPerAddress = maxConnectionsPerAddress;
+	}
+	
+	/**
+	 * Limits the rate of admitted connections.
+	 * 
+	 * @param acceptsPerSecond The sustained amount of connections per second. {@code 0} disables the limit.
+	 * @param burst            The amount of connections, which may be admitted at once after an idle period.
+	 */
+	public synchronized void setAcceptRate(double acceptsPerSecond, int burst) {
+		this.acceptsPerSecond = acceptsPerSecond;
+		this.burst = Math.max(1, burst);
+		this.tokens = this.burst;
+		this.lastRefill = System.nanoTime();
+	}
+	
+	/**
+	 * Adds a range to the allow list. Once the allow list contains any range, only addresses inside the allow list are admitted.
+	 * 
+	 * @param cidr The range in CIDR notation.
+	 */
+	public void allow(String cidr) {
+		allowList.add(cidr);
+	}
+	
+	/**
+	 * Adds a range to the deny list. Addresses inside the deny list are never admitted.
+	 * 
+	 * @param cidr The range in CIDR notation.
+	 */
+	public void deny(String cidr) {
+		denyList.add(cidr);
+	}
+	
+	/**
+	 * Gets the amount of currently admitted connections.
+	 * 
+	 * @return The admitted connections.
+	 */
+	public int getConnectionCount() {
+		return connectionCount.get();
+	}
+	
+	/**
+	 * Gets the amount of connections, which have been rejected so far.
+	 * 
+	 * @return The rejected connections.
+	 */
+	public long getRejectedCount() {
+		return rejected.sum();
+	}
+	
+	@Override
+	public String toString() {
+		return "AdmissionControl{connections=" + connectionCount.get() + ", maxConnections=" + maxConnections + ", maxConnectionsPerAddress=" + maxConnectionsPerAddress + ", rejected=" + rejected.sum() + "}";
+	}
+}
@@ -0,0 +1,69 @@
+package net.unknownuser.networking;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Describes how many received messages are handed to a handler at once.<br>
+ * A batch is closed once it contains {@link #maxMessages} messages or {@link #maxMicros} microseconds have passed since its first message, whichever comes first.
+ */
+public class BatchPolicy {
+	public final int maxMessages;
+	public final long maxMicros;
+	
+	/**
+	 * Creates a new batch policy.
+	 * 
+	 * @param maxMessages The maximum amount of messages per batch. Must be at least {@code 1}.
+	 * @param maxMicros   The maximum time in microseconds to wait for more messages after the first one. {@code 0} only takes messages, which are already queued.
+	 */
+	public BatchPolicy(int maxMessages, long maxMicros) {
+		super();
+		if(maxMessages < 1) {
+			throw new IllegalArgumentException("a batch must contain at least one message");
+		}
+		if(maxMicros < 0) {
+			throw new IllegalArgumentException("the batch window can't be negative");
+		}
+		this.maxMessages = maxMessages;
+		this.maxMicros = maxMicros;
+	}
+	
+	/**
+	 * Fills a batch, starting with an already taken element.
+	 * 
+	 * @param <E>   The type of the queued elements.
+	 * @param queue The queue to drain.
+	 * @param first The first element of the batch.
+	 * @param into  The list the batch is added to.
+	 * 
+	 * @throws InterruptedException When the thread is interrupted while waiting for more elements.
+	 */
+	public <E> void drain(BlockingQueue<E> queue, E first, List<E> into) throws InterruptedException {
+		into.add(first);
+		// take everything, which is already there, without waiting
+		queue.drainTo(into, maxMessages - into.size());
+		if(maxMicros == 0) {
+			return;
+		}
+		
+		long deadline = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(maxMicros);
+		while(into.size() < maxMessages) {
+			long remaining = deadline - System.nanoTime();
+			if(remaining <= 0) {
+				return;
+			}
+			E next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+			if(next == null) {
+				return;
+			}
+			into.add(next);
+			queue.drainTo(into, maxMessages - into.size());
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return "BatchPolicy{maxMessages=" + maxMessages + ", maxMicros=" + maxMicros + "}";
+	}
+}
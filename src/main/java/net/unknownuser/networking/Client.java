@@ -2,25 +2,115 @@ package net.unknownuser.networking;
 
 import java.io.*;
 import java.net.*;
+import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+
+import net.unknownuser.networking.transport.*;
 
 public abstract class Client {
 	protected int port;
 	protected String ip;
 	
-	protected Socket socket;
-	protected ObjectOutputStream socketWriter;
-	protected ObjectInputStream socketReader;
+	protected final TransportFactory transportFactory;
+	protected Transport transport;
 	
 	protected Thread messageReceiver;
 	protected Thread messageListener;
 	
-	protected final LinkedBlockingQueue<Message<?, ?>> receivedMessages = new LinkedBlockingQueue<>();
+	protected BatchPolicy batchPolicy = null;
+	
+	/**
+	 * The amount of journaled messages after which an acknowledgement is sent, even if more messages are waiting.
+	 */
+	private static final int ACK_INTERVAL = 64;
+	
+	/**
+	 * The sequence number of the last journaled message, which has been received. Kept across reconnects.
+	 */
+	protected volatile long lastSequence = 0;
+	/**
+	 * The epoch of the journal, which {@link #lastSequence} belongs to. Kept across reconnects.
+	 */
+	protected volatile long journalEpoch = 0;
+	private long acknowledgedSequence = 0;
+	
+	protected boolean useSessions = false;
+	/**
+	 * Whether the content of messages is sent as separate bytes, which a server can forward without deserializing it.
+	 */
+	protected volatile boolean rawContent = false;
+	/**
+	 * The token of the session assigned by the server. Kept across reconnects.
+	 */
+	protected volatile String sessionToken = null;
+	
+	protected DatagramEndpoint datagrams = null;
+	private Callable<DatagramEndpoint> datagramOpener = null;
+	private volatile long datagramToken = 0;
+	private volatile InetSocketAddress datagramServer = null;
+	private volatile InetSocketAddress datagramTarget = null;
+	private DatagramEndpoint.LatestSequences datagramSequences = null;
+	
+	protected BlockingQueue<Message<?, ?>> receivedMessages = new LinkedBlockingQueue<>();
+	
+	protected LanePolicy lanePolicy = null;
+	/**
+	 * Writes the messages by priority, if lanes are used. Otherwise, messages are written directly by the sending thread.
+	 */
+	private LaneWriter outbound = null;
+	
+	/**
+	 * Reused for every frame, if the transport hands out views.
+	 */
+	private final MessageView view = new MessageView();
+	
+	protected ResponseCache responseCache = null;
+	/**
+	 * The time after which a request fails, if its answer hasn't arrived, in milliseconds.
+	 */
+	protected volatile long requestTimeoutMillis = 30_000;
+	private final AtomicLong requestIds = new AtomicLong();
+	private final ConcurrentHashMap<Long, CompletableFuture<Message<?, ?>>> pendingRequests = new ConcurrentHashMap<>();
+	
+	/**
+	 * The last id assigned to a message. Kept across reconnects, so the server can tell repeated messages from new ones.
+	 */
+	private final AtomicLong messageIds = new AtomicLong();
+	
+	/**
+	 * The mirrors of the subscribed replicated maps. Kept across reconnects and subscribed again on connect.
+	 */
+	private final ConcurrentHashMap<String, ReplicaMirror<?, ?>> mirrors = new ConcurrentHashMap<>();
+	
+	/**
+	 * The message types this client receives via broadcasts and group messages. Kept across reconnects and sent again on connect.
+	 */
+	protected volatile InterestSet interests = null;
+	
+	protected final TimingWheel timingWheel = TimingWheel.getDefault();
+	/**
+	 * Sends the scheduled messages, so a slow connection doesn't hold up the thread of the timing wheel, which is shared by all servers and clients.
+	 */
+	protected final Executor scheduledSender = TimingWheel.newDispatcher("scheduledSender");
 	
 	protected Client(String ip, int port) {
+		this(ip, port, SocketTransport::connect);
+	}
+	
+	/**
+	 * Creates a client, which connects via the given transport instead of TCP.
+	 * 
+	 * @param ip               The IP of the server.
+	 * @param port             The port of the server.
+	 * @param transportFactory Creates the transport, whenever the client connects.
+	 */
+	protected Client(String ip, int port, TransportFactory transportFactory) {
 		super();
 		this.ip = ip;
 		this.port = port;
+		this.transportFactory = transportFactory;
 	}
 	
 	/**
@@ -29,6 +119,27 @@ public abstract class Client {
 	 * @param message The received message.
 	 */
 	public abstract void onMessageReceived(Message<?, ?> message);
+	/**
+	 * When a {@link #setBatchPolicy(BatchPolicy) batch policy} is set, this method is called with all messages of a batch.<br>
+	 * By default, {@link #onMessageReceived(Message) onMessageReceived} is called for each message in order.
+	 * 
+	 * @param messages The received messages, in the order they have been received.
+	 */
+	public void onMessagesReceived(List<Message<?, ?>> messages) {
+		for(Message<?, ?> message : messages) {
+			onMessageReceived(message);
+		}
+	}
+	/**
+	 * When the transport hands out {@link MessageView views}, this method is called with every received frame, which has a {@link FrameSchema}.<br>
+	 * It is called directly by the thread, which reads from the server, and the view is reused for the next frame. So the frame has to be handled quickly and the view
+	 * must not be kept. By default, the view is turned into a message and handled like any other message.
+	 * 
+	 * @param view The view of the received frame. Only valid during this call.
+	 */
+	public void onFrameReceived(MessageView view) {
+		addMessageToQueue(view.toMessage());
+	}
 	/**
 	 * When a successful connection has been established, this method is called.
 	 */
@@ -39,6 +150,14 @@ public abstract class Client {
 	 * @param withError Whether the disconnect was caused by an error.
 	 */
 	public abstract void onDisconnect(boolean withError);
+	/**
+	 * When journaled messages, which have been broadcasted while the client was disconnected, have already been deleted by the server, this method is called before the
+	 * remaining messages are received.<br>
+	 * It is called directly by the thread, which reads from the server. By default, it does nothing.
+	 * 
+	 * @param missed The amount of lost messages.
+	 */
+	public void onMessagesMissed(long missed) {}
 	
 	/**
 	 * Connects the client to the specified IP and port.<br>
@@ -54,10 +173,20 @@ public abstract class Client {
 		}
 		
 		synchronized (this) {
-			this.socket = new Socket(ip, port);
-			
-			this.socketWriter = new ObjectOutputStream(new DataOutputStream(socket.getOutputStream()));
-			this.socketReader = new ObjectInputStream(new DataInputStream(socket.getInputStream()));
+			Transport newTransport = transportFactory.connect(ip, port);
+			try {
+				newTransport.open();
+			} catch(IOException exc) {
+				newTransport.close();
+				throw exc;
+			}
+			this.transport = newTransport;
+			if(lanePolicy != null) {
+				outbound = new LaneWriter(lanePolicy, "clientWriter", this::write, exc -> {
+					exc.printStackTrace();
+					disconnect(true);
+				});
+			}
 			
 			messageReceiver = new Thread(this::receiveMessage, "messageReceiver");
 			messageReceiver.start();
@@ -66,6 +195,29 @@ public abstract class Client {
 			messageListener.setDaemon(true);
 			messageListener.start();
 			
+			if(datagramOpener != null) {
+				try {
+					datagrams = datagramOpener.call();
+					sendMessage(new Message<>(ControlType.DATAGRAM, null));
+				} catch(Exception exc) {
+					// TCP still works without datagrams
+					System.err.println("could not open datagram socket");
+					exc.printStackTrace();
+				}
+			}
+			if(useSessions) {
+				sendMessage(new Message<>(ControlType.SESSION, sessionToken));
+			}
+			if(interests != null) {
+				// before resuming, so missed messages are filtered as well
+				sendMessage(new Message<>(ControlType.INTEREST, interests));
+			}
+			// continue where the last connection stopped, the server holds back journaled broadcasts until then
+			sendMessage(new Message<>(ControlType.RESUME, new SequencedMessage(journalEpoch, lastSequence, null)));
+			for(String name : mirrors.keySet()) {
+				sendMessage(new Message<>(ControlType.REPLICA, new ReplicaSubscription(name, true)));
+			}
+			
 			new Thread(this::onConnect, "onConnect").start();
 		}
 		return true;
@@ -86,18 +238,37 @@ public abstract class Client {
 		
 		try {
 			synchronized (this) {
-				synchronized (socket) {
+				synchronized (transport) {
 					// stop threads
 					messageReceiver.interrupt();
 					messageListener.interrupt();
 					
-					socket.close();
+					transport.close();
+					if(outbound != null) {
+						outbound.close();
+						outbound = null;
+					}
+					
+					if(datagrams != null) {
+						datagrams.close();
+						datagrams = null;
+					}
+					datagramTarget = null;
+					datagramToken = 0;
 					
-					if(socketWriter != null) {
-						socketWriter.close();
+					// answers can't arrive anymore and invalidations are missed until the next connect
+					IOException disconnected = new IOException("disconnected before the answer arrived");
+					for(Long id : pendingRequests.keySet()) {
+						CompletableFuture<Message<?, ?>> answer = pendingRequests.remove(id);
+						if(answer != null) {
+							answer.completeExceptionally(disconnected);
+						}
+					}
+					if(responseCache != null) {
+						responseCache.invalidateAll();
 					}
-					if(socketReader != null) {
-						socketReader.close();
+					for(ReplicaMirror<?, ?> mirror : mirrors.values()) {
+						mirror.desynchronize();
 					}
 					
 					new Thread(() -> onDisconnect(byError), "onDisconnect").start();
@@ -131,13 +302,20 @@ public abstract class Client {
 			return false;
 		}
 		
+		DatagramEndpoint endpoint = datagrams;
+		InetSocketAddress target = datagramTarget;
+		if(target != null && endpoint != null && endpoint.isUnreliable(message.type)) {
+			endpoint.send(target, datagramToken, message);
+			return true;
+		}
+		
+		LaneWriter writer = outbound;
+		if(writer != null) {
+			return writer.offer(message);
+		}
+		
 		try {
-			// socket must be under control
-			synchronized (socket) {
-				
-				socketWriter.writeObject(message);
-				socketWriter.flush();
-			}
+			write(message);
 		} catch(IOException exc) {
 			exc.printStackTrace();
 			disconnect(true);
@@ -146,6 +324,211 @@ public abstract class Client {
 		return true;
 	}
 	
+	/**
+	 * Sends a message with an id, so the server drops it, if it has already received a message with the same id. Used to send a message again after a failure,
+	 * without it being handled twice. Only has an effect, if the server {@link Server#setDeduplicationWindow(int) drops duplicates}.
+	 * 
+	 * @param message   The message to send.
+	 * @param messageId The id of the message, from {@link #nextMessageId()}. The same for every attempt to send the message.
+	 * 
+	 * @return {@code true} if the message could be send, {@code false} otherwise.
+	 */
+	public boolean sendMessage(Message<?, ?> message, long messageId) {
+		return sendMessage(new Message<>(ControlType.UNIQUE, new UniqueMessage(messageId, message)));
+	}
+	
+	/**
+	 * Gets a new id for {@link #sendMessage(Message, long)}. Ids increase, so the server only needs to remember the most recent ones.
+	 * 
+	 * @return The new id.
+	 */
+	public long nextMessageId() {
+		return messageIds.incrementAndGet();
+	}
+	
+	/**
+	 * Runs a task after a delay, without a thread of its own. The task runs on the thread of the {@link TimingWheel}, so it has to be short.
+	 * 
+	 * @param task  The task.
+	 * @param delay The delay.
+	 * @param unit  The unit of the delay.
+	 * 
+	 * @return The scheduled task, which can be cancelled.
+	 */
+	public TimingWheel.Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+		return timingWheel.schedule(task, delay, unit);
+	}
+	
+	/**
+	 * Sends a message to the server after a delay. The message is dropped, if the client isn't connected by then.
+	 * 
+	 * @param message The message to send.
+	 * @param delay   The delay.
+	 * @param unit    The unit of the delay.
+	 * 
+	 * @return The scheduled message, which can be cancelled.
+	 */
+	public TimingWheel.Timeout sendLater(Message<?, ?> message, long delay, TimeUnit unit) {
+		return timingWheel.schedule(() -> scheduledSender.execute(() -> sendMessage(message)), delay, unit);
+	}
+	
+	/**
+	 * Sends messages to the server periodically, e.g. heartbeats, until it is cancelled. Runs, which are due while the client is disconnected, are skipped, so
+	 * the messages continue after a reconnect.
+	 * 
+	 * @param message      Creates the message of each run, may return {@code null} to skip a run.
+	 * @param initialDelay The delay of the first message.
+	 * @param period       The time between the messages.
+	 * @param unit         The unit of the delay and the period.
+	 * 
+	 * @return The scheduled messages, which can be cancelled.
+	 */
+	public TimingWheel.Timeout sendAtFixedRate(Supplier<? extends Message<?, ?>> message, long initialDelay, long period, TimeUnit unit) {
+		return timingWheel.scheduleAtFixedRate(() -> {
+			if(!isConnected()) {
+				return;
+			}
+			scheduledSender.execute(() -> {
+				Message<?, ?> next = message.get();
+				if(next != null) {
+					sendMessage(next);
+				}
+			});
+		}, initialDelay, period, unit);
+	}
+	
+	/**
+	 * Gets the message types this client receives via broadcasts and group messages.
+	 * 
+	 * @return The interests, or {@code null} if all types are received.
+	 */
+	public InterestSet getInterests() {
+		return interests;
+	}
+	
+	/**
+	 * Sets the message types this client receives via broadcasts and group messages. The server skips this client when sending other types, so they don't cost
+	 * bandwidth. Messages, which the server sends to this client directly, are always received.<br>
+	 * The interests are kept across reconnects. If the client is connected, the server is told immediately, otherwise on connect.
+	 * 
+	 * @param interests The types to receive, or {@code null} to receive all types.
+	 */
+	public void setInterests(InterestSet interests) {
+		this.interests = interests;
+		if(isConnected()) {
+			sendMessage(new Message<>(ControlType.INTEREST, interests));
+		}
+	}
+	
+	/**
+	 * Subscribes to a {@link ReplicatedMap} of the server. The returned mirror receives all entries of the map, and then the changes whenever they are sent. The
+	 * subscription is kept across reconnects. Subscribing to the same map again returns the same mirror.
+	 * 
+	 * @param <K>  The type of the keys.
+	 * @param <V>  The type of the values.
+	 * @param name The name of the map.
+	 * 
+	 * @return The mirror, which is empty until the entries have arrived.
+	 */
+	@SuppressWarnings("unchecked")
+	public <K, V> ReplicaMirror<K, V> subscribe(String name) {
+		ReplicaMirror<?, ?> mirror = mirrors.get(name);
+		if(mirror == null) {
+			mirror = new ReplicaMirror<>(name);
+			ReplicaMirror<?, ?> existing = mirrors.putIfAbsent(name, mirror);
+			if(existing != null) {
+				return (ReplicaMirror<K, V>) existing;
+			}
+			if(isConnected()) {
+				sendMessage(new Message<>(ControlType.REPLICA, new ReplicaSubscription(name, true)));
+			}
+		}
+		return (ReplicaMirror<K, V>) mirror;
+	}
+	
+	/**
+	 * Cancels the subscription to a {@link ReplicatedMap}. Its mirror isn't updated anymore.
+	 * 
+	 * @param name The name of the map.
+	 * 
+	 * @return {@code true} if the subscription has been cancelled, {@code false} if there was none.
+	 */
+	public boolean unsubscribe(String name) {
+		ReplicaMirror<?, ?> mirror = mirrors.remove(name);
+		if(mirror == null) {
+			return false;
+		}
+		mirror.desynchronize();
+		if(isConnected()) {
+			sendMessage(new Message<>(ControlType.REPLICA, new ReplicaSubscription(name, false)));
+		}
+		return true;
+	}
+	
+	/**
+	 * Sends a request to the server, which answers it in {@link Server#onRequestReceived(Message, Connection) onRequestReceived}.<br>
+	 * If a {@link #setResponseCache(ResponseCache) response cache} is set, cached answers are returned without a round trip, and equal requests, which are sent while
+	 * one of them waits for its answer, share that answer.
+	 * <p>
+	 * The answer is completed by the thread, which reads from the server, so actions, which take long, should be run asynchronously.
+	 * 
+	 * @param request The request.
+	 * 
+	 * @return The answer, which may be {@code null}. It fails with an {@link IOException}, if the client isn't connected, disconnects before the answer arrives or the
+	 *         server failed to answer, and with a {@link TimeoutException}, if the answer doesn't arrive within the {@link #setRequestTimeout(long) request timeout}.
+	 */
+	public CompletableFuture<Message<?, ?>> request(Message<?, ?> request) {
+		ResponseCache cache = responseCache;
+		return cache != null ? cache.get(request, this::sendRequest) : sendRequest(request);
+	}
+	
+	private CompletableFuture<Message<?, ?>> sendRequest(Message<?, ?> request) {
+		long id = requestIds.incrementAndGet();
+		CompletableFuture<Message<?, ?>> answer = new CompletableFuture<>();
+		pendingRequests.put(id, answer);
+		// however it completes, the answer isn't waited for anymore
+		answer.orTimeout(requestTimeoutMillis, TimeUnit.MILLISECONDS).whenComplete((response, exc) -> pendingRequests.remove(id, answer));
+		if(!sendMessage(new Message<>(ControlType.REQUEST, new RequestMessage(id, request)))) {
+			answer.completeExceptionally(new IOException("not connected"));
+		}
+		return answer;
+	}
+	
+	private void write(Message<?, ?> message) throws IOException {
+		// serialized before taking the transport, so other senders don't wait for it
+		Message<?, ?> outgoing = rawContent ? withRawContent(message) : message;
+		// transport must be under control
+		synchronized (transport) {
+			transport.write(outgoing);
+		}
+	}
+	
+	/**
+	 * Serializes the content of an application message, also if it is wrapped in a control message.
+	 * 
+	 * @param message The message to send.
+	 * 
+	 * @return The message with a serialized content.
+	 * 
+	 * @throws IOException When the content could not be serialized.
+	 */
+	private static Message<?, ?> withRawContent(Message<?, ?> message) throws IOException {
+		if(!(message.type instanceof ControlType type)) {
+			return RawMessage.of(message);
+		}
+		return switch(type) {
+			case UNIQUE -> {
+				UniqueMessage unique = (UniqueMessage) message.content;
+				yield new Message<>(type, new UniqueMessage(unique.id, withRawContent(unique.message)));
+			}
+			case REQUEST -> {
+				RequestMessage request = (RequestMessage) message.content;
+				yield new Message<>(type, new RequestMessage(request.id, withRawContent(request.message)));
+			}
+			default -> message;
+		};
+	}
+	
 	/**
 	 * Receives a message from the server. onMessageReceived} with it.
 	 */
@@ -154,9 +537,22 @@ public abstract class Client {
 		try {
 			while(isConnected()) {
 				try {
-					Message<?, ?> message = (Message<?, ?>) socketReader.readObject();
+					Message<?, ?> message;
+					if(transport instanceof ViewTransport views) {
+						message = views.readInto(view);
+						if(message == null) {
+							onFrameReceived(view);
+							continue;
+						}
+					} else {
+						message = transport.read();
+					}
 					// keep this thread listening.
-					addMessageToQueue(message);
+					if(message.type instanceof ControlType type) {
+						handleControlMessage(type, message);
+					} else {
+						addMessageToQueue(message);
+					}
 				} catch(ClassNotFoundException exc) {
 					System.err.println("received object could not be mapped to a class");
 				}
@@ -174,11 +570,205 @@ public abstract class Client {
 			// general errors
 			exc.printStackTrace();
 			isError = true;
+		} catch(RuntimeException exc) {
+			// a malformed frame, the stream can't be trusted anymore
+			exc.printStackTrace();
+			isError = true;
 		} finally {
 			disconnect(isError);
 		}
 	}
 	
+	/**
+	 * Handles a message, which has been sent by the library of the server instead of the application.
+	 * 
+	 * @param type    The type of the message.
+	 * @param message The message.
+	 */
+	private void handleControlMessage(ControlType type, Message<?, ?> message) {
+		switch(type) {
+			case SEQUENCED -> {
+				SequencedMessage sequenced = (SequencedMessage) message.content;
+				if(sequenced.epoch != journalEpoch) {
+					// the server has started a new journal, its sequence numbers start again
+					startJournalEpoch(sequenced.epoch, 0);
+				}
+				if(sequenced.sequence <= lastSequence) {
+					// already received before a reconnect
+					return;
+				}
+				lastSequence = sequenced.sequence;
+				addMessageToQueue(sequenced.message);
+				if(lastSequence - acknowledgedSequence >= ACK_INTERVAL) {
+					acknowledge();
+				}
+			}
+			case RESUME -> {
+				// the position the server continues after, a new client learns its first position here
+				SequencedMessage position = (SequencedMessage) message.content;
+				if(position.epoch != journalEpoch) {
+					startJournalEpoch(position.epoch, position.sequence);
+				} else if(position.sequence > lastSequence) {
+					long missed = position.sequence - lastSequence;
+					lastSequence = position.sequence;
+					onMessagesMissed(missed);
+				}
+			}
+			case SESSION -> sessionToken = (String) message.content;
+			case DATAGRAM -> {
+				DatagramInfo info = (DatagramInfo) message.content;
+				DatagramEndpoint endpoint = datagrams;
+				if(endpoint == null) {
+					return;
+				}
+				datagramSequences = new DatagramEndpoint.LatestSequences(endpoint.getTypeCount());
+				datagramToken = info.token;
+				datagramServer = new InetSocketAddress(transport.getRemoteAddress().getAddress(), info.port);
+				new Thread(() -> registerDatagrams(endpoint, datagramServer, info.token), "registerDatagrams").start();
+			}
+			case DATAGRAM_READY -> datagramTarget = datagramServer;
+			case RESPONSE -> {
+				ResponseMessage response = (ResponseMessage) message.content;
+				CompletableFuture<Message<?, ?>> answer = pendingRequests.remove(response.id);
+				if(answer != null && response.error != null) {
+					answer.completeExceptionally(new IOException("the server failed to answer: " + response.error));
+				} else if(answer != null) {
+					try {
+						answer.complete(response.message instanceof RawMessage<?> raw ? raw.toMessage() : response.message);
+					} catch(IllegalStateException exc) {
+						answer.completeExceptionally(exc);
+					}
+				}
+			}
+			case INVALIDATE -> {
+				ResponseCache cache = responseCache;
+				if(cache == null) {
+					return;
+				}
+				if(message.content == null) {
+					cache.invalidateAll();
+				} else {
+					cache.invalidate((Message<?, ?>) message.content);
+				}
+			}
+			case REPLICA -> {
+				ReplicaUpdate update;
+				try {
+					// serialized once by the server for all subscribers
+					update = (ReplicaUpdate) message.getContent();
+				} catch(IllegalStateException exc) {
+					System.err.println("received object could not be mapped to a class");
+					return;
+				}
+				ReplicaMirror<?, ?> mirror = mirrors.get(update.name);
+				if(mirror == null) {
+					// unsubscribed in the meantime
+					return;
+				}
+				if(mirror.apply(update)) {
+					onReplicaUpdated(mirror);
+				} else {
+					// missed an update, all entries are needed again
+					sendMessage(new Message<>(ControlType.REPLICA, new ReplicaSubscription(update.name, true)));
+				}
+			}
+			default -> onControlMessage(type, message);
+		}
+	}
+	
+	/**
+	 * Called whenever a mirror of a replicated map has been updated. Called by the thread, which reads from the server, so actions, which take long, should be run
+	 * asynchronously.<br>
+	 * By default, nothing happens.
+	 * 
+	 * @param mirror The updated mirror.
+	 */
+	protected void onReplicaUpdated(ReplicaMirror<?, ?> mirror) {}
+	
+	/**
+	 * Called with every control message, which the client itself doesn't handle. Used by extensions of the library, like the links of a {@link ClusterBridge}.<br>
+	 * By default, a warning is printed.
+	 * 
+	 * @param type    The type of the message.
+	 * @param message The message.
+	 */
+	protected void onControlMessage(ControlType type, Message<?, ?> message) {
+		System.out.printf("[Client][Warning] unexpected control message %s%n", type);
+	}
+	
+	/**
+	 * Announces the datagram address of this client to the server, until the server confirms it.<br>
+	 * Datagrams may be lost, so the registration is repeated a few times.
+	 * 
+	 * @param endpoint The datagram endpoint of this client.
+	 * @param server   The datagram address of the server.
+	 * @param token    The token of the association.
+	 */
+	private void registerDatagrams(DatagramEndpoint endpoint, InetSocketAddress server, long token) {
+		try {
+			for(int attempt = 0; attempt < 10 && datagramTarget == null && datagramToken == token; attempt++) {
+				endpoint.register(server, token);
+				Thread.sleep(100);
+			}
+		} catch(IOException exc) {
+			System.err.println("could not register datagram address");
+		} catch(InterruptedException exc) {
+			// not used
+		}
+	}
+	
+	/**
+	 * Checks the header of a datagram, before its content is decoded.
+	 * 
+	 * @param token        The token in the datagram.
+	 * @param registration Whether the datagram only registers an address.
+	 * @param source       The address of the sender.
+	 * 
+	 * @return {@code true} if the datagram has the token of the association and comes from the server, {@code false} otherwise.
+	 */
+	private boolean acceptsDatagram(long token, boolean registration, InetSocketAddress source) {
+		InetSocketAddress server = datagramServer;
+		// only servers register addresses, and anyone can send datagrams
+		return !registration && token != 0 && token == datagramToken && server != null && source.equals(server);
+	}
+	
+	/**
+	 * Handles a received datagram.
+	 * 
+	 * @param token    The token of the sender.
+	 * @param message  The message.
+	 * @param sequence The sequence number of the datagram.
+	 * @param source   The address of the sender.
+	 */
+	private void onDatagram(long token, Message<?, ?> message, int sequence, InetSocketAddress source) {
+		DatagramEndpoint.LatestSequences sequences = datagramSequences;
+		if(message != null && acceptsDatagram(token, false, source) && sequences != null && sequences.update(message.type.ordinal(), sequence)) {
+			addMessageToQueue(message);
+		}
+	}
+	
+	/**
+	 * Forgets the position in the previous journal of the server.
+	 * 
+	 * @param epoch    The epoch of the new journal.
+	 * @param sequence The position in the new journal.
+	 */
+	private synchronized void startJournalEpoch(long epoch, long sequence) {
+		journalEpoch = epoch;
+		lastSequence = sequence;
+		acknowledgedSequence = sequence;
+	}
+	
+	/**
+	 * Acknowledges all journaled messages, which have been received so far.
+	 */
+	private synchronized void acknowledge() {
+		long sequence = lastSequence;
+		if(sequence > acknowledgedSequence && sendMessage(new Message<>(ControlType.ACK, sequence))) {
+			acknowledgedSequence = sequence;
+		}
+	}
+	
 	/**
 	 * Waits for messages to appear and and calls {@link #onMessageReceived(Message) on them.
 	 */
@@ -186,7 +776,18 @@ public abstract class Client {
 		try {
 			while(isConnected()) {
 				Message<?, ?> message = receivedMessages.take();
-				new Thread(() -> onMessageReceived(message), "onMessageReceived").start();
+				BatchPolicy policy = batchPolicy;
+				if(policy != null) {
+					ArrayList<Message<?, ?>> batch = new ArrayList<>(policy.maxMessages);
+					policy.drain(receivedMessages, message, batch);
+					new Thread(() -> onMessagesReceived(batch), "onMessagesReceived").start();
+				} else {
+					new Thread(() -> onMessageReceived(message), "onMessageReceived").start();
+				}
+				if(receivedMessages.isEmpty()) {
+					// idle, acknowledge everything received so far
+					acknowledge();
+				}
 			}
 		} catch(InterruptedException exc) {
 			// thrown on disconnect
@@ -201,16 +802,167 @@ public abstract class Client {
 	 * @return {@code true} if the message could be added, {@code false} otherwise.
 	 */
 	public boolean addMessageToQueue(Message<?, ?> newMessage) {
+		if(newMessage instanceof RawMessage<?> raw) {
+			// forwarded by the server as it has been sent
+			try {
+				return receivedMessages.offer(raw.toMessage());
+			} catch(IllegalStateException exc) {
+				System.err.println("received object could not be mapped to a class");
+				return false;
+			}
+		}
 		return receivedMessages.offer(newMessage);
 	}
 	
+	/**
+	 * Gets the policy, which is used to batch received messages.
+	 * 
+	 * @return The batch policy, or {@code null} if every message is handled on its own.
+	 */
+	public BatchPolicy getBatchPolicy() {
+		return batchPolicy;
+	}
+	
+	/**
+	 * Enables batched delivery of received messages via {@link #onMessagesReceived(List) onMessagesReceived}.
+	 * 
+	 * @param batchPolicy The new batch policy, or {@code null} to call {@link #onMessageReceived(Message) onMessageReceived} for every message on its own.
+	 */
+	public void setBatchPolicy(BatchPolicy batchPolicy) {
+		this.batchPolicy = batchPolicy;
+	}
+	
+	/**
+	 * Gets the policy, which assigns messages to priority lanes.
+	 * 
+	 * @return The lane policy, or {@code null} if messages are handled in the order they arrive.
+	 */
+	public LanePolicy getLanePolicy() {
+		return lanePolicy;
+	}
+	
+	/**
+	 * Enables priority lanes for the received messages, which wait to be handled, and for the messages, which wait to be written to the server.<br>
+	 * With lanes, the client writes on its own thread, so sending a message only queues it. Lanes can only be changed, if the client is disconnected.
+	 * 
+	 * @param lanePolicy The new lane policy, or {@code null} to handle and write messages in the order they arrive.
+	 * 
+	 * @return {@code true} if the policy has been changed, {@code false} if the client is connected.
+	 */
+	public boolean setLanePolicy(LanePolicy lanePolicy) {
+		synchronized (this) {
+			if(isConnected()) {
+				return false;
+			}
+			this.lanePolicy = lanePolicy;
+			this.receivedMessages = lanePolicy == null ? new LinkedBlockingQueue<>() : lanePolicy.newQueue(message -> message);
+			return true;
+		}
+	}
+	
+	/**
+	 * Gets the cache of the answers to requests.
+	 * 
+	 * @return The response cache, or {@code null} if every request is sent to the server.
+	 */
+	public ResponseCache getResponseCache() {
+		return responseCache;
+	}
+	
+	/**
+	 * Enables caching the answers to {@link #request(Message) requests}.
+	 * 
+	 * @param responseCache The new response cache, or {@code null} to send every request to the server.
+	 */
+	public void setResponseCache(ResponseCache responseCache) {
+		this.responseCache = responseCache;
+	}
+	
+	/**
+	 * Gets the time after which a request fails, if its answer hasn't arrived.
+	 * 
+	 * @return The timeout in milliseconds.
+	 */
+	public long getRequestTimeout() {
+		return requestTimeoutMillis;
+	}
+	
+	/**
+	 * Sets the time after which a {@link #request(Message) request} fails, if its answer hasn't arrived. Applies to requests, which are sent afterwards.
+	 * 
+	 * @param timeoutMillis The timeout in milliseconds.
+	 */
+	public void setRequestTimeout(long timeoutMillis) {
+		if(timeoutMillis <= 0) {
+			throw new IllegalArgumentException("timeout must be positive");
+		}
+		this.requestTimeoutMillis = timeoutMillis;
+	}
+	
+	/**
+	 * Returns whether the content of messages is sent as separate bytes.
+	 * 
+	 * @return {@code true} if the content is sent as separate bytes, {@code false} otherwise.
+	 */
+	public boolean isRawContent() {
+		return rawContent;
+	}
+	
+	/**
+	 * Sends the content of messages as separate bytes, which a server with {@link Server#setLazyContent(boolean) lazy content} keeps until a handler accesses the
+	 * content, and forwards to other clients as they are. Received messages are deserialized as usual, whether they have been sent like this or not.
+	 * 
+	 * @param rawContent {@code true} to send the content as separate bytes, {@code false} to send messages as they are.
+	 */
+	public void setRawContent(boolean rawContent) {
+		this.rawContent = rawContent;
+	}
+	
+	/**
+	 * Gets the token of the session, which the server has assigned to this client.
+	 * 
+	 * @return The session token, or {@code null} if no session has been started.
+	 */
+	public String getSessionToken() {
+		return sessionToken;
+	}
+	
+	/**
+	 * Sets whether this client starts or resumes a session on connect. Only has an effect on the next connect.
+	 * 
+	 * @param useSessions Whether sessions should be used.
+	 */
+	public void setUseSessions(boolean useSessions) {
+		this.useSessions = useSessions;
+	}
+	
+	/**
+	 * Enables sending the given message types via datagrams, next to the TCP connection. Only has an effect, if the server enabled datagrams as well.<br>
+	 * Datagrams can only be enabled, if the client isn't connected.
+	 * 
+	 * @param <T>   The type of the messages.
+	 * @param codec The codec of the message contents.
+	 * @param types The message types, which are sent unreliably. Only the latest message of each type is of interest.
+	 * 
+	 * @return {@code true} if datagrams have been enabled, {@code false} if the client is connected.
+	 */
+	public <T extends Enum<T>> boolean enableDatagrams(DatagramCodec<T> codec, Collection<T> types) {
+		synchronized (this) {
+			if(isConnected()) {
+				return false;
+			}
+			datagramOpener = () -> new DatagramEndpoint(0, codec, types, this::acceptsDatagram, this::onDatagram);
+			return true;
+		}
+	}
+	
 	/**
 	 * Returns whether this client is connected to a server,
 	 * 
 	 * @return {@code true} if a connection is made, {@code false} otherwise.
 	 */
 	public boolean isConnected() {
-		return socket != null && !socket.isClosed();
+		return transport != null && !transport.isClosed();
 	}
 	
 	/**
@@ -0,0 +1,607 @@
+package net.unknownuser.networking;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.*;
+import java.security.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+
+import javax.crypto.*;
+import javax.crypto.spec.*;
+
+import net.unknownuser.networking.transport.*;
+
+/**
+ * Connects a {@link Server} to the servers of other nodes, so broadcasts and group messages reach the clients of every node.<br>
+ * Nodes link via the regular port of their servers: the dialing node connects with a {@link Client}, the other node sees a {@link Connection}, which is marked as a
+ * {@link Connection#isPeer() peer}. Both nodes send cluster messages over this one link.
+ * <p>
+ * A message is forwarded to every node once, not to every client. The origin sends it to all nodes it is linked to and lists those nodes in the message. A node
+ * only forwards it to linked nodes, which are not listed yet. Additionally, every node remembers the latest messages it has delivered, so a message, which arrives
+ * twice while links change, is dropped.
+ * <p>
+ * Every node of a cluster has the same secret. A connection only becomes a link, once the other side has proven, that it knows the secret, so clients of a server
+ * can't pose as nodes. The links aren't encrypted, so the secret keeps out clients, not anyone, who can read the traffic between the nodes.
+ * <p>
+ * Linked nodes tell each other the members they know. A node dials every member with a greater id it isn't linked to yet, so a single seed is enough to build a
+ * full mesh. Lost links are dialed again the same way.
+ */
+public class ClusterBridge implements Closeable {
+	private static final int SEEN_CAPACITY = 8192;
+	// one lane, the cluster messages of a link keep their order
+	private static final LanePolicy LINK_LANES = new LanePolicy(1, 0, 0);
+	
+	protected final NodeInfo self;
+	protected final TransportFactory transportFactory;
+	private final byte[] secret;
+	private final byte[] proof;
+	protected volatile Server server = null;
+	
+	private final ConcurrentHashMap<String, Peer> links = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, NodeInfo> members = new ConcurrentHashMap<>();
+	// seeds are dialed until a node answers, afterwards until that node is linked again
+	private final ConcurrentHashMap<InetSocketAddress, String> seeds = new ConcurrentHashMap<>();
+	private final Set<InetSocketAddress> dialing = ConcurrentHashMap.newKeySet();
+	
+	// a restarted node must not reuse the ids of its previous run, other nodes may still remember them
+	private final AtomicLong nextId = new AtomicLong(ThreadLocalRandom.current().nextLong() >>> 16);
+	private final LinkedHashMap<String, Boolean> seen = new LinkedHashMap<>() {
+		private static final long serialVersionUID = 1L;
+		
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+			return size() > SEEN_CAPACITY;
+		}
+	};
+	
+	private volatile BiConsumer<NodeInfo, Boolean> membershipListener = null;
+	private volatile long redialMillis = 1000;
+	private Thread maintainer = null;
+	
+	/**
+	 * Creates a bridge, which links via TCP.
+	 * 
+	 * @param nodeId The id of this node, unique in the cluster.
+	 * @param host   The host, which other nodes use to reach the server of this node.
+	 * @param port   The port of the server of this node.
+	 * @param secret The secret, which all nodes of the cluster share.
+	 */
+	public ClusterBridge(String nodeId, String host, int port, String secret) {
+		this(new NodeInfo(nodeId, host, port), SocketTransport::connect, secret);
+	}
+	
+	/**
+	 * Creates a bridge.
+	 * 
+	 * @param self             This node.
+	 * @param transportFactory Creates the transports of the links this node dials. Must match the acceptors of the other servers.
+	 * @param secret           The secret, which all nodes of the cluster share.
+	 */
+	public ClusterBridge(NodeInfo self, TransportFactory transportFactory, String secret) {
+		super();
+		if(secret == null || secret.isEmpty()) {
+			throw new IllegalArgumentException("a cluster needs a secret");
+		}
+		this.self = self;
+		this.transportFactory = transportFactory;
+		this.secret = secret.getBytes(StandardCharsets.UTF_8);
+		this.proof = proofOf(self);
+	}
+	
+	/**
+	 * Computes the proof of a node, an HMAC of its id with the secret of the cluster.
+	 * 
+	 * @param node The node.
+	 * 
+	 * @return The proof.
+	 */
+	private byte[] proofOf(NodeInfo node) {
+		try {
+			Mac mac = Mac.getInstance("HmacSHA256");
+			mac.init(new SecretKeySpec(secret, "HmacSHA256"));
+			return mac.doFinal(node.nodeId.getBytes(StandardCharsets.UTF_8));
+		} catch(GeneralSecurityException exc) {
+			// every JVM supports HMAC with SHA-256
+			throw new IllegalStateException(exc);
+		}
+	}
+	
+	/**
+	 * Called by {@link Server#setClusterBridge(ClusterBridge)}.
+	 * 
+	 * @param server The server of this node.
+	 */
+	synchronized void attach(Server server) {
+		this.server = server;
+		if(maintainer != null) {
+			return;
+		}
+		maintainer = new Thread(() -> {
+			try {
+				while(true) {
+					Thread.sleep(redialMillis);
+					Server current = this.server;
+					if(current != null && current.isRunning()) {
+						redial();
+					}
+				}
+			} catch(InterruptedException exc) {
+				// thrown when the bridge is closed
+			}
+		}, "clusterMaintainer");
+		maintainer.setDaemon(true);
+		maintainer.start();
+	}
+	
+	/**
+	 * Links this node to another node. The other node tells this one about all further members.<br>
+	 * If the other node can't be reached yet, it is dialed again periodically.
+	 * 
+	 * @param host The host of the server of the other node.
+	 * @param port The port of the server of the other node.
+	 * 
+	 * @return {@code true} if the other node has been dialed, {@code false} if it can't be reached yet.
+	 */
+	public boolean addPeer(String host, int port) {
+		InetSocketAddress address = new InetSocketAddress(host, port);
+		seeds.putIfAbsent(address, "");
+		return dial(address);
+	}
+	
+	/**
+	 * Sends a message to the other nodes, which deliver it to their clients.
+	 * 
+	 * @param group   The group the message is sent to, or {@code null} for a broadcast.
+	 * @param message The message.
+	 */
+	void publish(String group, Message<?, ?> message) {
+		long id = nextId.incrementAndGet();
+		markSeen(self.nodeId, id);
+		forward(self.nodeId, id, group, Set.of(self.nodeId), message);
+	}
+	
+	/**
+	 * Handles a cluster message, which has been received by the server of this node.
+	 * 
+	 * @param type       The type of the message.
+	 * @param message    The message.
+	 * @param connection The connection of the other node.
+	 */
+	void onControlMessage(ControlType type, Message<?, ?> message, Connection connection) {
+		switch(type) {
+			case PEER -> onHello((PeerHello) message.content, null, connection);
+			case CLUSTER -> {
+				if(connection.peer == null) {
+					System.out.printf("[Server][Warning] %s sent a cluster message without being a node%n", connection.toStringWithoutServer());
+					return;
+				}
+				onClusterMessage((ClusterMessage) message.content);
+			}
+			default -> System.out.printf("[Server][Warning] unexpected cluster message %s from %s%n", type, connection.toStringWithoutServer());
+		}
+	}
+	
+	/**
+	 * Handles a cluster message, which has been received by a link this node has dialed.
+	 * 
+	 * @param type    The type of the message.
+	 * @param message The message.
+	 * @param link    The link to the other node.
+	 */
+	void onControlMessage(ControlType type, Message<?, ?> message, PeerLink link) {
+		switch(type) {
+			case PEER -> onHello((PeerHello) message.content, link, null);
+			case CLUSTER -> {
+				if(link.node == null) {
+					System.out.printf("[Server][Warning] %s sent a cluster message before its hello%n", link.address);
+					return;
+				}
+				onClusterMessage((ClusterMessage) message.content);
+			}
+			default -> System.out.printf("[Server][Warning] unexpected cluster message %s from %s%n", type, link.address);
+		}
+	}
+	
+	/**
+	 * Called by the server, whenever a connection has been removed.
+	 * 
+	 * @param connection The removed connection.
+	 */
+	void connectionClosed(Connection connection) {
+		NodeInfo node = connection.peer;
+		if(node != null) {
+			Peer peer = links.get(node.nodeId);
+			if(peer != null && peer.connection == connection) {
+				unlink(peer);
+			}
+		}
+	}
+	
+	/**
+	 * Called by a link this node has dialed, when it has been disconnected.
+	 * 
+	 * @param link The disconnected link.
+	 */
+	private void linkClosed(PeerLink link) {
+		dialing.remove(link.address);
+		NodeInfo node = link.node;
+		if(node != null) {
+			Peer peer = links.get(node.nodeId);
+			if(peer != null && peer.link == link) {
+				unlink(peer);
+			}
+		}
+	}
+	
+	private void unlink(Peer peer) {
+		peer.outbound.close();
+		if(links.remove(peer.node.nodeId, peer)) {
+			BiConsumer<NodeInfo, Boolean> listener = membershipListener;
+			if(listener != null) {
+				listener.accept(peer.node, false);
+			}
+		}
+	}
+	
+	private void onHello(PeerHello hello, PeerLink link, Connection connection) {
+		NodeInfo node = hello.node;
+		if(node == null || hello.proof == null || !MessageDigest.isEqual(hello.proof, proofOf(node))) {
+			System.out.printf("[Server][Warning] %s claimed to be a node without knowing the cluster secret%n",
+					link != null ? link.address : connection.toStringWithoutServer());
+			if(link != null) {
+				dialing.remove(link.address);
+				link.disconnect();
+			} else {
+				server.removeConnection(connection);
+			}
+			return;
+		}
+		if(node.nodeId.equals(self.nodeId)) {
+			// dialed itself, for example via its own address as a seed
+			if(link != null) {
+				dialing.remove(link.address);
+				link.disconnect();
+			} else {
+				server.removeConnection(connection);
+			}
+			return;
+		}
+		
+		if(link != null && link.node == null) {
+			link.node = node;
+			dialing.remove(link.address);
+			seeds.computeIfPresent(link.address, (address, nodeId) -> node.nodeId);
+			register(new Peer(node, link, null));
+		} else if(connection != null && connection.peer == null) {
+			connection.peer = node;
+			Peer peer = new Peer(node, null, connection);
+			if(register(peer)) {
+				// queued like the cluster messages, so it can't be overtaken by them
+				peer.send(new Message<>(ControlType.PEER, hello()));
+			}
+		}
+		learn(hello.members);
+	}
+	
+	/**
+	 * Adds a new link. If the two nodes are linked twice, because they dialed each other at the same time, both keep the link, which has been dialed by the
+	 * node with the smaller id.
+	 * 
+	 * @param peer The new link.
+	 * 
+	 * @return {@code true} if the link is kept, {@code false} if it has been closed.
+	 */
+	private synchronized boolean register(Peer peer) {
+		String nodeId = peer.node.nodeId;
+		Peer existing = links.get(nodeId);
+		if(existing != null && (isPreferred(existing) || !isPreferred(peer))) {
+			peer.close();
+			return false;
+		}
+		links.put(nodeId, peer);
+		if(members.put(nodeId, peer.node) == null) {
+			// the other nodes have to link to it as well
+			announce();
+		}
+		if(existing != null) {
+			existing.close();
+		} else {
+			BiConsumer<NodeInfo, Boolean> listener = membershipListener;
+			if(listener != null) {
+				listener.accept(peer.node, true);
+			}
+		}
+		return true;
+	}
+	
+	private boolean isPreferred(Peer peer) {
+		int order = self.nodeId.compareTo(peer.node.nodeId);
+		return peer.link != null ? order < 0 : order > 0;
+	}
+	
+	/**
+	 * Adds members, which another node knows. New members are announced to all linked nodes and dialed, if this node is responsible for the link.
+	 * 
+	 * @param nodes The members of the other node.
+	 */
+	private void learn(List<NodeInfo> nodes) {
+		boolean announce = false;
+		for(NodeInfo node : nodes) {
+			if(node.nodeId.equals(self.nodeId) || members.putIfAbsent(node.nodeId, node) != null) {
+				continue;
+			}
+			announce = true;
+			if(self.nodeId.compareTo(node.nodeId) < 0) {
+				new Thread(() -> dial(node), "clusterDial").start();
+			}
+		}
+		if(announce) {
+			announce();
+		}
+	}
+	
+	/**
+	 * Tells all linked nodes about the members this node knows.
+	 */
+	private void announce() {
+		Message<ControlType, PeerHello> hello = new Message<>(ControlType.PEER, hello());
+		links.values().forEach(peer -> peer.send(hello));
+	}
+	
+	private PeerHello hello() {
+		return new PeerHello(self, new ArrayList<>(members.values()), proof);
+	}
+	
+	/**
+	 * Dials every seed and every member with a greater id, which isn't linked.
+	 */
+	private void redial() {
+		for(Map.Entry<InetSocketAddress, String> seed : seeds.entrySet()) {
+			if(!links.containsKey(seed.getValue())) {
+				dial(seed.getKey());
+			}
+		}
+		for(NodeInfo node : members.values()) {
+			if(self.nodeId.compareTo(node.nodeId) < 0 && !links.containsKey(node.nodeId)) {
+				dial(node);
+			}
+		}
+	}
+	
+	private void dial(NodeInfo node) {
+		if(!dial(new InetSocketAddress(node.host, node.port)) && !links.containsKey(node.nodeId)) {
+			// the member has probably left, it is learned again when it rejoins
+			members.remove(node.nodeId, node);
+		}
+	}
+	
+	/**
+	 * Connects a link to another node and introduces this node. The link is added, once the other node has answered.
+	 * 
+	 * @param address The address of the server of the other node.
+	 * 
+	 * @return {@code true} if the other node has been dialed or is being dialed already, {@code false} if it couldn't be reached.
+	 */
+	private boolean dial(InetSocketAddress address) {
+		Server current = server;
+		if(current == null || !current.isRunning()) {
+			return false;
+		}
+		if(!dialing.add(address)) {
+			return true;
+		}
+		
+		PeerLink link = new PeerLink(this, address);
+		try {
+			if(link.connect() && link.sendMessage(new Message<>(ControlType.PEER, hello()))) {
+				// dialing ends, when the other node answers or the link closes
+				return true;
+			}
+		} catch(IOException exc) {
+			// not reachable right now
+		}
+		dialing.remove(address);
+		link.disconnect();
+		return false;
+	}
+	
+	private void onClusterMessage(ClusterMessage message) {
+		if(!markSeen(message.origin, message.id)) {
+			return;
+		}
+		Server current = server;
+		if(current != null) {
+			current.deliverLocally(message.group, message.message);
+		}
+		forward(message.origin, message.id, message.group, message.covered, message.message);
+	}
+	
+	/**
+	 * Sends a message to all linked nodes, which are not covered yet.
+	 */
+	private void forward(String origin, long id, String group, Set<String> covered, Message<?, ?> message) {
+		ArrayList<Peer> targets = new ArrayList<>();
+		for(Peer peer : links.values()) {
+			if(!covered.contains(peer.node.nodeId)) {
+				targets.add(peer);
+			}
+		}
+		if(targets.isEmpty()) {
+			return;
+		}
+		
+		HashSet<String> nowCovered = new HashSet<>(covered);
+		for(Peer peer : targets) {
+			nowCovered.add(peer.node.nodeId);
+		}
+		Message<ControlType, ClusterMessage> forwarded = new Message<>(ControlType.CLUSTER, new ClusterMessage(origin, id, group, nowCovered, message));
+		for(Peer peer : targets) {
+			if(!peer.send(forwarded)) {
+				System.out.printf("[Server][Warning] link to %s doesn't keep up, dropped a cluster message%n", peer.node.nodeId);
+			}
+		}
+	}
+	
+	/**
+	 * Remembers a message as delivered.
+	 * 
+	 * @return {@code true} if the message is new, {@code false} if it has been delivered before.
+	 */
+	private boolean markSeen(String origin, long id) {
+		synchronized (seen) {
+			return seen.put(origin + ':' + id, Boolean.TRUE) == null;
+		}
+	}
+	
+	/**
+	 * Closes all links this node has dialed. Links dialed by other nodes are closed by the server.
+	 */
+	void disconnectPeers() {
+		for(Peer peer : links.values()) {
+			if(peer.link != null) {
+				peer.link.disconnect();
+			}
+		}
+	}
+	
+	/**
+	 * Gets this node.
+	 * 
+	 * @return This node.
+	 */
+	public NodeInfo getSelf() {
+		return self;
+	}
+	
+	/**
+	 * Gets the nodes, which this node is currently linked to.
+	 * 
+	 * @return The linked nodes.
+	 */
+	public List<NodeInfo> getMembers() {
+		ArrayList<NodeInfo> linked = new ArrayList<>();
+		for(Peer peer : links.values()) {
+			linked.add(peer.node);
+		}
+		return linked;
+	}
+	
+	/**
+	 * Sets the listener, which is called with {@code true} whenever a node has been linked, and with {@code false} whenever a link has been lost.
+	 * 
+	 * @param membershipListener The new listener, or {@code null}.
+	 */
+	public void setMembershipListener(BiConsumer<NodeInfo, Boolean> membershipListener) {
+		this.membershipListener = membershipListener;
+	}
+	
+	/**
+	 * Sets how often unlinked seeds and members are dialed again.
+	 * 
+	 * @param redialMillis The interval in milliseconds.
+	 */
+	public void setRedialInterval(long redialMillis) {
+		this.redialMillis = Math.max(10, redialMillis);
+	}
+	
+	/**
+	 * Stops dialing other nodes and closes all links this node has dialed.
+	 */
+	@Override
+	public synchronized void close() {
+		if(maintainer != null) {
+			maintainer.interrupt();
+			maintainer = null;
+		}
+		seeds.clear();
+		disconnectPeers();
+	}
+	
+	@Override
+	public String toString() {
+		return "ClusterBridge{self=" + self + ", links=" + links.keySet() + ", members=" + members.size() + "}";
+	}
+	
+	/**
+	 * A link to another node, either dialed by this node or by the other one.<br>
+	 * Messages are written to the link on its own thread. A node, which forwards a message, must never wait for another node, as that node may be waiting for it
+	 * at the same time.
+	 */
+	private static class Peer {
+		final NodeInfo node;
+		final PeerLink link;
+		final Connection connection;
+		final LaneWriter outbound;
+		
+		Peer(NodeInfo node, PeerLink link, Connection connection) {
+			super();
+			this.node = node;
+			this.link = link;
+			this.connection = connection;
+			this.outbound = new LaneWriter(LINK_LANES, "clusterWriter", this::write, exc -> close());
+		}
+		
+		/**
+		 * Queues a message for the other node.
+		 * 
+		 * @param message The message.
+		 * 
+		 * @return {@code true} if the message has been queued, {@code false} if the link is closed or doesn't keep up.
+		 */
+		boolean send(Message<?, ?> message) {
+			return outbound.offer(message);
+		}
+		
+		private void write(Message<?, ?> message) throws IOException {
+			boolean sent = link != null ? link.sendMessage(message) : connection.sendMessage(message);
+			if(!sent) {
+				throw new IOException("link to " + node.nodeId + " is closed");
+			}
+		}
+		
+		void close() {
+			outbound.close();
+			if(link != null) {
+				link.disconnect();
+			} else {
+				connection.server.removeConnection(connection);
+			}
+		}
+	}
+	
+	/**
+	 * The client side of a link, which this node has dialed.
+	 */
+	static class PeerLink extends Client {
+		private final ClusterBridge bridge;
+		final InetSocketAddress address;
+		volatile NodeInfo node = null;
+		
+		PeerLink(ClusterBridge bridge, InetSocketAddress address) {
+			super(address.getHostString(), address.getPort(), bridge.transportFactory);
+			this.bridge = bridge;
+			this.address = address;
+		}
+		
+		@Override
+		protected void onControlMessage(ControlType type, Message<?, ?> message) {
+			bridge.onControlMessage(type, message, this);
+		}
+		
+		@Override
+		public void onMessageReceived(Message<?, ?> message) {
+			// nodes only exchange control messages
+		}
+		
+		@Override
+		public void onConnect() {}
+		
+		@Override
+		public void onDisconnect(boolean withError) {
+			bridge.linkClosed(this);
+		}
+	}
+}
@@ -0,0 +1,38 @@
+package net.unknownuser.networking;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * A broadcast or group message, which is forwarded between the nodes of a cluster.
+ */
+public class ClusterMessage implements Serializable {
+	private static final long serialVersionUID = -5286518840302165011L;
+	
+	/**
+	 * The node, which has published the message.
+	 */
+	public final String origin;
+	/**
+	 * Unique for the messages of the origin.
+	 */
+	public final long id;
+	/**
+	 * The group the message is sent to, or {@code null} for a broadcast.
+	 */
+	public final String group;
+	/**
+	 * The nodes, which already received or are currently being sent the message. They are skipped when forwarding.
+	 */
+	public final HashSet<String> covered;
+	public final Message<?, ?> message;
+	
+	public ClusterMessage(String origin, long id, String group, HashSet<String> covered, Message<?, ?> message) {
+		super();
+		this.origin = origin;
+		this.id = id;
+		this.group = group;
+		this.covered = covered;
+		this.message = message;
+	}
+}
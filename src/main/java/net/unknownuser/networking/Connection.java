@@ -3,18 +3,94 @@ package net.unknownuser.networking;
 import java.io.*;
 import java.net.*;
 
+import net.unknownuser.networking.transport.*;
+
 public class Connection implements Runnable {
-	protected final Socket socket;
-	protected final ObjectInputStream socketReader;
-	protected final ObjectOutputStream socketWriter;
+	protected final Transport transport;
 	protected final Server server;
 	
+	/**
+	 * The admission control this connection has been admitted by. Released once, when this connection is closed.
+	 */
+	AdmissionControl admission = null;
+	InetAddress admittedAddress = null;
+	
+	/**
+	 * The last journaled message the client has acknowledged.
+	 */
+	volatile long acknowledgedSequence = 0;
+	/**
+	 * The last journaled message, which has been sent to the client. Once the client has acknowledged it, it doesn't hold back the compaction of the journal, even
+	 * if it skips the later messages because of its interests.
+	 */
+	volatile long sentSequence = 0;
+	/**
+	 * The last journaled message before the client connected.
+	 */
+	long joinedSequence = 0;
+	/**
+	 * Whether the client has sent its position in the journal. Journaled broadcasts are only sent afterwards, so they can't overtake the replayed messages.
+	 */
+	volatile boolean resumed = false;
+	
+	/**
+	 * The session this connection is attached to.
+	 */
+	volatile Session session = null;
+	
+	/**
+	 * The ids of the recent messages of a client without a session.
+	 */
+	private DeduplicationWindow deduplication = null;
+	
+	/**
+	 * The association of the datagrams of the client with this connection.
+	 */
+	volatile long datagramToken = 0;
+	volatile InetSocketAddress datagramAddress = null;
+	DatagramEndpoint.LatestSequences datagramSequences = null;
+	
+	/**
+	 * The message types the client receives via broadcasts and group messages, {@code null} for all types.
+	 */
+	volatile InterestSet interests = null;
+	
+	/**
+	 * The node of a cluster, which uses this connection as a link. Such connections don't receive broadcasts and group messages.
+	 */
+	volatile NodeInfo peer = null;
+	
+	/**
+	 * Identifies this connection in a traffic capture.
+	 */
+	final int trafficId = TrafficRecorder.nextConnection();
+	
+	/**
+	 * Writes the messages by priority, if the server uses lanes. Otherwise, messages are written directly by the sending thread.
+	 */
+	private final LaneWriter outbound;
+	
+	/**
+	 * Reused for every frame, if the transport hands out views.
+	 */
+	private final MessageView view = new MessageView();
+	
 	public Connection(Socket socket, Server server) throws IOException {
+		this(new SocketTransport(socket), server);
+	}
+	
+	public Connection(Transport transport, Server server) throws IOException {
 		super();
-		this.socket = socket;
-		this.socketWriter = new ObjectOutputStream(new DataOutputStream(socket.getOutputStream()));
-		this.socketReader = new ObjectInputStream(new DataInputStream(socket.getInputStream()));
+		this.transport = transport;
 		this.server = server;
+		transport.open();
+		
+		LanePolicy lanes = server.lanePolicy;
+		this.outbound = lanes == null ? null : new LaneWriter(lanes, "connectionWriter", this::write, exc -> {
+			System.out.println("error while sending message");
+			System.out.println(exc.getMessage());
+			server.removeConnection(this);
+		});
 	}
 	
 	/**
@@ -23,9 +99,11 @@ public class Connection implements Runnable {
 	 */
 	@Override
 	public void run() {
-		while(!socket.isClosed()) {
+		while(!transport.isClosed()) {
 			receiveMessage();
 		}
+		// the transport may also have been closed by the peer, without a disconnect
+		releaseAdmission();
 	}
 	
 	/**
@@ -33,18 +111,60 @@ public class Connection implements Runnable {
 	 */
 	private void receiveMessage() {
 		try {
-			Message<?, ?> message = (Message<?, ?>) socketReader.readObject();
-			server.addMessageToQueue(new MessageToSend(message, this));
+			Message<?, ?> message;
+			if(transport instanceof ViewTransport views) {
+				message = views.readInto(view);
+				if(message == null) {
+					NetworkEvents.MessageReceived event = new NetworkEvents.MessageReceived();
+					event.begin();
+					TrafficRecorder recorder = server.trafficRecorder;
+					if(recorder != null) {
+						recorder.received(this, view.toMessage());
+					}
+					server.onFrameReceived(view, this);
+					if(event.shouldCommit()) {
+						// the view isn't reused until the next read
+						event.connection = trafficId;
+						event.type = NetworkEvents.typeOf(view.getType());
+						event.size = view.getLength();
+						event.commit();
+					}
+					return;
+				}
+			} else {
+				message = transport.read();
+			}
+			NetworkEvents.MessageReceived event = new NetworkEvents.MessageReceived();
+			event.begin();
+			TrafficRecorder recorder = server.trafficRecorder;
+			if(recorder != null) {
+				recorder.received(this, message);
+			}
+			if(message.type instanceof ControlType type) {
+				server.handleControlMessage(type, message, this);
+			} else {
+				server.addMessageToQueue(new MessageToSend(message, this));
+			}
+			if(event.shouldCommit()) {
+				event.connection = trafficId;
+				event.type = NetworkEvents.typeOf(message.type);
+				event.size = NetworkEvents.sizeOf(message);
+				event.commit();
+			}
 		} catch(IOException exc) {
-			if(!(exc instanceof EOFException) && !(exc instanceof SocketException && exc.getMessage().equals("Socket closed"))) {
+			if(!(exc instanceof EOFException) && !transport.isClosed()) {
 				System.out.println("error while reading message");
 				exc.printStackTrace();
 			}
-			if(!socket.isClosed()) {
+			if(!transport.isClosed()) {
 				server.removeConnection(this);
 			}
 		} catch(ClassNotFoundException exc) {
 			System.err.println("received object could not be mapped to a class");
+		} catch(RuntimeException exc) {
+			// a malformed frame, the stream can't be trusted anymore
+			System.out.println("[Server][Warning] dropping connection after invalid message: " + exc);
+			server.removeConnection(this);
 		}
 	}
 	
@@ -57,24 +177,57 @@ public class Connection implements Runnable {
 	 * @return {@code true} if the message could be send, {@code false} otherwise.
 	 */
 	public boolean sendMessage(Message<?, ?> message) {
-		if(socket.isClosed()) {
+		if(transport.isClosed()) {
 			return false;
 		}
+		TrafficRecorder recorder = server.trafficRecorder;
+		if(recorder != null) {
+			recorder.sent(this, message);
+		}
 		
-		synchronized (this) {
+		DatagramEndpoint datagrams = server.datagrams;
+		InetSocketAddress address = datagramAddress;
+		if(address != null && datagrams != null && datagrams.isUnreliable(message.type)) {
 			try {
-				socketWriter.writeObject(message);
-				socketWriter.flush();
-			} catch(IOException exc) {
+				// datagram codecs encode the content themselves
+				datagrams.send(address, datagramToken, message instanceof RawMessage<?> raw ? raw.toMessage() : message);
+			} catch(IllegalStateException exc) {
 				System.out.println("error while sending message");
 				System.out.println(exc.getMessage());
-				server.removeConnection(this);
 				return false;
 			}
+			return true;
+		}
+		
+		if(outbound != null) {
+			return outbound.offer(message);
+		}
+		
+		try {
+			write(message);
+		} catch(IOException exc) {
+			System.out.println("error while sending message");
+			System.out.println(exc.getMessage());
+			server.removeConnection(this);
+			return false;
 		}
 		return true;
 	}
 	
+	private void write(Message<?, ?> message) throws IOException {
+		NetworkEvents.MessageWritten event = new NetworkEvents.MessageWritten();
+		event.begin();
+		synchronized (this) {
+			transport.write(message);
+		}
+		if(event.shouldCommit()) {
+			event.connection = trafficId;
+			event.type = NetworkEvents.typeOf(message.type);
+			event.size = NetworkEvents.sizeOf(message);
+			event.commit();
+		}
+	}
+	
 	/**
 	 * Closes all streams. This disconnects the client.<br>
 	 * <b>Do not use this instance after this method has been called.<b>
@@ -82,29 +235,39 @@ public class Connection implements Runnable {
 	 * @return {@code true} if the connection could be disconnected, {@code false} otherwise.
 	 */
 	public boolean disconnect() {
-		if(socket.isClosed()) {
-			return true;
-		}
-		
-		synchronized (this) {
-			if(!socket.isClosed()) {
-				try {
-					socket.close();
-					
-					if(socketWriter != null) {
-						socketWriter.close();
-					}
-					if(socketReader != null) {
-						socketReader.close();
+		try {
+			if(transport.isClosed()) {
+				return true;
+			}
+			
+			synchronized (this) {
+				if(!transport.isClosed()) {
+					try {
+						if(outbound != null) {
+							outbound.close();
+						}
+						transport.close();
+					} catch(IOException exc) {
+						System.err.println("error while closing");
+						exc.printStackTrace();
+						return false;
 					}
-				} catch(IOException exc) {
-					System.err.println("error while closing");
-					exc.printStackTrace();
-					return false;
 				}
 			}
+			return true;
+		} finally {
+			releaseAdmission();
+		}
+	}
+	
+	/**
+	 * Releases this connection from its admission control. Only the first call releases it.
+	 */
+	private synchronized void releaseAdmission() {
+		if(admission != null) {
+			admission.release(admittedAddress);
+			admission = null;
 		}
-		return true;
 	}
 	
 	/**
@@ -113,7 +276,7 @@ public class Connection implements Runnable {
 	 * @return The InetAdress of this connection.
 	 */
 	public InetAddress getAddress() {
-		return socket.getInetAddress();
+		return transport.getRemoteAddress().getAddress();
 	}
 	
 	/**
@@ -122,7 +285,83 @@ public class Connection implements Runnable {
 	 * @return The IP as a string.
 	 */
 	public String getIP() {
-		return getAddress().toString().substring(1);
+		return getAddress().getHostAddress();
+	}
+	
+	/**
+	 * Gets the sequence number of the last journaled message, which the client has acknowledged.
+	 * 
+	 * @return The acknowledged sequence number.
+	 */
+	public long getAcknowledgedSequence() {
+		return acknowledgedSequence;
+	}
+	
+	/**
+	 * Gets the session this connection is attached to.
+	 * 
+	 * @return The session, or {@code null} if the client hasn't started a session (yet).
+	 */
+	public Session getSession() {
+		return session;
+	}
+	
+	/**
+	 * Gets the message types the client receives via broadcasts and group messages.
+	 * 
+	 * @return The interests of the client, or {@code null} if it receives all types.
+	 */
+	public InterestSet getInterests() {
+		return interests;
+	}
+	
+	/**
+	 * Returns whether the client receives broadcasts and group messages of a type.
+	 * 
+	 * @param type The type of the message.
+	 * 
+	 * @return {@code true} if the client hasn't excluded the type, {@code false} otherwise.
+	 */
+	public boolean isInterestedIn(Enum<?> type) {
+		InterestSet current = interests;
+		return current == null || current.contains(type);
+	}
+	
+	/**
+	 * Gets the window of recent message ids of the client, which is kept in its session if it has one. Created on first use.
+	 * 
+	 * @param size The size of a new window.
+	 * 
+	 * @return The window.
+	 */
+	synchronized DeduplicationWindow deduplicationWindow(int size) {
+		Session current = session;
+		if(current != null) {
+			return current.deduplicationWindow(size);
+		}
+		if(deduplication == null) {
+			deduplication = new DeduplicationWindow(size);
+		}
+		return deduplication;
+	}
+	
+	/**
+	 * Returns whether this connection is a link from another node of the cluster instead of a client.<br>
+	 * A node introduces itself after it has connected, so {@link Server#onClientConnected(Connection) onClientConnected} may still see it as a client.
+	 * 
+	 * @return {@code true} if this connection is a link from another node.
+	 */
+	public boolean isPeer() {
+		return peer != null;
+	}
+	
+	/**
+	 * Gets the node of the cluster, which uses this connection as a link.
+	 * 
+	 * @return The node, or {@code null} if this connection is a client.
+	 */
+	public NodeInfo getPeerNode() {
+		return peer;
 	}
 	
 	/**
@@ -131,7 +370,25 @@ public class Connection implements Runnable {
 	 * @return The port this connection is bound to.
 	 */
 	public int getPort() {
-		return socket.getPort();
+		return transport.getRemoteAddress().getPort();
+	}
+	
+	/**
+	 * Gets the amount of messages, which are waiting to be written.
+	 * 
+	 * @return The amount of queued messages, always {@code 0} if the server doesn't use lanes.
+	 */
+	public int getQueuedMessages() {
+		return outbound == null ? 0 : outbound.getQueue().size();
+	}
+	
+	/**
+	 * Gets the transport, which this connection uses.
+	 * 
+	 * @return The transport of this connection.
+	 */
+	public Transport getTransport() {
+		return transport;
 	}
 	
 	@Override
@@ -145,17 +402,17 @@ public class Connection implements Runnable {
 		}
 		
 		if(obj instanceof Connection conn) {
-			return server.equals(conn.server) && socket.getPort() == conn.socket.getPort();
+			return server.equals(conn.server) && getPort() == conn.getPort();
 		}
 		return false;
 	}
 	
 	@Override
 	public String toString() {
-		return "Connection{socketStatus=" + !socket.isClosed() + ", ip=" + getIP() + ", port=" + getPort() + ", server=" + server + "}";
+		return "Connection{socketStatus=" + !transport.isClosed() + ", ip=" + getIP() + ", port=" + getPort() + ", server=" + server + "}";
 	}
 	
 	public String toStringWithoutServer() {
-		return "Connection{socketStatus=" + !socket.isClosed() + ", ip=" + getIP() + ", port=" + getPort() + "}";
+		return "Connection{socketStatus=" + !transport.isClosed() + ", ip=" + getIP() + ", port=" + getPort() + "}";
 	}
 }
\ No newline at end of file
@@ -0,0 +1,201 @@
+package net.unknownuser.networking;
+
+import java.util.*;
+import java.util.function.*;
+
+/**
+ * Maps keys to nodes, so adding or removing a node only moves the keys of that node.<br>
+ * Every node is placed on the ring several times (virtual nodes), which spreads the keys evenly. A key belongs to the first virtual node at or after its hash. The
+ * ring is kept in two sorted arrays and replaced as a whole on change, so a lookup is a binary search, which never locks or allocates.
+ * 
+ * @param <N> The type of the nodes.
+ */
+public class ConsistentHashRing<N> {
+	private static final class Ring {
+		final long[] hashes;
+		final Object[] nodes;
+		
+		Ring(long[] hashes, Object[] nodes) {
+			this.hashes = hashes;
+			this.nodes = nodes;
+		}
+	}
+	
+	private final int virtualNodes;
+	private final Function<N, String> nameOf;
+	private final LinkedHashSet<N> members = new LinkedHashSet<>();
+	private volatile Ring ring = new Ring(new long[0], new Object[0]);
+	
+	/**
+	 * Creates an empty ring.
+	 * 
+	 * @param virtualNodes The amount of positions of each node on the ring.
+	 * @param nameOf       Gives the stable name of a node, which decides its positions. The same names lead to the same ring in every process.
+	 */
+	public ConsistentHashRing(int virtualNodes, Function<N, String> nameOf) {
+		super();
+		if(virtualNodes <= 0) {
+			throw new IllegalArgumentException("at least one virtual node is needed");
+		}
+		this.virtualNodes = virtualNodes;
+		this.nameOf = nameOf;
+	}
+	
+	/**
+	 * Adds a node.
+	 * 
+	 * @param node The node to add.
+	 * 
+	 * @return {@code true} if the node has been added, {@code false} if it is already on the ring.
+	 */
+	public synchronized boolean add(N node) {
+		if(!members.add(node)) {
+			return false;
+		}
+		rebuild();
+		return true;
+	}
+	
+	/**
+	 * Removes a node. Its keys move to the following nodes.
+	 * 
+	 * @param node The node to remove.
+	 * 
+	 * @return {@code true} if the node has been removed, {@code false} if it wasn't on the ring.
+	 */
+	public synchronized boolean remove(N node) {
+		if(!members.remove(node)) {
+			return false;
+		}
+		rebuild();
+		return true;
+	}
+	
+	private void rebuild() {
+		int size = members.size() * virtualNodes;
+		long[] hashes = new long[size];
+		Object[] nodes = new Object[size];
+		// only done on change, so sorting boxed indices is fine
+		Integer[] order = new Integer[size];
+		long[] unsorted = new long[size];
+		Object[] owners = new Object[size];
+		int index = 0;
+		for(N node : members) {
+			String name = nameOf.apply(node);
+			for(int i = 0; i < virtualNodes; i++) {
+				unsorted[index] = hash(name + '#' + i);
+				owners[index] = node;
+				order[index] = index;
+				index++;
+			}
+		}
+		Arrays.sort(order, (a, b) -> Long.compareUnsigned(unsorted[a], unsorted[b]));
+		for(int i = 0; i < size; i++) {
+			int from = order[i];
+			hashes[i] = unsorted[from];
+			nodes[i] = owners[from];
+		}
+		ring = new Ring(hashes, nodes);
+	}
+	
+	/**
+	 * Gets the node a key belongs to.
+	 * 
+	 * @param key The key.
+	 * 
+	 * @return The node, or {@code null} if the ring is empty.
+	 */
+	public N get(String key) {
+		return get(key, node -> true);
+	}
+	
+	/**
+	 * Gets the first node at or after the position of a key, which is usable. Keys of unusable nodes move to the following nodes, all other keys keep their node.
+	 * 
+	 * @param key    The key.
+	 * @param usable Decides whether a node may be used.
+	 * 
+	 * @return The node, or {@code null} if no node is usable.
+	 */
+	@SuppressWarnings("unchecked")
+	public N get(String key, Predicate<N> usable) {
+		Ring current = ring;
+		int size = current.hashes.length;
+		if(size == 0) {
+			return null;
+		}
+		int start = search(current.hashes, hash(key));
+		Object skipped = null;
+		for(int i = 0; i < size; i++) {
+			N node = (N) current.nodes[(start + i) % size];
+			// consecutive positions often belong to the same node, it is only tested once
+			if(node != skipped) {
+				if(usable.test(node)) {
+					return node;
+				}
+				skipped = node;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Finds the index of the first position at or after a hash, wrapping around to {@code 0}.
+	 */
+	private static int search(long[] hashes, long hash) {
+		int low = 0;
+		int high = hashes.length - 1;
+		while(low <= high) {
+			int middle = (low + high) >>> 1;
+			if(Long.compareUnsigned(hashes[middle], hash) < 0) {
+				low = middle + 1;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return low == hashes.length ? 0 : low;
+	}
+	
+	/**
+	 * 64 bit FNV-1a of the characters, followed by the finalizer of MurmurHash3, so similar keys end up far apart.
+	 */
+	static long hash(String key) {
+		long hash = 0xcbf29ce484222325L;
+		for(int i = 0; i < key.length(); i++) {
+			char c = key.charAt(i);
+			hash ^= c & 0xFF;
+			hash *= 0x100000001b3L;
+			hash ^= c >>> 8;
+			hash *= 0x100000001b3L;
+		}
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+	
+	/**
+	 * Gets the nodes on the ring.
+	 * 
+	 * @return A copy of the nodes, in the order they have been added.
+	 */
+	public synchronized List<N> getNodes() {
+		return new ArrayList<>(members);
+	}
+	
+	/**
+	 * Gets the amount of nodes on the ring.
+	 * 
+	 * @return The amount of nodes.
+	 */
+	public synchronized int size() {
+		return members.size();
+	}
+	
+	@Override
+	public String toString() {
+		return "ConsistentHashRing{nodes=" + size() + ", virtualNodes=" + virtualNodes + "}";
+	}
+}
@@ -0,0 +1,71 @@
+package net.unknownuser.networking;
+
+/**
+ * The types of the messages, which are exchanged between {@link Client} and {@link Server} by the library itself.<br>
+ * Messages of these types are handled internally and never passed to {@code onMessageReceived}.
+ */
+public enum ControlType {
+	/**
+	 * A journaled message from the server. The content is a {@link SequencedMessage}.
+	 */
+	SEQUENCED,
+	/**
+	 * Sent by the client, acknowledges all sequenced messages up to the contained sequence number ({@link Long}).
+	 */
+	ACK,
+	/**
+	 * Sent by the client on connect, requests all journaled messages after the contained position ({@link SequencedMessage} without a message). If the position is
+	 * of another journal, all retained messages are requested. A client, which has never received a journaled message, sends epoch {@code 0}.<br>
+	 * The server answers with the position the replay starts after, which is later than the requested one, if messages have already been deleted from the journal.
+	 * Journaled broadcasts are only sent to the client afterwards.
+	 */
+	RESUME,
+	/**
+	 * Sent by the client on connect with the token of its last session ({@link String}, {@code null} for a new session).<br>
+	 * The server answers with the token of the attached session.
+	 */
+	SESSION,
+	/**
+	 * Sent by the client to request a datagram association. The server answers with a {@link DatagramInfo}.
+	 */
+	DATAGRAM,
+	/**
+	 * Sent by the server once the datagram address of the client is known. Afterwards, both sides send the chosen message types via datagrams.
+	 */
+	DATAGRAM_READY,
+	/**
+	 * Sent between the nodes of a cluster when they link, and whenever a node learns about new members. The content is a {@link PeerHello}.
+	 */
+	PEER,
+	/**
+	 * A broadcast or group message, which is forwarded between the nodes of a cluster. The content is a {@link ClusterMessage}.
+	 */
+	CLUSTER,
+	/**
+	 * Sent by the client, expects an answer from the server. The content is a {@link RequestMessage}.
+	 */
+	REQUEST,
+	/**
+	 * The answer of the server to a request. The content is a {@link ResponseMessage}.
+	 */
+	RESPONSE,
+	/**
+	 * Sent by the server when the answers to a request have changed, so clients drop them from their {@link ResponseCache}. The content is the request
+	 * ({@link Message}), or {@code null} to drop all answers.
+	 */
+	INVALIDATE,
+	/**
+	 * A message of the application, which the server drops if it has already received it. The content is a {@link UniqueMessage}.
+	 */
+	UNIQUE,
+	/**
+	 * Sent by the client to subscribe to a {@link ReplicatedMap} or to cancel a subscription, the content is a {@link ReplicaSubscription}. The server answers with
+	 * {@link ReplicaUpdate}s.
+	 */
+	REPLICA,
+	/**
+	 * Sent by the client to choose the message types it receives via broadcasts and group messages. The content is an {@link InterestSet}, or {@code null} to
+	 * receive all types.
+	 */
+	INTEREST;
+}
@@ -0,0 +1,39 @@
+package net.unknownuser.networking;
+
+import java.io.*;
+import java.nio.*;
+
+/**
+ * Encodes the content of messages, which are sent via datagrams.<br>
+ * The type of a message is already part of the datagram header, so only the content has to be written. A datagram should stay below {@link DatagramEndpoint#MAX_PAYLOAD_SIZE}
+ * bytes.
+ * 
+ * @param <T> The type of the messages.
+ */
+public interface DatagramCodec<T extends Enum<T>> {
+	/**
+	 * Gets the enum class of the message types this codec handles.
+	 * 
+	 * @return The enum class.
+	 */
+	Class<T> getTypeClass();
+	
+	/**
+	 * Writes the content of a message.
+	 * 
+	 * @param type    The type of the message.
+	 * @param content The content to write.
+	 * @param buffer  The buffer of the datagram.
+	 */
+	void encode(T type, Serializable content, ByteBuffer buffer);
+	
+	/**
+	 * Reads the content of a message.
+	 * 
+	 * @param type   The type of the message.
+	 * @param buffer The buffer of the datagram, positioned at the content.
+	 * 
+	 * @return The content.
+	 */
+	Serializable decode(T type, ByteBuffer buffer);
+}
@@ -0,0 +1,311 @@
+package net.unknownuser.networking;
+
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * A UDP socket, which sends and receives messages of chosen types unreliably, next to the TCP connection.<br>
+ * Outbound messages are coalesced: if a message of the same type is still waiting to be sent to the same target, it is replaced, because only the latest value is of interest.
+ * Receivers drop datagrams, which are older than the last one they have received for the same type.<br>
+ * Each datagram is laid out as {@code [long token][short type][int sequence][content]}.
+ */
+public class DatagramEndpoint implements Closeable {
+	public static final int MAX_PAYLOAD_SIZE = 1400;
+	private static final int HEADER_SIZE = Long.BYTES + Short.BYTES + Integer.BYTES;
+	/**
+	 * The type of the datagrams, which only announce the address of a client.
+	 */
+	private static final short REGISTER = -1;
+	
+	/**
+	 * Checks the header of every received datagram, before its content is decoded. Anyone can send datagrams, so only the ones of known senders are decoded.
+	 */
+	public interface Filter {
+		/**
+		 * Checks whether a datagram comes from a known sender.
+		 * 
+		 * @param token        The token in the datagram.
+		 * @param registration Whether the datagram only registers the address of the sender.
+		 * @param source       The address of the sender.
+		 * 
+		 * @return {@code true} if the datagram is decoded and handled, {@code false} if it is dropped.
+		 */
+		boolean accepts(long token, boolean registration, InetSocketAddress source);
+	}
+	
+	/**
+	 * Called for every received datagram, which has been accepted by the {@link Filter}.
+	 */
+	public interface Handler {
+		/**
+		 * A message has been received.
+		 * 
+		 * @param token    The token of the sender.
+		 * @param message  The message, or {@code null} if the datagram only registers the address of the sender.
+		 * @param sequence The sequence number of the datagram.
+		 * @param source   The address of the sender.
+		 */
+		void onDatagram(long token, Message<?, ?> message, int sequence, InetSocketAddress source);
+	}
+	
+	/**
+	 * The last received sequence number per message type, used to drop superseded datagrams.
+	 */
+	public static class LatestSequences {
+		private final int[] sequences;
+		private final boolean[] received;
+		
+		public LatestSequences(int types) {
+			sequences = new int[types];
+			received = new boolean[types];
+		}
+		
+		/**
+		 * Records a sequence number, if it is newer than the last one of the type.
+		 * 
+		 * @param type     The ordinal of the message type.
+		 * @param sequence The sequence number of the datagram.
+		 * 
+		 * @return {@code true} if the datagram is newer and should be delivered.
+		 */
+		public synchronized boolean update(int type, int sequence) {
+			// the difference handles the wrap-around of the sequence numbers
+			if(received[type] && sequence - sequences[type] <= 0) {
+				return false;
+			}
+			received[type] = true;
+			sequences[type] = sequence;
+			return true;
+		}
+	}
+	
+	private static final class Target {
+		final InetSocketAddress address;
+		final long token;
+		final int type;
+		
+		Target(InetSocketAddress address, long token, int type) {
+			this.address = address;
+			this.token = token;
+			this.type = type;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof Target target && target.token == token && target.type == type && target.address.equals(address);
+		}
+		
+		@Override
+		public int hashCode() {
+			return Long.hashCode(token) * 31 + type;
+		}
+	}
+	
+	private final DatagramChannel channel;
+	private final DatagramCodec<?> codec;
+	private final Enum<?>[] types;
+	private final boolean[] unreliableTypes;
+	private final Filter filter;
+	private final Handler handler;
+	
+	private final ConcurrentHashMap<Target, AtomicReference<Message<?, ?>>> pending = new ConcurrentHashMap<>();
+	private final LinkedBlockingQueue<Target> readyTargets = new LinkedBlockingQueue<>();
+	private final AtomicInteger sequence = new AtomicInteger();
+	
+	private final Thread receiver;
+	private final Thread sender;
+	
+	/**
+	 * Opens a new endpoint.
+	 * 
+	 * @param port            The local port, {@code 0} for any free port.
+	 * @param codec           The codec of the message contents.
+	 * @param unreliableTypes The message types, which are sent via this endpoint.
+	 * @param filter          Checks the token and the sender of every received datagram, before its content is decoded.
+	 * @param handler         Called for every accepted datagram.
+	 * 
+	 * @throws IOException When the socket could not be opened.
+	 */
+	public <T extends Enum<T>> DatagramEndpoint(int port, DatagramCodec<T> codec, Collection<T> unreliableTypes, Filter filter, Handler handler) throws IOException {
+		super();
+		this.codec = codec;
+		this.filter = filter;
+		this.handler = handler;
+		this.types = codec.getTypeClass().getEnumConstants();
+		this.unreliableTypes = new boolean[types.length];
+		for(T type : unreliableTypes) {
+			this.unreliableTypes[type.ordinal()] = true;
+		}
+		
+		channel = DatagramChannel.open();
+		channel.bind(new InetSocketAddress(port));
+		
+		receiver = new Thread(this::receiveDatagrams, "datagramReceiver");
+		receiver.setDaemon(true);
+		receiver.start();
+		sender = new Thread(this::sendDatagrams, "datagramSender");
+		sender.setDaemon(true);
+		sender.start();
+	}
+	
+	/**
+	 * Checks whether messages of the given type are sent via datagrams.
+	 * 
+	 * @param type The message type.
+	 * 
+	 * @return {@code true} if the type is sent unreliably.
+	 */
+	public boolean isUnreliable(Enum<?> type) {
+		return type.getDeclaringClass() == codec.getTypeClass() && unreliableTypes[type.ordinal()];
+	}
+	
+	/**
+	 * Queues a message to be sent. A message of the same type to the same target, which hasn't been sent yet, is replaced.
+	 * 
+	 * @param address The address of the receiver.
+	 * @param token   The token of the association.
+	 * @param message The message to send.
+	 */
+	public void send(InetSocketAddress address, long token, Message<?, ?> message) {
+		Target target = new Target(address, token, message.type.ordinal());
+		AtomicReference<Message<?, ?>> slot = pending.computeIfAbsent(target, key -> new AtomicReference<>());
+		if(slot.getAndSet(message) == null) {
+			// not queued yet, otherwise the queued entry picks up the newer message
+			readyTargets.offer(target);
+		}
+	}
+	
+	/**
+	 * Sends a datagram, which registers the address of this endpoint for the given token.
+	 * 
+	 * @param address The address of the server.
+	 * @param token   The token of the association.
+	 * 
+	 * @throws IOException When the datagram could not be sent.
+	 */
+	public void register(InetSocketAddress address, long token) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE);
+		buffer.putLong(token).putShort(REGISTER).putInt(sequence.incrementAndGet());
+		buffer.flip();
+		channel.send(buffer, address);
+	}
+	
+	/**
+	 * Drops all messages, which haven't been sent yet, for the given token.
+	 * 
+	 * @param token The token of the closed association.
+	 */
+	public void forget(long token) {
+		pending.keySet().removeIf(target -> target.token == token);
+	}
+	
+	private void sendDatagrams() {
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + MAX_PAYLOAD_SIZE);
+		try {
+			while(channel.isOpen()) {
+				Target target = readyTargets.take();
+				AtomicReference<Message<?, ?>> slot = pending.get(target);
+				Message<?, ?> message = slot == null ? null : slot.getAndSet(null);
+				if(message == null) {
+					continue;
+				}
+				
+				buffer.clear();
+				buffer.putLong(target.token).putShort((short) target.type).putInt(sequence.incrementAndGet());
+				try {
+					encode(message, buffer);
+					buffer.flip();
+					channel.send(buffer, target.address);
+				} catch(BufferOverflowException exc) {
+					System.err.printf("datagram of type %s is too large%n", message.type);
+				} catch(IOException | RuntimeException exc) {
+					if(!channel.isOpen()) {
+						return;
+					}
+					System.err.println("error while sending datagram");
+					exc.printStackTrace();
+				}
+			}
+		} catch(InterruptedException exc) {
+			// thrown on close
+		}
+	}
+	
+	private void receiveDatagrams() {
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + MAX_PAYLOAD_SIZE);
+		while(channel.isOpen()) {
+			try {
+				buffer.clear();
+				InetSocketAddress source = (InetSocketAddress) channel.receive(buffer);
+				buffer.flip();
+				if(buffer.remaining() < HEADER_SIZE) {
+					continue;
+				}
+				long token = buffer.getLong();
+				short type = buffer.getShort();
+				int datagramSequence = buffer.getInt();
+				if(!filter.accepts(token, type == REGISTER, source)) {
+					// spoofed or stale, the content is never looked at
+					continue;
+				}
+				Message<?, ?> message = type == REGISTER ? null : decode(type, buffer);
+				handler.onDatagram(token, message, datagramSequence, source);
+			} catch(ClosedChannelException exc) {
+				return;
+			} catch(IOException | RuntimeException exc) {
+				// a single broken datagram must not stop the receiver
+				System.err.println("error while receiving datagram");
+				exc.printStackTrace();
+			}
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private <T extends Enum<T>> void encode(Message<?, ?> message, ByteBuffer buffer) {
+		((DatagramCodec<T>) codec).encode((T) message.type, message.content, buffer);
+	}
+	
+	@SuppressWarnings("unchecked")
+	private <T extends Enum<T>> Message<T, Serializable> decode(short type, ByteBuffer buffer) {
+		if(type < 0 || type >= types.length) {
+			throw new IllegalArgumentException("unknown datagram type " + type);
+		}
+		T messageType = (T) types[type];
+		return new Message<>(messageType, ((DatagramCodec<T>) codec).decode(messageType, buffer));
+	}
+	
+	/**
+	 * Gets the amount of message types of the codec.
+	 * 
+	 * @return The amount of message types.
+	 */
+	public int getTypeCount() {
+		return unreliableTypes.length;
+	}
+	
+	/**
+	 * Gets the local port of this endpoint.
+	 * 
+	 * @return The port.
+	 */
+	public int getPort() {
+		return channel.socket().getLocalPort();
+	}
+	
+	@Override
+	public void close() throws IOException {
+		channel.close();
+		sender.interrupt();
+		pending.clear();
+	}
+	
+	@Override
+	public String toString() {
+		return "DatagramEndpoint{open=" + channel.isOpen() + ", port=" + getPort() + ", pending=" + readyTargets.size() + "}";
+	}
+}
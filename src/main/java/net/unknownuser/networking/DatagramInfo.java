@@ -0,0 +1,19 @@
+package net.unknownuser.networking;
+
+import java.io.*;
+
+/**
+ * Sent by the server to associate the datagrams of a client with its connection.
+ */
+public class DatagramInfo implements Serializable {
+	private static final long serialVersionUID = -1893021746652095213L;
+	
+	public final long token;
+	public final int port;
+	
+	public DatagramInfo(long token, int port) {
+		super();
+		this.token = token;
+		this.port = port;
+	}
+}
@@ -0,0 +1,115 @@
+package net.unknownuser.networking;
+
+import java.util.*;
+
+/**
+ * Remembers the ids of the most recent messages of a client in a ring of bits, so duplicates are found in constant time and memory.<br>
+ * The window covers the highest id seen so far and the ids below it, as far as its size reaches. Ids below the window are treated as duplicates, because it can't
+ * be told whether they have been seen.<br>
+ * Clients assign ids counting up from {@code 1}, so negative ids are rejected like ids below the window.
+ */
+public class DeduplicationWindow {
+	private final long[] bits;
+	private final int size;
+	private long highest = 0;
+	private boolean empty = true;
+	private long duplicates = 0;
+	
+	/**
+	 * Creates an empty window.
+	 * 
+	 * @param size The amount of ids the window covers. Rounded up to a multiple of 64.
+	 */
+	public DeduplicationWindow(int size) {
+		super();
+		if(size <= 0) {
+			throw new IllegalArgumentException("the window needs to cover at least one id");
+		}
+		this.bits = new long[(size + 63) / 64];
+		this.size = bits.length * 64;
+	}
+	
+	/**
+	 * Records the id of a message.
+	 * 
+	 * @param id The id, which the client has assigned to the message.
+	 * 
+	 * @return {@code true} if the message is new, {@code false} if it is a duplicate, too old to tell or the id is negative.
+	 */
+	public synchronized boolean accept(long id) {
+		if(id < 0) {
+			// would share the bits of unrelated ids and overflow the distance to the highest id
+			duplicates++;
+			return false;
+		}
+		if(empty || id > highest) {
+			advance(id);
+			set(id);
+			return true;
+		}
+		if(highest - id >= size || isSet(id)) {
+			duplicates++;
+			return false;
+		}
+		set(id);
+		return true;
+	}
+	
+	/**
+	 * Moves the window up to a new highest id and clears the ids, which enter it.
+	 */
+	private void advance(long id) {
+		long from = empty ? id - size : highest;
+		empty = false;
+		highest = id;
+		if(id - from >= size) {
+			Arrays.fill(bits, 0);
+			return;
+		}
+		for(long cleared = from + 1; cleared <= id; cleared++) {
+			int index = index(cleared);
+			if((cleared & 63) == 0 && id - cleared >= 63) {
+				// a whole word enters the window at once
+				bits[index] = 0;
+				cleared += 63;
+			} else {
+				bits[index] &= ~(1L << (cleared & 63));
+			}
+		}
+	}
+	
+	private int index(long id) {
+		return (int) ((id >>> 6) % bits.length);
+	}
+	
+	private boolean isSet(long id) {
+		return (bits[index(id)] & (1L << (id & 63))) != 0;
+	}
+	
+	private void set(long id) {
+		bits[index(id)] |= 1L << (id & 63);
+	}
+	
+	/**
+	 * Gets the highest id, which has been recorded.
+	 * 
+	 * @return The highest id, or {@code 0} if no id has been recorded.
+	 */
+	public synchronized long getHighest() {
+		return highest;
+	}
+	
+	/**
+	 * Gets the amount of messages, which have been dropped as duplicates.
+	 * 
+	 * @return The amount of duplicates.
+	 */
+	public synchronized long getDuplicates() {
+		return duplicates;
+	}
+	
+	@Override
+	public synchronized String toString() {
+		return "DeduplicationWindow{size=" + size + ", highest=" + highest + ", duplicates=" + duplicates + "}";
+	}
+}
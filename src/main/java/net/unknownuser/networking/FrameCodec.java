@@ -0,0 +1,122 @@
+package net.unknownuser.networking;
+
+import java.io.*;
+import java.util.function.*;
+
+/**
+ * Maps the contents of message types to binary frames, described by a {@link FrameSchema} per type.<br>
+ * Types without a schema are sent with Java serialization instead, so control messages of the library and rare messages need no schema.
+ * 
+ * @param <T> The type of the messages.
+ */
+public class FrameCodec<T extends Enum<T>> {
+	private final Class<T> typeClass;
+	private final T[] types;
+	private final FrameSchema[] schemas;
+	private final BiConsumer<Serializable, FrameWriter>[] encoders;
+	private final Function<MessageView, Serializable>[] decoders;
+	
+	@SuppressWarnings("unchecked")
+	public FrameCodec(Class<T> typeClass) {
+		super();
+		this.typeClass = typeClass;
+		this.types = typeClass.getEnumConstants();
+		this.schemas = new FrameSchema[types.length];
+		this.encoders = (BiConsumer<Serializable, FrameWriter>[]) new BiConsumer<?, ?>[types.length];
+		this.decoders = (Function<MessageView, Serializable>[]) new Function<?, ?>[types.length];
+	}
+	
+	/**
+	 * Registers the schema of a message type.
+	 * 
+	 * @param <C>     The type of the content.
+	 * @param type    The message type.
+	 * @param schema  The layout of the content.
+	 * @param encoder Writes the content into a frame.
+	 * @param decoder Creates the content from a frame. Only used, if the receiver doesn't handle the {@link MessageView} itself.
+	 * 
+	 * @return This codec.
+	 */
+	@SuppressWarnings("unchecked")
+	public <C extends Serializable> FrameCodec<T> register(T type, FrameSchema schema, BiConsumer<C, FrameWriter> encoder, Function<MessageView, C> decoder) {
+		schemas[type.ordinal()] = schema;
+		encoders[type.ordinal()] = (BiConsumer<Serializable, FrameWriter>) encoder;
+		decoders[type.ordinal()] = (Function<MessageView, Serializable>) decoder;
+		return this;
+	}
+	
+	/**
+	 * Gets the schema of a message type.
+	 * 
+	 * @param type The message type.
+	 * 
+	 * @return The schema, or {@code null} if the type is sent with Java serialization.
+	 */
+	public FrameSchema schemaOf(Enum<?> type) {
+		return type.getDeclaringClass() == typeClass ? schemas[type.ordinal()] : null;
+	}
+	
+	/**
+	 * Gets the schema of a message type by its ordinal.
+	 * 
+	 * @param typeOrdinal The ordinal of the message type.
+	 * 
+	 * @return The schema, or {@code null} if the type is sent with Java serialization or doesn't exist.
+	 */
+	public FrameSchema schemaOf(int typeOrdinal) {
+		return typeOrdinal >= 0 && typeOrdinal < schemas.length ? schemas[typeOrdinal] : null;
+	}
+	
+	/**
+	 * Gets a message type by its ordinal.
+	 * 
+	 * @param typeOrdinal The ordinal of the message type.
+	 * 
+	 * @return The message type.
+	 */
+	public T typeOf(int typeOrdinal) {
+		return types[typeOrdinal];
+	}
+	
+	/**
+	 * Writes the content of a message, which has a schema.
+	 * 
+	 * @param message The message.
+	 * @param writer  The writer, which has been reset to the schema of the message.
+	 */
+	public void encode(Message<?, ?> message, FrameWriter writer) {
+		encoders[message.type.ordinal()].accept(message.content, writer);
+	}
+	
+	/**
+	 * Creates a regular message from a view.
+	 * 
+	 * @param view The view of the frame.
+	 * 
+	 * @return The new message.
+	 */
+	public Message<T, Serializable> decode(MessageView view) {
+		int ordinal = view.getTypeOrdinal();
+		return new Message<>(types[ordinal], decoders[ordinal].apply(view));
+	}
+	
+	/**
+	 * Gets the class of the message types.
+	 * 
+	 * @return The enum class.
+	 */
+	public Class<T> getTypeClass() {
+		return typeClass;
+	}
+	
+	@Override
+	public String toString() {
+		int registered = 0;
+		for(FrameSchema schema : schemas) {
+			if(schema != null) {
+				registered++;
+			}
+		}
+		return "FrameCodec{typeClass=" + typeClass.getSimpleName() + ", schemas=" + registered + "}";
+	}
+}
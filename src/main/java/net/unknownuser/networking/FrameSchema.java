@@ -0,0 +1,154 @@
+package net.unknownuser.networking;
+
+import java.util.*;
+
+/**
+ * Describes the binary layout of the content of a message type, which is sent in frames by a {@link ViewTransport}.<br>
+ * Fields have a fixed size and a fixed offset, so a {@link MessageView} reads them directly from the receive buffer. A single {@link FieldType#BYTES BYTES} field of
+ * variable length follows the fixed fields, wherever it has been added.
+ * <p>
+ * Schemas may evolve by adding fields at the end. Every frame carries the size of its fixed fields, so a receiver with a newer schema reads the missing fields as
+ * {@code 0}, {@code false} or no bytes, and a receiver with an older schema skips the fields it doesn't know.
+ */
+public class FrameSchema {
+	/**
+	 * The types of the fields. All numbers are big-endian.
+	 */
+	public enum FieldType {
+		BOOLEAN(1), BYTE(1), SHORT(2), CHAR(2), INT(4), FLOAT(4), LONG(8), DOUBLE(8),
+		/**
+		 * Bytes of variable length, written with an {@code int} length prefix after all fixed fields. Only one per schema.
+		 */
+		BYTES(0);
+		
+		public final int size;
+		
+		private FieldType(int size) {
+			this.size = size;
+		}
+	}
+	
+	private final ArrayList<String> names = new ArrayList<>();
+	private FieldType[] types = new FieldType[0];
+	private int[] offsets = new int[0];
+	private int fieldsSize = 0;
+	private int bytesField = -1;
+	
+	/**
+	 * Adds a field after all fields, which have been added so far.
+	 * 
+	 * @param name The name of the field, unique in this schema.
+	 * @param type The type of the field.
+	 * 
+	 * @return The index of the field, which is used to access it.
+	 * 
+	 * @throws IllegalStateException When a second {@link FieldType#BYTES BYTES} field is added.
+	 */
+	public synchronized int add(String name, FieldType type) {
+		if(type == FieldType.BYTES && bytesField >= 0) {
+			throw new IllegalStateException("only one bytes field is allowed");
+		}
+		if(names.contains(name)) {
+			throw new IllegalArgumentException("field " + name + " already exists");
+		}
+		int index = names.size();
+		names.add(name);
+		types = Arrays.copyOf(types, index + 1);
+		offsets = Arrays.copyOf(offsets, index + 1);
+		types[index] = type;
+		if(type == FieldType.BYTES) {
+			bytesField = index;
+		} else {
+			offsets[index] = fieldsSize;
+			fieldsSize += type.size;
+		}
+		return index;
+	}
+	
+	/**
+	 * Gets the index of a field.
+	 * 
+	 * @param name The name of the field.
+	 * 
+	 * @return The index, or {@code -1} if no such field exists.
+	 */
+	public int indexOf(String name) {
+		return names.indexOf(name);
+	}
+	
+	/**
+	 * Gets the type of a field.
+	 * 
+	 * @param field The index of the field.
+	 * 
+	 * @return The type.
+	 */
+	public FieldType typeOf(int field) {
+		return types[field];
+	}
+	
+	/**
+	 * Gets the offset of a field from the start of the content.
+	 * 
+	 * @param field The index of the field.
+	 * 
+	 * @return The offset in bytes. The one of a {@link FieldType#BYTES BYTES} field is the offset of its length prefix.
+	 */
+	public int offsetOf(int field) {
+		return field == bytesField ? fieldsSize : offsets[field];
+	}
+	
+	/**
+	 * Gets the size of all fields, without the content of a {@link FieldType#BYTES BYTES} field.
+	 * 
+	 * @return The size in bytes. A {@link FieldType#BYTES BYTES} field counts with the size of its length prefix.
+	 */
+	public int getFixedSize() {
+		return hasBytes() ? fieldsSize + Integer.BYTES : fieldsSize;
+	}
+	
+	/**
+	 * Gets the size of all fields with a fixed size, which is the offset of a {@link FieldType#BYTES BYTES} field.
+	 * 
+	 * @return The size in bytes.
+	 */
+	public int getFieldsSize() {
+		return fieldsSize;
+	}
+	
+	/**
+	 * Gets the amount of fields.
+	 * 
+	 * @return The amount of fields.
+	 */
+	public int getFieldCount() {
+		return names.size();
+	}
+	
+	/**
+	 * Returns whether this schema has a {@link FieldType#BYTES BYTES} field.
+	 * 
+	 * @return {@code true} if the content has a variable length.
+	 */
+	public boolean hasBytes() {
+		return bytesField >= 0;
+	}
+	
+	/**
+	 * Throws, if a field doesn't have the expected type.
+	 */
+	void check(int field, FieldType type) {
+		if(types[field] != type) {
+			throw new IllegalArgumentException("field " + names.get(field) + " is " + types[field] + ", not " + type);
+		}
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder fields = new StringBuilder();
+		for(int i = 0; i < types.length; i++) {
+			fields.append(i == 0 ? "" : ", ").append(names.get(i)).append(':').append(types[i]);
+		}
+		return "FrameSchema{fields=[" + fields + "]}";
+	}
+}
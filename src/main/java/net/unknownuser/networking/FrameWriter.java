@@ -0,0 +1,136 @@
+package net.unknownuser.networking;
+
+import java.nio.*;
+import java.nio.charset.*;
+
+import net.unknownuser.networking.FrameSchema.*;
+
+/**
+ * Writes the fields of a content into a frame, at the offsets of its {@link FrameSchema}.<br>
+ * A writer is reused for every frame of a transport, its buffer only grows.
+ */
+public class FrameWriter {
+	private ByteBuffer buffer = ByteBuffer.allocate(256);
+	private FrameSchema schema = null;
+	private int offset = 0;
+	private int length = 0;
+	
+	/**
+	 * Starts a new frame.
+	 * 
+	 * @param schema The schema of the content.
+	 * @param offset The space before the content, which is reserved for the header of the frame.
+	 */
+	public void reset(FrameSchema schema, int offset) {
+		this.schema = schema;
+		this.offset = offset;
+		this.length = schema.getFixedSize();
+		ensureCapacity(offset + length);
+		if(schema.hasBytes()) {
+			buffer.putInt(offset + schema.getFieldsSize(), 0);
+		}
+	}
+	
+	private void ensureCapacity(int capacity) {
+		if(buffer.capacity() < capacity) {
+			ByteBuffer grown = ByteBuffer.allocate(Math.max(capacity, buffer.capacity() * 2));
+			grown.put(0, buffer, 0, buffer.capacity());
+			buffer = grown;
+		}
+	}
+	
+	private int position(int field, FieldType type) {
+		schema.check(field, type);
+		return offset + schema.offsetOf(field);
+	}
+	
+	public FrameWriter putBoolean(int field, boolean value) {
+		buffer.put(position(field, FieldType.BOOLEAN), (byte) (value ? 1 : 0));
+		return this;
+	}
+	
+	public FrameWriter putByte(int field, byte value) {
+		buffer.put(position(field, FieldType.BYTE), value);
+		return this;
+	}
+	
+	public FrameWriter putShort(int field, short value) {
+		buffer.putShort(position(field, FieldType.SHORT), value);
+		return this;
+	}
+	
+	public FrameWriter putChar(int field, char value) {
+		buffer.putChar(position(field, FieldType.CHAR), value);
+		return this;
+	}
+	
+	public FrameWriter putInt(int field, int value) {
+		buffer.putInt(position(field, FieldType.INT), value);
+		return this;
+	}
+	
+	public FrameWriter putFloat(int field, float value) {
+		buffer.putFloat(position(field, FieldType.FLOAT), value);
+		return this;
+	}
+	
+	public FrameWriter putLong(int field, long value) {
+		buffer.putLong(position(field, FieldType.LONG), value);
+		return this;
+	}
+	
+	public FrameWriter putDouble(int field, double value) {
+		buffer.putDouble(position(field, FieldType.DOUBLE), value);
+		return this;
+	}
+	
+	/**
+	 * Sets a {@link FieldType#BYTES BYTES} field.
+	 * 
+	 * @param field  The index of the field.
+	 * @param bytes  The array to copy from.
+	 * @param from   The first index to copy.
+	 * @param amount The amount of bytes to copy.
+	 * 
+	 * @return This writer.
+	 */
+	public FrameWriter putBytes(int field, byte[] bytes, int from, int amount) {
+		int position = position(field, FieldType.BYTES);
+		ensureCapacity(position + Integer.BYTES + amount);
+		buffer.putInt(position, amount);
+		buffer.put(position + Integer.BYTES, bytes, from, amount);
+		length = schema.getFixedSize() + amount;
+		return this;
+	}
+	
+	/**
+	 * Sets a {@link FieldType#BYTES BYTES} field to the UTF-8 bytes of a string.
+	 * 
+	 * @param field The index of the field.
+	 * @param value The string. {@code null} is written as an empty string.
+	 * 
+	 * @return This writer.
+	 */
+	public FrameWriter putString(int field, String value) {
+		byte[] bytes = value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+		return putBytes(field, bytes, 0, bytes.length);
+	}
+	
+	/**
+	 * Gets the buffer, which contains the frame.
+	 * 
+	 * @return The backing array.
+	 */
+	public byte[] array() {
+		return buffer.array();
+	}
+	
+	/**
+	 * Gets the length of the content.
+	 * 
+	 * @return The length in bytes, without the header.
+	 */
+	public int length() {
+		return length;
+	}
+}
@@ -0,0 +1,114 @@
+package net.unknownuser.networking;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * The message types a client wants to receive via broadcasts and group messages. Set by the client with {@link Client#setInterests(InterestSet)}.<br>
+ * The types are kept as a bitmask of their ordinals, so the server checks every recipient without allocating. Only types of one enum are filtered, messages of
+ * other types, like the control messages of the library, are always delivered.
+ */
+public final class InterestSet implements Serializable {
+	private static final long serialVersionUID = -6120853817398641527L;
+	
+	private final Class<?> types;
+	private final long[] bits;
+	
+	private InterestSet(Class<?> types, long[] bits) {
+		super();
+		this.types = types;
+		this.bits = bits;
+	}
+	
+	/**
+	 * Creates a set of the given message types.
+	 * 
+	 * @param <T>       The type of the messages.
+	 * @param types     The enum of the message types.
+	 * @param interests The message types to receive, all other types of the enum are skipped.
+	 * 
+	 * @return The set.
+	 */
+	public static <T extends Enum<T>> InterestSet of(Class<T> types, Collection<T> interests) {
+		long[] bits = new long[(types.getEnumConstants().length + 63) >>> 6];
+		for(T type : interests) {
+			bits[type.ordinal() >>> 6] |= 1L << type.ordinal();
+		}
+		return new InterestSet(types, bits);
+	}
+	
+	/**
+	 * Creates a set of the given message types.
+	 * 
+	 * @param <T>       The type of the messages.
+	 * @param first     A message type to receive.
+	 * @param interests More message types to receive, all other types of the enum are skipped.
+	 * 
+	 * @return The set.
+	 */
+	@SafeVarargs
+	public static <T extends Enum<T>> InterestSet of(T first, T... interests) {
+		EnumSet<T> set = EnumSet.of(first);
+		for(T interest : interests) {
+			set.add(interest);
+		}
+		return of(first.getDeclaringClass(), set);
+	}
+	
+	/**
+	 * Returns whether a client with this set receives messages of a type.
+	 * 
+	 * @param type The type of the message.
+	 * 
+	 * @return {@code true} if the type is in this set or isn't of its enum, {@code false} otherwise.
+	 */
+	public boolean contains(Enum<?> type) {
+		if(type == null || type.getDeclaringClass() != types) {
+			return true;
+		}
+		int ordinal = type.ordinal();
+		return (ordinal >>> 6) < bits.length && (bits[ordinal >>> 6] & (1L << ordinal)) != 0;
+	}
+	
+	/**
+	 * Gets the enum of the message types, which are filtered.
+	 * 
+	 * @return The enum.
+	 */
+	public Class<?> getTypes() {
+		return types;
+	}
+	
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		// sent by clients, so it is checked like any other input
+		if(types == null || !types.isEnum() || bits == null || bits.length != (types.getEnumConstants().length + 63) >>> 6) {
+			throw new InvalidObjectException("invalid interest set");
+		}
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if(this == obj) {
+			return true;
+		}
+		return obj instanceof InterestSet other && types == other.types && Arrays.equals(bits, other.bits);
+	}
+	
+	@Override
+	public int hashCode() {
+		return 31 * types.hashCode() + Arrays.hashCode(bits);
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder names = new StringBuilder();
+		Object[] constants = types.getEnumConstants();
+		for(int i = 0; i < constants.length; i++) {
+			if((bits[i >>> 6] & (1L << i)) != 0) {
+				names.append(names.length() == 0 ? "" : ", ").append(constants[i]);
+			}
+		}
+		return "InterestSet{types=" + types.getSimpleName() + ", interests=[" + names + "]}";
+	}
+}
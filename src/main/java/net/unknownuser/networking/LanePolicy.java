@@ -0,0 +1,119 @@
+package net.unknownuser.networking;
+
+import java.util.concurrent.*;
+import java.util.function.*;
+
+/**
+ * Assigns messages to priority lanes by their type. Lane {@code 0} has the highest priority.<br>
+ * A message waiting in a lower lane is passed over at most {@link #maxSkips} times, then it is taken before the higher lanes. This keeps bulk traffic moving, even
+ * if the higher lanes are never empty.<br>
+ * A queue, which is full, rejects further messages. A client, which can't be sent a {@link ControlType#SEQUENCED journaled} message because of it, is disconnected
+ * and continues from the journal after reconnecting.
+ * <p>
+ * Unassigned control messages of the library use lane {@code 0}, except {@link ControlType#SEQUENCED journaled} messages, which use the default lane. Journaled
+ * messages must not overtake each other, so all of them share the lane of {@link ControlType#SEQUENCED}. {@link ControlType#UNIQUE Unique} messages use the lane of
+ * the message they contain.
+ */
+public class LanePolicy {
+	public static final int DEFAULT_CAPACITY = 16384;
+	
+	public final int lanes;
+	public final int defaultLane;
+	public final int maxSkips;
+	/**
+	 * The maximum amount of messages in all lanes of a queue together. Further messages are rejected, until messages have been taken.
+	 */
+	public final int capacity;
+	
+	private final ConcurrentHashMap<Enum<?>, Integer> assignments = new ConcurrentHashMap<>();
+	
+	/**
+	 * Creates a new lane policy, whose queues hold up to {@link #DEFAULT_CAPACITY} messages.
+	 * 
+	 * @param lanes       The amount of lanes.
+	 * @param defaultLane The lane of message types, which aren't assigned.
+	 * @param maxSkips    How often a waiting message may be passed over by messages of higher lanes. {@code 0} takes the lanes in turns.
+	 */
+	public LanePolicy(int lanes, int defaultLane, int maxSkips) {
+		this(lanes, defaultLane, maxSkips, DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * Creates a new lane policy.
+	 * 
+	 * @param lanes       The amount of lanes.
+	 * @param defaultLane The lane of message types, which aren't assigned.
+	 * @param maxSkips    How often a waiting message may be passed over by messages of higher lanes. {@code 0} takes the lanes in turns.
+	 * @param capacity    The maximum amount of messages in a queue, e.g. the messages waiting to be written to a slow client.
+	 */
+	public LanePolicy(int lanes, int defaultLane, int maxSkips, int capacity) {
+		super();
+		if(lanes < 1) {
+			throw new IllegalArgumentException("at least one lane is needed");
+		}
+		if(defaultLane < 0 || defaultLane >= lanes) {
+			throw new IllegalArgumentException("default lane " + defaultLane + " doesn't exist");
+		}
+		if(maxSkips < 0) {
+			throw new IllegalArgumentException("skips can't be negative");
+		}
+		if(capacity < 1) {
+			throw new IllegalArgumentException("capacity must be positive");
+		}
+		this.lanes = lanes;
+		this.defaultLane = defaultLane;
+		this.maxSkips = maxSkips;
+		this.capacity = capacity;
+	}
+	
+	/**
+	 * Assigns a message type to a lane.
+	 * 
+	 * @param type The message type.
+	 * @param lane The lane.
+	 * 
+	 * @return This policy.
+	 */
+	public LanePolicy assign(Enum<?> type, int lane) {
+		if(lane < 0 || lane >= lanes) {
+			throw new IllegalArgumentException("lane " + lane + " doesn't exist");
+		}
+		assignments.put(type, lane);
+		return this;
+	}
+	
+	/**
+	 * Gets the lane of a message.
+	 * 
+	 * @param message The message.
+	 * 
+	 * @return The lane.
+	 */
+	public int laneOf(Message<?, ?> message) {
+		Integer lane = assignments.get(message.type);
+		if(lane != null) {
+			return lane;
+		}
+		if(message.type == ControlType.UNIQUE) {
+			return laneOf(((UniqueMessage) message.content).message);
+		}
+		return message.type instanceof ControlType && message.type != ControlType.SEQUENCED ? 0 : defaultLane;
+	}
+	
+	/**
+	 * Creates a queue, which orders its elements by the lanes of this policy.
+	 * 
+	 * @param <E>       The type of the elements.
+	 * @param messageOf Gets the message of an element.
+	 * 
+	 * @return The new queue, bounded by the {@link #capacity}.
+	 */
+	public <E> LaneQueue<E> newQueue(Function<E, Message<?, ?>> messageOf) {
+		return new LaneQueue<>(lanes, maxSkips, capacity, element -> laneOf(messageOf.apply(element)));
+	}
+	
+	@Override
+	public String toString() {
+		return "LanePolicy{lanes=" + lanes + ", defaultLane=" + defaultLane + ", maxSkips=" + maxSkips + ", capacity=" + capacity + ", assignments=" + assignments + "}";
+	}
+}
@@ -0,0 +1,337 @@
+package net.unknownuser.networking;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.*;
+import java.util.function.*;
+
+/**
+ * A blocking queue with several FIFO lanes, which are taken by priority. Lane {@code 0} has the highest priority.<br>
+ * To prevent starvation, every lane counts how often its oldest element has been passed over. Once it has been passed over {@code maxSkips} times, at least once,
+ * it is due and taken before the higher lanes. Of several due lanes, the one passed over most often is taken, so {@code 0} and {@code 1} take the waiting lanes in
+ * turns.
+ * 
+ * @param <E> The type of the elements.
+ */
+public class LaneQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+	private final ArrayDeque<E>[] lanes;
+	private final int[] skipped;
+	private final int maxSkips;
+	private final int capacity;
+	private final ToIntFunction<E> laneOf;
+	
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+	private final Condition notFull = lock.newCondition();
+	private int count = 0;
+	
+	/**
+	 * Creates an empty queue.
+	 * 
+	 * @param lanes    The amount of lanes.
+	 * @param maxSkips How often the oldest element of a lane may be passed over by higher lanes.
+	 * @param capacity The maximum amount of elements in all lanes together.
+	 * @param laneOf   Gets the lane of an element.
+	 */
+	@SuppressWarnings("unchecked")
+	public LaneQueue(int lanes, int maxSkips, int capacity, ToIntFunction<E> laneOf) {
+		super();
+		if(lanes < 1 || capacity < 1) {
+			throw new IllegalArgumentException("at least one lane and a capacity of one are needed");
+		}
+		this.lanes = (ArrayDeque<E>[]) new ArrayDeque<?>[lanes];
+		for(int i = 0; i < lanes; i++) {
+			this.lanes[i] = new ArrayDeque<>();
+		}
+		this.skipped = new int[lanes];
+		this.maxSkips = maxSkips;
+		this.capacity = capacity;
+		this.laneOf = laneOf;
+	}
+	
+	private void enqueue(E element) {
+		int lane = Math.max(0, Math.min(lanes.length - 1, laneOf.applyAsInt(element)));
+		lanes[lane].addLast(element);
+		count++;
+		notEmpty.signal();
+	}
+	
+	/**
+	 * Takes the element of the highest lane, unless a lane is due. Must only be called with elements present and the lock held.
+	 */
+	private E dequeue() {
+		// a lane, which has never been passed over, is never due, otherwise 0 would take the lowest lane first
+		int due = Math.max(1, maxSkips);
+		int chosen = -1;
+		int mostSkipped = -1;
+		for(int i = 0; i < lanes.length; i++) {
+			if(lanes[i].isEmpty()) {
+				continue;
+			}
+			if(chosen < 0) {
+				chosen = i;
+			}
+			if(skipped[i] >= due && skipped[i] > mostSkipped) {
+				chosen = i;
+				mostSkipped = skipped[i];
+			}
+		}
+		for(int i = 0; i < lanes.length; i++) {
+			if(i != chosen && !lanes[i].isEmpty()) {
+				skipped[i]++;
+			}
+		}
+		skipped[chosen] = 0;
+		count--;
+		notFull.signal();
+		return lanes[chosen].pollFirst();
+	}
+	
+	@Override
+	public boolean offer(E element) {
+		Objects.requireNonNull(element);
+		lock.lock();
+		try {
+			if(count >= capacity) {
+				return false;
+			}
+			enqueue(element);
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	@Override
+	public boolean offer(E element, long timeout, TimeUnit unit) throws InterruptedException {
+		Objects.requireNonNull(element);
+		long nanos = unit.toNanos(timeout);
+		lock.lockInterruptibly();
+		try {
+			while(count >= capacity) {
+				if(nanos <= 0) {
+					return false;
+				}
+				nanos = notFull.awaitNanos(nanos);
+			}
+			enqueue(element);
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	@Override
+	public void put(E element) throws InterruptedException {
+		Objects.requireNonNull(element);
+		lock.lockInterruptibly();
+		try {
+			while(count >= capacity) {
+				notFull.await();
+			}
+			enqueue(element);
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	@Override
+	public E poll() {
+		lock.lock();
+		try {
+			return count == 0 ? null : dequeue();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	@Override
+	public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+		long nanos = unit.toNanos(timeout);
+		lock.lockInterruptibly();
+		try {
+			while(count == 0) {
+				if(nanos <= 0) {
+					return null;
+				}
+				nanos = notEmpty.awaitNanos(nanos);
+			}
+			return dequeue();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	@Override
+	public E take() throws InterruptedException {
+		lock.lockInterruptibly();
+		try {
+			while(count == 0) {
+				notEmpty.await();
+			}
+			return dequeue();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	@Override
+	public E peek() {
+		lock.lock();
+		try {
+			for(ArrayDeque<E> lane : lanes) {
+				if(!lane.isEmpty()) {
+					return lane.peekFirst();
+				}
+			}
+			return null;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	@Override
+	public int drainTo(Collection<? super E> into) {
+		return drainTo(into, Integer.MAX_VALUE);
+	}
+	
+	@Override
+	public int drainTo(Collection<? super E> into, int maxElements) {
+		if(into == this) {
+			throw new IllegalArgumentException("can't drain into itself");
+		}
+		lock.lock();
+		try {
+			int drained = 0;
+			while(drained < maxElements && count > 0) {
+				into.add(dequeue());
+				drained++;
+			}
+			return drained;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	@Override
+	public boolean remove(Object element) {
+		lock.lock();
+		try {
+			for(ArrayDeque<E> lane : lanes) {
+				if(lane.remove(element)) {
+					count--;
+					notFull.signal();
+					return true;
+				}
+			}
+			return false;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	@Override
+	public void clear() {
+		lock.lock();
+		try {
+			for(ArrayDeque<E> lane : lanes) {
+				lane.clear();
+			}
+			Arrays.fill(skipped, 0);
+			count = 0;
+			notFull.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	@Override
+	public int size() {
+		lock.lock();
+		try {
+			return count;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Gets the amount of elements in a lane.
+	 * 
+	 * @param lane The lane.
+	 * 
+	 * @return The amount of waiting elements.
+	 */
+	public int size(int lane) {
+		lock.lock();
+		try {
+			return lanes[lane].size();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	@Override
+	public int remainingCapacity() {
+		lock.lock();
+		try {
+			return capacity - count;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Iterates over a snapshot of the elements, lane by lane. Removing via the iterator removes the element from this queue.
+	 */
+	@Override
+	public Iterator<E> iterator() {
+		ArrayList<E> snapshot = new ArrayList<>();
+		lock.lock();
+		try {
+			for(ArrayDeque<E> lane : lanes) {
+				snapshot.addAll(lane);
+			}
+		} finally {
+			lock.unlock();
+		}
+		Iterator<E> elements = snapshot.iterator();
+		return new Iterator<>() {
+			private E last = null;
+			
+			@Override
+			public boolean hasNext() {
+				return elements.hasNext();
+			}
+			
+			@Override
+			public E next() {
+				last = elements.next();
+				return last;
+			}
+			
+			@Override
+			public void remove() {
+				if(last == null) {
+					throw new IllegalStateException();
+				}
+				LaneQueue.this.remove(last);
+				last = null;
+			}
+		};
+	}
+	
+	@Override
+	public String toString() {
+		lock.lock();
+		try {
+			StringBuilder sizes = new StringBuilder();
+			for(int i = 0; i < lanes.length; i++) {
+				sizes.append(i == 0 ? "" : ", ").append(lanes[i].size());
+			}
+			return "LaneQueue{lanes=[" + sizes + "], maxSkips=" + maxSkips + ", capacity=" + capacity + "}";
+		} finally {
+			lock.unlock();
+		}
+	}
+}
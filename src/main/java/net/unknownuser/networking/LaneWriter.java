@@ -0,0 +1,84 @@
+package net.unknownuser.networking;
+
+import java.io.*;
+import java.util.*;
+import java.util.function.*;
+
+/**
+ * Writes the outbound messages of a {@link Connection} or {@link Client} on its own thread, taking them from a {@link LaneQueue}.<br>
+ * Senders only enqueue, so a message of a higher lane overtakes all queued messages of lower lanes instead of waiting behind them on the stream.
+ */
+class LaneWriter {
+	/**
+	 * Writes a single message to the transport.
+	 */
+	interface Sink {
+		void write(Message<?, ?> message) throws IOException;
+	}
+	
+	private final LaneQueue<Message<?, ?>> queue;
+	private final Thread writer;
+	private final String name;
+	
+	/**
+	 * Creates and starts a writer.
+	 * 
+	 * @param policy  The lanes of the messages.
+	 * @param name    The name of the writer thread.
+	 * @param sink    Writes a message.
+	 * @param onError Called once, if writing fails. The writer stops afterwards.
+	 */
+	LaneWriter(LanePolicy policy, String name, Sink sink, Consumer<IOException> onError) {
+		super();
+		this.queue = policy.newQueue(message -> message);
+		this.name = name;
+		this.writer = new Thread(() -> {
+			try {
+				while(true) {
+					sink.write(queue.take());
+				}
+			} catch(IOException exc) {
+				onError.accept(exc);
+			} catch(InterruptedException exc) {
+				// thrown when closed
+			}
+		}, name);
+		writer.setDaemon(true);
+		writer.start();
+	}
+	
+	/**
+	 * Queues a message.
+	 * 
+	 * @param message The message to write.
+	 * 
+	 * @return {@code true} if the message has been queued, {@code false} if the writer is closed or the queue is full, because the peer doesn't keep up.
+	 */
+	boolean offer(Message<?, ?> message) {
+		return writer.isAlive() && queue.offer(message);
+	}
+	
+	/**
+	 * Stops the writer. Messages, which are still queued, can't be written anymore, because the transport is closed next. They are dropped and reported.
+	 * 
+	 * @return The amount of dropped messages.
+	 */
+	int close() {
+		writer.interrupt();
+		ArrayList<Message<?, ?>> dropped = new ArrayList<>();
+		queue.drainTo(dropped);
+		if(!dropped.isEmpty()) {
+			System.out.printf("[LaneWriter][Warning] %s dropped %d queued messages on close%n", name, dropped.size());
+		}
+		return dropped.size();
+	}
+	
+	/**
+	 * Gets the queue of the waiting messages.
+	 * 
+	 * @return The queue.
+	 */
+	LaneQueue<Message<?, ?>> getQueue() {
+		return queue;
+	}
+}
@@ -18,4 +18,13 @@ public class Message<T extends Enum<T>, C extends Serializable> implements Seria
 		this.type = type;
 		this.content = content;
 	}
+	
+	/**
+	 * Gets the content of this message. Unlike the field, this also gets the content of a {@link RawMessage}, which is only deserialized on first access.
+	 * 
+	 * @return The content.
+	 */
+	public C getContent() {
+		return content;
+	}
 }
@@ -7,9 +7,36 @@ public class MessageToSend {
 	public final Message<?, ?> message;
 	public final Connection sender;
 	
+	/**
+	 * When the message has been put into the queue of received messages, as {@link System#nanoTime()}.
+	 */
+	long arrivalNanos = 0;
+	/**
+	 * When the message is dropped instead of handled, as {@link System#nanoTime()}. {@code 0} if it has no deadline.
+	 */
+	long deadlineNanos = 0;
+	
 	public MessageToSend(Message<?, ?> message, Connection sender) {
 		super();
 		this.message = message;
 		this.sender = sender;
 	}
+	
+	/**
+	 * Gets the time, at which a received message has been put into the queue of the server.
+	 * 
+	 * @return The arrival as {@link System#nanoTime()}, {@code 0} if the message hasn't been received.
+	 */
+	public long getArrivalNanos() {
+		return arrivalNanos;
+	}
+	
+	/**
+	 * Gets the deadline of a received message, which its {@link OverloadPolicy} has assigned.
+	 * 
+	 * @return The deadline as {@link System#nanoTime()}, {@code 0} if the message has no deadline.
+	 */
+	public long getDeadlineNanos() {
+		return deadlineNanos;
+	}
 }
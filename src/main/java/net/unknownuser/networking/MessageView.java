@@ -0,0 +1,230 @@
+package net.unknownuser.networking;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.charset.*;
+
+import net.unknownuser.networking.FrameSchema.*;
+
+/**
+ * A read-only view of a received frame, which reads the fields of the content directly from the receive buffer.<br>
+ * A view is reused for every frame of a connection, so receiving doesn't allocate. <b>It is only valid during the callback it is passed to.</b> Copy the fields,
+ * which are needed later, or call {@link #toMessage()}.
+ * <p>
+ * Fields, which the sender's schema doesn't have yet, are read as {@code 0}, {@code false} or no bytes.
+ */
+public class MessageView {
+	private FrameCodec<?> codec = null;
+	private FrameSchema schema = null;
+	private int typeOrdinal = -1;
+	private byte[] buffer = null;
+	private ByteBuffer data = null;
+	private int offset = 0;
+	private int fieldsLength = 0;
+	private int length = 0;
+	
+	/**
+	 * Points this view to a new frame.
+	 * 
+	 * @param codec        The codec of the frame.
+	 * @param typeOrdinal  The ordinal of the message type.
+	 * @param buffer       The receive buffer.
+	 * @param offset       The start of the content in the buffer.
+	 * @param fieldsLength The size of the fixed fields in the frame, which may differ from the local schema, if the sender uses another version of it.
+	 * @param length       The length of the content.
+	 */
+	public void wrap(FrameCodec<?> codec, int typeOrdinal, byte[] buffer, int offset, int fieldsLength, int length) {
+		this.codec = codec;
+		this.schema = codec.schemaOf(typeOrdinal);
+		this.typeOrdinal = typeOrdinal;
+		if(this.buffer != buffer) {
+			// only when the receive buffer has grown
+			this.buffer = buffer;
+			this.data = ByteBuffer.wrap(buffer);
+		}
+		this.offset = offset;
+		this.fieldsLength = fieldsLength;
+		this.length = length;
+	}
+	
+	/**
+	 * Gets the ordinal of the message type.
+	 * 
+	 * @return The ordinal.
+	 */
+	public int getTypeOrdinal() {
+		return typeOrdinal;
+	}
+	
+	/**
+	 * Gets the message type.
+	 * 
+	 * @return The type.
+	 */
+	public Enum<?> getType() {
+		return codec.typeOf(typeOrdinal);
+	}
+	
+	/**
+	 * Gets the schema of the content.
+	 * 
+	 * @return The schema.
+	 */
+	public FrameSchema getSchema() {
+		return schema;
+	}
+	
+	/**
+	 * Gets the position of a field in the buffer.
+	 * 
+	 * @return The position, or {@code -1} if the frame doesn't contain the field.
+	 */
+	private int position(int field, FieldType type) {
+		schema.check(field, type);
+		if(type == FieldType.BYTES) {
+			// placed after the fixed fields of the sender's schema
+			return fieldsLength + Integer.BYTES <= length ? offset + fieldsLength : -1;
+		}
+		int at = schema.offsetOf(field);
+		return at + type.size <= fieldsLength ? offset + at : -1;
+	}
+	
+	/**
+	 * Reads the length of a {@link FieldType#BYTES BYTES} field and checks it against the rest of the frame, since it is sent by the peer.
+	 * 
+	 * @throws UncheckedIOException If the length doesn't fit into the frame.
+	 */
+	private int bytesLength(int position) {
+		int size = data.getInt(position);
+		if(size < 0 || size > length - fieldsLength - Integer.BYTES) {
+			throw new UncheckedIOException(new StreamCorruptedException("field of " + size + " bytes doesn't fit into a frame of " + length + " bytes"));
+		}
+		return size;
+	}
+	
+	/**
+	 * Returns whether the frame contains a field. Fields, which have been added to the schema after the sender's version of it, are missing.
+	 * 
+	 * @param field The index of the field.
+	 * 
+	 * @return {@code true} if the field has been sent.
+	 */
+	public boolean has(int field) {
+		return position(field, schema.typeOf(field)) >= 0;
+	}
+	
+	public boolean getBoolean(int field) {
+		int position = position(field, FieldType.BOOLEAN);
+		return position >= 0 && data.get(position) != 0;
+	}
+	
+	public byte getByte(int field) {
+		int position = position(field, FieldType.BYTE);
+		return position < 0 ? 0 : data.get(position);
+	}
+	
+	public short getShort(int field) {
+		int position = position(field, FieldType.SHORT);
+		return position < 0 ? 0 : data.getShort(position);
+	}
+	
+	public char getChar(int field) {
+		int position = position(field, FieldType.CHAR);
+		return position < 0 ? 0 : data.getChar(position);
+	}
+	
+	public int getInt(int field) {
+		int position = position(field, FieldType.INT);
+		return position < 0 ? 0 : data.getInt(position);
+	}
+	
+	public float getFloat(int field) {
+		int position = position(field, FieldType.FLOAT);
+		return position < 0 ? 0 : data.getFloat(position);
+	}
+	
+	public long getLong(int field) {
+		int position = position(field, FieldType.LONG);
+		return position < 0 ? 0 : data.getLong(position);
+	}
+	
+	public double getDouble(int field) {
+		int position = position(field, FieldType.DOUBLE);
+		return position < 0 ? 0 : data.getDouble(position);
+	}
+	
+	/**
+	 * Gets the length of a {@link FieldType#BYTES BYTES} field.
+	 * 
+	 * @param field The index of the field.
+	 * 
+	 * @return The amount of bytes.
+	 * 
+	 * @throws UncheckedIOException If the frame is malformed.
+	 */
+	public int getBytesLength(int field) {
+		int position = position(field, FieldType.BYTES);
+		return position < 0 ? 0 : bytesLength(position);
+	}
+	
+	/**
+	 * Copies a {@link FieldType#BYTES BYTES} field.
+	 * 
+	 * @param field  The index of the field.
+	 * @param into   The array to copy to.
+	 * @param offset The first index to copy to.
+	 * 
+	 * @return The amount of copied bytes.
+	 * 
+	 * @throws UncheckedIOException If the frame is malformed.
+	 */
+	public int getBytes(int field, byte[] into, int offset) {
+		int position = position(field, FieldType.BYTES);
+		if(position < 0) {
+			return 0;
+		}
+		int size = bytesLength(position);
+		System.arraycopy(buffer, position + Integer.BYTES, into, offset, size);
+		return size;
+	}
+	
+	/**
+	 * Decodes a {@link FieldType#BYTES BYTES} field, which has been written with {@link FrameWriter#putString(int, String)}.
+	 * 
+	 * @param field The index of the field.
+	 * 
+	 * @return The string, which is empty if the frame doesn't contain the field.
+	 * 
+	 * @throws UncheckedIOException If the frame is malformed.
+	 */
+	public String getString(int field) {
+		int position = position(field, FieldType.BYTES);
+		if(position < 0) {
+			return "";
+		}
+		return new String(buffer, position + Integer.BYTES, bytesLength(position), StandardCharsets.UTF_8);
+	}
+	
+	/**
+	 * Gets the length of the content.
+	 * 
+	 * @return The length in bytes.
+	 */
+	public int getLength() {
+		return length;
+	}
+	
+	/**
+	 * Decodes the content into a regular message, which stays valid after the callback.
+	 * 
+	 * @return The new message.
+	 */
+	public Message<?, ?> toMessage() {
+		return codec.decode(this);
+	}
+	
+	@Override
+	public String toString() {
+		return "MessageView{type=" + (codec == null ? null : getType()) + ", length=" + length + "}";
+	}
+}
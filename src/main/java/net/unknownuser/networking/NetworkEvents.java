@@ -0,0 +1,184 @@
+package net.unknownuser.networking;
+
+import jdk.jfr.*;
+
+/**
+ * JDK Flight Recorder events of the hot paths of a {@link Server}, from reading a message over queueing and dispatching it to writing the answer.<br>
+ * An event, which isn't enabled in the running recording, costs a single check and no allocation, so the server doesn't need to be configured for them. The events
+ * of single messages have a default threshold of {@value #DEFAULT_THRESHOLD}, so a continuous recording only keeps the slow ones. The threshold can be lowered by
+ * the recording settings, e.g. {@code recording.enable("net.unknownuser.networking.MessageHandled").withThreshold(Duration.ZERO)}.
+ * <p>
+ * Every event carries the id of its connection, which is the same id as in a {@link TrafficRecorder traffic capture}. Sizes are the length of the serialized
+ * content, or {@code -1} if the transport doesn't know it, because it deserializes the content itself.
+ */
+public final class NetworkEvents {
+	public static final String DEFAULT_THRESHOLD = "10 ms";
+	
+	private static final String CATEGORY = "Networking";
+	
+	private NetworkEvents() {
+		super();
+	}
+	
+	@Name("net.unknownuser.networking.ConnectionAccepted")
+	@Label("Connection Accepted")
+	@Category({ CATEGORY, "Connections" })
+	@Description("A client has been accepted and its connection has been opened")
+	public static class ConnectionAccepted extends Event {
+		@Label("Connection")
+		int connection;
+		@Label("Address")
+		String address;
+		@Label("Port")
+		int port;
+		@Label("Transport")
+		Class<?> transport;
+	}
+	
+	@Name("net.unknownuser.networking.ConnectionClosed")
+	@Label("Connection Closed")
+	@Category({ CATEGORY, "Connections" })
+	@Description("A connection has been removed from its server")
+	public static class ConnectionClosed extends Event {
+		@Label("Connection")
+		int connection;
+		@Label("Address")
+		String address;
+		@Label("Port")
+		int port;
+	}
+	
+	@Name("net.unknownuser.networking.MessageReceived")
+	@Label("Message Received")
+	@Category({ CATEGORY, "Messages" })
+	@Description("A message has been read and handed over by the thread of its connection, the duration doesn't include waiting for the message")
+	@Threshold(DEFAULT_THRESHOLD)
+	public static class MessageReceived extends Event {
+		@Label("Connection")
+		int connection;
+		@Label("Type")
+		String type;
+		@Label("Size")
+		@DataAmount
+		int size;
+	}
+	
+	@Name("net.unknownuser.networking.MessageDecoded")
+	@Label("Message Decoded")
+	@Category({ CATEGORY, "Messages" })
+	@Description("The content of a raw message has been deserialized")
+	@Threshold(DEFAULT_THRESHOLD)
+	public static class MessageDecoded extends Event {
+		@Label("Connection")
+		int connection;
+		@Label("Type")
+		String type;
+		@Label("Size")
+		@DataAmount
+		int size;
+	}
+	
+	@Name("net.unknownuser.networking.MessageEnqueued")
+	@Label("Message Enqueued")
+	@Category({ CATEGORY, "Messages" })
+	@Description("A message has been put into the queue of received messages")
+	@Threshold(DEFAULT_THRESHOLD)
+	public static class MessageEnqueued extends Event {
+		@Label("Connection")
+		int connection;
+		@Label("Type")
+		String type;
+		@Label("Queued Messages")
+		@Description("The amount of messages in the queue after this one has been added")
+		int queued;
+		@Label("Accepted")
+		boolean accepted;
+	}
+	
+	@Name("net.unknownuser.networking.MessageDispatched")
+	@Label("Message Dispatched")
+	@Category({ CATEGORY, "Messages" })
+	@Description("A message has been taken from the queue of received messages to be handled")
+	public static class MessageDispatched extends Event {
+		@Label("Connection")
+		int connection;
+		@Label("Type")
+		String type;
+		@Label("Queue Time")
+		@Description("The time between enqueueing and dispatching")
+		@Timespan
+		long queueTime;
+		@Label("Queued Messages")
+		int queued;
+	}
+	
+	@Name("net.unknownuser.networking.MessageDropped")
+	@Label("Message Dropped")
+	@Category({ CATEGORY, "Messages" })
+	@Description("A message has been taken from the queue of received messages and dropped by the overload policy of the server")
+	public static class MessageDropped extends Event {
+		@Label("Connection")
+		int connection;
+		@Label("Type")
+		String type;
+		@Label("Reason")
+		String reason;
+		@Label("Queue Time")
+		@Timespan
+		long queueTime;
+		@Label("Queued Messages")
+		int queued;
+	}
+	
+	@Name("net.unknownuser.networking.MessageHandled")
+	@Label("Message Handled")
+	@Category({ CATEGORY, "Messages" })
+	@Description("The handler of the server has been called with received messages")
+	@Threshold(DEFAULT_THRESHOLD)
+	public static class MessageHandled extends Event {
+		@Label("Connection")
+		int connection;
+		@Label("Type")
+		@Description("The type of the first message")
+		String type;
+		@Label("Messages")
+		int messages;
+	}
+	
+	@Name("net.unknownuser.networking.MessageWritten")
+	@Label("Message Written")
+	@Category({ CATEGORY, "Messages" })
+	@Description("A message has been written to a connection, including the time spent waiting for other writers")
+	@Threshold(DEFAULT_THRESHOLD)
+	public static class MessageWritten extends Event {
+		@Label("Connection")
+		int connection;
+		@Label("Type")
+		String type;
+		@Label("Size")
+		@DataAmount
+		int size;
+	}
+	
+	/**
+	 * Gets the size of a message for an event.
+	 * 
+	 * @param message The message.
+	 * 
+	 * @return The length of the serialized content, or {@code -1} if it isn't known.
+	 */
+	static int sizeOf(Message<?, ?> message) {
+		return message instanceof RawMessage<?> raw ? raw.getContentLength() : -1;
+	}
+	
+	/**
+	 * Gets the name of a message type for an event.
+	 * 
+	 * @param type The type of the message.
+	 * 
+	 * @return The name of the type, qualified by its enum.
+	 */
+	static String typeOf(Enum<?> type) {
+		return type == null ? null : type.getDeclaringClass().getSimpleName() + "." + type.name();
+	}
+}
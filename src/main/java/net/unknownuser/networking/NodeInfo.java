@@ -0,0 +1,42 @@
+package net.unknownuser.networking;
+
+import java.io.*;
+
+/**
+ * Identifies a node of a cluster and where its server can be reached.
+ */
+public class NodeInfo implements Serializable {
+	private static final long serialVersionUID = 6080935420766513877L;
+	
+	public final String nodeId;
+	public final String host;
+	public final int port;
+	
+	public NodeInfo(String nodeId, String host, int port) {
+		super();
+		this.nodeId = nodeId;
+		this.host = host;
+		this.port = port;
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if(obj == this) {
+			return true;
+		}
+		if(obj instanceof NodeInfo node) {
+			return nodeId.equals(node.nodeId);
+		}
+		return false;
+	}
+	
+	@Override
+	public int hashCode() {
+		return nodeId.hashCode();
+	}
+	
+	@Override
+	public String toString() {
+		return "NodeInfo{nodeId=" + nodeId + ", host=" + host + ", port=" + port + "}";
+	}
+}
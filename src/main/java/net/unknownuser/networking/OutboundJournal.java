@@ -0,0 +1,460 @@
+package net.unknownuser.networking;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.security.*;
+import java.util.*;
+import java.util.function.*;
+
+/**
+ * An append-only journal of outbound messages, stored in memory-mapped segment files.<br>
+ * Every appended message gets a sequence number. Appends only copy into the mapped segment, a background thread forces the written segments to disk, so a single fsync covers
+ * all messages appended since the last one (group commit).<br>
+ * Each record is stored as {@code [int length][long sequence][payload]}. A length of {@code 0} marks the end of a segment.
+ */
+public class OutboundJournal implements Closeable {
+	private static final String SUFFIX = ".journal";
+	private static final String EPOCH_FILE = "epoch";
+	private static final int HEADER_SIZE = Integer.BYTES + Long.BYTES;
+	
+	public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+	public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 2;
+	
+	private static class Segment {
+		final Path path;
+		final long firstSequence;
+		final FileChannel channel;
+		final MappedByteBuffer buffer;
+		long lastSequence;
+		
+		Segment(Path path, long firstSequence, int size) throws IOException {
+			this.path = path;
+			this.firstSequence = firstSequence;
+			this.lastSequence = firstSequence - 1;
+			this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+		}
+		
+		void close() throws IOException {
+			channel.close();
+		}
+	}
+	
+	private final Path directory;
+	private final int segmentSize;
+	private final long flushIntervalMillis;
+	
+	private int retainedSegments = 2;
+	private int maxSegments = 16;
+	
+	private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+	private final ArrayList<Segment> dirtySegments = new ArrayList<>();
+	private Segment active;
+	private long nextSequence = 1;
+	private long epoch;
+	
+	private volatile long durableSequence = 0;
+	private volatile boolean closed = false;
+	
+	private final Thread flusher;
+	
+	/**
+	 * Opens the journal in the given directory with the default segment size and flush interval. Existing segments are recovered.
+	 * 
+	 * @param directory The directory of the segment files.
+	 * 
+	 * @throws IOException When the segments could not be opened.
+	 */
+	public OutboundJournal(Path directory) throws IOException {
+		this(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_FLUSH_INTERVAL_MILLIS);
+	}
+	
+	/**
+	 * Opens the journal in the given directory. Existing segments are recovered.
+	 * 
+	 * @param directory           The directory of the segment files.
+	 * @param segmentSize         The size of a single segment file in bytes.
+	 * @param flushIntervalMillis The time the flusher waits to collect appends before forcing them to disk.
+	 * 
+	 * @throws IOException When the segments could not be opened.
+	 */
+	public OutboundJournal(Path directory, int segmentSize, long flushIntervalMillis) throws IOException {
+		super();
+		if(segmentSize <= HEADER_SIZE) {
+			throw new IllegalArgumentException("segment size too small: " + segmentSize);
+		}
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		this.flushIntervalMillis = flushIntervalMillis;
+		
+		Files.createDirectories(directory);
+		recover();
+		
+		flusher = new Thread(this::flushContinuously, "journalFlusher");
+		flusher.setDaemon(true);
+		flusher.start();
+	}
+	
+	/**
+	 * Opens the existing segments and restores the write position from their contents.
+	 */
+	private void recover() throws IOException {
+		ArrayList<Path> files = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+			stream.forEach(files::add);
+		}
+		files.sort(Comparator.comparing(Path::getFileName));
+		
+		for(Path file : files) {
+			String name = file.getFileName().toString();
+			long firstSequence = Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+			Segment segment = new Segment(file, firstSequence, segmentSize);
+			ByteBuffer buffer = segment.buffer;
+			while(buffer.remaining() >= HEADER_SIZE) {
+				int length = buffer.getInt(buffer.position());
+				if(length <= 0 || buffer.remaining() < HEADER_SIZE + length) {
+					break;
+				}
+				segment.lastSequence = buffer.getLong(buffer.position() + Integer.BYTES);
+				buffer.position(buffer.position() + HEADER_SIZE + length);
+			}
+			segments.addLast(segment);
+			nextSequence = Math.max(nextSequence, segment.lastSequence + 1);
+		}
+		
+		if(segments.isEmpty()) {
+			segments.addLast(newSegment(nextSequence));
+		}
+		active = segments.peekLast();
+		durableSequence = nextSequence - 1;
+		recoverEpoch(!files.isEmpty());
+	}
+	
+	/**
+	 * Reads the epoch of the recovered segments, or starts a new one, if the sequence numbers start again.
+	 * 
+	 * @param recovered Whether there have been segments to recover.
+	 */
+	private void recoverEpoch(boolean recovered) throws IOException {
+		Path file = directory.resolve(EPOCH_FILE);
+		if(recovered && Files.exists(file)) {
+			try {
+				epoch = Long.parseLong(Files.readString(file).trim());
+				return;
+			} catch(NumberFormatException exc) {
+				System.err.printf("invalid journal epoch in %s%n", file);
+			}
+		}
+		do {
+			epoch = new SecureRandom().nextLong();
+		} while(epoch == 0);
+		Files.writeString(file, Long.toString(epoch));
+	}
+	
+	private Segment newSegment(long firstSequence) throws IOException {
+		return new Segment(directory.resolve(String.format("%020d%s", firstSequence, SUFFIX)), firstSequence, segmentSize);
+	}
+	
+	/**
+	 * Appends a message to the journal.
+	 * 
+	 * @param message The message to append.
+	 * 
+	 * @return The sequence number of the message.
+	 * 
+	 * @throws IOException When the message could not be serialized or a new segment could not be created.
+	 */
+	public long append(Message<?, ?> message) throws IOException {
+		return append(serialize(message));
+	}
+	
+	/**
+	 * Appends a serialized message to the journal. The payload is only copied into the mapped segment, it is written to disk by the next group commit.
+	 * 
+	 * @param payload The serialized message.
+	 * 
+	 * @return The sequence number of the message.
+	 * 
+	 * @throws IOException When a new segment could not be created.
+	 */
+	public synchronized long append(byte[] payload) throws IOException {
+		if(closed) {
+			throw new IOException("journal is closed");
+		}
+		if(HEADER_SIZE + payload.length > segmentSize) {
+			throw new IllegalArgumentException("message of " + payload.length + " bytes doesn't fit into a segment");
+		}
+		if(active.buffer.remaining() < HEADER_SIZE + payload.length) {
+			roll();
+		}
+		
+		long sequence = nextSequence++;
+		MappedByteBuffer buffer = active.buffer;
+		int start = buffer.position();
+		// write the length last, so a torn record is never recovered
+		buffer.putLong(start + Integer.BYTES, sequence);
+		buffer.position(start + HEADER_SIZE);
+		buffer.put(payload);
+		buffer.putInt(start, payload.length);
+		active.lastSequence = sequence;
+		
+		if(dirtySegments.isEmpty() || dirtySegments.get(dirtySegments.size() - 1) != active) {
+			dirtySegments.add(active);
+		}
+		notifyAll();
+		return sequence;
+	}
+	
+	/**
+	 * Starts a new segment and drops the oldest segments beyond the maximum amount.
+	 */
+	private void roll() throws IOException {
+		active = newSegment(nextSequence);
+		segments.addLast(active);
+		while(segments.size() > maxSegments) {
+			Segment oldest = segments.pollFirst();
+			System.out.printf("[Journal][Warning] dropping segment %s with unacknowledged messages%n", oldest.path.getFileName());
+			delete(oldest);
+		}
+	}
+	
+	/**
+	 * Forces the written segments to disk in intervals, until the journal is closed.
+	 */
+	private void flushContinuously() {
+		try {
+			while(!closed) {
+				synchronized (this) {
+					while(!closed && dirtySegments.isEmpty()) {
+						wait();
+					}
+				}
+				// let more appends join this commit
+				if(flushIntervalMillis > 0) {
+					Thread.sleep(flushIntervalMillis);
+				}
+				flush();
+			}
+		} catch(InterruptedException exc) {
+			// thrown on close
+		}
+	}
+	
+	/**
+	 * Forces all appended messages to disk.
+	 */
+	public void flush() {
+		ArrayList<Segment> toFlush;
+		long sequence;
+		synchronized (this) {
+			if(dirtySegments.isEmpty()) {
+				return;
+			}
+			toFlush = new ArrayList<>(dirtySegments);
+			dirtySegments.clear();
+			sequence = nextSequence - 1;
+		}
+		
+		for(Segment segment : toFlush) {
+			if(segment.channel.isOpen()) {
+				segment.buffer.force();
+			}
+		}
+		
+		synchronized (this) {
+			durableSequence = Math.max(durableSequence, sequence);
+			notifyAll();
+		}
+	}
+	
+	/**
+	 * Waits until the message with the given sequence number has been forced to disk.
+	 * 
+	 * @param sequence The sequence number to wait for.
+	 * 
+	 * @throws InterruptedException When the thread is interrupted while waiting.
+	 */
+	public synchronized void awaitDurable(long sequence) throws InterruptedException {
+		while(!closed && durableSequence < sequence) {
+			wait();
+		}
+	}
+	
+	/**
+	 * Replays all messages after the given sequence number.<br>
+	 * Messages, which are appended while replaying, are not included.
+	 * 
+	 * @param afterSequence The last sequence number, which should not be replayed.
+	 * @param consumer      Called with the sequence number and message of every replayed message, in order.
+	 */
+	public void replay(long afterSequence, BiConsumer<Long, Message<?, ?>> consumer) {
+		ArrayList<ByteBuffer> views = new ArrayList<>();
+		synchronized (this) {
+			for(Segment segment : segments) {
+				if(segment.lastSequence <= afterSequence) {
+					continue;
+				}
+				ByteBuffer view = segment.buffer.duplicate();
+				view.flip();
+				views.add(view);
+			}
+		}
+		
+		for(ByteBuffer view : views) {
+			while(view.remaining() >= HEADER_SIZE) {
+				int length = view.getInt();
+				long sequence = view.getLong();
+				if(sequence <= afterSequence) {
+					view.position(view.position() + length);
+					continue;
+				}
+				byte[] payload = new byte[length];
+				view.get(payload);
+				try {
+					consumer.accept(sequence, deserialize(payload));
+				} catch(IOException | ClassNotFoundException exc) {
+					System.err.printf("journaled message %d could not be read%n", sequence);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Deletes all segments, which only contain acknowledged messages. The newest {@link #setRetainedSegments(int) retained segments} are always kept, so reconnecting clients can
+	 * still resume.
+	 * 
+	 * @param acknowledgedSequence The sequence number, up to which all messages have been acknowledged.
+	 */
+	public synchronized void compact(long acknowledgedSequence) {
+		while(segments.size() > retainedSegments) {
+			Segment oldest = segments.peekFirst();
+			if(oldest == active || oldest.lastSequence > acknowledgedSequence) {
+				return;
+			}
+			segments.pollFirst();
+			delete(oldest);
+		}
+	}
+	
+	private void delete(Segment segment) {
+		dirtySegments.remove(segment);
+		try {
+			segment.close();
+			Files.deleteIfExists(segment.path);
+		} catch(IOException exc) {
+			System.err.printf("could not delete journal segment %s%n", segment.path);
+		}
+	}
+	
+	/**
+	 * Gets the epoch of this journal. A journal, which starts without segments, gets a new epoch, so clients can tell its sequence numbers from the ones of a
+	 * previous journal.
+	 * 
+	 * @return The epoch, never {@code 0}.
+	 */
+	public long getEpoch() {
+		return epoch;
+	}
+	
+	/**
+	 * Gets the sequence number of the last appended message.
+	 * 
+	 * @return The last sequence number, or {@code 0} if the journal is empty.
+	 */
+	public synchronized long getLastSequence() {
+		return nextSequence - 1;
+	}
+	
+	/**
+	 * Gets the sequence number of the oldest message, which is still retained.
+	 * 
+	 * @return The first retained sequence number. If it is greater than the {@link #getLastSequence() last sequence number}, the journal is empty.
+	 */
+	public synchronized long getFirstSequence() {
+		return segments.peekFirst().firstSequence;
+	}
+	
+	/**
+	 * Gets the sequence number up to which all messages have been forced to disk.
+	 * 
+	 * @return The last durable sequence number.
+	 */
+	public long getDurableSequence() {
+		return durableSequence;
+	}
+	
+	/**
+	 * Sets the amount of newest segments, which are never removed by {@link #compact(long) compact}.
+	 * 
+	 * @param retainedSegments The amount of retained segments.
+	 */
+	public synchronized void setRetainedSegments(int retainedSegments) {
+		this.retainedSegments = Math.max(1, retainedSegments);
+	}
+	
+	/**
+	 * Sets the maximum amount of segments. When a new segment would exceed it, the oldest segment is dropped, even if it contains unacknowledged messages.
+	 * 
+	 * @param maxSegments The maximum amount of segments.
+	 */
+	public synchronized void setMaxSegments(int maxSegments) {
+		this.maxSegments = Math.max(1, maxSegments);
+	}
+	
+	/**
+	 * Forces all messages to disk and closes all segments.<br>
+	 * <b>Do not use this instance after this method has been called.<b>
+	 */
+	@Override
+	public void close() throws IOException {
+		flush();
+		synchronized (this) {
+			closed = true;
+			notifyAll();
+			for(Segment segment : segments) {
+				segment.close();
+			}
+		}
+		flusher.interrupt();
+	}
+	
+	/**
+	 * Serializes a message the same way it is written to a connection.
+	 * 
+	 * @param message The message to serialize.
+	 * 
+	 * @return The serialized message.
+	 * 
+	 * @throws IOException When the content of the message can't be serialized.
+	 */
+	public static byte[] serialize(Message<?, ?> message) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(message);
+		}
+		return bytes.toByteArray();
+	}
+	
+	/**
+	 * Reads a message serialized by {@link #serialize(Message) serialize}.
+	 * 
+	 * @param payload The serialized message.
+	 * 
+	 * @return The message.
+	 * 
+	 * @throws IOException            When the payload is not a valid message.
+	 * @throws ClassNotFoundException When the class of the content is unknown.
+	 */
+	public static Message<?, ?> deserialize(byte[] payload) throws IOException, ClassNotFoundException {
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(payload))) {
+			return (Message<?, ?>) in.readObject();
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return "OutboundJournal{directory=" + directory + ", segments=" + segments.size() + ", lastSequence=" + getLastSequence() + ", durableSequence=" + durableSequence + "}";
+	}
+}
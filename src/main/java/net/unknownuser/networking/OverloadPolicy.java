@@ -0,0 +1,202 @@
+package net.unknownuser.networking;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Keeps the latency of received messages bounded, when a {@link Server} gets more messages than it can handle. Without it, the queue of received messages grows
+ * and every message is handled late.
+ * <ul>
+ * <li>Deadlines: a message type may have a deadline, after which a message of it is worth nothing anymore. Messages, which are still queued after their
+ * deadline, are dropped before they are handled.</li>
+ * <li>Shedding: the time messages wait in the queue is watched as in CoDel (RFC 8289), adapted to servers, whose clients don't slow down when messages are
+ * dropped. If even the shortest waiting time of an interval has been above the target, there is a standing queue and the server is overloaded. Then every
+ * message, which has waited more than twice the target, is shed. Otherwise, bursts may wait up to an interval. This keeps the latency bounded at the cost of
+ * throughput.</li>
+ * </ul>
+ * Protected message types are never shed, only dropped after their deadline. Override {@link #isSheddable(Message)} to decide per message instead.
+ */
+public class OverloadPolicy {
+	/**
+	 * Why a received message has been dropped before it has been handled.
+	 */
+	public enum DropReason {
+		/**
+		 * The message was still queued after its deadline.
+		 */
+		EXPIRED,
+		/**
+		 * The message has been shed, because messages have waited too long for a while.
+		 */
+		SHED
+	}
+	
+	public static final long DEFAULT_TARGET_MILLIS = 5;
+	public static final long DEFAULT_INTERVAL_MILLIS = 100;
+	
+	private final ConcurrentHashMap<Enum<?>, Long> deadlines = new ConcurrentHashMap<>();
+	private final Set<Enum<?>> protectedTypes = ConcurrentHashMap.newKeySet();
+	private volatile long defaultDeadlineNanos = 0;
+	
+	private final long targetNanos;
+	private final long intervalNanos;
+	
+	// state of the shedding, only used by the dispatching thread
+	private long intervalEnd = 0;
+	private long minSojourn = 0;
+	private boolean overloaded = false;
+	
+	private final LongAdder expired = new LongAdder();
+	private final LongAdder shed = new LongAdder();
+	
+	/**
+	 * Creates a policy, which sheds with the default target and interval of CoDel.
+	 */
+	public OverloadPolicy() {
+		this(DEFAULT_TARGET_MILLIS, DEFAULT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Creates a policy.
+	 * 
+	 * @param target   The waiting time of a queue, which drains. When overloaded, messages are shed after twice the target. {@code 0} disables shedding, so
+	 *                 only deadlines apply.
+	 * @param interval How long the waiting time must stay above the target, before the server counts as overloaded. Also the longest time, messages may wait
+	 *                 during a burst. About the time, in which the server can catch up with a burst.
+	 * @param unit     The unit of the target and the interval.
+	 */
+	public OverloadPolicy(long target, long interval, TimeUnit unit) {
+		super();
+		if(target < 0 || interval <= 0) {
+			throw new IllegalArgumentException("target can't be negative and interval must be positive");
+		}
+		this.targetNanos = unit.toNanos(target);
+		this.intervalNanos = unit.toNanos(interval);
+	}
+	
+	/**
+	 * Sets the deadline of a message type.
+	 * 
+	 * @param type     The message type.
+	 * @param deadline The time after the arrival of a message, after which it is dropped instead of handled. {@code 0} removes the deadline.
+	 * @param unit     The unit of the deadline.
+	 */
+	public void setDeadline(Enum<?> type, long deadline, TimeUnit unit) {
+		if(deadline <= 0) {
+			deadlines.remove(type);
+		} else {
+			deadlines.put(type, unit.toNanos(deadline));
+		}
+	}
+	
+	/**
+	 * Sets the deadline of all message types, which don't have their own.
+	 * 
+	 * @param deadline The time after the arrival of a message, after which it is dropped instead of handled. {@code 0} removes the deadline.
+	 * @param unit     The unit of the deadline.
+	 */
+	public void setDefaultDeadline(long deadline, TimeUnit unit) {
+		this.defaultDeadlineNanos = Math.max(0, unit.toNanos(deadline));
+	}
+	
+	/**
+	 * Gets the deadline of a message type.
+	 * 
+	 * @param type The message type.
+	 * 
+	 * @return The deadline in nanoseconds after the arrival of a message, {@code 0} if there is none.
+	 */
+	public long getDeadlineNanos(Enum<?> type) {
+		Long deadline = type == null ? null : deadlines.get(type);
+		return deadline == null ? defaultDeadlineNanos : deadline;
+	}
+	
+	/**
+	 * Protects a message type from being shed. Its messages are only dropped after their deadline.
+	 * 
+	 * @param type The message type.
+	 */
+	public void protect(Enum<?> type) {
+		protectedTypes.add(type);
+	}
+	
+	/**
+	 * Removes the protection of a message type.
+	 * 
+	 * @param type The message type.
+	 */
+	public void unprotect(Enum<?> type) {
+		protectedTypes.remove(type);
+	}
+	
+	/**
+	 * Returns whether a message may be shed. By default, all messages may be shed, except the ones of protected types.
+	 * 
+	 * @param message The message at the head of the queue.
+	 * 
+	 * @return {@code true} if the message may be dropped to keep the latency low, {@code false} if it must be handled.
+	 */
+	protected boolean isSheddable(Message<?, ?> message) {
+		return !protectedTypes.contains(message.type);
+	}
+	
+	/**
+	 * Decides whether a message, which has just been taken from the queue, is dropped. Only called by the thread, which dispatches the messages.
+	 * 
+	 * @param message The message.
+	 * @param now     The current {@link System#nanoTime()}.
+	 * @param queued  The amount of messages, which are still in the queue. An empty queue has drained, so the server isn't overloaded.
+	 * 
+	 * @return {@code null} if the message is handled, otherwise the reason why it is dropped.
+	 */
+	synchronized DropReason check(MessageToSend message, long now, int queued) {
+		if(message.deadlineNanos != 0 && now - message.deadlineNanos > 0) {
+			expired.increment();
+			// an expired message says nothing about the waiting time of the others
+			return DropReason.EXPIRED;
+		}
+		if(targetNanos == 0) {
+			return null;
+		}
+		
+		long sojourn = now - message.arrivalNanos;
+		if(now - intervalEnd >= 0) {
+			// the shortest waiting time tells whether the queue drains or stands
+			overloaded = minSojourn > targetNanos;
+			minSojourn = sojourn;
+			intervalEnd = now + intervalNanos;
+		} else if(sojourn < minSojourn || queued == 0) {
+			minSojourn = queued == 0 ? 0 : sojourn;
+		}
+		if(sojourn > (overloaded ? 2 * targetNanos : intervalNanos) && isSheddable(message.message)) {
+			shed.increment();
+			return DropReason.SHED;
+		}
+		return null;
+	}
+	
+	/**
+	 * Gets the amount of messages, which have been dropped after their deadline.
+	 * 
+	 * @return The amount of expired messages.
+	 */
+	public long getExpired() {
+		return expired.sum();
+	}
+	
+	/**
+	 * Gets the amount of messages, which have been shed to keep the latency low.
+	 * 
+	 * @return The amount of shed messages.
+	 */
+	public long getShed() {
+		return shed.sum();
+	}
+	
+	@Override
+	public String toString() {
+		return "OverloadPolicy{targetNanos=" + targetNanos + ", intervalNanos=" + intervalNanos + ", deadlines=" + deadlines.size() + ", expired=" + getExpired()
+				+ ", shed=" + getShed() + "}";
+	}
+}
@@ -0,0 +1,25 @@
+package net.unknownuser.networking;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Sent between the nodes of a cluster, when they link and whenever a node learns about new members.
+ */
+public class PeerHello implements Serializable {
+	private static final long serialVersionUID = -2716307961935048215L;
+	
+	public final NodeInfo node;
+	public final ArrayList<NodeInfo> members;
+	/**
+	 * Proves, that the node knows the secret of the cluster, without sending the secret itself.
+	 */
+	public final byte[] proof;
+	
+	public PeerHello(NodeInfo node, ArrayList<NodeInfo> members, byte[] proof) {
+		super();
+		this.node = node;
+		this.members = members;
+		this.proof = proof;
+	}
+}
@@ -0,0 +1,122 @@
+package net.unknownuser.networking;
+
+import java.io.*;
+
+/**
+ * A message, whose content is kept as the bytes it has been serialized to, and only deserialized when it is accessed via {@link #getContent()}.<br>
+ * Sending it copies the bytes instead of serializing the content again, so a server, which only looks at the type and the sender before forwarding a message,
+ * never deserializes the content at all. The {@link #content} field is always {@code null}.
+ * <p>
+ * Clients send messages like this with {@link Client#setRawContent(boolean)}. Servers keep them like this with {@link Server#setLazyContent(boolean)}, otherwise
+ * they are deserialized when received.
+ * 
+ * @param <T> The type of message.
+ */
+public class RawMessage<T extends Enum<T>> extends Message<T, Serializable> {
+	private static final long serialVersionUID = 4188235000214958231L;
+	
+	private final byte[] bytes;
+	private transient volatile boolean decoded = false;
+	private transient Serializable decodedContent = null;
+	
+	/**
+	 * Creates a message from an already serialized content.
+	 * 
+	 * @param type  The type of the message.
+	 * @param bytes The serialized content, or {@code null} if the content is {@code null}.
+	 */
+	public RawMessage(T type, byte[] bytes) {
+		super(type, null);
+		this.bytes = bytes;
+	}
+	
+	/**
+	 * Serializes the content of a message.
+	 * 
+	 * @param <T>     The type of message.
+	 * @param message The message.
+	 * 
+	 * @return The message with a serialized content, or the message itself, if it already is one.
+	 * 
+	 * @throws IOException When the content could not be serialized.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T extends Enum<T>> RawMessage<T> of(Message<T, ?> message) throws IOException {
+		if(message instanceof RawMessage<?> raw) {
+			return (RawMessage<T>) raw;
+		}
+		if(message.content == null) {
+			return new RawMessage<>(message.type, null);
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(message.content);
+		}
+		return new RawMessage<>(message.type, bytes.toByteArray());
+	}
+	
+	/**
+	 * Deserializes the content on first access.
+	 * 
+	 * @return The content.
+	 * 
+	 * @throws IllegalStateException When the content could not be deserialized.
+	 */
+	@Override
+	public Serializable getContent() {
+		if(!decoded) {
+			synchronized (this) {
+				if(!decoded) {
+					decodedContent = decode();
+					decoded = true;
+				}
+			}
+		}
+		return decodedContent;
+	}
+	
+	private Serializable decode() {
+		if(bytes == null) {
+			return null;
+		}
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+			return (Serializable) in.readObject();
+		} catch(IOException | ClassNotFoundException exc) {
+			throw new IllegalStateException("content of " + type + " could not be deserialized", exc);
+		}
+	}
+	
+	/**
+	 * Returns whether the content has been deserialized already.
+	 * 
+	 * @return {@code true} if the content has been deserialized, {@code false} otherwise.
+	 */
+	public boolean isDecoded() {
+		return decoded;
+	}
+	
+	/**
+	 * Gets the size of the serialized content.
+	 * 
+	 * @return The size in bytes, {@code 0} if the content is {@code null}.
+	 */
+	public int getContentLength() {
+		return bytes == null ? 0 : bytes.length;
+	}
+	
+	/**
+	 * Creates a regular message with the deserialized content, whose {@link #content} field can be read.
+	 * 
+	 * @return The new message.
+	 * 
+	 * @throws IllegalStateException When the content could not be deserialized.
+	 */
+	public Message<T, Serializable> toMessage() {
+		return new Message<>(type, getContent());
+	}
+	
+	@Override
+	public String toString() {
+		return "RawMessage{type=" + type + ", length=" + getContentLength() + ", decoded=" + decoded + "}";
+	}
+}
@@ -0,0 +1,120 @@
+package net.unknownuser.networking;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * The local copy of a {@link ReplicatedMap} of the server, which a client keeps up to date after {@link Client#subscribe(String) subscribing} to it.<br>
+ * Reading doesn't block and doesn't need a round trip. Updates are applied entry by entry, so reading several entries at once may see some of them before and some
+ * after an update.
+ * 
+ * @param <K> The type of the keys.
+ * @param <V> The type of the values.
+ */
+public class ReplicaMirror<K, V> {
+	protected final String name;
+	private final ConcurrentHashMap<K, V> entries = new ConcurrentHashMap<>();
+	private volatile long version = 0;
+	private volatile boolean synchronous = false;
+	
+	ReplicaMirror(String name) {
+		super();
+		this.name = name;
+	}
+	
+	/**
+	 * Applies an update from the server. Called by the thread, which reads from the server.
+	 * 
+	 * @param update The update.
+	 * 
+	 * @return {@code true} if the update could be applied or is outdated, {@code false} if an earlier update has been missed and all entries are needed again.
+	 */
+	@SuppressWarnings("unchecked")
+	boolean apply(ReplicaUpdate update) {
+		HashMap<K, V> changes = (HashMap<K, V>) update.changes;
+		if(update.snapshot) {
+			// no reader sees the mirror empty in between
+			entries.keySet().retainAll(changes.keySet());
+			entries.putAll(changes);
+			version = update.version;
+			synchronous = true;
+			return true;
+		}
+		if(!synchronous || update.version <= version) {
+			// waiting for all entries, or already contained in them
+			return true;
+		}
+		if(update.previousVersion != version) {
+			synchronous = false;
+			return false;
+		}
+		changes.forEach((key, value) -> {
+			if(value == null) {
+				entries.remove(key);
+			} else {
+				entries.put(key, value);
+			}
+		});
+		version = update.version;
+		return true;
+	}
+	
+	/**
+	 * Marks the mirror as outdated, until all entries have been received again.
+	 */
+	void desynchronize() {
+		synchronous = false;
+	}
+	
+	/**
+	 * Gets the value of an entry.
+	 * 
+	 * @param key The key.
+	 * 
+	 * @return The value, or {@code null} if there is none.
+	 */
+	public V get(K key) {
+		return entries.get(key);
+	}
+	
+	/**
+	 * Gets a read-only view of the entries, which reflects later updates.
+	 * 
+	 * @return The view.
+	 */
+	public Map<K, V> view() {
+		return Collections.unmodifiableMap(entries);
+	}
+	
+	public int size() {
+		return entries.size();
+	}
+	
+	/**
+	 * Gets the version of the map, which the mirror has.
+	 * 
+	 * @return The version, {@code 0} before the first entries have been received.
+	 */
+	public long getVersion() {
+		return version;
+	}
+	
+	/**
+	 * Returns whether the mirror is up to date. A mirror is outdated until the first entries have been received, while the client is disconnected and after an
+	 * update has been missed, until all entries have been received again. Outdated mirrors keep their last entries.
+	 * 
+	 * @return {@code true} if the mirror receives all updates, {@code false} otherwise.
+	 */
+	public boolean isSynchronous() {
+		return synchronous;
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	@Override
+	public String toString() {
+		return "ReplicaMirror{name=" + name + ", size=" + entries.size() + ", version=" + version + ", synchronous=" + synchronous + "}";
+	}
+}
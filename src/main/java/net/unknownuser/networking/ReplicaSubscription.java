@@ -0,0 +1,22 @@
+package net.unknownuser.networking;
+
+import java.io.*;
+
+/**
+ * Subscribes a client to a {@link ReplicatedMap} of the server, or cancels the subscription.
+ */
+public class ReplicaSubscription implements Serializable {
+	private static final long serialVersionUID = 2650473105417346671L;
+	
+	public final String name;
+	/**
+	 * {@code true} to subscribe, which also requests a new snapshot, {@code false} to cancel the subscription.
+	 */
+	public final boolean subscribe;
+	
+	public ReplicaSubscription(String name, boolean subscribe) {
+		super();
+		this.name = name;
+		this.subscribe = subscribe;
+	}
+}
@@ -0,0 +1,35 @@
+package net.unknownuser.networking;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * The changes of a {@link ReplicatedMap} between two versions, or all of its entries.
+ */
+public class ReplicaUpdate implements Serializable {
+	private static final long serialVersionUID = -4217736520138469508L;
+	
+	public final String name;
+	/**
+	 * The version, which the changes are based on. A mirror with another version has missed an update.
+	 */
+	public final long previousVersion;
+	public final long version;
+	/**
+	 * Whether the changes are all entries of the map instead of only the changed ones.
+	 */
+	public final boolean snapshot;
+	/**
+	 * The changed entries, where a value of {@code null} means the entry has been removed.
+	 */
+	public final HashMap<?, ?> changes;
+	
+	public ReplicaUpdate(String name, long previousVersion, long version, boolean snapshot, HashMap<?, ?> changes) {
+		super();
+		this.name = name;
+		this.previousVersion = previousVersion;
+		this.version = version;
+		this.snapshot = snapshot;
+		this.changes = changes;
+	}
+}
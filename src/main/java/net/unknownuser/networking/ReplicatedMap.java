@@ -0,0 +1,234 @@
+package net.unknownuser.networking;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * A map on the server, which is mirrored to the subscribed clients instead of being broadcast as a whole whenever it changes.<br>
+ * Changes are collected and sent once per tick as a delta with a version, which is serialized once for all subscribers. A client gets all entries when it
+ * subscribes, and again if it misses a version. Clients read their {@link ReplicaMirror} without a round trip.
+ * <p>
+ * Added to a server via {@link Server#addReplicatedMap(ReplicatedMap)}, clients subscribe via {@link Client#subscribe(String)}. The map is only mirrored to the
+ * clients of its server, not to the other nodes of a cluster.
+ * 
+ * @param <K> The type of the keys.
+ * @param <V> The type of the values.
+ */
+public class ReplicatedMap<K extends Serializable, V extends Serializable> implements Closeable {
+	public static final long DEFAULT_TICK_MILLIS = 50;
+	
+	protected final String name;
+	private final long tickMillis;
+	
+	private final HashMap<K, V> entries = new HashMap<>();
+	/**
+	 * The entries, which have changed since the last tick. A value of {@code null} means the entry has been removed.
+	 */
+	private final HashMap<K, V> changes = new HashMap<>();
+	private final HashSet<Connection> subscribers = new HashSet<>();
+	private long version = 0;
+	/**
+	 * Held while sending, so the versions reach every subscriber in order. Sending happens outside the lock of the map, so a slow subscriber doesn't block changes.
+	 */
+	private final Object sending = new Object();
+	
+	private volatile boolean closed = false;
+	private final Thread ticker;
+	
+	/**
+	 * Creates a map, which sends its changes with the default tick interval.
+	 * 
+	 * @param name The name, which clients subscribe to.
+	 */
+	public ReplicatedMap(String name) {
+		this(name, DEFAULT_TICK_MILLIS);
+	}
+	
+	/**
+	 * Creates a map.
+	 * 
+	 * @param name       The name, which clients subscribe to.
+	 * @param tickMillis The time between the deltas. Longer ticks merge more changes of the same entries into one delta, but clients see them later.
+	 */
+	public ReplicatedMap(String name, long tickMillis) {
+		super();
+		this.name = name;
+		this.tickMillis = Math.max(1, tickMillis);
+		
+		ticker = new Thread(this::tickContinuously, "replicaTicker");
+		ticker.setDaemon(true);
+		ticker.start();
+	}
+	
+	/**
+	 * Sends the changes in intervals, until the map is closed.
+	 */
+	private void tickContinuously() {
+		try {
+			while(!closed) {
+				Thread.sleep(tickMillis);
+				tick();
+			}
+		} catch(InterruptedException exc) {
+			// thrown on close
+		}
+	}
+	
+	/**
+	 * Sets the value of an entry. The subscribers receive it with the next tick.
+	 * 
+	 * @param key   The key.
+	 * @param value The new value.
+	 * 
+	 * @return The previous value, or {@code null} if there was none.
+	 * 
+	 * @throws IllegalArgumentException When the key or the value is {@code null}.
+	 */
+	public synchronized V put(K key, V value) {
+		if(key == null || value == null) {
+			throw new IllegalArgumentException("keys and values of a replicated map can't be null");
+		}
+		V previous = entries.put(key, value);
+		if(!value.equals(previous)) {
+			changes.put(key, value);
+		}
+		return previous;
+	}
+	
+	/**
+	 * Removes an entry. The subscribers remove it with the next tick.
+	 * 
+	 * @param key The key.
+	 * 
+	 * @return The removed value, or {@code null} if there was none.
+	 */
+	public synchronized V remove(K key) {
+		V previous = entries.remove(key);
+		if(previous != null) {
+			changes.put(key, null);
+		}
+		return previous;
+	}
+	
+	/**
+	 * Gets the value of an entry.
+	 * 
+	 * @param key The key.
+	 * 
+	 * @return The value, or {@code null} if there is none.
+	 */
+	public synchronized V get(K key) {
+		return entries.get(key);
+	}
+	
+	/**
+	 * Copies all entries.
+	 * 
+	 * @return The copy.
+	 */
+	public synchronized Map<K, V> snapshot() {
+		return new HashMap<>(entries);
+	}
+	
+	public synchronized int size() {
+		return entries.size();
+	}
+	
+	/**
+	 * Gets the version, which has been sent last. It increases with every tick, in which something has changed.
+	 * 
+	 * @return The version.
+	 */
+	public synchronized long getVersion() {
+		return version;
+	}
+	
+	public synchronized int getSubscriberCount() {
+		return subscribers.size();
+	}
+	
+	/**
+	 * Sends the changes since the last tick to all subscribers. Called by the ticker, but may be called to send changes right away.
+	 */
+	public void tick() {
+		synchronized (sending) {
+			ReplicaUpdate delta;
+			Connection[] recipients;
+			synchronized (this) {
+				if(changes.isEmpty()) {
+					return;
+				}
+				version++;
+				delta = new ReplicaUpdate(name, version - 1, version, false, new HashMap<>(changes));
+				changes.clear();
+				if(subscribers.isEmpty()) {
+					return;
+				}
+				recipients = subscribers.toArray(new Connection[0]);
+			}
+			
+			Message<?, ?> update;
+			try {
+				// serialized once instead of once for every subscriber
+				update = RawMessage.of(new Message<>(ControlType.REPLICA, delta));
+			} catch(IOException exc) {
+				System.err.printf("update of replicated map %s could not be serialized%n", name);
+				exc.printStackTrace();
+				// the subscribers would miss the version anyway
+				update = snapshotMessage();
+			}
+			for(Connection conn : recipients) {
+				conn.sendMessage(update);
+			}
+		}
+	}
+	
+	private synchronized Message<?, ?> snapshotMessage() {
+		return new Message<>(ControlType.REPLICA, new ReplicaUpdate(name, 0, version, true, new HashMap<>(entries)));
+	}
+	
+	/**
+	 * Adds a subscriber and sends it all entries. Also used to send all entries again, if the subscriber has missed an update.
+	 * 
+	 * @param conn The connection of the subscriber.
+	 */
+	void subscribe(Connection conn) {
+		synchronized (sending) {
+			Message<?, ?> snapshot;
+			synchronized (this) {
+				subscribers.add(conn);
+				// may contain changes of the next delta, applying them twice doesn't change anything
+				snapshot = snapshotMessage();
+			}
+			conn.sendMessage(snapshot);
+		}
+	}
+	
+	/**
+	 * Removes a subscriber.
+	 * 
+	 * @param conn The connection of the subscriber.
+	 */
+	synchronized void unsubscribe(Connection conn) {
+		subscribers.remove(conn);
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * Stops sending changes.<br>
+	 * <b>Do not use this instance after this method has been called.<b>
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		ticker.interrupt();
+	}
+	
+	@Override
+	public synchronized String toString() {
+		return "ReplicatedMap{name=" + name + ", size=" + entries.size() + ", version=" + version + ", subscribers=" + subscribers.size() + "}";
+	}
+}
@@ -0,0 +1,19 @@
+package net.unknownuser.networking;
+
+import java.io.*;
+
+/**
+ * A message, which has been sent with {@link Client#request(Message)} and expects an answer. The server answers with a {@link ResponseMessage} of the same id.
+ */
+public class RequestMessage implements Serializable {
+	private static final long serialVersionUID = -6183702114566361260L;
+	
+	public final long id;
+	public final Message<?, ?> message;
+	
+	public RequestMessage(long id, Message<?, ?> message) {
+		super();
+		this.id = id;
+		this.message = message;
+	}
+}
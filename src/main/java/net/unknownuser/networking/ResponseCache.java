@@ -0,0 +1,200 @@
+package net.unknownuser.networking;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+/**
+ * Keeps the answers of the server to requests of a {@link Client}, so repeated requests don't need a round trip.<br>
+ * Requests are equal, if their type and content are equal, so the content has to implement {@code equals} and {@code hashCode}. Answers expire after a fixed time
+ * and the least recently used ones are dropped, once the cache is full. The server drops answers, which have changed, with
+ * {@link Server#invalidateResponses(Message)}.
+ * <p>
+ * Requests, which are equal to one, which is still waiting for its answer, wait for that answer instead of being sent again.
+ */
+public class ResponseCache {
+	/**
+	 * The type and content of a request.
+	 */
+	private static final class Key {
+		final Enum<?> type;
+		final Object content;
+		
+		Key(Message<?, ?> request) {
+			this.type = request.type;
+			this.content = request.content;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof Key other && type == other.type && Objects.equals(content, other.content);
+		}
+		
+		@Override
+		public int hashCode() {
+			return 31 * type.hashCode() + Objects.hashCode(content);
+		}
+	}
+	
+	private static final class Entry {
+		final Message<?, ?> response;
+		final long expiresAt;
+		
+		Entry(Message<?, ?> response, long expiresAt) {
+			this.response = response;
+			this.expiresAt = expiresAt;
+		}
+	}
+	
+	private final int maxEntries;
+	private final long ttlNanos;
+	private final LinkedHashMap<Key, Entry> entries;
+	private final HashMap<Key, CompletableFuture<Message<?, ?>>> inFlight = new HashMap<>();
+	/**
+	 * Increased by every invalidation, so answers to requests, which have been sent before it, aren't cached.
+	 */
+	private long generation = 0;
+	
+	private long hits = 0;
+	private long misses = 0;
+	private long coalesced = 0;
+	
+	/**
+	 * Creates an empty cache.
+	 * 
+	 * @param maxEntries The maximum amount of answers to keep.
+	 * @param ttlMillis  The time after which an answer expires, in milliseconds.
+	 */
+	public ResponseCache(int maxEntries, long ttlMillis) {
+		super();
+		if(maxEntries <= 0) {
+			throw new IllegalArgumentException("the cache needs room for at least one answer");
+		}
+		this.maxEntries = maxEntries;
+		this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+		// ordered by access, so the eldest entry is the least recently used one
+		this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+				return size() > ResponseCache.this.maxEntries;
+			}
+		};
+	}
+	
+	/**
+	 * Gets the answer to a request from the cache, from an equal request, which is waiting for its answer, or from the server.
+	 * 
+	 * @param request The request.
+	 * @param sender  Sends the request to the server, if neither an answer nor an equal request is found.
+	 * 
+	 * @return The answer.
+	 */
+	public CompletableFuture<Message<?, ?>> get(Message<?, ?> request, Function<Message<?, ?>, CompletableFuture<Message<?, ?>>> sender) {
+		Key key = new Key(request);
+		CompletableFuture<Message<?, ?>> pending;
+		long sentIn;
+		synchronized (this) {
+			Entry entry = entries.get(key);
+			if(entry != null) {
+				if(System.nanoTime() - entry.expiresAt < 0) {
+					hits++;
+					return CompletableFuture.completedFuture(entry.response);
+				}
+				entries.remove(key);
+			}
+			pending = inFlight.get(key);
+			if(pending != null) {
+				coalesced++;
+				return pending;
+			}
+			misses++;
+			pending = new CompletableFuture<>();
+			inFlight.put(key, pending);
+			sentIn = generation;
+		}
+		
+		CompletableFuture<Message<?, ?>> answer = pending;
+		// sent outside the lock, a response may already arrive during sending
+		sender.apply(request).whenComplete((response, exc) -> {
+			synchronized (this) {
+				inFlight.remove(key, answer);
+				if(exc == null && sentIn == generation) {
+					entries.put(key, new Entry(response, System.nanoTime() + ttlNanos));
+				}
+			}
+			if(exc == null) {
+				answer.complete(response);
+			} else {
+				answer.completeExceptionally(exc);
+			}
+		});
+		return answer;
+	}
+	
+	/**
+	 * Drops the answer to a request. Equal requests, which are waiting for their answer, still get it, but it isn't cached.
+	 * 
+	 * @param request The request.
+	 * 
+	 * @return {@code true} if an answer has been dropped, {@code false} otherwise.
+	 */
+	public synchronized boolean invalidate(Message<?, ?> request) {
+		Key key = new Key(request);
+		generation++;
+		// new requests must not wait for an answer, which may be outdated
+		inFlight.remove(key);
+		return entries.remove(key) != null;
+	}
+	
+	/**
+	 * Drops all answers.
+	 */
+	public synchronized void invalidateAll() {
+		generation++;
+		inFlight.clear();
+		entries.clear();
+	}
+	
+	/**
+	 * Gets the amount of cached answers, including expired ones, which haven't been requested since.
+	 * 
+	 * @return The amount of answers.
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+	
+	/**
+	 * Gets the amount of requests, which have been answered by the cache.
+	 * 
+	 * @return The amount of hits.
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+	
+	/**
+	 * Gets the amount of requests, which have been sent to the server.
+	 * 
+	 * @return The amount of misses.
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+	
+	/**
+	 * Gets the amount of requests, which have waited for the answer to an equal request.
+	 * 
+	 * @return The amount of coalesced requests.
+	 */
+	public synchronized long getCoalesced() {
+		return coalesced;
+	}
+	
+	@Override
+	public synchronized String toString() {
+		return "ResponseCache{entries=" + entries.size() + ", maxEntries=" + maxEntries + ", hits=" + hits + ", misses=" + misses + ", coalesced=" + coalesced + "}";
+	}
+}
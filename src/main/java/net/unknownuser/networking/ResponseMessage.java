@@ -0,0 +1,31 @@
+package net.unknownuser.networking;
+
+import java.io.*;
+
+/**
+ * The answer of the server to a {@link RequestMessage}.
+ */
+public class ResponseMessage implements Serializable {
+	private static final long serialVersionUID = 2871549092648153305L;
+	
+	public final long id;
+	/**
+	 * The answer, or {@code null} if the server had none.
+	 */
+	public final Message<?, ?> message;
+	/**
+	 * The reason, why the server couldn't answer, or {@code null} if it has answered.
+	 */
+	public final String error;
+	
+	public ResponseMessage(long id, Message<?, ?> message) {
+		this(id, message, null);
+	}
+	
+	public ResponseMessage(long id, Message<?, ?> message, String error) {
+		super();
+		this.id = id;
+		this.message = message;
+		this.error = error;
+	}
+}
@@ -0,0 +1,25 @@
+package net.unknownuser.networking;
+
+import java.io.*;
+
+/**
+ * A message, which has been written to an {@link OutboundJournal} and carries its sequence number.<br>
+ * The sequence numbers start again with a new journal, so they are only comparable within the same {@link OutboundJournal#getEpoch() epoch}.
+ */
+public class SequencedMessage implements Serializable {
+	private static final long serialVersionUID = 4203416733465419721L;
+	
+	public final long epoch;
+	public final long sequence;
+	/**
+	 * The journaled message, {@code null} if this only names a position in the journal.
+	 */
+	public final Message<?, ?> message;
+	
+	public SequencedMessage(long epoch, long sequence, Message<?, ?> message) {
+		super();
+		this.epoch = epoch;
+		this.sequence = sequence;
+		this.message = message;
+	}
+}
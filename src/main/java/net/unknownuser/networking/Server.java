@@ -2,22 +2,75 @@ package net.unknownuser.networking;
 
 import java.io.*;
 import java.net.*;
+import java.security.*;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.function.*;
+
+import net.unknownuser.networking.transport.*;
 
 public abstract class Server {
 	private int port;
-	protected ServerSocket socket;
+	protected final AcceptorFactory acceptorFactory;
+	protected Acceptor acceptor;
+	/**
+	 * Acceptors on further ports, e.g. for browsers via {@link WebSocketAcceptor}. Opened and closed together with the main acceptor.
+	 */
+	protected final LinkedHashMap<Integer, AcceptorFactory> additionalAcceptorFactories = new LinkedHashMap<>();
+	protected final ArrayList<Acceptor> additionalAcceptors = new ArrayList<>();
 	
+	/**
+	 * Added to by the threads of the connections, every access has to be synchronized on the list.
+	 */
 	protected final ArrayList<Connection> connectedClients = new ArrayList<>();
-	protected final LinkedBlockingQueue<MessageToSend> messagesToSend = new LinkedBlockingQueue<>();
+	protected BlockingQueue<MessageToSend> messagesToSend = new LinkedBlockingQueue<>();
 	
 	protected Thread messageListener = null;
 	protected Thread connectionAccepter = null;
 	
+	protected AdmissionControl admissionControl = null;
+	protected BatchPolicy batchPolicy = null;
+	protected volatile OverloadPolicy overloadPolicy = null;
+	protected LanePolicy lanePolicy = null;
+	protected OutboundJournal journal = null;
+	protected SessionRegistry sessions = null;
+	/**
+	 * The amount of message ids, which are remembered per client to drop duplicates. {@code 0} disables dropping duplicates.
+	 */
+	protected volatile int deduplicationWindow = 0;
+	/**
+	 * Whether the content of a {@link RawMessage} is only deserialized, when a handler accesses it.
+	 */
+	protected volatile boolean lazyContent = false;
+	protected volatile TrafficRecorder trafficRecorder = null;
+	protected ClusterBridge cluster = null;
+	protected final ConcurrentHashMap<String, Set<Connection>> groups = new ConcurrentHashMap<>();
+	protected final ConcurrentHashMap<String, ReplicatedMap<?, ?>> replicas = new ConcurrentHashMap<>();
+	protected final TimingWheel timingWheel = TimingWheel.getDefault();
+	/**
+	 * Sends the scheduled messages, so a slow client doesn't hold up the thread of the timing wheel, which is shared by all servers and clients.
+	 */
+	protected final Executor scheduledSender = TimingWheel.newDispatcher("scheduledSender");
+	
+	protected DatagramEndpoint datagrams = null;
+	protected final ConcurrentHashMap<Long, Connection> datagramConnections = new ConcurrentHashMap<>();
+	private Callable<DatagramEndpoint> datagramOpener = null;
+	private final SecureRandom datagramTokens = new SecureRandom();
+	
 	protected Server(int port) {
+		this(port, SocketAcceptor::new);
+	}
+	
+	/**
+	 * Creates a server, which accepts connections via the given acceptor instead of TCP.
+	 * 
+	 * @param port            The port of the server.
+	 * @param acceptorFactory Creates the acceptor, whenever the server is started.
+	 */
+	protected Server(int port, AcceptorFactory acceptorFactory) {
 		super();
 		this.port = port;
+		this.acceptorFactory = acceptorFactory;
 	}
 	
 	/**
@@ -27,6 +80,52 @@ public abstract class Server {
 	 * @param sender  The connection of the sender.
 	 */
 	public abstract void onMessageReceived(Message<?, ?> message, Connection sender);
+	/**
+	 * When a {@link #setBatchPolicy(BatchPolicy) batch policy} is set, this method is called with all messages of a batch, which have been received from the same client.<br>
+	 * By default, {@link #onMessageReceived(Message, Connection) onMessageReceived} is called for each message in order.
+	 * 
+	 * @param messages The received messages, in the order they have been received.
+	 * @param sender   The connection of the sender.
+	 */
+	public void onMessagesReceived(List<Message<?, ?>> messages, Connection sender) {
+		for(Message<?, ?> message : messages) {
+			onMessageReceived(message, sender);
+		}
+	}
+	/**
+	 * When the transport hands out {@link MessageView views}, this method is called with every received frame, which has a {@link FrameSchema}.<br>
+	 * It is called directly by the thread, which reads from the connection, and the view is reused for the next frame. So the frame has to be handled quickly and
+	 * the view must not be kept. By default, the view is turned into a message and handled like any other message.
+	 * 
+	 * @param view   The view of the received frame. Only valid during this call.
+	 * @param sender The connection of the sender.
+	 */
+	public void onFrameReceived(MessageView view, Connection sender) {
+		addMessageToQueue(new MessageToSend(view.toMessage(), sender));
+	}
+	/**
+	 * Whenever a client sends a {@link Client#request(Message) request}, this method is called on its own thread and the returned message is sent back as the
+	 * answer.<br>
+	 * By default, a warning is printed and the request is answered with {@code null}.
+	 * 
+	 * @param request The request.
+	 * @param sender  The connection of the sender.
+	 * 
+	 * @return The answer, may be {@code null}.
+	 */
+	public Message<?, ?> onRequestReceived(Message<?, ?> request, Connection sender) {
+		System.out.printf("[Server][Warning] %s sent a request, but requests aren't answered%n", sender.toStringWithoutServer());
+		return null;
+	}
+	/**
+	 * When an {@link #setOverloadPolicy(OverloadPolicy) overload policy} is set, this method is called for every message, which it drops instead of handling it.<br>
+	 * It is called directly by the thread, which dispatches the messages, so it has to return quickly. By default, nothing happens.
+	 * 
+	 * @param message The dropped message.
+	 * @param sender  The connection of the sender.
+	 * @param reason  Why the message has been dropped.
+	 */
+	public void onMessageDropped(Message<?, ?> message, Connection sender, OverloadPolicy.DropReason reason) {}
 	/**
 	 * This method is called whenever a client connects to this server. The connect, the connection has to pass the {@link #acceptConnection(Connection) acceptConnection} check.
 	 * 
@@ -40,6 +139,22 @@ public abstract class Server {
 	 */
 	public abstract void onClientDisconnected(Connection client);
 	
+	/**
+	 * This method is called when a client has started a new session. Afterwards, the session is available via {@link Connection#getSession()}.
+	 * 
+	 * @param client  The connection of the client.
+	 * @param session The new session.
+	 */
+	public void onSessionStarted(Connection client, Session session) {}
+	/**
+	 * This method is called when a reconnected client has been re-attached to its previous session. Messages, which have been sent to the session in the meantime, have already been
+	 * delivered.
+	 * 
+	 * @param client  The new connection of the client.
+	 * @param session The resumed session.
+	 */
+	public void onSessionResumed(Connection client, Session session) {}
+	
 	/**
 	 * Whether the connection should be accepted or not.<br>
 	 * Return {@code true} means the server will accept the connection, {@code false} means it will reject it.
@@ -52,6 +167,18 @@ public abstract class Server {
 		return true;
 	}
 	
+	/**
+	 * Whether a connection from the given address should be accepted.<br>
+	 * Unlike {@link #acceptConnection(Connection) acceptConnection}, this is checked directly after the transport has been accepted, before any streams are opened or threads are started.
+	 * 
+	 * @param address The remote address of the inbound connection.
+	 * 
+	 * @return {@code true} if the connection should be accepted, {@code false} if it should be rejected.
+	 */
+	protected boolean acceptAddress(InetSocketAddress address) {
+		return true;
+	}
+	
 	/**
 	 * Starts the server.<br>
 	 * Calling this method on a running server just returns {@code true}.
@@ -68,9 +195,26 @@ public abstract class Server {
 		synchronized (this) {
 			System.out.print("starting...\r");
 			
-			this.socket = new ServerSocket(port);
-			connectionAccepter = new Thread(this::waitForNewConnections, "waitForNewConnections");
+			this.acceptor = acceptorFactory.open(port);
+			try {
+				for(Map.Entry<Integer, AcceptorFactory> additional : additionalAcceptorFactories.entrySet()) {
+					additionalAcceptors.add(additional.getValue().open(additional.getKey()));
+				}
+				if(datagramOpener != null) {
+					datagrams = datagramOpener.call();
+				}
+			} catch(Exception exc) {
+				closeAdditionalAcceptors();
+				acceptor.close();
+				throw exc instanceof IOException ioExc ? ioExc : new IOException(exc);
+			}
+			connectionAccepter = new Thread(() -> waitForNewConnections(acceptor), "waitForNewConnections");
 			connectionAccepter.start();
+			for(Acceptor additional : additionalAcceptors) {
+				Thread accepter = new Thread(() -> waitForNewConnections(additional), "waitForNewConnections");
+				accepter.setDaemon(true);
+				accepter.start();
+			}
 			messageListener = new Thread(this::waitForMessages, "waitForMessages");
 			messageListener.start();
 			
@@ -101,12 +245,29 @@ public abstract class Server {
 				
 				// clear message queue
 				messagesToSend.clear();
-				// close all connections and socket
+				if(cluster != null) {
+					cluster.disconnectPeers();
+				}
+				// journaled messages survive the shutdown
+				if(journal != null) {
+					journal.flush();
+				}
+				// close all connections and acceptor
 				closeAllConnections();
-				while(!connectedClients.isEmpty()) {
+				while(getConnectedCount() > 0) {
 					// wait until all connections are closed
 				}
-				socket.close();
+				acceptor.close();
+				closeAdditionalAcceptors();
+				if(datagrams != null) {
+					datagrams.close();
+					datagrams = null;
+				}
+				datagramConnections.clear();
+				if(sessions != null) {
+					// sessions are kept for a restart, only their expiry stops
+					sessions.stopReaper();
+				}
 				System.out.printf("server at port %d shut down%n", getPort());
 			} catch(IOException exc) {
 				System.err.println("couldn't shutdown server");
@@ -116,11 +277,28 @@ public abstract class Server {
 		return true;
 	}
 	
+	/**
+	 * Closes the additional acceptors, which stops their threads.
+	 */
+	private void closeAdditionalAcceptors() {
+		for(Acceptor additional : additionalAcceptors) {
+			try {
+				additional.close();
+			} catch(IOException exc) {
+				System.out.printf("[Server][Warning] acceptor at port %d could not be closed%n", additional.getPort());
+			}
+		}
+		additionalAcceptors.clear();
+	}
+	
 	/**
 	 * Closes the connection to all connected clients.
 	 */
 	private void closeAllConnections() {
-		connectedClients.forEach(Connection::disconnect);
+		// removing instead of only disconnecting, otherwise shutdown waits forever for the list to empty
+		for(Connection conn : clients()) {
+			removeConnection(conn);
+		}
 	}
 	
 	/**
@@ -131,7 +309,66 @@ public abstract class Server {
 	 * @return {@code true} if the message could be added to the queue, {@code false} otherwise.
 	 */
 	public boolean addMessageToQueue(MessageToSend message) {
-		return messagesToSend.offer(message);
+		Message<?, ?> received = received(message.message, message.sender);
+		if(received == null) {
+			return false;
+		}
+		MessageToSend queued = received == message.message ? message : new MessageToSend(received, message.sender);
+		queued.arrivalNanos = System.nanoTime();
+		OverloadPolicy overload = overloadPolicy;
+		if(overload != null) {
+			long deadline = overload.getDeadlineNanos(received.type);
+			if(deadline > 0) {
+				queued.deadlineNanos = queued.arrivalNanos + deadline;
+			}
+		}
+		NetworkEvents.MessageEnqueued event = new NetworkEvents.MessageEnqueued();
+		event.begin();
+		boolean accepted = messagesToSend.offer(queued);
+		if(event.shouldCommit()) {
+			event.connection = connectionId(queued.sender);
+			event.type = NetworkEvents.typeOf(received.type);
+			event.queued = messagesToSend.size();
+			event.accepted = accepted;
+			event.commit();
+		}
+		return accepted;
+	}
+	
+	/**
+	 * Deserializes the content of a {@link RawMessage}, unless the content is deserialized lazily.
+	 * 
+	 * @param message The received message.
+	 * @param sender  The connection of the sender.
+	 * 
+	 * @return The message to handle, or {@code null} if the content could not be deserialized.
+	 */
+	private Message<?, ?> received(Message<?, ?> message, Connection sender) {
+		if(lazyContent || !(message instanceof RawMessage<?> raw)) {
+			return message;
+		}
+		NetworkEvents.MessageDecoded event = new NetworkEvents.MessageDecoded();
+		event.begin();
+		try {
+			return raw.toMessage();
+		} catch(IllegalStateException exc) {
+			System.err.println("received object could not be mapped to a class");
+			return null;
+		} finally {
+			if(event.shouldCommit()) {
+				event.connection = connectionId(sender);
+				event.type = NetworkEvents.typeOf(raw.type);
+				event.size = raw.getContentLength();
+				event.commit();
+			}
+		}
+	}
+	
+	/**
+	 * Gets the id of a connection for an event. Messages of other nodes of a cluster may be queued without a connection.
+	 */
+	private static int connectionId(Connection conn) {
+		return conn == null ? 0 : conn.trafficId;
 	}
 	
 	/**
@@ -141,8 +378,21 @@ public abstract class Server {
 		try {
 			while(isRunning()) {
 				MessageToSend message = messagesToSend.take();
-				if(message != null) {
-					new Thread(() -> onMessageReceived(message.message, message.sender), "onMessageReceived").start();;
+				BatchPolicy policy = batchPolicy;
+				if(policy != null) {
+					ArrayList<MessageToSend> batch = new ArrayList<>(policy.maxMessages);
+					policy.drain(messagesToSend, message, batch);
+					batch.removeIf(this::isDropped);
+					if(batch.isEmpty()) {
+						continue;
+					}
+					for(MessageToSend dispatched : batch) {
+						dispatched(dispatched);
+					}
+					new Thread(() -> dispatchBatch(batch), "onMessagesReceived").start();
+				} else if(message != null && !isDropped(message)) {
+					dispatched(message);
+					new Thread(() -> handle(message), "onMessageReceived").start();
 				}
 			}
 		} catch(InterruptedException exc) {
@@ -151,85 +401,1140 @@ public abstract class Server {
 	}
 	
 	/**
-	 * Sends a message to all connected clients.<br>
+	 * Asks the overload policy, whether a message, which has been taken from the queue, is dropped instead of handled.
+	 * 
+	 * @param message The message.
+	 * 
+	 * @return {@code true} if the message has been dropped, {@code false} if it is handled.
+	 */
+	private boolean isDropped(MessageToSend message) {
+		OverloadPolicy overload = overloadPolicy;
+		if(overload == null) {
+			return false;
+		}
+		long now = System.nanoTime();
+		int queued = messagesToSend.size();
+		OverloadPolicy.DropReason reason = overload.check(message, now, queued);
+		if(reason == null) {
+			return false;
+		}
+		NetworkEvents.MessageDropped event = new NetworkEvents.MessageDropped();
+		if(event.shouldCommit()) {
+			event.connection = connectionId(message.sender);
+			event.type = NetworkEvents.typeOf(message.message.type);
+			event.reason = reason.name();
+			event.queueTime = now - message.arrivalNanos;
+			event.queued = queued;
+			event.commit();
+		}
+		onMessageDropped(message.message, message.sender, reason);
+		return true;
+	}
+	
+	/**
+	 * Records that a message has been taken from the queue.
+	 * 
+	 * @param message The message.
+	 */
+	private void dispatched(MessageToSend message) {
+		NetworkEvents.MessageDispatched event = new NetworkEvents.MessageDispatched();
+		if(event.shouldCommit()) {
+			event.connection = connectionId(message.sender);
+			event.type = NetworkEvents.typeOf(message.message.type);
+			event.queueTime = System.nanoTime() - message.arrivalNanos;
+			event.queued = messagesToSend.size();
+			event.commit();
+		}
+	}
+	
+	/**
+	 * Calls {@link #onMessageReceived(Message, Connection) onMessageReceived} for a single message.
+	 * 
+	 * @param message The message.
+	 */
+	private void handle(MessageToSend message) {
+		NetworkEvents.MessageHandled event = new NetworkEvents.MessageHandled();
+		event.begin();
+		onMessageReceived(message.message, message.sender);
+		if(event.shouldCommit()) {
+			event.connection = connectionId(message.sender);
+			event.type = NetworkEvents.typeOf(message.message.type);
+			event.messages = 1;
+			event.commit();
+		}
+	}
+	
+	/**
+	 * Splits a batch by sender and calls {@link #onMessagesReceived(List, Connection) onMessagesReceived} once per sender.
+	 * 
+	 * @param batch The messages of the batch.
+	 */
+	private void dispatchBatch(List<MessageToSend> batch) {
+		// batches are small, a linear search keeps the order of the senders without hashing connections
+		ArrayList<Connection> senders = new ArrayList<>();
+		ArrayList<List<Message<?, ?>>> messages = new ArrayList<>();
+		for(MessageToSend message : batch) {
+			int index = -1;
+			for(int i = 0; i < senders.size(); i++) {
+				if(senders.get(i) == message.sender) {
+					index = i;
+					break;
+				}
+			}
+			if(index < 0) {
+				index = senders.size();
+				senders.add(message.sender);
+				messages.add(new ArrayList<>());
+			}
+			messages.get(index).add(message.message);
+		}
+		
+		for(int i = 0; i < senders.size(); i++) {
+			NetworkEvents.MessageHandled event = new NetworkEvents.MessageHandled();
+			event.begin();
+			onMessagesReceived(messages.get(i), senders.get(i));
+			if(event.shouldCommit()) {
+				event.connection = connectionId(senders.get(i));
+				event.type = NetworkEvents.typeOf(messages.get(i).get(0).type);
+				event.messages = messages.get(i).size();
+				event.commit();
+			}
+		}
+	}
+	
+	/**
+	 * Runs a task after a delay, without a thread of its own. The task runs on the thread of the {@link TimingWheel}, so it has to be short.
+	 * 
+	 * @param task  The task.
+	 * @param delay The delay.
+	 * @param unit  The unit of the delay.
+	 * 
+	 * @return The scheduled task, which can be cancelled.
+	 */
+	public TimingWheel.Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+		return timingWheel.schedule(task, delay, unit);
+	}
+	
+	/**
+	 * Sends a message to a client after a delay.
+	 * 
+	 * @param client  The connection of the client.
+	 * @param message The message to send.
+	 * @param delay   The delay.
+	 * @param unit    The unit of the delay.
+	 * 
+	 * @return The scheduled message, which can be cancelled.
+	 */
+	public TimingWheel.Timeout sendLater(Connection client, Message<?, ?> message, long delay, TimeUnit unit) {
+		return timingWheel.schedule(() -> scheduledSender.execute(() -> client.sendMessage(message)), delay, unit);
+	}
+	
+	/**
+	 * Sends messages to a client periodically, until it is cancelled or the client disconnects.
+	 * 
+	 * @param client       The connection of the client.
+	 * @param message      Creates the message of each run, may return {@code null} to skip a run.
+	 * @param initialDelay The delay of the first message.
+	 * @param period       The time between the messages.
+	 * @param unit         The unit of the delay and the period.
+	 * 
+	 * @return The scheduled messages, which can be cancelled.
+	 */
+	public TimingWheel.Timeout sendAtFixedRate(Connection client, Supplier<? extends Message<?, ?>> message, long initialDelay, long period, TimeUnit unit) {
+		if(period <= 0) {
+			throw new IllegalArgumentException("period must be positive");
+		}
+		return timingWheel.schedule(timeout -> {
+			if(client.getTransport().isClosed()) {
+				timeout.cancel();
+				return;
+			}
+			scheduledSender.execute(() -> {
+				Message<?, ?> next = message.get();
+				if(next != null) {
+					client.sendMessage(next);
+				}
+			});
+		}, unit.toNanos(initialDelay), unit.toNanos(period));
+	}
+	
+	/**
+	 * Sends a message to all connected clients after a delay.
+	 * 
+	 * @param message The message to send.
+	 * @param delay   The delay.
+	 * @param unit    The unit of the delay.
+	 * 
+	 * @return The scheduled message, which can be cancelled.
+	 */
+	public TimingWheel.Timeout broadcastLater(Message<?, ?> message, long delay, TimeUnit unit) {
+		return timingWheel.schedule(() -> scheduledSender.execute(() -> broadcastMessage(new MessageToSend(message, null))), delay, unit);
+	}
+	
+	/**
+	 * Sends messages to all connected clients periodically, until it is cancelled or the server is shut down. A run, which is due while the server isn't running,
+	 * cancels the broadcasts.
+	 * 
+	 * @param message      Creates the message of each run, may return {@code null} to skip a run.
+	 * @param initialDelay The delay of the first message.
+	 * @param period       The time between the messages.
+	 * @param unit         The unit of the delay and the period.
+	 * 
+	 * @return The scheduled messages, which can be cancelled.
+	 */
+	public TimingWheel.Timeout broadcastAtFixedRate(Supplier<? extends Message<?, ?>> message, long initialDelay, long period, TimeUnit unit) {
+		if(period <= 0) {
+			throw new IllegalArgumentException("period must be positive");
+		}
+		return timingWheel.schedule(timeout -> {
+			if(!isRunning()) {
+				timeout.cancel();
+				return;
+			}
+			scheduledSender.execute(() -> {
+				Message<?, ?> next = message.get();
+				if(next != null) {
+					broadcastMessage(new MessageToSend(next, null));
+				}
+			});
+		}, unit.toNanos(initialDelay), unit.toNanos(period));
+	}
+	
+	/**
+	 * Sends a message to all connected clients. Clients, which haven't declared {@link Client#setInterests(InterestSet) interest} in its type, are skipped.<br>
 	 * Calling this method on a shut down server just returns {@code false}.
 	 * 
 	 * @param message The message to send, excluding the sender. (using {@code null} as the sender, sends it to everyone).
 	 * 
 	 * @return {@code true} if the message could be broadcasted, {@code false} otherwise.
 	 */
-	public synchronized boolean broadcastMessage(MessageToSend message) {
-		if(!isRunning()) {
+	public boolean broadcastMessage(MessageToSend message) {
+		if(!deliverBroadcast(message)) {
 			return false;
 		}
-		for(Connection conn : connectedClients) {
-			if(conn.equals(message.sender)) {
-				continue;
-			}
-			
-			conn.sendMessage(message.message);
+		// outside of the monitor, the other nodes may be forwarding to this one at the same time
+		ClusterBridge bridge = cluster;
+		if(bridge != null) {
+			bridge.publish(null, message.message);
 		}
 		return true;
 	}
 	
 	/**
-	 * Waits for a new connection and, if the connection is accepted via {@link #acceptConnection(Connection) acceptConnection}, is added to it's connected clients.
+	 * Sends a message to all clients of this server, but not to the other nodes of the cluster.
+	 * 
+	 * @param message The message to send, excluding the sender.
+	 * 
+	 * @return {@code true} if the message could be broadcasted, {@code false} otherwise.
 	 */
-	private void waitForNewConnections() {
-		while(isRunning()) {
+	synchronized boolean deliverBroadcast(MessageToSend message) {
+		if(!isRunning()) {
+			return false;
+		}
+		Message<?, ?> outbound = message.message;
+		long sequence = 0;
+		if(journal != null) {
 			try {
-				Socket connection = socket.accept();
-				if(connection != null) {
-					Connection conn = new Connection(connection, this);
-					if(acceptConnection(conn)) {
-						connectedClients.add(conn);
-						Thread clientThread = new Thread(conn);
-						clientThread.setDaemon(true);
-						clientThread.start();
-						
-						// put this thread back to waiting
-						// use a new one for handling, in case onClientConnected is a long task
-						new Thread(() -> onClientConnected(conn), "onClientConnected").start();
-					} else {
-						conn.disconnect();
-					}
-				}
+				sequence = journal.append(message.message);
+				outbound = new Message<>(ControlType.SEQUENCED, new SequencedMessage(journal.getEpoch(), sequence, message.message));
 			} catch(IOException exc) {
-				if(!(exc instanceof SocketException && exc.getMessage().equals("Socket closed"))) {
-					// no idea what can cause this
-					System.out.println("[Server][Warning] error during connection accepting");
-					exc.printStackTrace();
+				System.err.println("could not journal message");
+				exc.printStackTrace();
+			}
+		}
+		
+		boolean skipped = false;
+		for(Connection conn : clients()) {
+			if(conn.equals(message.sender) || conn.peer != null) {
+				continue;
+			}
+			// peers of other protocols, e.g. browsers, neither resume nor acknowledge, they get the plain message
+			boolean journaled = sequence != 0 && conn.getTransport().handlesControlMessages();
+			if(journaled && !conn.resumed) {
+				// gets the message with the replay, so it doesn't overtake the missed ones
+				continue;
+			}
+			if(!conn.isInterestedIn(message.message.type)) {
+				skipped = true;
+				continue;
+			}
+			
+			if(!conn.sendMessage(journaled ? outbound : message.message)) {
+				if(journaled) {
+					dropLaggingClient(conn);
 				}
+				continue;
+			}
+			if(journaled) {
+				conn.sentSequence = sequence;
 			}
 		}
+		if(sequence != 0 && skipped) {
+			// skipping clients don't acknowledge the message, so they don't trigger the compaction either
+			compactJournal(journal);
+		}
+		return true;
 	}
 	
 	/**
-	 * Removes the given connection from this server. Calls the {@link Connection#disconnect() disconnect} method of the connection.
+	 * Tells all clients, that the answer to a request has changed, so they drop it from their {@link ResponseCache}.<br>
+	 * Only the clients of this server are told, not the ones of other nodes in the cluster.
 	 * 
-	 * @param conn The connection to remove.
+	 * @param request The request, whose answer has changed, or {@code null} if all answers have changed.
 	 * 
-	 * @return {@code true} if the connection has been closed and removed, {@code false} otherwise.
+	 * @return {@code true} if the clients have been told, {@code false} if the server isn't running.
 	 */
-	protected boolean removeConnection(Connection conn) {
-		if(connectedClients.contains(conn)) {
-			conn.disconnect();
-			connectedClients.remove(conn);
-			new Thread(() -> onClientDisconnected(conn), "onClientDisconnected").start();
-			return true;
-		} else {
-			System.out.printf("[Server][Warning] connection (%s) is not a connected client%n", conn.toStringWithoutServer());
+	public synchronized boolean invalidateResponses(Message<?, ?> request) {
+		if(!isRunning()) {
 			return false;
 		}
+		Message<?, ?> invalidation = new Message<>(ControlType.INVALIDATE, request);
+		for(Connection conn : clients()) {
+			if(conn.peer == null) {
+				conn.sendMessage(invalidation);
+			}
+		}
+		return true;
 	}
 	
 	/**
-	 * Gets the list of currently connected clients.
+	 * Adds a map, which clients can subscribe to via {@link Client#subscribe(String)}.
 	 * 
-	 * @return The connected clients.
+	 * @param map The map.
+	 * 
+	 * @return {@code true} if the map has been added, {@code false} if there already is a map with the same name.
 	 */
-	public List<Connection> getConnectedClients() {
-		return connectedClients;
+	public boolean addReplicatedMap(ReplicatedMap<?, ?> map) {
+		return replicas.putIfAbsent(map.getName(), map) == null;
+	}
+	
+	/**
+	 * Gets a map, which clients can subscribe to.
+	 * 
+	 * @param name The name of the map.
+	 * 
+	 * @return The map, or {@code null} if there is no map with the name.
+	 */
+	public ReplicatedMap<?, ?> getReplicatedMap(String name) {
+		return replicas.get(name);
+	}
+	
+	/**
+	 * Removes a map, so no more clients can subscribe to it. Current subscribers still receive its updates, until the map is closed.
+	 * 
+	 * @param name The name of the map.
+	 * 
+	 * @return {@code true} if the map has been removed, {@code false} if there is no map with the name.
+	 */
+	public boolean removeReplicatedMap(String name) {
+		return replicas.remove(name) != null;
+	}
+	
+	/**
+	 * Adds a client to a group. Groups are created on demand.
+	 * 
+	 * @param group  The name of the group.
+	 * @param client The client to add.
+	 * 
+	 * @return {@code true} if the client has been added, {@code false} if it already is a member.
+	 */
+	public boolean joinGroup(String group, Connection client) {
+		return groups.computeIfAbsent(group, name -> ConcurrentHashMap.newKeySet()).add(client);
+	}
+	
+	/**
+	 * Removes a client from a group. Empty groups are removed.
+	 * 
+	 * @param group  The name of the group.
+	 * @param client The client to remove.
+	 * 
+	 * @return {@code true} if the client has been removed, {@code false} if it is no member.
+	 */
+	public boolean leaveGroup(String group, Connection client) {
+		boolean[] removed = { false };
+		groups.computeIfPresent(group, (name, members) -> {
+			removed[0] = members.remove(client);
+			return members.isEmpty() ? null : members;
+		});
+		return removed[0];
+	}
+	
+	/**
+	 * Gets the clients of this server, which are members of a group.
+	 * 
+	 * @param group The name of the group.
+	 * 
+	 * @return The members, which are connected to this server.
+	 */
+	public Set<Connection> getGroupMembers(String group) {
+		Set<Connection> members = groups.get(group);
+		return members == null ? Set.of() : Collections.unmodifiableSet(members);
+	}
+	
+	/**
+	 * Sends a message to all members of a group, which are interested in its type. In a cluster, the members on the other nodes receive it as well.<br>
+	 * Calling this method on a shut down server just returns {@code false}.
+	 * 
+	 * @param group   The name of the group.
+	 * @param message The message to send, excluding the sender.
+	 * 
+	 * @return {@code true} if the message could be sent, {@code false} otherwise.
+	 */
+	public boolean sendToGroup(String group, MessageToSend message) {
+		if(!isRunning()) {
+			return false;
+		}
+		deliverToGroup(group, message);
+		ClusterBridge bridge = cluster;
+		if(bridge != null) {
+			bridge.publish(group, message.message);
+		}
+		return true;
+	}
+	
+	private void deliverToGroup(String group, MessageToSend message) {
+		Set<Connection> members = groups.get(group);
+		if(members == null) {
+			return;
+		}
+		for(Connection conn : members) {
+			if(!conn.equals(message.sender) && conn.peer == null && conn.isInterestedIn(message.message.type)) {
+				conn.sendMessage(message.message);
+			}
+		}
+	}
+	
+	/**
+	 * Delivers a message, which has been forwarded by another node of the cluster, to the clients of this server.
+	 * 
+	 * @param group   The group of the message, or {@code null} for a broadcast.
+	 * @param message The message.
+	 */
+	void deliverLocally(String group, Message<?, ?> message) {
+		if(group == null) {
+			deliverBroadcast(new MessageToSend(message, null));
+		} else {
+			deliverToGroup(group, new MessageToSend(message, null));
+		}
+	}
+	
+	/**
+	 * Handles a message, which has been sent by the library of a client instead of the application.
+	 * 
+	 * @param type    The type of the message.
+	 * @param message The message.
+	 * @param sender  The connection of the sender.
+	 */
+	void handleControlMessage(ControlType type, Message<?, ?> message, Connection sender) {
+		switch(type) {
+			case ACK -> {
+				sender.acknowledgedSequence = Math.max(sender.acknowledgedSequence, (Long) message.content);
+				OutboundJournal currentJournal = journal;
+				if(currentJournal != null) {
+					compactJournal(currentJournal);
+				}
+			}
+			case RESUME -> resumeFromJournal(sender, (SequencedMessage) message.content);
+			case SESSION -> attachSession(sender, (String) message.content);
+			case DATAGRAM -> associateDatagrams(sender);
+			case UNIQUE -> {
+				UniqueMessage unique = (UniqueMessage) message.content;
+				int window = deduplicationWindow;
+				if(window > 0 && !sender.deduplicationWindow(window).accept(unique.id)) {
+					// the client has sent it again after a failure
+					return;
+				}
+				if(unique.message.type instanceof ControlType inner) {
+					handleControlMessage(inner, unique.message, sender);
+				} else {
+					addMessageToQueue(new MessageToSend(unique.message, sender));
+				}
+			}
+			case REQUEST -> {
+				RequestMessage request = (RequestMessage) message.content;
+				Message<?, ?> received = received(request.message, sender);
+				if(received == null) {
+					return;
+				}
+				new Thread(() -> {
+					NetworkEvents.MessageHandled event = new NetworkEvents.MessageHandled();
+					event.begin();
+					ResponseMessage response;
+					try {
+						response = new ResponseMessage(request.id, onRequestReceived(received, sender));
+					} catch(RuntimeException exc) {
+						// the client is still waiting, so it is told instead
+						System.out.printf("[Server][Warning] failed to answer a request of %s%n", sender.toStringWithoutServer());
+						exc.printStackTrace();
+						response = new ResponseMessage(request.id, null, exc.toString());
+					}
+					if(event.shouldCommit()) {
+						event.connection = sender.trafficId;
+						event.type = NetworkEvents.typeOf(received.type);
+						event.messages = 1;
+						event.commit();
+					}
+					sender.sendMessage(new Message<>(ControlType.RESPONSE, response));
+				}, "onRequestReceived").start();
+			}
+			case REPLICA -> {
+				ReplicaSubscription subscription = (ReplicaSubscription) message.content;
+				ReplicatedMap<?, ?> map = replicas.get(subscription.name);
+				if(map == null) {
+					System.out.printf("[Server][Warning] %s subscribed to the unknown replicated map %s%n", sender.toStringWithoutServer(), subscription.name);
+					return;
+				}
+				if(subscription.subscribe) {
+					map.subscribe(sender);
+				} else {
+					map.unsubscribe(sender);
+				}
+			}
+			case INTEREST -> {
+				if(message.content != null && !(message.content instanceof InterestSet)) {
+					System.out.printf("[Server][Warning] %s sent interests of type %s%n", sender.toStringWithoutServer(), message.content.getClass().getName());
+					return;
+				}
+				sender.interests = (InterestSet) message.content;
+			}
+			case PEER, CLUSTER -> {
+				ClusterBridge bridge = cluster;
+				if(bridge == null) {
+					System.out.printf("[Server][Warning] %s sent a cluster message, but clustering is disabled%n", sender.toStringWithoutServer());
+					return;
+				}
+				bridge.onControlMessage(type, message, sender);
+			}
+			default -> System.out.printf("[Server][Warning] unexpected control message %s from %s%n", type, sender.toStringWithoutServer());
+		}
+	}
+	
+	/**
+	 * Attaches a client to its previous session, or to a new one if the token is unknown or has expired.
+	 * 
+	 * @param conn  The connection of the client.
+	 * @param token The token presented by the client.
+	 */
+	private void attachSession(Connection conn, String token) {
+		SessionRegistry registry = sessions;
+		if(registry == null) {
+			System.out.printf("[Server][Warning] %s requested a session, but sessions are disabled%n", conn.toStringWithoutServer());
+			return;
+		}
+		
+		Session session = registry.resumeOrCreate(token);
+		boolean resumed = session.getToken().equals(token);
+		conn.session = session;
+		// the client needs its token before any pending message arrives
+		conn.sendMessage(new Message<>(ControlType.SESSION, session.getToken()));
+		Connection previous = session.attach(conn);
+		if(previous != null && previous != conn) {
+			// the client reconnected before the old connection timed out
+			previous.session = null;
+			removeConnection(previous);
+		}
+		
+		if(resumed) {
+			new Thread(() -> onSessionResumed(conn, session), "onSessionResumed").start();
+		} else {
+			new Thread(() -> onSessionStarted(conn, session), "onSessionStarted").start();
+		}
+	}
+	
+	/**
+	 * Creates the token, which associates the datagrams of a client with its connection, and sends it to the client.
+	 * 
+	 * @param conn The connection of the client.
+	 */
+	private void associateDatagrams(Connection conn) {
+		DatagramEndpoint endpoint = datagrams;
+		if(endpoint == null) {
+			System.out.printf("[Server][Warning] %s requested datagrams, but datagrams are disabled%n", conn.toStringWithoutServer());
+			return;
+		}
+		
+		long token;
+		do {
+			token = datagramTokens.nextLong();
+		} while(token == 0 || datagramConnections.putIfAbsent(token, conn) != null);
+		conn.datagramSequences = new DatagramEndpoint.LatestSequences(endpoint.getTypeCount());
+		conn.datagramToken = token;
+		conn.sendMessage(new Message<>(ControlType.DATAGRAM, new DatagramInfo(token, endpoint.getPort())));
+	}
+	
+	/**
+	 * Checks the header of a datagram, before its content is decoded.
+	 * 
+	 * @param token        The token in the datagram.
+	 * @param registration Whether the datagram only registers the address of a client.
+	 * @param source       The address of the sender.
+	 * 
+	 * @return {@code true} if the token belongs to a client and the datagram comes from its registered address, or registers the first address of the client,
+	 *         {@code false} otherwise.
+	 */
+	private boolean acceptsDatagram(long token, boolean registration, InetSocketAddress source) {
+		Connection conn = datagramConnections.get(token);
+		if(conn == null) {
+			return false;
+		}
+		InetSocketAddress registered = conn.datagramAddress;
+		// the token alone is not enough, the datagram must come from the registered address
+		return registration ? registered == null : source.equals(registered);
+	}
+	
+	/**
+	 * Handles a received datagram.
+	 * 
+	 * @param token    The token of the sender.
+	 * @param message  The message, or {@code null} if the client registers its address.
+	 * @param sequence The sequence number of the datagram.
+	 * @param source   The address of the sender.
+	 */
+	private void onDatagram(long token, Message<?, ?> message, int sequence, InetSocketAddress source) {
+		Connection conn = datagramConnections.get(token);
+		if(conn == null) {
+			return;
+		}
+		if(message == null) {
+			if(conn.datagramAddress == null) {
+				conn.datagramAddress = source;
+				conn.sendMessage(new Message<>(ControlType.DATAGRAM_READY, null));
+			}
+			return;
+		}
+		if(source.equals(conn.datagramAddress) && conn.datagramSequences.update(message.type.ordinal(), sequence)) {
+			addMessageToQueue(new MessageToSend(message, conn));
+		}
+	}
+	
+	/**
+	 * Sends all journaled messages after the given position to a client, which has just connected. Afterwards, the client receives the journaled broadcasts.<br>
+	 * Broadcasts are blocked while replaying, so the client receives all messages in order. The client is answered with the position the replay starts after, so
+	 * a new client learns its position and a client, whose messages have already been deleted from the journal, learns about the gap.
+	 * 
+	 * @param conn     The connected client.
+	 * @param position The last journaled message the client has received, with epoch {@code 0} if the client has never received one.
+	 */
+	private synchronized void resumeFromJournal(Connection conn, SequencedMessage position) {
+		conn.resumed = true;
+		OutboundJournal currentJournal = journal;
+		if(currentJournal == null) {
+			return;
+		}
+		long epoch = currentJournal.getEpoch();
+		long afterSequence;
+		if(position.epoch == 0) {
+			// a new client starts with the messages broadcasted since it connected
+			afterSequence = conn.joinedSequence;
+		} else if(position.epoch == epoch) {
+			afterSequence = position.sequence;
+			long firstSequence = currentJournal.getFirstSequence();
+			if(afterSequence < firstSequence - 1) {
+				System.out.printf("[Server][Warning] %s missed journaled messages %d to %d%n", conn.toStringWithoutServer(), afterSequence + 1, firstSequence - 1);
+				afterSequence = firstSequence - 1;
+			}
+		} else {
+			// a position in a previous journal says nothing about this one
+			afterSequence = 0;
+		}
+		conn.sendMessage(new Message<>(ControlType.RESUME, new SequencedMessage(epoch, afterSequence, null)));
+		conn.acknowledgedSequence = afterSequence;
+		// holds back the compaction until the replayed messages are known
+		conn.sentSequence = Long.MAX_VALUE;
+		long[] sent = { afterSequence };
+		boolean[] failed = { false };
+		currentJournal.replay(afterSequence, (sequence, message) -> {
+			if(!failed[0] && conn.isInterestedIn(message.type)) {
+				if(conn.sendMessage(new Message<>(ControlType.SEQUENCED, new SequencedMessage(epoch, sequence, message)))) {
+					sent[0] = sequence;
+				} else {
+					failed[0] = true;
+				}
+			}
+		});
+		conn.sentSequence = sent[0];
+		if(failed[0]) {
+			dropLaggingClient(conn);
+		}
+	}
+	
+	/**
+	 * Disconnects a client, which could not be sent a journaled message, because its outbound queue is full. Skipping the message would leave a gap, after
+	 * reconnecting, the client continues from the journal instead.
+	 * 
+	 * @param conn The client.
+	 */
+	private void dropLaggingClient(Connection conn) {
+		if(conn.getTransport().isClosed()) {
+			// already removed after a failed write
+			return;
+		}
+		System.out.printf("[Server][Warning] %s doesn't keep up with journaled messages, disconnecting%n", conn.toStringWithoutServer());
+		removeConnection(conn);
+	}
+	
+	/**
+	 * Deletes the segments of the journal, which all clients have acknowledged.<br>
+	 * A client, which has acknowledged every message it has been sent, doesn't hold back the compaction, so a client, which skips messages because of its
+	 * interests, doesn't keep them forever.
+	 * 
+	 * @param currentJournal The journal.
+	 */
+	private void compactJournal(OutboundJournal currentJournal) {
+		long acknowledged = Long.MAX_VALUE;
+		for(Connection conn : clients()) {
+			if(conn.peer != null) {
+				// other nodes journal on their own
+				continue;
+			}
+			long acknowledgedByClient = conn.acknowledgedSequence;
+			if(acknowledgedByClient >= conn.sentSequence) {
+				// has everything it wants, the later messages aren't of its interests
+				continue;
+			}
+			acknowledged = Math.min(acknowledged, acknowledgedByClient);
+		}
+		SessionRegistry registry = sessions;
+		if(registry != null) {
+			for(Session session : registry.sessions()) {
+				if(!session.isAttached() && session.sentSequence > 0) {
+					// a disconnected client resumes from its last acknowledgement, as long as its session lives
+					acknowledged = Math.min(acknowledged, session.acknowledgedSequence);
+				}
+			}
+		}
+		currentJournal.compact(acknowledged);
+	}
+	
+	/**
+	 * Waits for a new connection and, if the connection is accepted via {@link #acceptConnection(Connection) acceptConnection}, is added to it's connected clients.
+	 * 
+	 * @param acceptor The acceptor to wait at, the main one or an additional one.
+	 */
+	private void waitForNewConnections(Acceptor acceptor) {
+		while(isRunning() && !acceptor.isClosed()) {
+			try {
+				Transport connection = acceptor.accept();
+				if(connection != null) {
+					AdmissionControl admission = admissionControl;
+					InetSocketAddress address = connection.getRemoteAddress();
+					if(!acceptAddress(address) || (admission != null && !admission.tryAdmit(address.getAddress()))) {
+						// rejected before any handshake, just drop the socket
+						connection.close();
+						continue;
+					}
+					
+					// put this thread back to waiting, the handshake of the transport waits for the peer
+					Thread clientThread = new Thread(() -> openConnection(connection, address, admission));
+					clientThread.setDaemon(true);
+					clientThread.start();
+				}
+			} catch(IOException exc) {
+				if(!(exc instanceof SocketException && exc.getMessage().equals("Socket closed"))) {
+					// no idea what can cause this
+					System.out.println("[Server][Warning] error during connection accepting");
+					exc.printStackTrace();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Opens an accepted transport and, if the connection is accepted via {@link #acceptConnection(Connection) acceptConnection}, adds it to the connected clients
+	 * and listens to it.<br>
+	 * Runs on the thread of the connection, so a peer, which is slow to finish its handshake, doesn't keep other peers from being accepted.
+	 * 
+	 * @param connection The accepted transport.
+	 * @param address    The address of the peer.
+	 * @param admission  The admission control, which has admitted the peer, or {@code null}.
+	 */
+	private void openConnection(Transport connection, InetSocketAddress address, AdmissionControl admission) {
+		Connection conn;
+		try {
+			conn = new Connection(connection, this);
+		} catch(IOException exc) {
+			if(admission != null) {
+				admission.release(address.getAddress());
+			}
+			try {
+				connection.close();
+			} catch(IOException closeExc) {
+				// already broken
+			}
+			if(exc instanceof ProtocolException) {
+				// a peer of a protocol with a handshake has been turned away, e.g. a websocket upgrade from a foreign origin
+				System.out.printf("[Server][Warning] rejected connection: %s%n", exc.getMessage());
+			} else if(isRunning() && !(exc instanceof EOFException)) {
+				// a peer, which leaves during the handshake, is no error
+				System.out.println("[Server][Warning] error during connection opening");
+				exc.printStackTrace();
+			}
+			return;
+		}
+		conn.admission = admission;
+		conn.admittedAddress = address.getAddress();
+		
+		if(isRunning() && acceptConnection(conn)) {
+			OutboundJournal currentJournal = journal;
+			if(currentJournal != null && connection.handlesControlMessages()) {
+				// holds back the compaction until the client has sent its position
+				conn.joinedSequence = currentJournal.getLastSequence();
+				conn.acknowledgedSequence = conn.joinedSequence;
+				conn.sentSequence = Long.MAX_VALUE;
+			}
+			synchronized (connectedClients) {
+				connectedClients.add(conn);
+			}
+			TrafficRecorder recorder = trafficRecorder;
+			if(recorder != null) {
+				recorder.opened(conn);
+			}
+			NetworkEvents.ConnectionAccepted event = new NetworkEvents.ConnectionAccepted();
+			if(event.shouldCommit()) {
+				event.connection = conn.trafficId;
+				event.address = address.getAddress().getHostAddress();
+				event.port = address.getPort();
+				event.transport = connection.getClass();
+				event.commit();
+			}
+			
+			// use a new thread for handling, in case onClientConnected is a long task
+			new Thread(() -> onClientConnected(conn), "onClientConnected").start();
+			conn.run();
+		} else {
+			conn.disconnect();
+		}
+	}
+	
+	/**
+	 * Removes the given connection from this server. Calls the {@link Connection#disconnect() disconnect} method of the connection.
+	 * 
+	 * @param conn The connection to remove.
+	 * 
+	 * @return {@code true} if the connection has been closed and removed, {@code false} otherwise.
+	 */
+	protected boolean removeConnection(Connection conn) {
+		boolean removed;
+		synchronized (connectedClients) {
+			// only one of the threads, which remove a connection at the same time, cleans up after it
+			removed = connectedClients.remove(conn);
+		}
+		if(removed) {
+			conn.disconnect();
+			TrafficRecorder recorder = trafficRecorder;
+			if(recorder != null) {
+				recorder.closed(conn);
+			}
+			NetworkEvents.ConnectionClosed event = new NetworkEvents.ConnectionClosed();
+			if(event.shouldCommit()) {
+				event.connection = conn.trafficId;
+				event.address = conn.getIP();
+				event.port = conn.getPort();
+				event.commit();
+			}
+			if(conn.datagramToken != 0) {
+				datagramConnections.remove(conn.datagramToken);
+				if(datagrams != null) {
+					datagrams.forget(conn.datagramToken);
+				}
+			}
+			Session session = conn.session;
+			if(session != null) {
+				// kept in the registry until it expires
+				session.detach(conn);
+			}
+			for(String group : groups.keySet()) {
+				leaveGroup(group, conn);
+			}
+			for(ReplicatedMap<?, ?> map : replicas.values()) {
+				map.unsubscribe(conn);
+			}
+			if(cluster != null) {
+				cluster.connectionClosed(conn);
+			}
+			new Thread(() -> onClientDisconnected(conn), "onClientDisconnected").start();
+			return true;
+		} else {
+			System.out.printf("[Server][Warning] connection (%s) is not a connected client%n", conn.toStringWithoutServer());
+			return false;
+		}
+	}
+	
+	/**
+	 * Gets the list of currently connected clients.
+	 * 
+	 * @return A copy of the connected clients, which doesn't change when clients connect or disconnect.
+	 */
+	public List<Connection> getConnectedClients() {
+		return List.of(clients());
+	}
+	
+	/**
+	 * Gets the amount of currently connected clients.
+	 * 
+	 * @return The amount of connected clients.
+	 */
+	public int getConnectedCount() {
+		synchronized (connectedClients) {
+			return connectedClients.size();
+		}
+	}
+	
+	/**
+	 * Copies the connected clients, so they can be iterated while other threads add and remove connections.
+	 */
+	private Connection[] clients() {
+		synchronized (connectedClients) {
+			return connectedClients.toArray(new Connection[0]);
+		}
+	}
+	
+	/**
+	 * Gets the admission control, which is checked for every inbound connection.
+	 * 
+	 * @return The admission control, or {@code null} if none is used.
+	 */
+	public AdmissionControl getAdmissionControl() {
+		return admissionControl;
+	}
+	
+	/**
+	 * Sets the admission control, which is checked for every inbound connection. Connections, which have already been accepted, are not affected.
+	 * 
+	 * @param admissionControl The new admission control, or {@code null} to accept every address.
+	 */
+	public void setAdmissionControl(AdmissionControl admissionControl) {
+		this.admissionControl = admissionControl;
+	}
+	
+	/**
+	 * Gets the policy, which is used to batch received messages.
+	 * 
+	 * @return The batch policy, or {@code null} if every message is handled on its own.
+	 */
+	public BatchPolicy getBatchPolicy() {
+		return batchPolicy;
+	}
+	
+	/**
+	 * Enables batched delivery of received messages via {@link #onMessagesReceived(List, Connection) onMessagesReceived}.
+	 * 
+	 * @param batchPolicy The new batch policy, or {@code null} to call {@link #onMessageReceived(Message, Connection) onMessageReceived} for every message on its own.
+	 */
+	public void setBatchPolicy(BatchPolicy batchPolicy) {
+		this.batchPolicy = batchPolicy;
+	}
+	
+	/**
+	 * Gets the policy, which keeps the latency of received messages bounded.
+	 * 
+	 * @return The overload policy, or {@code null} if every message is handled.
+	 */
+	public OverloadPolicy getOverloadPolicy() {
+		return overloadPolicy;
+	}
+	
+	/**
+	 * Sets the overload policy, which drops received messages after their deadline and sheds messages, when they wait too long in the queue.
+	 * 
+	 * @param overloadPolicy The new overload policy, or {@code null} to handle every message, no matter how late.
+	 */
+	public void setOverloadPolicy(OverloadPolicy overloadPolicy) {
+		this.overloadPolicy = overloadPolicy;
+	}
+	
+	/**
+	 * Gets the policy, which assigns messages to priority lanes.
+	 * 
+	 * @return The lane policy, or {@code null} if messages are handled in the order they arrive.
+	 */
+	public LanePolicy getLanePolicy() {
+		return lanePolicy;
+	}
+	
+	/**
+	 * Enables priority lanes for the received messages, which wait to be handled, and for the messages, which wait to be written to each connection.<br>
+	 * With lanes, every connection writes on its own thread, so sending a message only queues it. Lanes can only be changed, if the server is shut down.
+	 * 
+	 * @param lanePolicy The new lane policy, or {@code null} to handle and write messages in the order they arrive.
+	 * 
+	 * @return {@code true} if the policy has been changed, {@code false} if the server is running.
+	 */
+	public boolean setLanePolicy(LanePolicy lanePolicy) {
+		synchronized (this) {
+			if(isRunning()) {
+				return false;
+			}
+			this.lanePolicy = lanePolicy;
+			this.messagesToSend = lanePolicy == null ? new LinkedBlockingQueue<>() : lanePolicy.newQueue(message -> message.message);
+			return true;
+		}
+	}
+	
+	/**
+	 * Gets the journal, which stores broadcasted messages.
+	 * 
+	 * @return The journal, or {@code null} if messages are not journaled.
+	 */
+	public OutboundJournal getJournal() {
+		return journal;
+	}
+	
+	/**
+	 * Sets the journal, which stores broadcasted messages. Journaled messages are sent with a sequence number, which the clients acknowledge.
+	 * A reconnecting client receives all journaled messages after the last one it has received.
+	 * 
+	 * @param journal The new journal, or {@code null} to disable journaling.
+	 */
+	public void setJournal(OutboundJournal journal) {
+		this.journal = journal;
+	}
+	
+	/**
+	 * Gets the registry, which keeps the sessions of the clients.
+	 * 
+	 * @return The session registry, or {@code null} if sessions are disabled.
+	 */
+	public SessionRegistry getSessionRegistry() {
+		return sessions;
+	}
+	
+	/**
+	 * Enables sessions, which are kept across reconnects of a client.
+	 * 
+	 * @param sessions The new session registry, or {@code null} to disable sessions.
+	 */
+	public void setSessionRegistry(SessionRegistry sessions) {
+		this.sessions = sessions;
+	}
+	
+	/**
+	 * Gets the amount of message ids, which are remembered per client to drop duplicates.
+	 * 
+	 * @return The size of the window, or {@code 0} if duplicates aren't dropped.
+	 */
+	public int getDeduplicationWindow() {
+		return deduplicationWindow;
+	}
+	
+	/**
+	 * Enables dropping messages, which a client sends again with the same id via {@link Client#sendMessage(Message, long)}, before they are handled.<br>
+	 * The ids are remembered per session, so duplicates are also dropped after a reconnect, or per connection if the client has no session. Only the most recent ids
+	 * are remembered, older ones are dropped as well. Only has an effect on windows, which are created afterwards.
+	 * 
+	 * @param size The amount of recent ids to remember per client, or {@code 0} to handle every message.
+	 */
+	public void setDeduplicationWindow(int size) {
+		this.deduplicationWindow = Math.max(0, size);
+	}
+	
+	/**
+	 * Returns whether the content of messages, which clients send with {@link Client#setRawContent(boolean) raw content}, is only deserialized on access.
+	 * 
+	 * @return {@code true} if the content is deserialized lazily, {@code false} otherwise.
+	 */
+	public boolean isLazyContent() {
+		return lazyContent;
+	}
+	
+	/**
+	 * Keeps the content of messages, which clients send with {@link Client#setRawContent(boolean) raw content}, as bytes. Handlers receive a {@link RawMessage},
+	 * whose content is only deserialized when it is accessed via {@link Message#getContent()}, its {@link Message#content content} field is {@code null}.<br>
+	 * A server, which only looks at the type and the sender before forwarding or broadcasting a message, passes on the received bytes as they are, without
+	 * deserializing and serializing the content again.
+	 * 
+	 * @param lazyContent {@code true} to deserialize the content lazily, {@code false} to deserialize it when the message is received.
+	 */
+	public void setLazyContent(boolean lazyContent) {
+		this.lazyContent = lazyContent;
+	}
+	
+	/**
+	 * Gets the recorder, which captures the traffic of this server.
+	 * 
+	 * @return The traffic recorder, or {@code null} if the traffic isn't captured.
+	 */
+	public TrafficRecorder getTrafficRecorder() {
+		return trafficRecorder;
+	}
+	
+	/**
+	 * Captures every message, which this server receives from or sends to a connection, and when connections open and close. The server doesn't close the recorder,
+	 * close it to finish the capture.
+	 * 
+	 * @param trafficRecorder The new traffic recorder, or {@code null} to stop capturing.
+	 */
+	public void setTrafficRecorder(TrafficRecorder trafficRecorder) {
+		this.trafficRecorder = trafficRecorder;
+	}
+	
+	/**
+	 * Gets the bridge, which connects this server to the other nodes of a cluster.
+	 * 
+	 * @return The cluster bridge, or {@code null} if this server is not part of a cluster.
+	 */
+	public ClusterBridge getClusterBridge() {
+		return cluster;
+	}
+	
+	/**
+	 * Makes this server a node of a cluster. Broadcasts and group messages are forwarded to the other nodes, which deliver them to their clients.<br>
+	 * Other nodes are linked via {@link ClusterBridge#addPeer(String, int) addPeer}, after the server has been started. A bridge can only be set once.
+	 * 
+	 * @param cluster The cluster bridge of this node.
+	 * 
+	 * @return {@code true} if the bridge has been set, {@code false} if this server already has one.
+	 */
+	public boolean setClusterBridge(ClusterBridge cluster) {
+		synchronized (this) {
+			if(this.cluster != null) {
+				return false;
+			}
+			this.cluster = cluster;
+			cluster.attach(this);
+			return true;
+		}
+	}
+	
+	/**
+	 * Adds an acceptor on a further port, so the server accepts clients, which use another transport, at the same time. For example,
+	 * {@code server.addAcceptor(8080, port -> new WebSocketAcceptor(port, codec))} serves browsers next to the regular clients.<br>
+	 * Acceptors can only be added, if the server is shut down. They are opened and closed together with the server.
+	 * 
+	 * @param port            The port of the acceptor, which must differ from the port of the server.
+	 * @param acceptorFactory Creates the acceptor, whenever the server is started.
+	 * 
+	 * @return {@code true} if the acceptor has been added, {@code false} if the server is running or the port is already used by another acceptor.
+	 */
+	public boolean addAcceptor(int port, AcceptorFactory acceptorFactory) {
+		synchronized (this) {
+			if(isRunning() || port == this.port || additionalAcceptorFactories.containsKey(port)) {
+				return false;
+			}
+			additionalAcceptorFactories.put(port, acceptorFactory);
+			return true;
+		}
+	}
+	
+	/**
+	 * Enables sending the given message types via datagrams, next to the TCP connections. Only clients, which enabled datagrams as well, use them.<br>
+	 * Datagrams can only be enabled, if the server is shut down.
+	 * 
+	 * @param <T>   The type of the messages.
+	 * @param port  The UDP port of the server.
+	 * @param codec The codec of the message contents.
+	 * @param types The message types, which are sent unreliably. Only the latest message of each type is of interest.
+	 * 
+	 * @return {@code true} if datagrams have been enabled, {@code false} if the server is running.
+	 */
+	public <T extends Enum<T>> boolean enableDatagrams(int port, DatagramCodec<T> codec, Collection<T> types) {
+		synchronized (this) {
+			if(isRunning()) {
+				return false;
+			}
+			datagramOpener = () -> new DatagramEndpoint(port, codec, types, this::acceptsDatagram, this::onDatagram);
+			return true;
+		}
 	}
 	
 	/**
@@ -267,7 +1572,7 @@ public abstract class Server {
 	 * @return The status of this server.
 	 */
 	public boolean isRunning() {
-		return socket != null && !socket.isClosed();
+		return acceptor != null && !acceptor.isClosed();
 	}
 	
 	@Override
@@ -281,13 +1586,13 @@ public abstract class Server {
 		}
 		
 		if(obj instanceof Server server) {
-			return socket.getLocalPort() == server.socket.getLocalPort() && isRunning() == server.isRunning();
+			return acceptor.getPort() == server.acceptor.getPort() && isRunning() == server.isRunning();
 		}
 		return false;
 	}
 	
 	@Override
 	public String toString() {
-		return "Server{socketStatus=" + isRunning() + ", port=" + socket.getLocalPort() + ", connectedClients=" + connectedClients.size() + ", messagesToSend=" + messagesToSend.size() + "}";
+		return "Server{socketStatus=" + isRunning() + ", port=" + acceptor.getPort() + ", connectedClients=" + getConnectedCount() + ", messagesToSend=" + messagesToSend.size() + "}";
 	}
 }
@@ -0,0 +1,185 @@
+package net.unknownuser.networking;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * State of a client, which outlives a single {@link Connection}.<br>
+ * A reconnecting client presents the token of its session and is re-attached to it, as long as the session hasn't expired.
+ */
+public class Session {
+	private final String token;
+	private final ConcurrentHashMap<String, Object> attributes = new ConcurrentHashMap<>();
+	private final ArrayDeque<Message<?, ?>> pendingMessages = new ArrayDeque<>();
+	private final int maxPendingMessages;
+	
+	private volatile Connection connection = null;
+	private volatile long detachedAt;
+	private DeduplicationWindow deduplication = null;
+	
+	/**
+	 * The journal position of the last connection, kept while the client is disconnected, so the journal keeps the messages it misses.
+	 */
+	volatile long acknowledgedSequence = 0;
+	volatile long sentSequence = 0;
+	
+	Session(String token, int maxPendingMessages) {
+		super();
+		this.token = token;
+		this.maxPendingMessages = maxPendingMessages;
+		this.detachedAt = System.nanoTime();
+	}
+	
+	/**
+	 * Sends a message to the client of this session. If the client is currently not connected, the message is kept until it reconnects.<br>
+	 * When too many messages are pending, the oldest one is dropped.
+	 * 
+	 * @param message The message to send.
+	 * 
+	 * @return {@code true} if the message has been sent or kept, {@code false} if it could not be sent.
+	 */
+	public synchronized boolean sendMessage(Message<?, ?> message) {
+		Connection conn = connection;
+		if(conn != null) {
+			return conn.sendMessage(message);
+		}
+		if(maxPendingMessages <= 0) {
+			return false;
+		}
+		if(pendingMessages.size() >= maxPendingMessages) {
+			pendingMessages.pollFirst();
+		}
+		pendingMessages.addLast(message);
+		return true;
+	}
+	
+	/**
+	 * Attaches this session to a connection and sends all pending messages to it.
+	 * 
+	 * @param conn The new connection of the client.
+	 * 
+	 * @return The previous connection, which is still attached, or {@code null}.
+	 */
+	synchronized Connection attach(Connection conn) {
+		Connection previous = connection;
+		connection = conn;
+		while(!pendingMessages.isEmpty()) {
+			if(!conn.sendMessage(pendingMessages.peekFirst())) {
+				// the new connection failed as well, keep the rest for the next one
+				break;
+			}
+			pendingMessages.pollFirst();
+		}
+		return previous;
+	}
+	
+	/**
+	 * Detaches this session from the given connection. Does nothing, if the session has already been attached to another connection.
+	 * 
+	 * @param conn The closed connection.
+	 * 
+	 * @return {@code true} if the session has been detached.
+	 */
+	synchronized boolean detach(Connection conn) {
+		if(connection != conn) {
+			return false;
+		}
+		connection = null;
+		acknowledgedSequence = conn.acknowledgedSequence;
+		sentSequence = conn.sentSequence;
+		detachedAt = System.nanoTime();
+		return true;
+	}
+	
+	/**
+	 * Gets the window of recent message ids of the client. Created on first use.
+	 * 
+	 * @param size The size of a new window.
+	 * 
+	 * @return The window.
+	 */
+	synchronized DeduplicationWindow deduplicationWindow(int size) {
+		if(deduplication == null) {
+			deduplication = new DeduplicationWindow(size);
+		}
+		return deduplication;
+	}
+	
+	/**
+	 * Checks whether this session has been detached for longer than the given time.
+	 * 
+	 * @param ttlNanos The time a session is kept without a connection.
+	 * @param now      The current {@link System#nanoTime() nano time}.
+	 * 
+	 * @return {@code true} if the session has expired.
+	 */
+	boolean isExpired(long ttlNanos, long now) {
+		return connection == null && now - detachedAt > ttlNanos;
+	}
+	
+	/**
+	 * Gets the token, which identifies this session.
+	 * 
+	 * @return The token.
+	 */
+	public String getToken() {
+		return token;
+	}
+	
+	/**
+	 * Gets the connection this session is currently attached to.
+	 * 
+	 * @return The connection, or {@code null} if the client is not connected.
+	 */
+	public Connection getConnection() {
+		return connection;
+	}
+	
+	/**
+	 * Returns whether the client of this session is currently connected.
+	 * 
+	 * @return {@code true} if the session is attached to a connection.
+	 */
+	public boolean isAttached() {
+		return connection != null;
+	}
+	
+	/**
+	 * Gets an attribute of this session.
+	 * 
+	 * @param name The name of the attribute.
+	 * 
+	 * @return The value, or {@code null} if the attribute is not set.
+	 */
+	public Object getAttribute(String name) {
+		return attributes.get(name);
+	}
+	
+	/**
+	 * Sets an attribute of this session.
+	 * 
+	 * @param name  The name of the attribute.
+	 * @param value The new value, or {@code null} to remove the attribute.
+	 */
+	public void setAttribute(String name, Object value) {
+		if(value == null) {
+			attributes.remove(name);
+		} else {
+			attributes.put(name, value);
+		}
+	}
+	
+	/**
+	 * Gets the amount of messages, which wait for the client to reconnect.
+	 * 
+	 * @return The amount of pending messages.
+	 */
+	public synchronized int getPendingMessageCount() {
+		return pendingMessages.size();
+	}
+	
+	@Override
+	public String toString() {
+		return "Session{attached=" + isAttached() + ", attributes=" + attributes.size() + ", pendingMessages=" + getPendingMessageCount() + "}";
+	}
+}
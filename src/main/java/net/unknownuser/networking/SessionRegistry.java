@@ -0,0 +1,157 @@
+package net.unknownuser.networking;
+
+import java.security.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+/**
+ * Keeps the sessions of a server, until they have been detached from their connection for longer than the configured time to live.<br>
+ * Resuming a session is a single map lookup, so reconnecting clients don't cause any expensive re-initialization.
+ */
+public class SessionRegistry {
+	private static final int TOKEN_BYTES = 16;
+	
+	private final ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<>();
+	private final SecureRandom random = new SecureRandom();
+	private final long ttlNanos;
+	private final int maxPendingMessages;
+	
+	private volatile Consumer<Session> expiryListener = null;
+	private Thread reaper = null;
+	
+	/**
+	 * Creates a new registry.
+	 * 
+	 * @param ttl                The time a session is kept after its client disconnected.
+	 * @param unit               The unit of the time to live.
+	 * @param maxPendingMessages The amount of messages kept for a disconnected client. {@code 0} drops messages to disconnected clients.
+	 */
+	public SessionRegistry(long ttl, TimeUnit unit, int maxPendingMessages) {
+		super();
+		this.ttlNanos = unit.toNanos(ttl);
+		this.maxPendingMessages = maxPendingMessages;
+	}
+	
+	/**
+	 * Gets the session with the given token, or creates a new one if the token is unknown or has expired.
+	 * 
+	 * @param token The token presented by the client, or {@code null} if the client has no session yet.
+	 * 
+	 * @return The session.
+	 */
+	Session resumeOrCreate(String token) {
+		if(token != null) {
+			Session session = sessions.get(token);
+			if(session != null && !session.isExpired(ttlNanos, System.nanoTime())) {
+				return session;
+			}
+		}
+		
+		startReaper();
+		byte[] bytes = new byte[TOKEN_BYTES];
+		random.nextBytes(bytes);
+		Session session = new Session(Base64.getUrlEncoder().withoutPadding().encodeToString(bytes), maxPendingMessages);
+		sessions.put(session.getToken(), session);
+		return session;
+	}
+	
+	/**
+	 * Gets the session with the given token.
+	 * 
+	 * @param token The token of the session.
+	 * 
+	 * @return The session, or {@code null} if the token is unknown.
+	 */
+	public Session getSession(String token) {
+		return sessions.get(token);
+	}
+	
+	/**
+	 * Gets all sessions, attached or not.
+	 * 
+	 * @return A live view of the sessions.
+	 */
+	Collection<Session> sessions() {
+		return sessions.values();
+	}
+	
+	/**
+	 * Removes a session, regardless whether it is still attached.
+	 * 
+	 * @param session The session to remove.
+	 */
+	public void invalidate(Session session) {
+		sessions.remove(session.getToken(), session);
+	}
+	
+	/**
+	 * Removes all expired sessions.
+	 */
+	public void removeExpired() {
+		long now = System.nanoTime();
+		Consumer<Session> listener = expiryListener;
+		sessions.values().removeIf(session -> {
+			if(!session.isExpired(ttlNanos, now)) {
+				return false;
+			}
+			if(listener != null) {
+				listener.accept(session);
+			}
+			return true;
+		});
+	}
+	
+	private synchronized void startReaper() {
+		if(reaper != null) {
+			return;
+		}
+		reaper = new Thread(() -> {
+			long interval = Math.max(TimeUnit.NANOSECONDS.toMillis(ttlNanos) / 2, 100);
+			try {
+				while(true) {
+					Thread.sleep(interval);
+					removeExpired();
+				}
+			} catch(InterruptedException exc) {
+				// stopped by stopReaper
+			}
+		}, "sessionReaper");
+		reaper.setDaemon(true);
+		reaper.start();
+	}
+	
+	/**
+	 * Stops the thread, which removes the expired sessions. Called when the server shuts down.<br>
+	 * The sessions are kept, and the thread is started again with the next new session.
+	 */
+	public synchronized void stopReaper() {
+		if(reaper != null) {
+			reaper.interrupt();
+			reaper = null;
+		}
+	}
+	
+	/**
+	 * Sets the listener, which is called for every session, which is removed because it has expired.
+	 * 
+	 * @param expiryListener The new listener, or {@code null}.
+	 */
+	public void setExpiryListener(Consumer<Session> expiryListener) {
+		this.expiryListener = expiryListener;
+	}
+	
+	/**
+	 * Gets the amount of sessions, attached or not.
+	 * 
+	 * @return The amount of sessions.
+	 */
+	public int size() {
+		return sessions.size();
+	}
+	
+	@Override
+	public String toString() {
+		return "SessionRegistry{sessions=" + sessions.size() + ", ttlMillis=" + TimeUnit.NANOSECONDS.toMillis(ttlNanos) + "}";
+	}
+}
@@ -0,0 +1,336 @@
+package net.unknownuser.networking;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import net.unknownuser.networking.transport.*;
+
+/**
+ * A client of several servers, which each own a part of the keys.<br>
+ * Every message is sent with a key, which is mapped to one server via a {@link ConsistentHashRing}. When a server is down, its keys move to the following servers on
+ * the ring until it is back, all other keys stay where they are. Servers, which are down, are reconnected in the background with an exponential backoff.
+ */
+public abstract class ShardedClient {
+	public static final int DEFAULT_VIRTUAL_NODES = 160;
+	
+	protected final TransportFactory transportFactory;
+	protected final ConsistentHashRing<Shard> ring;
+	protected final CopyOnWriteArrayList<Shard> shards = new CopyOnWriteArrayList<>();
+	
+	private volatile boolean running = false;
+	private volatile long retryMillis = 500;
+	private volatile long maxRetryMillis = 30_000;
+	private Thread healthChecker = null;
+	
+	protected ShardedClient() {
+		this(DEFAULT_VIRTUAL_NODES, SocketTransport::connect);
+	}
+	
+	/**
+	 * Creates a sharded client without any servers.
+	 * 
+	 * @param virtualNodes     The amount of positions of each server on the ring. More positions spread the keys more evenly.
+	 * @param transportFactory Creates the transports to the servers.
+	 */
+	protected ShardedClient(int virtualNodes, TransportFactory transportFactory) {
+		super();
+		this.transportFactory = transportFactory;
+		this.ring = new ConsistentHashRing<>(virtualNodes, Shard::getName);
+	}
+	
+	/**
+	 * Whenever a message is received from any of the servers, this method is called with it.
+	 * 
+	 * @param message The received message.
+	 * @param shard   The server, which has sent the message.
+	 */
+	public abstract void onMessageReceived(Message<?, ?> message, Shard shard);
+	
+	/**
+	 * Called when a server has been connected or reconnected. Its keys are routed to it again.
+	 * 
+	 * @param shard The server.
+	 */
+	public void onShardUp(Shard shard) {}
+	
+	/**
+	 * Called when the connection to a server has been lost. Its keys are routed to the following servers on the ring.
+	 * 
+	 * @param shard The server.
+	 */
+	public void onShardDown(Shard shard) {}
+	
+	/**
+	 * Adds a server. If this client is connected, the server is connected right away or, if that fails, by the health check.
+	 * 
+	 * @param ip   The IP of the server.
+	 * @param port The port of the server.
+	 * 
+	 * @return The new shard.
+	 */
+	public Shard addShard(String ip, int port) {
+		Shard shard = new Shard(ip, port);
+		shards.add(shard);
+		ring.add(shard);
+		if(running) {
+			shard.tryConnect();
+		}
+		return shard;
+	}
+	
+	/**
+	 * Removes a server and disconnects it. Its keys move to the following servers on the ring.
+	 * 
+	 * @param shard The server to remove.
+	 * 
+	 * @return {@code true} if the server has been removed, {@code false} if it isn't part of this client.
+	 */
+	public boolean removeShard(Shard shard) {
+		if(!shards.remove(shard)) {
+			return false;
+		}
+		ring.remove(shard);
+		shard.disconnect();
+		return true;
+	}
+	
+	/**
+	 * Connects to all servers and starts the health check, which reconnects servers, which are down.<br>
+	 * Calling this method on a connected client just returns {@code true}.
+	 * 
+	 * @return {@code true} if at least one server could be connected, {@code false} otherwise.
+	 */
+	public synchronized boolean connect() {
+		if(!running) {
+			running = true;
+			for(Shard shard : shards) {
+				shard.tryConnect();
+			}
+			healthChecker = new Thread(this::checkHealth, "shardHealthChecker");
+			healthChecker.setDaemon(true);
+			healthChecker.start();
+		}
+		for(Shard shard : shards) {
+			if(shard.isHealthy()) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Disconnects from all servers and stops the health check.
+	 */
+	public synchronized void disconnect() {
+		if(!running) {
+			return;
+		}
+		running = false;
+		healthChecker.interrupt();
+		healthChecker = null;
+		for(Shard shard : shards) {
+			shard.disconnect();
+		}
+	}
+	
+	/**
+	 * Reconnects servers, which are down, once their backoff has passed.
+	 */
+	private void checkHealth() {
+		try {
+			while(running) {
+				Thread.sleep(Math.min(retryMillis, 100));
+				long now = System.nanoTime();
+				for(Shard shard : shards) {
+					if(!shard.isHealthy() && now - shard.nextAttempt >= 0) {
+						shard.tryConnect();
+					}
+				}
+			}
+		} catch(InterruptedException exc) {
+			// thrown on disconnect
+		}
+	}
+	
+	/**
+	 * Sends a message to the server, which owns the key. If sending fails, the server is marked as down and the following server is used.
+	 * 
+	 * @param key     The key, which decides the server.
+	 * @param message The message to send.
+	 * 
+	 * @return {@code true} if the message could be sent, {@code false} if no server is available.
+	 */
+	public boolean sendMessage(String key, Message<?, ?> message) {
+		for(int attempt = 0; attempt < shards.size(); attempt++) {
+			Shard shard = getShard(key);
+			if(shard == null) {
+				return false;
+			}
+			if(shard.sendMessage(message)) {
+				return true;
+			}
+			shard.markDown();
+		}
+		return false;
+	}
+	
+	/**
+	 * Sends a message to every server, which is up.
+	 * 
+	 * @param message The message to send.
+	 * 
+	 * @return {@code true} if the message could be sent to all servers, which are up, {@code false} otherwise.
+	 */
+	public boolean broadcastMessage(Message<?, ?> message) {
+		boolean sent = true;
+		for(Shard shard : shards) {
+			if(shard.isHealthy() && !shard.sendMessage(message)) {
+				shard.markDown();
+				sent = false;
+			}
+		}
+		return sent;
+	}
+	
+	/**
+	 * Gets the server, which currently owns a key.
+	 * 
+	 * @param key The key.
+	 * 
+	 * @return The server, or {@code null} if all servers are down.
+	 */
+	public Shard getShard(String key) {
+		return ring.get(key, Shard::isHealthy);
+	}
+	
+	/**
+	 * Gets all servers, whether they are up or not.
+	 * 
+	 * @return The servers.
+	 */
+	public List<Shard> getShards() {
+		return Collections.unmodifiableList(shards);
+	}
+	
+	/**
+	 * Sets how long the health check waits before it reconnects a server, which went down. The wait doubles with every failed attempt.
+	 * 
+	 * @param retryMillis    The first wait in milliseconds.
+	 * @param maxRetryMillis The longest wait in milliseconds.
+	 */
+	public void setRetryInterval(long retryMillis, long maxRetryMillis) {
+		this.retryMillis = Math.max(1, retryMillis);
+		this.maxRetryMillis = Math.max(this.retryMillis, maxRetryMillis);
+	}
+	
+	/**
+	 * Returns whether this client is connected, meaning it has been connected and not disconnected since. Single servers may still be down.
+	 * 
+	 * @return {@code true} if this client is connected.
+	 */
+	public boolean isConnected() {
+		return running;
+	}
+	
+	@Override
+	public String toString() {
+		return "ShardedClient{running=" + running + ", shards=" + shards + "}";
+	}
+	
+	/**
+	 * The connection to one of the servers.
+	 */
+	public class Shard extends Client {
+		private final String name;
+		private volatile boolean healthy = false;
+		private volatile int failures = 0;
+		private volatile long nextAttempt = System.nanoTime();
+		
+		Shard(String ip, int port) {
+			super(ip, port, ShardedClient.this.transportFactory);
+			this.name = ip + ":" + port;
+		}
+		
+		/**
+		 * Connects to the server. On failure, the next attempt is delayed.
+		 */
+		synchronized void tryConnect() {
+			try {
+				if(connect()) {
+					failures = 0;
+					markUp();
+					return;
+				}
+			} catch(IOException exc) {
+				// the server is still down
+			}
+			int failed = Math.min(++failures, 30);
+			long delay = Math.min(maxRetryMillis, retryMillis << Math.min(failed - 1, 20));
+			nextAttempt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+		}
+		
+		private void markUp() {
+			if(!healthy) {
+				healthy = true;
+				onShardUp(this);
+			}
+		}
+		
+		synchronized void markDown() {
+			if(healthy) {
+				healthy = false;
+				nextAttempt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(retryMillis);
+				onShardDown(this);
+			}
+		}
+		
+		@Override
+		public void onMessageReceived(Message<?, ?> message) {
+			ShardedClient.this.onMessageReceived(message, this);
+		}
+		
+		@Override
+		public void onConnect() {}
+		
+		@Override
+		public void onDisconnect(boolean withError) {
+			// called on its own thread, the server may already be reconnected
+			if(!isConnected()) {
+				markDown();
+			}
+		}
+		
+		/**
+		 * Returns whether this server is up, so keys are routed to it.
+		 * 
+		 * @return {@code true} if this server is up.
+		 */
+		public boolean isHealthy() {
+			return healthy && isConnected();
+		}
+		
+		/**
+		 * Gets the amount of connection attempts, which failed in a row.
+		 * 
+		 * @return The amount of failed attempts since the last successful one.
+		 */
+		public int getFailures() {
+			return failures;
+		}
+		
+		/**
+		 * Gets the name of this server, which decides its positions on the ring.
+		 * 
+		 * @return The IP and port of this server.
+		 */
+		public String getName() {
+			return name;
+		}
+		
+		@Override
+		public String toString() {
+			return "Shard{name=" + name + ", healthy=" + isHealthy() + ", failures=" + failures + "}";
+		}
+	}
+}
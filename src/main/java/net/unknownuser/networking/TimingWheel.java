@@ -0,0 +1,402 @@
+package net.unknownuser.networking;
+
+import java.io.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+
+/**
+ * Runs delayed and periodic tasks on a single thread, no matter how many of them are pending. Used by the scheduling methods of {@link Server} and
+ * {@link Client}.<br>
+ * The wheel has a fixed amount of buckets, one per tick. A task is put into the bucket of the tick it is due in, with the amount of turns the wheel has to make
+ * until then. So scheduling and cancelling cost O(1), and every tick only looks at a single bucket. Tasks are run at most one tick late, but never early.
+ * <p>
+ * Tasks run on the thread of the wheel, one after another, so they must be short, e.g. sending a message. Longer work has to be handed to another thread. The
+ * thread is started with the first task.
+ */
+public class TimingWheel implements Closeable {
+	public static final long DEFAULT_TICK_MILLIS = 10;
+	public static final int DEFAULT_TICKS_PER_WHEEL = 512;
+	
+	/**
+	 * The most tasks, which are put into their buckets per tick, so a flood of new tasks doesn't delay the due ones.
+	 */
+	private static final int MAX_TRANSFERS_PER_TICK = 100000;
+	
+	private static final int WAITING = 0;
+	private static final int CANCELLED = 1;
+	private static final int EXPIRED = 2;
+	
+	private static volatile TimingWheel defaultWheel = null;
+	
+	/**
+	 * A scheduled task, which can be cancelled.
+	 */
+	public static final class Timeout {
+		private final TimingWheel wheel;
+		private final Consumer<Timeout> task;
+		private final long periodNanos;
+		private final AtomicInteger state = new AtomicInteger(WAITING);
+		
+		// only used by the thread of the wheel
+		private long deadline;
+		private long remainingRounds;
+		private Bucket bucket;
+		private Timeout previous;
+		private Timeout next;
+		
+		private Timeout(TimingWheel wheel, Consumer<Timeout> task, long deadline, long periodNanos) {
+			this.wheel = wheel;
+			this.task = task;
+			this.deadline = deadline;
+			this.periodNanos = periodNanos;
+		}
+		
+		/**
+		 * Cancels the task. A periodic task isn't run again, but a run, which has already started, is finished.
+		 * 
+		 * @return {@code true} if the task has been cancelled, {@code false} if it has already been cancelled or run.
+		 */
+		public boolean cancel() {
+			if(!state.compareAndSet(WAITING, CANCELLED)) {
+				return false;
+			}
+			wheel.pending.decrementAndGet();
+			// removed from its bucket by the thread of the wheel
+			wheel.cancelled.add(this);
+			return true;
+		}
+		
+		public boolean isCancelled() {
+			return state.get() == CANCELLED;
+		}
+		
+		/**
+		 * Returns whether a task, which isn't periodic, has been run.
+		 * 
+		 * @return {@code true} if the task has been run, {@code false} otherwise.
+		 */
+		public boolean isExpired() {
+			return state.get() == EXPIRED;
+		}
+		
+		public boolean isPeriodic() {
+			return periodNanos > 0;
+		}
+		
+		@Override
+		public String toString() {
+			return "Timeout{state=" + (isCancelled() ? "cancelled" : isExpired() ? "expired" : "waiting") + ", periodNanos=" + periodNanos + "}";
+		}
+	}
+	
+	/**
+	 * The tasks of a tick, as a doubly linked list, so cancelled tasks are removed in O(1).
+	 */
+	private static final class Bucket {
+		private Timeout head;
+		private Timeout tail;
+		
+		void add(Timeout timeout) {
+			timeout.bucket = this;
+			if(head == null) {
+				head = tail = timeout;
+			} else {
+				tail.next = timeout;
+				timeout.previous = tail;
+				tail = timeout;
+			}
+		}
+		
+		Timeout remove(Timeout timeout) {
+			Timeout next = timeout.next;
+			if(timeout.previous != null) {
+				timeout.previous.next = next;
+			}
+			if(timeout.next != null) {
+				timeout.next.previous = timeout.previous;
+			}
+			if(timeout == head) {
+				head = next;
+			}
+			if(timeout == tail) {
+				tail = timeout.previous;
+			}
+			timeout.previous = null;
+			timeout.next = null;
+			timeout.bucket = null;
+			return next;
+		}
+	}
+	
+	private final long tickNanos;
+	private final Bucket[] wheel;
+	private final int mask;
+	
+	private final ConcurrentLinkedQueue<Timeout> added = new ConcurrentLinkedQueue<>();
+	private final ConcurrentLinkedQueue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+	private final AtomicLong pending = new AtomicLong();
+	
+	private volatile long startNanos = 0;
+	private volatile Thread worker = null;
+	private volatile boolean closed = false;
+	private long tick = 0;
+	
+	/**
+	 * Creates a wheel with the default tick and size.
+	 */
+	public TimingWheel() {
+		this(DEFAULT_TICK_MILLIS, TimeUnit.MILLISECONDS, DEFAULT_TICKS_PER_WHEEL);
+	}
+	
+	/**
+	 * Creates a wheel.
+	 * 
+	 * @param tick          The duration of a tick, which is the precision of the wheel.
+	 * @param unit          The unit of the tick.
+	 * @param ticksPerWheel The amount of buckets, rounded up to a power of two. Tasks due later than one turn stay in their bucket for several turns.
+	 */
+	public TimingWheel(long tick, TimeUnit unit, int ticksPerWheel) {
+		super();
+		if(tick <= 0 || ticksPerWheel <= 0 || ticksPerWheel > 1 << 30) {
+			throw new IllegalArgumentException("tick and ticks per wheel must be positive");
+		}
+		this.tickNanos = unit.toNanos(tick);
+		int size = Integer.highestOneBit(ticksPerWheel - 1) << 1;
+		this.wheel = new Bucket[Math.max(1, size)];
+		for(int i = 0; i < wheel.length; i++) {
+			wheel[i] = new Bucket();
+		}
+		this.mask = wheel.length - 1;
+	}
+	
+	/**
+	 * Gets the wheel, which is shared by all servers and clients of this process. It must not be closed.
+	 * 
+	 * @return The shared wheel.
+	 */
+	public static TimingWheel getDefault() {
+		TimingWheel current = defaultWheel;
+		if(current == null) {
+			synchronized (TimingWheel.class) {
+				if(defaultWheel == null) {
+					defaultWheel = new TimingWheel();
+				}
+				current = defaultWheel;
+			}
+		}
+		return current;
+	}
+	
+	/**
+	 * Creates an executor for the work, which tasks hand to another thread, e.g. writing to a socket. Its thread is started when needed and ends after a second
+	 * without work, and it runs the work in the order it has been handed over.
+	 * 
+	 * @param name The name of the thread.
+	 * 
+	 * @return The executor.
+	 */
+	static Executor newDispatcher(String name) {
+		ThreadPoolExecutor dispatcher = new ThreadPoolExecutor(1, 1, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+			Thread thread = new Thread(runnable, name);
+			thread.setDaemon(true);
+			return thread;
+		});
+		dispatcher.allowCoreThreadTimeOut(true);
+		return dispatcher;
+	}
+	
+	/**
+	 * Runs a task once after a delay.
+	 * 
+	 * @param task  The task.
+	 * @param delay The delay.
+	 * @param unit  The unit of the delay.
+	 * 
+	 * @return The scheduled task, which can be cancelled.
+	 * 
+	 * @throws IllegalStateException When the wheel has been closed.
+	 */
+	public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+		return schedule(timeout -> task.run(), unit.toNanos(delay), 0);
+	}
+	
+	/**
+	 * Runs a task periodically. The runs are due at fixed times after the first one, so a late run doesn't delay the following ones.
+	 * 
+	 * @param task         The task.
+	 * @param initialDelay The delay of the first run.
+	 * @param period       The time between the runs.
+	 * @param unit         The unit of the delay and the period.
+	 * 
+	 * @return The scheduled task, which runs until it is cancelled.
+	 * 
+	 * @throws IllegalStateException When the wheel has been closed.
+	 */
+	public Timeout scheduleAtFixedRate(Runnable task, long initialDelay, long period, TimeUnit unit) {
+		if(period <= 0) {
+			throw new IllegalArgumentException("period must be positive");
+		}
+		return schedule(timeout -> task.run(), unit.toNanos(initialDelay), unit.toNanos(period));
+	}
+	
+	/**
+	 * Schedules a task, which gets its own timeout, e.g. to cancel itself.
+	 * 
+	 * @param task        The task.
+	 * @param delayNanos  The delay of the first run.
+	 * @param periodNanos The time between the runs, {@code 0} to run the task once.
+	 * 
+	 * @return The scheduled task.
+	 */
+	Timeout schedule(Consumer<Timeout> task, long delayNanos, long periodNanos) {
+		if(closed) {
+			throw new IllegalStateException("timing wheel has been closed");
+		}
+		start();
+		Timeout timeout = new Timeout(this, task, System.nanoTime() - startNanos + Math.max(0, delayNanos), periodNanos);
+		pending.incrementAndGet();
+		added.add(timeout);
+		return timeout;
+	}
+	
+	private void start() {
+		if(worker != null) {
+			return;
+		}
+		synchronized (this) {
+			if(worker == null) {
+				startNanos = System.nanoTime();
+				Thread thread = new Thread(this::turn, "timingWheel");
+				thread.setDaemon(true);
+				worker = thread;
+				thread.start();
+			}
+		}
+	}
+	
+	/**
+	 * Runs the due tasks every tick, until the wheel is closed.
+	 */
+	private void turn() {
+		while(!closed) {
+			if(!waitForNextTick()) {
+				break;
+			}
+			removeCancelled();
+			transferAdded();
+			expire(wheel[(int) (tick & mask)]);
+			tick++;
+		}
+	}
+	
+	/**
+	 * Waits until the current tick has passed.
+	 * 
+	 * @return {@code true} if the tick has passed, {@code false} if the wheel has been closed.
+	 */
+	private boolean waitForNextTick() {
+		long deadline = tickNanos * (tick + 1);
+		while(true) {
+			long now = System.nanoTime() - startNanos;
+			long sleepMillis = (deadline - now + 999999) / 1000000;
+			if(sleepMillis <= 0) {
+				return true;
+			}
+			try {
+				Thread.sleep(sleepMillis);
+			} catch(InterruptedException exc) {
+				if(closed) {
+					return false;
+				}
+			}
+		}
+	}
+	
+	private void removeCancelled() {
+		Timeout timeout;
+		while((timeout = cancelled.poll()) != null) {
+			if(timeout.bucket != null) {
+				timeout.bucket.remove(timeout);
+			}
+		}
+	}
+	
+	private void transferAdded() {
+		for(int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+			Timeout timeout = added.poll();
+			if(timeout == null) {
+				return;
+			}
+			if(timeout.isCancelled()) {
+				continue;
+			}
+			long dueTick = timeout.deadline / tickNanos;
+			timeout.remainingRounds = (dueTick - tick) / wheel.length;
+			// overdue tasks are run with the current tick
+			wheel[(int) (Math.max(dueTick, tick) & mask)].add(timeout);
+		}
+	}
+	
+	private void expire(Bucket bucket) {
+		Timeout timeout = bucket.head;
+		while(timeout != null) {
+			if(timeout.isCancelled()) {
+				timeout = bucket.remove(timeout);
+			} else if(timeout.remainingRounds <= 0) {
+				Timeout next = bucket.remove(timeout);
+				run(timeout);
+				timeout = next;
+			} else {
+				timeout.remainingRounds--;
+				timeout = timeout.next;
+			}
+		}
+	}
+	
+	private void run(Timeout timeout) {
+		if(!timeout.isPeriodic() && !timeout.state.compareAndSet(WAITING, EXPIRED)) {
+			return;
+		}
+		try {
+			timeout.task.accept(timeout);
+		} catch(Throwable exc) {
+			System.out.println("[TimingWheel][Warning] scheduled task failed");
+			exc.printStackTrace();
+		}
+		if(!timeout.isPeriodic()) {
+			pending.decrementAndGet();
+		} else if(!timeout.isCancelled()) {
+			timeout.deadline += timeout.periodNanos;
+			// put into its bucket with the next tick, the current bucket is being iterated
+			added.add(timeout);
+		}
+	}
+	
+	/**
+	 * Gets the amount of tasks, which haven't been run or cancelled. Periodic tasks count until they are cancelled.
+	 * 
+	 * @return The amount of pending tasks.
+	 */
+	public long getPending() {
+		return pending.get();
+	}
+	
+	/**
+	 * Stops the wheel. Pending tasks aren't run anymore.<br>
+	 * <b>Do not use this instance after this method has been called.<b>
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		Thread current = worker;
+		if(current != null) {
+			current.interrupt();
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return "TimingWheel{tickNanos=" + tickNanos + ", ticksPerWheel=" + wheel.length + ", pending=" + getPending() + "}";
+	}
+}
@@ -0,0 +1,55 @@
+package net.unknownuser.networking;
+
+/**
+ * A single entry of a traffic capture, as read by {@link TrafficRecorder#read(java.nio.file.Path, java.util.function.Consumer)}.
+ */
+public class TrafficRecord {
+	/**
+	 * What happened to the connection.
+	 */
+	public enum Kind {
+		/**
+		 * The server received the message from the client.
+		 */
+		RECEIVED,
+		/**
+		 * The server sent the message to the client.
+		 */
+		SENT,
+		/**
+		 * The client has been connected, there is no message.
+		 */
+		OPENED,
+		/**
+		 * The client has been disconnected, there is no message.
+		 */
+		CLOSED
+	}
+	
+	/**
+	 * The time since the capture has been started in nanoseconds.
+	 */
+	public final long time;
+	/**
+	 * Identifies the connection, unique within a capture.
+	 */
+	public final int connection;
+	public final Kind kind;
+	/**
+	 * The message, or {@code null} for {@link Kind#OPENED OPENED} and {@link Kind#CLOSED CLOSED}.
+	 */
+	public final Message<?, ?> message;
+	
+	public TrafficRecord(long time, int connection, Kind kind, Message<?, ?> message) {
+		super();
+		this.time = time;
+		this.connection = connection;
+		this.kind = kind;
+		this.message = message;
+	}
+	
+	@Override
+	public String toString() {
+		return "TrafficRecord{time=" + time + ", connection=" + connection + ", kind=" + kind + ", type=" + (message == null ? null : message.type) + "}";
+	}
+}
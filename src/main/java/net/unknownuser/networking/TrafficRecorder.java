@@ -0,0 +1,308 @@
+package net.unknownuser.networking;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+
+import net.unknownuser.networking.TrafficRecord.*;
+
+/**
+ * Captures the messages a {@link Server} receives and sends, with the time and the connection, into memory-mapped segment files. Enabled via
+ * {@link Server#setTrafficRecorder(TrafficRecorder)}, the capture can be replayed against a server with {@link net.unknownuser.networking.benchmark.TrafficReplay}.
+ * <br>
+ * The threads of the server only put the message and a timestamp into a bounded queue. A background thread serializes the messages and copies them into the
+ * mapped segment, so the disk is never touched by the server itself. When the queue is full, records are dropped instead of slowing the server down.<br>
+ * Each record is stored as {@code [int length + 1][long time][int connection][byte kind][payload]}, where the payload is empty for records without message. A
+ * {@code 0} instead of the length marks the end of a segment.
+ */
+public class TrafficRecorder implements Closeable {
+	private static final String SUFFIX = ".traffic";
+	private static final int HEADER_SIZE = Integer.BYTES + Long.BYTES + Integer.BYTES + Byte.BYTES;
+	private static final Kind[] KINDS = Kind.values();
+	
+	public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+	public static final int DEFAULT_QUEUE_CAPACITY = 65536;
+	
+	// shared by all recorders, so a connection keeps its id when the recorder is replaced
+	private static final AtomicInteger NEXT_CONNECTION = new AtomicInteger();
+	
+	/**
+	 * A captured event, which hasn't been written yet.
+	 */
+	private static class Capture {
+		final long time;
+		final int connection;
+		final Kind kind;
+		final Message<?, ?> message;
+		
+		Capture(long time, int connection, Kind kind, Message<?, ?> message) {
+			this.time = time;
+			this.connection = connection;
+			this.kind = kind;
+			this.message = message;
+		}
+	}
+	
+	private final Path directory;
+	private final int segmentSize;
+	private final long startNanos = System.nanoTime();
+	private final BlockingQueue<Capture> captures;
+	
+	private volatile int maxSegments = Integer.MAX_VALUE;
+	private int segmentCount = 0;
+	private FileChannel channel = null;
+	private MappedByteBuffer buffer = null;
+	
+	private final LongAdder recorded = new LongAdder();
+	private final LongAdder dropped = new LongAdder();
+	private volatile boolean closed = false;
+	private volatile boolean full = false;
+	
+	private final Thread writer;
+	
+	/**
+	 * Starts a new capture in the given directory with the default segment size and queue capacity.
+	 * 
+	 * @param directory The directory of the segment files, which must not contain an earlier capture.
+	 * 
+	 * @throws IOException When the first segment could not be created.
+	 */
+	public TrafficRecorder(Path directory) throws IOException {
+		this(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_QUEUE_CAPACITY);
+	}
+	
+	/**
+	 * Starts a new capture in the given directory.
+	 * 
+	 * @param directory     The directory of the segment files, which must not contain an earlier capture.
+	 * @param segmentSize   The size of a single segment file in bytes.
+	 * @param queueCapacity The amount of records, which may wait to be written, before further ones are dropped.
+	 * 
+	 * @throws IOException When the first segment could not be created.
+	 */
+	public TrafficRecorder(Path directory, int segmentSize, int queueCapacity) throws IOException {
+		super();
+		if(segmentSize <= HEADER_SIZE) {
+			throw new IllegalArgumentException("segment size too small: " + segmentSize);
+		}
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		this.captures = new ArrayBlockingQueue<>(queueCapacity);
+		
+		Files.createDirectories(directory);
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+			if(stream.iterator().hasNext()) {
+				throw new FileAlreadyExistsException(directory.toString(), null, "contains an earlier capture");
+			}
+		}
+		roll();
+		
+		writer = new Thread(this::writeContinuously, "trafficRecorder");
+		writer.setDaemon(true);
+		writer.start();
+	}
+	
+	/**
+	 * Gets a new id for a connection.
+	 * 
+	 * @return The id.
+	 */
+	static int nextConnection() {
+		return NEXT_CONNECTION.incrementAndGet();
+	}
+	
+	void received(Connection conn, Message<?, ?> message) {
+		capture(conn, Kind.RECEIVED, message);
+	}
+	
+	void sent(Connection conn, Message<?, ?> message) {
+		capture(conn, Kind.SENT, message);
+	}
+	
+	void opened(Connection conn) {
+		capture(conn, Kind.OPENED, null);
+	}
+	
+	void closed(Connection conn) {
+		capture(conn, Kind.CLOSED, null);
+	}
+	
+	private void capture(Connection conn, Kind kind, Message<?, ?> message) {
+		if(closed || full || !captures.offer(new Capture(System.nanoTime() - startNanos, conn.trafficId, kind, message))) {
+			dropped.increment();
+		}
+	}
+	
+	/**
+	 * Writes the captured records, until the recorder is closed and all of them are written.
+	 */
+	private void writeContinuously() {
+		try {
+			while(!closed || !captures.isEmpty()) {
+				Capture capture = captures.poll(100, TimeUnit.MILLISECONDS);
+				if(capture != null) {
+					write(capture);
+				}
+			}
+		} catch(InterruptedException exc) {
+			// not used
+		}
+	}
+	
+	private void write(Capture capture) {
+		byte[] payload;
+		try {
+			payload = capture.message == null ? new byte[0] : OutboundJournal.serialize(capture.message);
+		} catch(IOException exc) {
+			// the content isn't serializable, it couldn't have been sent either
+			dropped.increment();
+			return;
+		}
+		if(HEADER_SIZE + payload.length > segmentSize) {
+			System.out.printf("[TrafficRecorder][Warning] message of %d bytes doesn't fit into a segment%n", payload.length);
+			dropped.increment();
+			return;
+		}
+		if(buffer.remaining() < HEADER_SIZE + payload.length) {
+			// the rest of the segment is still zero, which marks its end
+			if(segmentCount >= maxSegments) {
+				System.out.printf("[TrafficRecorder][Warning] stopped capturing after %d segments%n", segmentCount);
+				full = true;
+				dropped.increment();
+				captures.clear();
+				return;
+			}
+			try {
+				roll();
+			} catch(IOException exc) {
+				System.err.println("could not create traffic segment");
+				exc.printStackTrace();
+				full = true;
+				dropped.increment();
+				return;
+			}
+		}
+		
+		int start = buffer.position();
+		buffer.putLong(start + Integer.BYTES, capture.time);
+		buffer.putInt(start + Integer.BYTES + Long.BYTES, capture.connection);
+		buffer.put(start + Integer.BYTES + Long.BYTES + Integer.BYTES, (byte) capture.kind.ordinal());
+		buffer.position(start + HEADER_SIZE);
+		buffer.put(payload);
+		// write the length last, so a torn record is never read
+		buffer.putInt(start, payload.length + 1);
+		recorded.increment();
+	}
+	
+	/**
+	 * Starts a new segment.
+	 */
+	private void roll() throws IOException {
+		if(channel != null) {
+			buffer.force();
+			channel.close();
+		}
+		Path path = directory.resolve(String.format("%05d%s", segmentCount++, SUFFIX));
+		channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+	}
+	
+	/**
+	 * Reads a capture in order.
+	 * 
+	 * @param directory The directory of the segment files.
+	 * @param consumer  Called with every record, in the order they have been captured. Records, whose message can't be read, are skipped with a warning.
+	 * 
+	 * @throws IOException When the segments could not be read.
+	 */
+	public static void read(Path directory, Consumer<TrafficRecord> consumer) throws IOException {
+		ArrayList<Path> files = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+			stream.forEach(files::add);
+		}
+		files.sort(Comparator.comparing(Path::getFileName));
+		
+		for(Path file : files) {
+			ByteBuffer view;
+			try (FileChannel segment = FileChannel.open(file, StandardOpenOption.READ)) {
+				view = segment.map(FileChannel.MapMode.READ_ONLY, 0, segment.size());
+			}
+			while(view.remaining() >= HEADER_SIZE) {
+				// stored one higher, so a record without message isn't the end of the segment
+				int length = view.getInt() - 1;
+				if(length < 0 || view.remaining() < HEADER_SIZE - Integer.BYTES + length) {
+					break;
+				}
+				long time = view.getLong();
+				int connection = view.getInt();
+				Kind kind = KINDS[view.get()];
+				Message<?, ?> message = null;
+				if(length > 0) {
+					byte[] payload = new byte[length];
+					view.get(payload);
+					try {
+						message = OutboundJournal.deserialize(payload);
+					} catch(IOException | ClassNotFoundException exc) {
+						System.out.printf("[TrafficRecorder][Warning] skipping unreadable message at %d ns: %s%n", time, exc);
+						continue;
+					}
+				}
+				consumer.accept(new TrafficRecord(time, connection, kind, message));
+			}
+		}
+	}
+	
+	/**
+	 * Gets the amount of records, which have been written.
+	 * 
+	 * @return The amount of records.
+	 */
+	public long getRecorded() {
+		return recorded.sum();
+	}
+	
+	/**
+	 * Gets the amount of records, which have been dropped, because the queue was full, the message couldn't be serialized or the maximum amount of segments has
+	 * been reached.
+	 * 
+	 * @return The amount of dropped records.
+	 */
+	public long getDropped() {
+		return dropped.sum();
+	}
+	
+	/**
+	 * Sets the maximum amount of segments. Once they are full, the capture stops, so a long running capture doesn't fill up the disk.
+	 * 
+	 * @param maxSegments The maximum amount of segments.
+	 */
+	public void setMaxSegments(int maxSegments) {
+		this.maxSegments = Math.max(1, maxSegments);
+	}
+	
+	/**
+	 * Writes the remaining records, forces them to disk and closes the current segment.<br>
+	 * <b>Do not use this instance after this method has been called.<b>
+	 */
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		try {
+			writer.join();
+		} catch(InterruptedException exc) {
+			writer.interrupt();
+		}
+		buffer.force();
+		channel.close();
+	}
+	
+	@Override
+	public String toString() {
+		return "TrafficRecorder{directory=" + directory + ", segments=" + segmentCount + ", recorded=" + getRecorded() + ", dropped=" + getDropped() + "}";
+	}
+}
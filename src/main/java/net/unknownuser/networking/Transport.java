@@ -0,0 +1,60 @@
+package net.unknownuser.networking;
+
+import java.io.*;
+import java.net.*;
+
+/**
+ * The way messages travel between a {@link Client} and a {@link Connection} of a {@link Server}.<br>
+ * Reading is only done by a single thread, writing is synchronized by the caller.
+ */
+public interface Transport extends Closeable {
+	/**
+	 * Prepares the transport for reading and writing, for example by exchanging stream headers. Called once, before any message is read or written.
+	 * 
+	 * @throws IOException When the transport could not be opened.
+	 */
+	default void open() throws IOException {}
+	
+	/**
+	 * Waits for the next message.
+	 * 
+	 * @return The received message.
+	 * 
+	 * @throws IOException            When the transport has been closed or broke down. An {@link EOFException} means the other side closed the transport.
+	 * @throws ClassNotFoundException When the received content could not be mapped to a class.
+	 */
+	Message<?, ?> read() throws IOException, ClassNotFoundException;
+	
+	/**
+	 * Writes a message and flushes it.
+	 * 
+	 * @param message The message to write.
+	 * 
+	 * @throws IOException When the message could not be written.
+	 */
+	void write(Message<?, ?> message) throws IOException;
+	
+	/**
+	 * Returns whether this side has closed the transport. When the other side closes it, {@link #read()} throws an {@link EOFException} instead.
+	 * 
+	 * @return {@code true} if this transport is closed.
+	 */
+	boolean isClosed();
+	
+	/**
+	 * Returns whether the other side is a {@link Client} of this library, which handles its {@link ControlType control messages}. The other side of a transport
+	 * for a foreign protocol, e.g. a browser, only receives the messages of the application, and journaled broadcasts without their sequence number.
+	 * 
+	 * @return {@code true} by default.
+	 */
+	default boolean handlesControlMessages() {
+		return true;
+	}
+	
+	/**
+	 * Gets the address of the other side. Transports without an IP address use the loopback address and a unique port.
+	 * 
+	 * @return The remote address.
+	 */
+	InetSocketAddress getRemoteAddress();
+}
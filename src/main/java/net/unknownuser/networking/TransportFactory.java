@@ -0,0 +1,21 @@
+package net.unknownuser.networking;
+
+import java.io.*;
+
+/**
+ * Creates the transport of a {@link Client}.
+ */
+@FunctionalInterface
+public interface TransportFactory {
+	/**
+	 * Connects to a server.
+	 * 
+	 * @param ip   The IP of the server.
+	 * @param port The port of the server.
+	 * 
+	 * @return The new, not yet opened, transport.
+	 * 
+	 * @throws IOException When no connection could be made.
+	 */
+	Transport connect(String ip, int port) throws IOException;
+}
@@ -0,0 +1,135 @@
+package net.unknownuser.networking;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.charset.*;
+import java.util.function.*;
+
+/**
+ * A {@link DatagramCodec}, which uses a separate writer and reader for every message type.<br>
+ * Types without a registered writer and reader can't be sent, unless {@link #setSerializationFallback(boolean) Java serialization} is enabled, which works for
+ * every content, but is not compact and deserializes whatever the sender has put into the datagram.
+ * 
+ * @param <T> The type of the messages.
+ */
+public class TypedDatagramCodec<T extends Enum<T>> implements DatagramCodec<T> {
+	private final Class<T> typeClass;
+	private final BiConsumer<Serializable, ByteBuffer>[] writers;
+	private final Function<ByteBuffer, Serializable>[] readers;
+	private volatile boolean serializationFallback = false;
+	
+	@SuppressWarnings("unchecked")
+	public TypedDatagramCodec(Class<T> typeClass) {
+		super();
+		this.typeClass = typeClass;
+		int types = typeClass.getEnumConstants().length;
+		this.writers = (BiConsumer<Serializable, ByteBuffer>[]) new BiConsumer<?, ?>[types];
+		this.readers = (Function<ByteBuffer, Serializable>[]) new Function<?, ?>[types];
+	}
+	
+	/**
+	 * Sets whether types without a registered writer and reader are sent with Java serialization. Disabled by default, because the contents are deserialized
+	 * before the application sees them.
+	 * 
+	 * @param serializationFallback Whether Java serialization is used for unregistered types.
+	 * 
+	 * @return This codec.
+	 */
+	public TypedDatagramCodec<T> setSerializationFallback(boolean serializationFallback) {
+		this.serializationFallback = serializationFallback;
+		return this;
+	}
+	
+	/**
+	 * Registers the writer and reader of a message type.
+	 * 
+	 * @param type   The message type.
+	 * @param writer Writes the content into the datagram.
+	 * @param reader Reads the content from the datagram.
+	 * 
+	 * @return This codec.
+	 */
+	public TypedDatagramCodec<T> register(T type, BiConsumer<Serializable, ByteBuffer> writer, Function<ByteBuffer, Serializable> reader) {
+		writers[type.ordinal()] = writer;
+		readers[type.ordinal()] = reader;
+		return this;
+	}
+	
+	/**
+	 * Registers a message type with a {@link String} content, which is written as length prefixed UTF-8.
+	 * 
+	 * @param type The message type.
+	 * 
+	 * @return This codec.
+	 */
+	public TypedDatagramCodec<T> registerString(T type) {
+		return register(type, (content, buffer) -> {
+			byte[] bytes = ((String) content).getBytes(StandardCharsets.UTF_8);
+			buffer.putShort((short) bytes.length);
+			buffer.put(bytes);
+		}, buffer -> {
+			byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+			buffer.get(bytes);
+			return new String(bytes, StandardCharsets.UTF_8);
+		});
+	}
+	
+	/**
+	 * Registers a message type with a {@code byte[]} content, which is written as is.
+	 * 
+	 * @param type The message type.
+	 * 
+	 * @return This codec.
+	 */
+	public TypedDatagramCodec<T> registerBytes(T type) {
+		return register(type, (content, buffer) -> buffer.put((byte[]) content), buffer -> {
+			byte[] bytes = new byte[buffer.remaining()];
+			buffer.get(bytes);
+			return bytes;
+		});
+	}
+	
+	@Override
+	public Class<T> getTypeClass() {
+		return typeClass;
+	}
+	
+	@Override
+	public void encode(T type, Serializable content, ByteBuffer buffer) {
+		BiConsumer<Serializable, ByteBuffer> writer = writers[type.ordinal()];
+		if(writer != null) {
+			writer.accept(content, buffer);
+			return;
+		}
+		if(!serializationFallback) {
+			throw new IllegalArgumentException("no writer registered for " + type);
+		}
+		
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(content);
+		} catch(IOException exc) {
+			throw new UncheckedIOException(exc);
+		}
+		buffer.put(bytes.toByteArray());
+	}
+	
+	@Override
+	public Serializable decode(T type, ByteBuffer buffer) {
+		Function<ByteBuffer, Serializable> reader = readers[type.ordinal()];
+		if(reader != null) {
+			return reader.apply(buffer);
+		}
+		if(!serializationFallback) {
+			throw new IllegalArgumentException("no reader registered for " + type);
+		}
+		
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining()))) {
+			return (Serializable) in.readObject();
+		} catch(IOException exc) {
+			throw new UncheckedIOException(exc);
+		} catch(ClassNotFoundException exc) {
+			throw new IllegalArgumentException("received content could not be mapped to a class", exc);
+		}
+	}
+}
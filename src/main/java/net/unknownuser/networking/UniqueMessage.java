@@ -0,0 +1,19 @@
+package net.unknownuser.networking;
+
+import java.io.*;
+
+/**
+ * A message with an id assigned by the client, which stays the same when the client sends the message again. Lets the server drop duplicates.
+ */
+public class UniqueMessage implements Serializable {
+	private static final long serialVersionUID = -1538294520778601846L;
+	
+	public final long id;
+	public final Message<?, ?> message;
+	
+	public UniqueMessage(long id, Message<?, ?> message) {
+		super();
+		this.id = id;
+		this.message = message;
+	}
+}
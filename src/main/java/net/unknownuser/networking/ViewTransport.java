@@ -0,0 +1,21 @@
+package net.unknownuser.networking;
+
+import java.io.*;
+
+/**
+ * A transport, which can hand out received frames as a {@link MessageView} instead of a {@link Message}.<br>
+ * {@link Connection}s and {@link Client}s read from such a transport via {@link #readInto(MessageView)} and pass views to {@code onFrameReceived}.
+ */
+public interface ViewTransport extends Transport {
+	/**
+	 * Waits for the next frame. A frame with a schema is loaded into the view, any other frame is returned as a message.
+	 * 
+	 * @param view The view to load the frame into. Only valid until the next call.
+	 * 
+	 * @return The received message, or {@code null} if the frame has been loaded into the view.
+	 * 
+	 * @throws IOException            When the transport has been closed or broke down.
+	 * @throws ClassNotFoundException When the received content could not be mapped to a class.
+	 */
+	Message<?, ?> readInto(MessageView view) throws IOException, ClassNotFoundException;
+}
@@ -0,0 +1,114 @@
+package net.unknownuser.networking.benchmark;
+
+import java.util.concurrent.atomic.*;
+
+/**
+ * Counts latencies in buckets, which grow exponentially, so any value up to {@link Long#MAX_VALUE} is recorded with at most 6.25% error in constant memory.<br>
+ * Recording is lock-free and may be done by many threads at once.
+ */
+public class LatencyHistogram {
+	// 16 buckets per power of two
+	private static final int SUB_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+	private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+	
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+	
+	/**
+	 * Records a latency.
+	 * 
+	 * @param nanos The latency in nanoseconds. Negative values are recorded as {@code 0}.
+	 */
+	public void record(long nanos) {
+		long value = Math.max(0, nanos);
+		counts.incrementAndGet(indexOf(value));
+		count.increment();
+		long current;
+		while(value > (current = max.get()) && !max.compareAndSet(current, value)) {
+			// retry until the maximum is at least the value
+		}
+	}
+	
+	private static int indexOf(long value) {
+		if(value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		return (exponent - SUB_BITS + 1) * SUB_BUCKETS + (int) ((value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1));
+	}
+	
+	/**
+	 * Gets the highest value of a bucket.
+	 */
+	private static long highestOf(int index) {
+		if(index < SUB_BUCKETS) {
+			return index;
+		}
+		int shift = index / SUB_BUCKETS - 1;
+		long lowest = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+		return lowest + (1L << shift) - 1;
+	}
+	
+	/**
+	 * Gets the latency, which the given share of all recorded latencies doesn't exceed.
+	 * 
+	 * @param percentile The share, between {@code 0} and {@code 1}.
+	 * 
+	 * @return The latency in nanoseconds, or {@code 0} if nothing has been recorded.
+	 */
+	public long percentile(double percentile) {
+		long total = 0;
+		for(int i = 0; i < BUCKETS; i++) {
+			total += counts.get(i);
+		}
+		if(total == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(total * percentile));
+		long seen = 0;
+		for(int i = 0; i < BUCKETS; i++) {
+			seen += counts.get(i);
+			if(seen >= rank) {
+				return Math.min(highestOf(i), max.get());
+			}
+		}
+		return max.get();
+	}
+	
+	/**
+	 * Gets the amount of recorded latencies.
+	 * 
+	 * @return The amount.
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+	
+	/**
+	 * Gets the highest recorded latency.
+	 * 
+	 * @return The latency in nanoseconds.
+	 */
+	public long getMax() {
+		return max.get();
+	}
+	
+	/**
+	 * Removes all recorded latencies. Latencies, which are recorded at the same time, may be lost.
+	 */
+	public void reset() {
+		for(int i = 0; i < BUCKETS; i++) {
+			counts.set(i, 0);
+		}
+		count.reset();
+		max.set(0);
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("LatencyHistogram{count=%d, p50=%.1fus, p99=%.1fus, p99.9=%.1fus, max=%.1fus}", getCount(), percentile(0.5) / 1000.0,
+				percentile(0.99) / 1000.0, percentile(0.999) / 1000.0, getMax() / 1000.0);
+	}
+}
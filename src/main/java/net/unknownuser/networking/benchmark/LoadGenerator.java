@@ -0,0 +1,330 @@
+package net.unknownuser.networking.benchmark;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import net.unknownuser.networking.*;
+
+/**
+ * Drives many clients against a server at a fixed rate and reports throughput, latencies, errors and disconnects while running, for load and soak tests.<br>
+ * By default, an echo server is started on the same machine. Against another server, only the round trips of requests are measured, unless the server echoes
+ * messages back to their sender as well.
+ * <p>
+ * Arguments, all optional, as {@code name=value}:
+ * <ul>
+ * <li>{@code host}, {@code port}: the server, default {@code 127.0.0.1:50200}</li>
+ * <li>{@code embedded}: whether to start the echo server, default {@code true}</li>
+ * <li>{@code clients}: the amount of clients, default {@code 100}</li>
+ * <li>{@code rate}: the messages per second of each client, default {@code 10}</li>
+ * <li>{@code payload}: the bytes of each message, default {@code 64}</li>
+ * <li>{@code mix}: the kinds of messages with their weights, default {@code send:3,request:1}. Kinds are {@code send} (echoed), {@code request} (answered) and
+ * {@code unique} (sent with an id, echoed)</li>
+ * <li>{@code duration}: the seconds to run, default {@code 30}</li>
+ * <li>{@code report}: the seconds between reports, default {@code 5}</li>
+ * <li>{@code threads}: the threads, which send the messages of all clients, default twice the amount of cores</li>
+ * </ul>
+ */
+public class LoadGenerator {
+	private enum LoadType {
+		PROBE
+	}
+	
+	private enum Kind {
+		SEND, REQUEST, UNIQUE
+	}
+	
+	/**
+	 * The content of a message, which carries the time it has been sent.
+	 */
+	private static class Probe implements Serializable {
+		private static final long serialVersionUID = 6029383749817740218L;
+		
+		final long sentAt;
+		final byte[] payload;
+		
+		Probe(long sentAt, byte[] payload) {
+			this.sentAt = sentAt;
+			this.payload = payload;
+		}
+	}
+	
+	private final String host;
+	private final int port;
+	private final int clientCount;
+	private final double rate;
+	private final byte[] payload;
+	private final Kind[] mix;
+	private final int threads;
+	
+	private final LatencyHistogram intervalLatencies = new LatencyHistogram();
+	private final LatencyHistogram totalLatencies = new LatencyHistogram();
+	private final LongAdder sent = new LongAdder();
+	private final LongAdder received = new LongAdder();
+	private final LongAdder errors = new LongAdder();
+	private final LongAdder disconnects = new LongAdder();
+	private final LongAdder reconnects = new LongAdder();
+	private final List<LoadClient> clients = new CopyOnWriteArrayList<>();
+	private volatile boolean running = false;
+	
+	private LoadGenerator(String host, int port, int clientCount, double rate, int payloadSize, Kind[] mix, int threads) {
+		super();
+		this.host = host;
+		this.port = port;
+		this.clientCount = clientCount;
+		this.rate = rate;
+		this.payload = new byte[payloadSize];
+		this.mix = mix;
+		this.threads = threads;
+	}
+	
+	public static void main(String[] args) throws Exception {
+		HashMap<String, String> options = new HashMap<>();
+		for(String arg : args) {
+			int split = arg.indexOf('=');
+			if(split <= 0) {
+				System.out.printf("ignoring argument %s, expected name=value%n", arg);
+				continue;
+			}
+			options.put(arg.substring(0, split), arg.substring(split + 1));
+		}
+		String host = options.getOrDefault("host", "127.0.0.1");
+		int port = Integer.parseInt(options.getOrDefault("port", "50200"));
+		boolean embedded = Boolean.parseBoolean(options.getOrDefault("embedded", "true"));
+		int clientCount = Integer.parseInt(options.getOrDefault("clients", "100"));
+		double rate = Double.parseDouble(options.getOrDefault("rate", "10"));
+		int payloadSize = Integer.parseInt(options.getOrDefault("payload", "64"));
+		Kind[] mix = parseMix(options.getOrDefault("mix", "send:3,request:1"));
+		long duration = Long.parseLong(options.getOrDefault("duration", "30"));
+		long report = Long.parseLong(options.getOrDefault("report", "5"));
+		int threads = Integer.parseInt(options.getOrDefault("threads", String.valueOf(Runtime.getRuntime().availableProcessors() * 2)));
+		
+		EchoServer server = null;
+		if(embedded) {
+			server = new EchoServer(port);
+			server.setDeduplicationWindow(1024);
+			server.start();
+		}
+		try {
+			new LoadGenerator(host, port, clientCount, rate, payloadSize, mix, threads).run(duration, report);
+		} finally {
+			if(server != null) {
+				server.shutdown();
+			}
+		}
+	}
+	
+	/**
+	 * Parses a mix like {@code send:3,request:1} into a table, from which the kinds are picked at random.
+	 */
+	private static Kind[] parseMix(String mix) {
+		ArrayList<Kind> table = new ArrayList<>();
+		for(String entry : mix.split(",")) {
+			String[] parts = entry.trim().split(":");
+			Kind kind = Kind.valueOf(parts[0].trim().toUpperCase(Locale.ROOT));
+			int weight = parts.length > 1 ? Integer.parseInt(parts[1].trim()) : 1;
+			for(int i = 0; i < weight; i++) {
+				table.add(kind);
+			}
+		}
+		if(table.isEmpty()) {
+			throw new IllegalArgumentException("the mix needs at least one kind of message");
+		}
+		return table.toArray(new Kind[0]);
+	}
+	
+	/**
+	 * Connects all clients, sends messages for the given time and reports regularly.
+	 * 
+	 * @param durationSeconds The time to send messages.
+	 * @param reportSeconds   The time between reports.
+	 * 
+	 * @throws InterruptedException When interrupted while waiting.
+	 */
+	public void run(long durationSeconds, long reportSeconds) throws InterruptedException {
+		System.out.printf("%d clients against %s:%d, %.1f msgs/s each, %d byte payload, mix %s%n", clientCount, host, port, rate, payload.length, Arrays.toString(mix));
+		running = true;
+		ScheduledExecutorService senders = Executors.newScheduledThreadPool(threads, daemon("loadSender"));
+		long periodNanos = (long) (1e9 / rate);
+		long connectStart = System.nanoTime();
+		for(int i = 0; i < clientCount; i++) {
+			LoadClient client = new LoadClient();
+			clients.add(client);
+			try {
+				if(!client.connect()) {
+					errors.increment();
+				}
+			} catch(IOException exc) {
+				errors.increment();
+			}
+		}
+		System.out.printf("connected %d of %d clients in %d ms%n", connectedClients(), clientCount, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - connectStart));
+		for(int i = 0; i < clientCount; i++) {
+			// spread the clients over the period, so they don't send in bursts
+			senders.scheduleAtFixedRate(clients.get(i)::tick, periodNanos * i / clientCount, periodNanos, TimeUnit.NANOSECONDS);
+		}
+		
+		long start = System.nanoTime();
+		long end = start + TimeUnit.SECONDS.toNanos(durationSeconds);
+		long lastReport = start;
+		long lastSent = 0;
+		long lastReceived = 0;
+		while(System.nanoTime() < end) {
+			Thread.sleep(Math.min(TimeUnit.SECONDS.toMillis(reportSeconds), Math.max(1, TimeUnit.NANOSECONDS.toMillis(end - System.nanoTime()))));
+			long now = System.nanoTime();
+			double seconds = (now - lastReport) / 1e9;
+			long sentNow = sent.sum();
+			long receivedNow = received.sum();
+			System.out.printf("[%6.1fs] connected=%d sent=%.0f/s received=%.0f/s errors=%d disconnects=%d reconnects=%d rtt p50=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus%n",
+					(now - start) / 1e9, connectedClients(), (sentNow - lastSent) / seconds, (receivedNow - lastReceived) / seconds, errors.sum(), disconnects.sum(),
+					reconnects.sum(), intervalLatencies.percentile(0.5) / 1000.0, intervalLatencies.percentile(0.99) / 1000.0, intervalLatencies.percentile(0.999) / 1000.0,
+					intervalLatencies.getMax() / 1000.0);
+			intervalLatencies.reset();
+			lastReport = now;
+			lastSent = sentNow;
+			lastReceived = receivedNow;
+		}
+		
+		running = false;
+		senders.shutdownNow();
+		senders.awaitTermination(5, TimeUnit.SECONDS);
+		// give the last answers some time to arrive
+		Thread.sleep(500);
+		for(LoadClient client : clients) {
+			client.disconnect();
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.printf("total: sent=%d (%.0f/s) received=%d (%.0f/s) errors=%d disconnects=%d reconnects=%d%n", sent.sum(), sent.sum() / seconds, received.sum(),
+				received.sum() / seconds, errors.sum(), disconnects.sum(), reconnects.sum());
+		System.out.println("total rtt: " + totalLatencies);
+	}
+	
+	private int connectedClients() {
+		int connected = 0;
+		for(LoadClient client : clients) {
+			if(client.isConnected()) {
+				connected++;
+			}
+		}
+		return connected;
+	}
+	
+	private void recordLatency(long sentAt) {
+		long latency = System.nanoTime() - sentAt;
+		intervalLatencies.record(latency);
+		totalLatencies.record(latency);
+	}
+	
+	private static ThreadFactory daemon(String name) {
+		AtomicInteger counter = new AtomicInteger();
+		return runnable -> {
+			Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+	
+	/**
+	 * One of the simulated clients. Reconnects on its next tick after a disconnect.
+	 */
+	private class LoadClient extends Client {
+		private final AtomicBoolean reconnecting = new AtomicBoolean();
+		
+		LoadClient() {
+			super(LoadGenerator.this.host, LoadGenerator.this.port);
+		}
+		
+		/**
+		 * Sends the next message of the mix.
+		 */
+		void tick() {
+			if(!isConnected()) {
+				reconnect();
+				return;
+			}
+			Kind kind = mix[ThreadLocalRandom.current().nextInt(mix.length)];
+			// a new array per message, otherwise the stream only writes a back-reference to the first one
+			Message<LoadType, Probe> message = new Message<>(LoadType.PROBE, new Probe(System.nanoTime(), payload.clone()));
+			boolean success = switch(kind) {
+				case SEND -> sendMessage(message);
+				case UNIQUE -> sendMessage(message, nextMessageId());
+				case REQUEST -> {
+					long sentAt = message.content.sentAt;
+					request(message).whenComplete((answer, exc) -> {
+						if(exc != null) {
+							errors.increment();
+						} else {
+							received.increment();
+							recordLatency(sentAt);
+						}
+					});
+					yield true;
+				}
+			};
+			if(success) {
+				sent.increment();
+			} else {
+				errors.increment();
+			}
+		}
+		
+		private void reconnect() {
+			if(!running || !reconnecting.compareAndSet(false, true)) {
+				return;
+			}
+			try {
+				if(connect()) {
+					reconnects.increment();
+				}
+			} catch(IOException exc) {
+				errors.increment();
+			} finally {
+				reconnecting.set(false);
+			}
+		}
+		
+		@Override
+		public void onMessageReceived(Message<?, ?> message) {
+			received.increment();
+			if(message.content instanceof Probe probe) {
+				recordLatency(probe.sentAt);
+			}
+		}
+		
+		@Override
+		public void onConnect() {}
+		
+		@Override
+		public void onDisconnect(boolean withError) {
+			if(running) {
+				disconnects.increment();
+			}
+		}
+	}
+	
+	/**
+	 * Echoes messages to their sender and answers requests with themselves.
+	 */
+	static class EchoServer extends Server {
+		EchoServer(int port) {
+			super(port);
+		}
+		
+		@Override
+		public void onMessageReceived(Message<?, ?> message, Connection sender) {
+			sender.sendMessage(message);
+		}
+		
+		@Override
+		public Message<?, ?> onRequestReceived(Message<?, ?> request, Connection sender) {
+			return request;
+		}
+		
+		@Override
+		public void onClientConnected(Connection client) {}
+		
+		@Override
+		public void onClientDisconnected(Connection client) {}
+	}
+}
@@ -0,0 +1,234 @@
+package net.unknownuser.networking.benchmark;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+
+import net.unknownuser.networking.*;
+
+/**
+ * Replays a capture of a {@link TrafficRecorder} against a server, so changes can be benchmarked with the traffic of a real deployment.<br>
+ * Every captured connection is replayed by its own {@link Client}, which connects, sends the messages the server has received from it and disconnects at the
+ * captured times, or faster by a factor. Messages, which the server has sent, are only counted, to compare them with the messages the clients receive. Acks,
+ * sessions and other messages, which the library of a client sends on its own, are not replayed, the replaying clients send them as needed.
+ * <p>
+ * The classes of the captured contents must be on the class path. Arguments, as {@code name=value}:
+ * <ul>
+ * <li>{@code log}: the directory of the capture, required</li>
+ * <li>{@code host}, {@code port}: the server, default {@code 127.0.0.1:50200}</li>
+ * <li>{@code embedded}: whether to start a server, which echoes messages and answers requests, default {@code true}</li>
+ * <li>{@code speed}: the factor, by which the replay is faster than the capture, default {@code 1}. {@code 0} replays as fast as possible</li>
+ * </ul>
+ */
+public class TrafficReplay {
+	// a replayed server may still be answering, when the captured connection closes
+	private static final long LINGER_MILLIS = 500;
+	
+	private final String host;
+	private final int port;
+	private final double speed;
+	
+	private final HashMap<Integer, ReplayClient> clients = new HashMap<>();
+	private final ScheduledExecutorService closer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "replayCloser");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private final LatencyHistogram lag = new LatencyHistogram();
+	private final LatencyHistogram requestLatencies = new LatencyHistogram();
+	private final LongAdder received = new LongAdder();
+	private final LongAdder errors = new LongAdder();
+	private long replayed = 0;
+	private long skipped = 0;
+	private long capturedSent = 0;
+	private long connections = 0;
+	
+	private long firstTime = -1;
+	private long lastTime = 0;
+	private long startNanos = 0;
+	
+	private TrafficReplay(String host, int port, double speed) {
+		super();
+		this.host = host;
+		this.port = port;
+		this.speed = speed;
+	}
+	
+	public static void main(String[] args) throws Exception {
+		HashMap<String, String> options = new HashMap<>();
+		for(String arg : args) {
+			int split = arg.indexOf('=');
+			if(split <= 0) {
+				System.out.printf("ignoring argument %s, expected name=value%n", arg);
+				continue;
+			}
+			options.put(arg.substring(0, split), arg.substring(split + 1));
+		}
+		if(!options.containsKey("log")) {
+			System.out.println("missing argument log=<directory of the capture>");
+			return;
+		}
+		Path log = Path.of(options.get("log"));
+		String host = options.getOrDefault("host", "127.0.0.1");
+		int port = Integer.parseInt(options.getOrDefault("port", "50200"));
+		boolean embedded = Boolean.parseBoolean(options.getOrDefault("embedded", "true"));
+		double speed = Double.parseDouble(options.getOrDefault("speed", "1"));
+		
+		LoadGenerator.EchoServer server = null;
+		if(embedded) {
+			server = new LoadGenerator.EchoServer(port);
+			server.start();
+		}
+		try {
+			new TrafficReplay(host, port, speed).run(log);
+		} finally {
+			if(server != null) {
+				server.shutdown();
+			}
+		}
+	}
+	
+	/**
+	 * Replays the capture and reports the results.
+	 * 
+	 * @param log The directory of the capture.
+	 * 
+	 * @throws IOException          When the capture could not be read.
+	 * @throws InterruptedException When interrupted while waiting for the last answers.
+	 */
+	public void run(Path log) throws IOException, InterruptedException {
+		System.out.printf("replaying %s against %s:%d at %s%n", log, host, port, speed > 0 ? speed + "x speed" : "full speed");
+		TrafficRecorder.read(log, this::replay);
+		long replayNanos = System.nanoTime() - startNanos;
+		// give the last answers some time to arrive
+		Thread.sleep(LINGER_MILLIS);
+		for(ReplayClient client : clients.values()) {
+			client.disconnect();
+		}
+		closer.shutdown();
+		closer.awaitTermination(LINGER_MILLIS * 2, TimeUnit.MILLISECONDS);
+		
+		System.out.printf("replayed %d messages of %d connections in %.1fs, captured in %.1fs%n", replayed, connections, replayNanos / 1e9,
+				firstTime < 0 ? 0 : (lastTime - firstTime) / 1e9);
+		System.out.printf("skipped %d messages of the client library, errors=%d%n", skipped, errors.sum());
+		System.out.printf("received %d messages, the server sent %d when captured%n", received.sum(), capturedSent);
+		if(speed > 0) {
+			System.out.printf("behind schedule: p50=%.1fus p99=%.1fus max=%.1fus%n", lag.percentile(0.5) / 1000.0, lag.percentile(0.99) / 1000.0, lag.getMax() / 1000.0);
+		}
+		System.out.println("request rtt: " + requestLatencies);
+	}
+	
+	/**
+	 * Waits until a record is due and replays it.
+	 */
+	private void replay(TrafficRecord record) {
+		if(firstTime < 0) {
+			firstTime = record.time;
+			startNanos = System.nanoTime();
+		}
+		lastTime = record.time;
+		if(speed > 0) {
+			long due = startNanos + (long) ((record.time - firstTime) / speed);
+			long remaining;
+			while((remaining = due - System.nanoTime()) > 0) {
+				LockSupport.parkNanos(remaining);
+			}
+			lag.record(System.nanoTime() - due);
+		}
+		
+		switch(record.kind) {
+			case OPENED -> clientOf(record.connection);
+			case RECEIVED -> send(clientOf(record.connection), record.message);
+			case SENT -> capturedSent++;
+			case CLOSED -> {
+				ReplayClient client = clients.remove(record.connection);
+				if(client != null) {
+					closer.schedule(client::disconnect, LINGER_MILLIS, TimeUnit.MILLISECONDS);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Gets the client of a captured connection, which is connected on first use. Connections, which have been opened before the capture started, have no record
+	 * of it.
+	 */
+	private ReplayClient clientOf(int connection) {
+		ReplayClient client = clients.get(connection);
+		if(client == null) {
+			client = new ReplayClient();
+			clients.put(connection, client);
+			connections++;
+			try {
+				if(!client.connect()) {
+					errors.increment();
+				}
+			} catch(IOException exc) {
+				errors.increment();
+			}
+		}
+		return client;
+	}
+	
+	private void send(ReplayClient client, Message<?, ?> message) {
+		boolean success;
+		if(message.type instanceof ControlType type) {
+			switch(type) {
+				case UNIQUE -> {
+					UniqueMessage unique = (UniqueMessage) message.content;
+					success = client.sendMessage(unique.message, unique.id);
+				}
+				case REQUEST -> {
+					RequestMessage request = (RequestMessage) message.content;
+					long sentAt = System.nanoTime();
+					client.request(request.message).whenComplete((answer, exc) -> {
+						if(exc != null) {
+							errors.increment();
+						} else {
+							requestLatencies.record(System.nanoTime() - sentAt);
+						}
+					});
+					success = true;
+				}
+				case REPLICA -> {
+					ReplicaSubscription subscription = (ReplicaSubscription) message.content;
+					success = subscription.subscribe ? client.subscribe(subscription.name) != null : client.unsubscribe(subscription.name);
+				}
+				default -> {
+					skipped++;
+					return;
+				}
+			}
+		} else {
+			success = client.sendMessage(message);
+		}
+		if(success) {
+			replayed++;
+		} else {
+			errors.increment();
+		}
+	}
+	
+	/**
+	 * Replays one captured connection.
+	 */
+	private class ReplayClient extends Client {
+		ReplayClient() {
+			super(TrafficReplay.this.host, TrafficReplay.this.port);
+		}
+		
+		@Override
+		public void onMessageReceived(Message<?, ?> message) {
+			received.increment();
+		}
+		
+		@Override
+		public void onConnect() {}
+		
+		@Override
+		public void onDisconnect(boolean withError) {}
+	}
+}
@@ -0,0 +1,180 @@
+package net.unknownuser.networking.benchmark;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import net.unknownuser.networking.*;
+import net.unknownuser.networking.transport.*;
+
+/**
+ * Compares loopback TCP with Unix domain sockets and shared memory.<br>
+ * Every transport is measured twice against an echo: once on the bare {@link Transport}, which shows the cost of the transport itself, and once through a
+ * {@link Server} and a {@link Client}, which adds the threads of their callbacks. Each run measures the round trip time of one message at a time, and afterwards the
+ * throughput of many messages in flight at once.
+ * <p>
+ * Arguments: {@code [round trips] [throughput messages] [payload bytes]}
+ */
+public class TransportBenchmark {
+	private static final int TCP_PORT = 50100;
+	private static final int UDS_PORT = 50101;
+	private static final int SHM_PORT = 50102;
+	
+	private enum BenchmarkType {
+		ECHO
+	}
+	
+	public static void main(String[] args) throws Exception {
+		int roundTrips = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+		int messages = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+		int payloadSize = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+		
+		System.out.printf("%d round trips, %d messages, %d byte payload%n", roundTrips, messages, payloadSize);
+		byte[] payload = new byte[payloadSize];
+		runTransport("tcp transport", TCP_PORT, SocketAcceptor::new, SocketTransport::connect, roundTrips, messages, payload);
+		runTransport("uds transport", UDS_PORT, UnixDomainAcceptor::new, UnixDomainTransport::connect, roundTrips, messages, payload);
+		// parked threads need a while to notice a new frame, but spinning only pays off with a core for every waiting thread
+		IdleStrategy shmIdle = Runtime.getRuntime().availableProcessors() >= 4 ? IdleStrategy.BUSY_SPIN : IdleStrategy.BACKOFF;
+		AcceptorFactory shmAcceptor = port -> new SharedMemoryAcceptor(port, shmIdle, null);
+		TransportFactory shmTransport = (ip, port) -> SharedMemoryTransport.connect(port, SharedMemoryTransport.DEFAULT_CAPACITY, shmIdle, null);
+		runTransport("shm transport", SHM_PORT, shmAcceptor, shmTransport, roundTrips, messages, payload);
+		runServer("tcp server", TCP_PORT, SocketAcceptor::new, SocketTransport::connect, roundTrips, messages, payload);
+		runServer("uds server", UDS_PORT, UnixDomainAcceptor::new, UnixDomainTransport::connect, roundTrips, messages, payload);
+		runServer("shm server", SHM_PORT, shmAcceptor, shmTransport, roundTrips, messages, payload);
+	}
+	
+	private static void runTransport(String name, int port, AcceptorFactory acceptorFactory, TransportFactory transportFactory, int roundTrips, int messages,
+			byte[] payload) throws Exception {
+		try (Acceptor acceptor = acceptorFactory.open(port)) {
+			Thread echo = new Thread(() -> {
+				try (Transport transport = acceptor.accept()) {
+					transport.open();
+					while(true) {
+						transport.write(transport.read());
+					}
+				} catch(EOFException | SocketException exc) {
+					// benchmark done
+				} catch(Exception exc) {
+					exc.printStackTrace();
+				}
+			}, "echo");
+			echo.start();
+			
+			try (Transport transport = transportFactory.connect("127.0.0.1", port)) {
+				transport.open();
+				// a separate reader, so the writer never waits for the echo while measuring the throughput
+				Semaphore echoes = new Semaphore(0);
+				Thread reader = new Thread(() -> {
+					try {
+						while(true) {
+							transport.read();
+							echoes.release();
+						}
+					} catch(Exception exc) {
+						// transport closed
+					}
+				}, "reader");
+				reader.setDaemon(true);
+				reader.start();
+				
+				measure(name, roundTrips, messages, () -> {
+					// a new array every time, otherwise Java serialization only sends a reference to the first one
+					transport.write(new Message<>(BenchmarkType.ECHO, payload.clone()));
+					return null;
+				}, echoes);
+			}
+			echo.join();
+		}
+	}
+	
+	private static void runServer(String name, int port, AcceptorFactory acceptorFactory, TransportFactory transportFactory, int roundTrips, int messages, byte[] payload)
+			throws Exception {
+		EchoServer server = new EchoServer(port, acceptorFactory);
+		server.start();
+		BenchmarkClient client = new BenchmarkClient(port, transportFactory);
+		try {
+			if(!client.connect()) {
+				System.out.printf("%s: could not connect%n", name);
+				return;
+			}
+			measure(name, roundTrips, messages, () -> client.sendMessage(new Message<>(BenchmarkType.ECHO, payload.clone())), client.echoes);
+		} finally {
+			client.disconnect();
+			server.shutdown();
+		}
+	}
+	
+	private static void measure(String name, int roundTrips, int messages, Callable<?> send, Semaphore echoes) throws Exception {
+		// warm up the JIT with both patterns, before anything is measured
+		measureRoundTrips(send, echoes, roundTrips / 10);
+		measureThroughput(send, echoes, messages / 10);
+		
+		long[] rtts = measureRoundTrips(send, echoes, roundTrips);
+		Arrays.sort(rtts);
+		long nanos = measureThroughput(send, echoes, messages);
+		
+		System.out.printf("%s: rtt p50=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus | throughput=%.0f msgs/s%n", name, percentile(rtts, 0.5) / 1000.0,
+				percentile(rtts, 0.99) / 1000.0, percentile(rtts, 0.999) / 1000.0, rtts[rtts.length - 1] / 1000.0, messages * 1e9 / nanos);
+	}
+	
+	private static long[] measureRoundTrips(Callable<?> send, Semaphore echoes, int count) throws Exception {
+		long[] rtts = new long[count];
+		for(int i = 0; i < count; i++) {
+			long start = System.nanoTime();
+			send.call();
+			echoes.acquire();
+			rtts[i] = System.nanoTime() - start;
+		}
+		return rtts;
+	}
+	
+	private static long measureThroughput(Callable<?> send, Semaphore echoes, int count) throws Exception {
+		long start = System.nanoTime();
+		for(int i = 0; i < count; i++) {
+			send.call();
+		}
+		echoes.acquire(count);
+		return System.nanoTime() - start;
+	}
+	
+	private static long percentile(long[] sorted, double percentile) {
+		return sorted[Math.min(sorted.length - 1, (int) (sorted.length * percentile))];
+	}
+	
+	private static class EchoServer extends Server {
+		EchoServer(int port, AcceptorFactory acceptorFactory) {
+			super(port, acceptorFactory);
+		}
+		
+		@Override
+		public void onMessageReceived(Message<?, ?> message, Connection sender) {
+			sender.sendMessage(message);
+		}
+		
+		@Override
+		public void onClientConnected(Connection client) {}
+		
+		@Override
+		public void onClientDisconnected(Connection client) {}
+	}
+	
+	private static class BenchmarkClient extends Client {
+		private final Semaphore echoes = new Semaphore(0);
+		
+		BenchmarkClient(int port, TransportFactory transportFactory) {
+			super("127.0.0.1", port, transportFactory);
+		}
+		
+		@Override
+		public void onMessageReceived(Message<?, ?> message) {
+			echoes.release();
+		}
+		
+		@Override
+		public void onConnect() {}
+		
+		@Override
+		public void onDisconnect(boolean withError) {}
+	}
+}
@@ -0,0 +1,395 @@
+package net.unknownuser.networking.codec;
+
+import java.io.*;
+import java.util.*;
+
+import javax.annotation.processing.*;
+import javax.lang.model.*;
+import javax.lang.model.element.*;
+import javax.lang.model.type.*;
+import javax.lang.model.util.*;
+import javax.tools.*;
+
+/**
+ * Generates the codecs of contents marked with {@link FrameContent} and the codec factories of enums marked with {@link FrameTypes}.<br>
+ * The generated code calls the {@link net.unknownuser.networking.FrameWriter FrameWriter} and {@link net.unknownuser.networking.MessageView MessageView} of every
+ * field directly, so encoding and decoding is as fast as a hand-written codec. Put the library on the annotation processor path and use it like this:
+ * 
+ * <pre>
+ * &#64;FrameContent
+ * public record Quote(int id, double price, &#64;FrameField(since = 2) long time) implements Serializable {}
+ * 
+ * &#64;FrameTypes
+ * public enum MessageType {
+ * 	&#64;FrameType(Quote.class)
+ * 	QUOTE,
+ * 	TEXT
+ * }
+ * 
+ * FrameCodec&lt;MessageType&gt; codec = MessageTypeCodecs.create();
+ * </pre>
+ */
+@SupportedAnnotationTypes({ "net.unknownuser.networking.codec.FrameContent", "net.unknownuser.networking.codec.FrameField", "net.unknownuser.networking.codec.FrameType",
+		"net.unknownuser.networking.codec.FrameTypes" })
+public class CodecProcessor extends AbstractProcessor {
+	/**
+	 * A field of a content, with the calls to encode and decode it.
+	 */
+	private static final class Field {
+		final String name;
+		final String constant;
+		final TypeMirror type;
+		final String fieldType;
+		final String suffix;
+		final int since;
+		
+		Field(String name, TypeMirror type, String fieldType, String suffix, int since) {
+			this.name = name;
+			this.constant = constantOf(name);
+			this.type = type;
+			this.fieldType = fieldType;
+			this.suffix = suffix;
+			this.since = since;
+		}
+		
+		boolean isArray() {
+			return suffix.equals("Bytes");
+		}
+	}
+	
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+	
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		for(Element element : roundEnv.getElementsAnnotatedWith(FrameContent.class)) {
+			if(element.getKind() != ElementKind.RECORD && element.getKind() != ElementKind.CLASS) {
+				error(element, "@FrameContent is only allowed on records and classes");
+				continue;
+			}
+			generateContentCodec((TypeElement) element);
+		}
+		for(Element element : roundEnv.getElementsAnnotatedWith(FrameTypes.class)) {
+			if(element.getKind() != ElementKind.ENUM) {
+				error(element, "@FrameTypes is only allowed on enums");
+				continue;
+			}
+			generateTypeCodecs((TypeElement) element);
+		}
+		return true;
+	}
+	
+	private void generateContentCodec(TypeElement content) {
+		TypeMirror serializable = processingEnv.getElementUtils().getTypeElement(Serializable.class.getName()).asType();
+		if(!processingEnv.getTypeUtils().isAssignable(content.asType(), serializable)) {
+			error(content, "the content of messages must be serializable");
+			return;
+		}
+		boolean isRecord = content.getKind() == ElementKind.RECORD;
+		List<Field> fields = new ArrayList<>();
+		List<? extends Element> members = isRecord ? content.getRecordComponents() : ElementFilter.fieldsIn(content.getEnclosedElements());
+		for(Element member : members) {
+			Set<Modifier> modifiers = member.getModifiers();
+			if(modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.TRANSIENT)) {
+				continue;
+			}
+			if(!isRecord && modifiers.contains(Modifier.PRIVATE)) {
+				error(member, "fields of a class must not be private, the codec accesses them directly");
+				return;
+			}
+			Field field = fieldOf(member);
+			if(field == null) {
+				return;
+			}
+			fields.add(field);
+		}
+		if(!checkFields(content, fields)) {
+			return;
+		}
+		String creation = isRecord ? "constructor" : creationOf(content, fields);
+		if(creation == null) {
+			error(content, "a class needs a constructor with all fields in declaration order, or a constructor without parameters and fields, which aren't final");
+			return;
+		}
+		
+		String packageName = packageOf(content);
+		String contentName = nameOf(content, packageName);
+		String codecName = codecNameOf(content, packageName);
+		int version = 1;
+		for(Field field : fields) {
+			version = Math.max(version, field.since);
+		}
+		
+		StringBuilder source = new StringBuilder();
+		header(source, packageName);
+		source.append("/**\n * The codec of {@link ").append(contentName).append("}, generated from its fields.\n */\n");
+		source.append("public final class ").append(codecName).append(" {\n");
+		source.append("\tpublic static final int VERSION = ").append(version).append(";\n");
+		source.append("\tpublic static final FrameSchema SCHEMA = new FrameSchema();\n");
+		for(Field field : fields) {
+			source.append("\tpublic static final int ").append(field.constant).append(" = SCHEMA.add(\"").append(field.name).append("\", FieldType.").append(field.fieldType)
+					.append(");\n");
+		}
+		source.append("\t\n\tprivate ").append(codecName).append("() {}\n\t\n");
+		
+		source.append("\tpublic static void encode(").append(contentName).append(" content, FrameWriter writer) {\n");
+		for(Field field : fields) {
+			String value = "content." + field.name + (isRecord ? "()" : "");
+			if(field.isArray()) {
+				source.append("\t\tbyte[] ").append(field.name).append(" = ").append(value).append(";\n");
+				source.append("\t\tif(").append(field.name).append(" != null) {\n");
+				source.append("\t\t\twriter.putBytes(").append(field.constant).append(", ").append(field.name).append(", 0, ").append(field.name).append(".length);\n");
+				source.append("\t\t}\n");
+			} else {
+				source.append("\t\twriter.put").append(field.suffix).append('(').append(field.constant).append(", ").append(value).append(");\n");
+			}
+		}
+		source.append("\t}\n\t\n");
+		
+		source.append("\tpublic static ").append(contentName).append(" decode(MessageView view) {\n");
+		for(Field field : fields) {
+			if(field.isArray()) {
+				source.append("\t\tbyte[] ").append(field.name).append(" = new byte[view.getBytesLength(").append(field.constant).append(")];\n");
+				source.append("\t\tview.getBytes(").append(field.constant).append(", ").append(field.name).append(", 0);\n");
+			}
+		}
+		if(creation.equals("constructor")) {
+			source.append("\t\treturn new ").append(contentName).append('(');
+			for(int i = 0; i < fields.size(); i++) {
+				source.append(i == 0 ? "" : ", ").append(readOf(fields.get(i)));
+			}
+			source.append(");\n");
+		} else {
+			source.append("\t\t").append(contentName).append(" content = new ").append(contentName).append("();\n");
+			for(Field field : fields) {
+				source.append("\t\tcontent.").append(field.name).append(" = ").append(readOf(field)).append(";\n");
+			}
+			source.append("\t\treturn content;\n");
+		}
+		source.append("\t}\n}\n");
+		write(content, packageName, codecName, source);
+	}
+	
+	private void generateTypeCodecs(TypeElement types) {
+		String packageName = packageOf(types);
+		String typesName = nameOf(types, packageName);
+		String codecsName = flatNameOf(types, packageName) + "Codecs";
+		
+		StringBuilder registrations = new StringBuilder();
+		for(Element constant : types.getEnclosedElements()) {
+			FrameType frameType = constant.getAnnotation(FrameType.class);
+			if(constant.getKind() != ElementKind.ENUM_CONSTANT || frameType == null) {
+				continue;
+			}
+			TypeMirror contentType = contentOf(frameType);
+			Element content = processingEnv.getTypeUtils().asElement(contentType);
+			if(!(content instanceof TypeElement) || content.getAnnotation(FrameContent.class) == null) {
+				error(constant, "the content of a frame type must be marked with @FrameContent");
+				return;
+			}
+			String contentPackage = packageOf((TypeElement) content);
+			String codec = (contentPackage.isEmpty() ? "" : contentPackage + ".") + codecNameOf((TypeElement) content, contentPackage);
+			registrations.append("\t\tcodec.register(").append(typesName).append('.').append(constant.getSimpleName()).append(", ").append(codec).append(".SCHEMA, ")
+					.append(codec).append("::encode, ").append(codec).append("::decode);\n");
+		}
+		
+		StringBuilder source = new StringBuilder();
+		header(source, packageName);
+		source.append("/**\n * Creates the codec of {@link ").append(typesName).append("}, generated from its constants.\n */\n");
+		source.append("public final class ").append(codecsName).append(" {\n");
+		source.append("\tprivate ").append(codecsName).append("() {}\n\t\n");
+		source.append("\t/**\n\t * Creates a new codec, which has the schema of every type with a content.\n\t * \n\t * @return The new codec.\n\t */\n");
+		source.append("\tpublic static FrameCodec<").append(typesName).append("> create() {\n");
+		source.append("\t\tFrameCodec<").append(typesName).append("> codec = new FrameCodec<>(").append(typesName).append(".class);\n");
+		source.append(registrations);
+		source.append("\t\treturn codec;\n\t}\n}\n");
+		write(types, packageName, codecsName, source);
+	}
+	
+	/**
+	 * Maps a member to its field type.
+	 * 
+	 * @return The field, or {@code null} if its type isn't supported.
+	 */
+	private Field fieldOf(Element member) {
+		String name = member.getSimpleName().toString();
+		TypeMirror type = member.asType();
+		FrameField annotation = member.getAnnotation(FrameField.class);
+		int since = annotation == null ? 1 : annotation.since();
+		switch(type.getKind()) {
+			case BOOLEAN:
+				return new Field(name, type, "BOOLEAN", "Boolean", since);
+			case BYTE:
+				return new Field(name, type, "BYTE", "Byte", since);
+			case SHORT:
+				return new Field(name, type, "SHORT", "Short", since);
+			case CHAR:
+				return new Field(name, type, "CHAR", "Char", since);
+			case INT:
+				return new Field(name, type, "INT", "Int", since);
+			case FLOAT:
+				return new Field(name, type, "FLOAT", "Float", since);
+			case LONG:
+				return new Field(name, type, "LONG", "Long", since);
+			case DOUBLE:
+				return new Field(name, type, "DOUBLE", "Double", since);
+			case ARRAY:
+				if(((ArrayType) type).getComponentType().getKind() == TypeKind.BYTE) {
+					return new Field(name, type, "BYTES", "Bytes", since);
+				}
+				break;
+			case DECLARED:
+				if(type.toString().equals(String.class.getName())) {
+					return new Field(name, type, "BYTES", "String", since);
+				}
+				break;
+			default:
+				break;
+		}
+		error(member, "only primitives, String and byte[] can be encoded");
+		return null;
+	}
+	
+	/**
+	 * Checks the rules of the frame schema and of versioning.
+	 */
+	private boolean checkFields(TypeElement content, List<Field> fields) {
+		int variable = 0;
+		int version = 1;
+		Set<String> constants = new HashSet<>(Arrays.asList("VERSION", "SCHEMA"));
+		for(Field field : fields) {
+			if(field.since < 1) {
+				error(content, "the version of field " + field.name + " must be at least 1");
+				return false;
+			}
+			// the variable field is always placed last, so only the fixed fields need to keep their order
+			if(!field.fieldType.equals("BYTES")) {
+				if(field.since < version) {
+					error(content, "field " + field.name + " of version " + field.since + " follows a field of version " + version + ", new fields must be added at the end");
+					return false;
+				}
+				version = field.since;
+			} else if(++variable > 1) {
+				error(content, "only one String or byte[] field is allowed");
+				return false;
+			}
+			if(!constants.add(field.constant)) {
+				error(content, "field " + field.name + " clashes with the constant " + field.constant + " of the generated codec");
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Finds out how a class is created from its fields.
+	 * 
+	 * @return {@code "constructor"} for a constructor with all fields, {@code "fields"} for a constructor without parameters and assignable fields, or {@code null}.
+	 */
+	private String creationOf(TypeElement content, List<Field> fields) {
+		Types types = processingEnv.getTypeUtils();
+		boolean hasDefault = false;
+		for(ExecutableElement constructor : ElementFilter.constructorsIn(content.getEnclosedElements())) {
+			if(constructor.getModifiers().contains(Modifier.PRIVATE)) {
+				continue;
+			}
+			List<? extends VariableElement> parameters = constructor.getParameters();
+			if(parameters.isEmpty()) {
+				hasDefault = true;
+			}
+			if(parameters.size() != fields.size()) {
+				continue;
+			}
+			boolean matches = true;
+			for(int i = 0; i < parameters.size() && matches; i++) {
+				matches = types.isSameType(parameters.get(i).asType(), fields.get(i).type);
+			}
+			if(matches) {
+				return "constructor";
+			}
+		}
+		if(!hasDefault) {
+			return null;
+		}
+		for(VariableElement field : ElementFilter.fieldsIn(content.getEnclosedElements())) {
+			Set<Modifier> modifiers = field.getModifiers();
+			if(modifiers.contains(Modifier.FINAL) && !modifiers.contains(Modifier.STATIC)) {
+				return null;
+			}
+		}
+		return "fields";
+	}
+	
+	private static String readOf(Field field) {
+		return field.isArray() ? field.name : "view.get" + field.suffix + "(" + field.constant + ")";
+	}
+	
+	private static TypeMirror contentOf(FrameType frameType) {
+		try {
+			frameType.value();
+			throw new IllegalStateException("classes of annotations are only available as type mirrors");
+		} catch(MirroredTypeException exc) {
+			return exc.getTypeMirror();
+		}
+	}
+	
+	private static void header(StringBuilder source, String packageName) {
+		if(!packageName.isEmpty()) {
+			source.append("package ").append(packageName).append(";\n\n");
+		}
+		// no @Generated, no processor claims it and javac would warn about it in every build
+		source.append("// generated by ").append(CodecProcessor.class.getName()).append(", do not edit\n\n");
+		source.append("import net.unknownuser.networking.*;\n");
+		source.append("import net.unknownuser.networking.FrameSchema.*;\n\n");
+	}
+	
+	private void write(TypeElement origin, String packageName, String name, StringBuilder source) {
+		String qualifiedName = packageName.isEmpty() ? name : packageName + "." + name;
+		try (Writer writer = processingEnv.getFiler().createSourceFile(qualifiedName, origin).openWriter()) {
+			writer.write(source.toString());
+		} catch(IOException exc) {
+			error(origin, "could not write " + qualifiedName + ": " + exc.getMessage());
+		}
+	}
+	
+	private void error(Element element, String message) {
+		processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+	}
+	
+	private String packageOf(TypeElement type) {
+		return processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+	}
+	
+	/**
+	 * Gets the name of a type relative to its package, e.g. {@code Outer.Inner}.
+	 */
+	private static String nameOf(TypeElement type, String packageName) {
+		String qualifiedName = type.getQualifiedName().toString();
+		return packageName.isEmpty() ? qualifiedName : qualifiedName.substring(packageName.length() + 1);
+	}
+	
+	private static String flatNameOf(TypeElement type, String packageName) {
+		return nameOf(type, packageName).replace('.', '_');
+	}
+	
+	private static String codecNameOf(TypeElement content, String packageName) {
+		return flatNameOf(content, packageName) + "Codec";
+	}
+	
+	/**
+	 * Converts a field name to the name of a constant, e.g. {@code lastPrice} to {@code LAST_PRICE}.
+	 */
+	private static String constantOf(String name) {
+		StringBuilder constant = new StringBuilder();
+		for(int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			if(Character.isUpperCase(c) && i > 0) {
+				constant.append('_');
+			}
+			constant.append(Character.toUpperCase(c));
+		}
+		return constant.toString();
+	}
+}
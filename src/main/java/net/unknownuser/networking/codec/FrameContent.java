@@ -0,0 +1,16 @@
+package net.unknownuser.networking.codec;
+
+import java.lang.annotation.*;
+
+/**
+ * Marks a record or class, which is used as the content of messages, so the {@link CodecProcessor} generates a codec for it.<br>
+ * The generated class is called like the content with a {@code Codec} suffix and placed in the same package. It has a {@link net.unknownuser.networking.FrameSchema
+ * FrameSchema}, an {@code encode} and a {@code decode} method, which access the fields in straight-line code without reflection.
+ * <p>
+ * Supported fields are all primitives, {@link String} and {@code byte[]}, of which only one may be used per content. The fields are encoded in their declaration
+ * order, so new fields must be added at the end and marked with {@link FrameField#since()}.
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface FrameContent {}
@@ -0,0 +1,19 @@
+package net.unknownuser.networking.codec;
+
+import java.lang.annotation.*;
+
+/**
+ * Describes a field of a {@link FrameContent}. Fields without this annotation belong to the first version.
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target({ ElementType.FIELD, ElementType.RECORD_COMPONENT })
+public @interface FrameField {
+	/**
+	 * The version of the content, which has added this field. Versions must not decrease in declaration order, so frames of older versions stay readable.<br>
+	 * Receivers of a frame without this field decode it as {@code 0}, {@code false} or an empty string or array.
+	 * 
+	 * @return The version, starting at {@code 1}.
+	 */
+	int since() default 1;
+}
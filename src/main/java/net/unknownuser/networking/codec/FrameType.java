@@ -0,0 +1,18 @@
+package net.unknownuser.networking.codec;
+
+import java.lang.annotation.*;
+
+/**
+ * Sets the content of a message type in an enum marked with {@link FrameTypes}.
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.FIELD)
+public @interface FrameType {
+	/**
+	 * The content of messages of this type, which must be marked with {@link FrameContent}.
+	 * 
+	 * @return The class of the content.
+	 */
+	Class<?> value();
+}
@@ -0,0 +1,13 @@
+package net.unknownuser.networking.codec;
+
+import java.lang.annotation.*;
+
+/**
+ * Marks an enum of message types, so the {@link CodecProcessor} generates a factory of its {@link net.unknownuser.networking.FrameCodec FrameCodec}.<br>
+ * The generated class is called like the enum with a {@code Codecs} suffix. Its {@code create()} method registers the codec of every constant, which is marked with
+ * {@link FrameType}, all other constants are sent with Java serialization.
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface FrameTypes {}
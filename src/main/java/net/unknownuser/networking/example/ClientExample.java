@@ -11,6 +11,8 @@ public class ClientExample extends Client {
 	
 	public static void main(String[] args) throws IOException {
 		ClientExample client = new ClientExample("127.0.0.1", 50000);
+		// keeps the name when reconnecting
+		client.setUseSessions(true);
 		client.connect();
 		
 		System.out.print("input name: ");
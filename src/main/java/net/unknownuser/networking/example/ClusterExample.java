@@ -0,0 +1,86 @@
+package net.unknownuser.networking.example;
+
+import java.io.*;
+
+import net.unknownuser.networking.*;
+
+/**
+ * Three chat servers on localhost, which form a cluster.<br>
+ * Node b only knows node a and node c only knows node b, the full mesh is built from that. Every node has one client. Broadcasts reach all clients, messages to
+ * the lobby only reach the clients of node a and c.
+ */
+public class ClusterExample extends Server {
+	private static final String LOBBY = "lobby";
+	
+	private final boolean joinLobby;
+	
+	public ClusterExample(int port, boolean joinLobby) {
+		super(port);
+		this.joinLobby = joinLobby;
+	}
+	
+	public static void main(String[] args) throws IOException, InterruptedException {
+		ClusterExample[] servers = { new ClusterExample(50001, true), new ClusterExample(50002, false), new ClusterExample(50003, true) };
+		String[] names = { "a", "b", "c" };
+		for(int i = 0; i < servers.length; i++) {
+			ClusterBridge bridge = new ClusterBridge(names[i], "127.0.0.1", servers[i].getPort(), "example secret");
+			bridge.setMembershipListener((node, joined) -> System.out.printf("%s %s %s%n", bridge.getSelf().nodeId, joined ? "linked to" : "lost", node.nodeId));
+			servers[i].setClusterBridge(bridge);
+			servers[i].start();
+		}
+		servers[1].getClusterBridge().addPeer("127.0.0.1", 50001);
+		servers[2].getClusterBridge().addPeer("127.0.0.1", 50002);
+		// give the nodes some time to find each other
+		Thread.sleep(1000);
+		
+		Client[] clients = new Client[servers.length];
+		for(int i = 0; i < servers.length; i++) {
+			String name = names[i];
+			clients[i] = new Client("127.0.0.1", servers[i].getPort()) {
+				@Override
+				public void onMessageReceived(Message<?, ?> message) {
+					System.out.printf("client of %s received: %s%n", name, message.content);
+				}
+				
+				@Override
+				public void onConnect() {}
+				
+				@Override
+				public void onDisconnect(boolean withError) {}
+			};
+			clients[i].connect();
+		}
+		Thread.sleep(500);
+		
+		clients[2].sendMessage(new Message<>(MessageType.TEXT, "hello from c"));
+		clients[0].sendMessage(new Message<>(MessageType.TEXT, LOBBY + ":hello lobby from a"));
+		Thread.sleep(500);
+		
+		for(int i = 0; i < servers.length; i++) {
+			clients[i].disconnect();
+			servers[i].getClusterBridge().close();
+			servers[i].shutdown();
+		}
+	}
+	
+	@Override
+	public void onMessageReceived(Message<?, ?> message, Connection sender) {
+		String text = (String) message.content;
+		if(text.startsWith(LOBBY + ":")) {
+			sendToGroup(LOBBY, new MessageToSend(new Message<>(MessageType.TEXT, text.substring(LOBBY.length() + 1)), sender));
+		} else {
+			broadcastMessage(new MessageToSend(message, sender));
+		}
+	}
+	
+	@Override
+	public void onClientConnected(Connection client) {
+		if(joinLobby) {
+			// the links of other nodes join as well, but they never receive group messages
+			joinGroup(LOBBY, client);
+		}
+	}
+	
+	@Override
+	public void onClientDisconnected(Connection client) {}
+}
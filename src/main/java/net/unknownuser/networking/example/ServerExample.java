@@ -1,7 +1,7 @@
 package net.unknownuser.networking.example;
 
 import java.io.*;
-import java.util.*;
+import java.util.concurrent.*;
 
 import net.unknownuser.networking.*;
 
@@ -13,15 +13,18 @@ public class ServerExample extends Server {
 		super(port);
 	}
 	
-	private final HashMap<Connection, String> names = new HashMap<>();
+	private static final String NAME = "name";
 	
 	public static void main(String[] args) {
 		try {
 			// create the server on port 50000
 			ServerExample server = new ServerExample(50000);
+			// names are kept for 5 minutes after a client disconnects
+			server.setSessionRegistry(new SessionRegistry(5, TimeUnit.MINUTES, 100));
 			// and start it
 			server.start();
-			// server stays up for 60 seconds
+			// server stays up for 60 seconds, the clients are warned 10 seconds before
+			server.broadcastLater(new Message<>(MessageType.TEXT, "server shuts down in 10 seconds"), 50, TimeUnit.SECONDS);
 			try {
 				Thread.sleep(60000);
 			} catch(InterruptedException ignore) {}
@@ -36,31 +39,47 @@ public class ServerExample extends Server {
 	
 	@Override
 	public void onMessageReceived(Message<?, ?> message, Connection sender) {
-		if(names.get(sender) == null) {
+		Session session = sender.getSession();
+		if(session == null) {
+			// the client didn't start a session
+			return;
+		}
+		
+		String name = (String) session.getAttribute(NAME);
+		if(name == null) {
 			String newName = (String) message.content;
-			names.put(sender, newName);
+			session.setAttribute(NAME, newName);
 			System.out.printf("assigned name %s to %s%n", newName, sender.toStringWithoutServer());
 			broadcastMessage(new MessageToSend(new Message<>(MessageType.TEXT, newName + " has joined"), sender));
 			return;
 		}
 		
-		String sendingMessage = String.format("%s: %s", names.get(sender), message.content);
+		String sendingMessage = String.format("%s: %s", name, message.content);
 		
 		System.out.println(sendingMessage);
 		
 		broadcastMessage(new MessageToSend(new Message<>(MessageType.TEXT, sendingMessage), sender));
 	}
 
+	@Override
+	public void onSessionResumed(Connection client, Session session) {
+		String name = (String) session.getAttribute(NAME);
+		if(name != null) {
+			broadcastMessage(new MessageToSend(new Message<>(MessageType.TEXT, name + " is back"), client));
+		}
+	}
+	
 	@Override
 	public void onClientConnected(Connection client) {
-		names.put(client, null);
 		System.out.printf("client (%s:%d) connected%n", client.getIP(), client.getPort());
 	}
 
 	@Override
 	public void onClientDisconnected(Connection client) {
-		broadcastMessage(new MessageToSend(new Message<>(MessageType.TEXT, names.get(client) + " has left"), client));
+		Session session = client.getSession();
+		if(session != null && session.getAttribute(NAME) != null) {
+			broadcastMessage(new MessageToSend(new Message<>(MessageType.TEXT, session.getAttribute(NAME) + " has left"), client));
+		}
 		System.out.printf("client (%s:%d) disconnected%n", client.getIP(), client.getPort());
-		names.remove(client);
 	}
 }
@@ -0,0 +1,75 @@
+package net.unknownuser.networking.transport;
+
+import java.io.*;
+import java.util.*;
+
+import net.unknownuser.networking.*;
+
+/**
+ * A simple {@link WebSocketCodec} for the message types of an enum, which a browser can speak without knowing Java serialization.
+ * <ul>
+ * <li>Text messages are {@code "TYPE content"}, the name of the type and the content separated by the first space. They become messages with a {@link String}
+ * content.</li>
+ * <li>Binary messages start with the ordinal of the type as an unsigned 16 bit big endian number, followed by the content. They become messages with a
+ * {@code byte[]} content.</li>
+ * </ul>
+ * Messages with a {@code byte[]} content are sent as binary messages, all others as text with {@link String#valueOf(Object)} of the content. Control messages of
+ * the library aren't sent.
+ * 
+ * @param <T> The type of the messages.
+ */
+public class EnumWebSocketCodec<T extends Enum<T>> implements WebSocketCodec {
+	protected final Class<T> types;
+	private final T[] constants;
+	
+	public EnumWebSocketCodec(Class<T> types) {
+		super();
+		this.types = types;
+		this.constants = types.getEnumConstants();
+	}
+	
+	@Override
+	public Message<?, ?> decodeText(String text) throws IOException {
+		int split = text.indexOf(' ');
+		String name = split < 0 ? text : text.substring(0, split);
+		try {
+			return new Message<>(Enum.valueOf(types, name), split < 0 ? "" : text.substring(split + 1));
+		} catch(IllegalArgumentException exc) {
+			throw new StreamCorruptedException("unknown message type " + name);
+		}
+	}
+	
+	@Override
+	public Message<?, ?> decodeBinary(byte[] data) throws IOException {
+		if(data.length < 2) {
+			throw new StreamCorruptedException("binary message without type");
+		}
+		int ordinal = ((data[0] & 0xFF) << 8) | (data[1] & 0xFF);
+		if(ordinal >= constants.length) {
+			throw new StreamCorruptedException("unknown message type " + ordinal);
+		}
+		return new Message<>(constants[ordinal], Arrays.copyOfRange(data, 2, data.length));
+	}
+	
+	@Override
+	public WebSocketFrame encode(Message<?, ?> message) throws IOException {
+		if(message.type == null || message.type.getDeclaringClass() != types) {
+			// control messages and foreign types mean nothing to a browser
+			return null;
+		}
+		Object content = message.getContent();
+		if(content instanceof byte[] data) {
+			byte[] payload = new byte[data.length + 2];
+			payload[0] = (byte) (message.type.ordinal() >>> 8);
+			payload[1] = (byte) message.type.ordinal();
+			System.arraycopy(data, 0, payload, 2, data.length);
+			return WebSocketFrame.binary(payload);
+		}
+		return WebSocketFrame.text(content == null ? message.type.name() : message.type.name() + " " + content);
+	}
+	
+	@Override
+	public String toString() {
+		return "EnumWebSocketCodec{types=" + types.getSimpleName() + "}";
+	}
+}
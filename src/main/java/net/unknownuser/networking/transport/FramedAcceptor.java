@@ -0,0 +1,60 @@
+package net.unknownuser.networking.transport;
+
+import java.io.*;
+import java.net.*;
+
+import net.unknownuser.networking.*;
+
+/**
+ * Accepts TCP connections, which send messages in binary frames via {@link FramedTransport}.<br>
+ * Use {@code port -> new FramedAcceptor(port, codec)} as the {@link AcceptorFactory} of a {@link Server} and
+ * {@code (ip, port) -> FramedTransport.connect(ip, port, codec)} as the {@link TransportFactory} of a {@link Client}.
+ */
+public class FramedAcceptor implements Acceptor {
+	protected final ServerSocket socket;
+	protected final FrameCodec<?> codec;
+	
+	private volatile int maxFrameSize = FramedTransport.DEFAULT_MAX_FRAME_SIZE;
+	
+	public FramedAcceptor(int port, FrameCodec<?> codec) throws IOException {
+		super();
+		this.socket = new ServerSocket(port);
+		this.codec = codec;
+	}
+	
+	@Override
+	public Transport accept() throws IOException {
+		Socket accepted = socket.accept();
+		accepted.setTcpNoDelay(true);
+		return new FramedTransport(accepted, codec, maxFrameSize);
+	}
+	
+	/**
+	 * Sets the maximum size of the frames, which accepted clients may send. Larger frames close the connection.
+	 * 
+	 * @param maxFrameSize The maximum size in bytes.
+	 */
+	public void setMaxFrameSize(int maxFrameSize) {
+		this.maxFrameSize = Math.max(1, maxFrameSize);
+	}
+	
+	@Override
+	public boolean isClosed() {
+		return socket.isClosed();
+	}
+	
+	@Override
+	public int getPort() {
+		return socket.getLocalPort();
+	}
+	
+	@Override
+	public void close() throws IOException {
+		socket.close();
+	}
+	
+	@Override
+	public String toString() {
+		return "FramedAcceptor{socketStatus=" + !socket.isClosed() + ", port=" + socket.getLocalPort() + ", codec=" + codec + "}";
+	}
+}
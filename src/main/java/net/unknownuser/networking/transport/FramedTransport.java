@@ -0,0 +1,180 @@
+package net.unknownuser.networking.transport;
+
+import java.io.*;
+import java.net.*;
+
+import net.unknownuser.networking.*;
+
+/**
+ * A TCP transport, which sends messages in length prefixed binary frames.<br>
+ * Frames of message types with a {@link FrameSchema} contain the type ordinal and the fields of the content, which the receiver reads via a reusable
+ * {@link MessageView} without allocating. All other messages are sent with Java serialization inside a frame.
+ * <p>
+ * Layout: {@code [int length][byte kind][payload]}, where {@code length} counts everything after itself. The payload of a {@link #SCHEMA} frame is
+ * {@code [short type][short fieldsSize][fields]}, the one of a {@link #SERIALIZED} frame the serialized message. The size of the fixed fields lets both sides use
+ * different versions of a schema.
+ */
+public class FramedTransport implements ViewTransport {
+	public static final byte SERIALIZED = 0;
+	public static final byte SCHEMA = 1;
+	
+	public static final int DEFAULT_MAX_FRAME_SIZE = 16 * 1024 * 1024;
+	
+	// kind, type and size of the fixed fields
+	static final int SCHEMA_HEADER = 5;
+	
+	protected final Socket socket;
+	protected final FrameCodec<?> codec;
+	protected final int maxFrameSize;
+	protected DataOutputStream socketWriter;
+	protected DataInputStream socketReader;
+	
+	private final FrameWriter frameWriter = new FrameWriter();
+	private final MessageView readView = new MessageView();
+	private byte[] receiveBuffer = new byte[1024];
+	
+	/**
+	 * Creates a transport, which accepts frames up to the default size.
+	 * 
+	 * @param socket The connected socket.
+	 * @param codec  The codec of the message types.
+	 */
+	public FramedTransport(Socket socket, FrameCodec<?> codec) {
+		this(socket, codec, DEFAULT_MAX_FRAME_SIZE);
+	}
+	
+	/**
+	 * Creates a transport.
+	 * 
+	 * @param socket       The connected socket.
+	 * @param codec        The codec of the message types.
+	 * @param maxFrameSize The maximum size of a frame of the peer in bytes. Larger frames close the connection, before their buffer is allocated.
+	 */
+	public FramedTransport(Socket socket, FrameCodec<?> codec, int maxFrameSize) {
+		super();
+		this.socket = socket;
+		this.codec = codec;
+		this.maxFrameSize = maxFrameSize;
+	}
+	
+	/**
+	 * Connects to a server, which uses a {@link FramedAcceptor}.
+	 * 
+	 * @param ip    The IP of the server.
+	 * @param port  The port of the server.
+	 * @param codec The codec of the message types. Must match the one of the server.
+	 * 
+	 * @return The new transport.
+	 * 
+	 * @throws IOException When no connection could be made.
+	 */
+	public static FramedTransport connect(String ip, int port, FrameCodec<?> codec) throws IOException {
+		Socket socket = new Socket(ip, port);
+		// frames are small and flushed one by one
+		socket.setTcpNoDelay(true);
+		return new FramedTransport(socket, codec);
+	}
+	
+	@Override
+	public void open() throws IOException {
+		this.socketWriter = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+		this.socketReader = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+	}
+	
+	@Override
+	public Message<?, ?> read() throws IOException, ClassNotFoundException {
+		Message<?, ?> message = readInto(readView);
+		return message != null ? message : readView.toMessage();
+	}
+	
+	@Override
+	public Message<?, ?> readInto(MessageView view) throws IOException, ClassNotFoundException {
+		int length = socketReader.readInt();
+		if(length < 1) {
+			throw new StreamCorruptedException("invalid frame length " + length);
+		}
+		if(length > maxFrameSize) {
+			throw new StreamCorruptedException("frame of " + length + " bytes is larger than " + maxFrameSize + " bytes");
+		}
+		if(receiveBuffer.length < length) {
+			receiveBuffer = new byte[Math.max(length, Math.min(maxFrameSize, receiveBuffer.length * 2))];
+		}
+		socketReader.readFully(receiveBuffer, 0, length);
+		return readFrame(codec, receiveBuffer, length, view);
+	}
+	
+	/**
+	 * Decodes the payload of a frame.
+	 * 
+	 * @param codec  The codec of the message types, may be {@code null} if only serialized frames are expected.
+	 * @param buffer The buffer, which starts with the kind of the frame.
+	 * @param length The length of the frame, without the length prefix.
+	 * @param view   The view to point to a {@link #SCHEMA} frame.
+	 * 
+	 * @return The message of a {@link #SERIALIZED} frame, or {@code null} if the view has been pointed to the frame.
+	 * 
+	 * @throws IOException            When the frame is invalid.
+	 * @throws ClassNotFoundException When the serialized content could not be mapped to a class.
+	 */
+	static Message<?, ?> readFrame(FrameCodec<?> codec, byte[] buffer, int length, MessageView view) throws IOException, ClassNotFoundException {
+		byte kind = buffer[0];
+		if(kind == SERIALIZED) {
+			try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(buffer, 1, length - 1))) {
+				return (Message<?, ?>) in.readObject();
+			}
+		}
+		if(kind != SCHEMA || length < SCHEMA_HEADER || codec == null) {
+			throw new StreamCorruptedException("invalid frame kind " + kind);
+		}
+		int typeOrdinal = ((buffer[1] & 0xFF) << 8) | (buffer[2] & 0xFF);
+		int fieldsSize = ((buffer[3] & 0xFF) << 8) | (buffer[4] & 0xFF);
+		if(codec.schemaOf(typeOrdinal) == null || length - SCHEMA_HEADER < fieldsSize) {
+			throw new StreamCorruptedException("frame doesn't match the schema of type " + typeOrdinal);
+		}
+		view.wrap(codec, typeOrdinal, buffer, SCHEMA_HEADER, fieldsSize, length - SCHEMA_HEADER);
+		return null;
+	}
+	
+	@Override
+	public void write(Message<?, ?> message) throws IOException {
+		FrameSchema schema = message.content == null ? null : codec.schemaOf(message.type);
+		if(schema == null) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+				out.writeObject(message);
+			}
+			socketWriter.writeInt(bytes.size() + 1);
+			socketWriter.writeByte(SERIALIZED);
+			bytes.writeTo(socketWriter);
+		} else {
+			frameWriter.reset(schema, 0);
+			codec.encode(message, frameWriter);
+			socketWriter.writeInt(frameWriter.length() + SCHEMA_HEADER);
+			socketWriter.writeByte(SCHEMA);
+			socketWriter.writeShort(message.type.ordinal());
+			socketWriter.writeShort(schema.getFieldsSize());
+			socketWriter.write(frameWriter.array(), 0, frameWriter.length());
+		}
+		socketWriter.flush();
+	}
+	
+	@Override
+	public boolean isClosed() {
+		return socket.isClosed();
+	}
+	
+	@Override
+	public InetSocketAddress getRemoteAddress() {
+		return (InetSocketAddress) socket.getRemoteSocketAddress();
+	}
+	
+	@Override
+	public void close() throws IOException {
+		socket.close();
+	}
+	
+	@Override
+	public String toString() {
+		return "FramedTransport{socketStatus=" + !socket.isClosed() + ", remote=" + socket.getRemoteSocketAddress() + ", codec=" + codec + "}";
+	}
+}
@@ -0,0 +1,66 @@
+package net.unknownuser.networking.transport;
+
+import java.util.concurrent.locks.*;
+
+/**
+ * Decides what a thread does, while it waits for a lock-free buffer to become readable or writable.<br>
+ * Spinning keeps the latency lowest but burns a core, parking frees the core but takes a few microseconds to wake up.
+ */
+public class IdleStrategy {
+	/**
+	 * Never gives up the core. Only useful, if the waiting thread has a core on its own.
+	 */
+	public static final IdleStrategy BUSY_SPIN = new IdleStrategy(Integer.MAX_VALUE, 0, 0);
+	/**
+	 * Spins shortly, then yields and finally parks for up to one millisecond.
+	 */
+	public static final IdleStrategy BACKOFF = new IdleStrategy(100, 100, 1_000_000);
+	
+	private final int spins;
+	private final int yields;
+	private final long maxParkNanos;
+	
+	/**
+	 * Creates a new idle strategy.
+	 * 
+	 * @param spins        The amount of idle rounds, which only spin.
+	 * @param yields       The amount of idle rounds after spinning, which yield the thread.
+	 * @param maxParkNanos The maximum time a single park may take. Parking starts at one microsecond and doubles each round.
+	 */
+	public IdleStrategy(int spins, int yields, long maxParkNanos) {
+		super();
+		this.spins = spins;
+		this.yields = yields;
+		this.maxParkNanos = maxParkNanos;
+	}
+	
+	/**
+	 * Waits once.
+	 * 
+	 * @param round The amount of rounds the thread has been idle so far, starting at {@code 0}.
+	 */
+	public void idle(int round) {
+		if(round < spins) {
+			Thread.onSpinWait();
+		} else if(round - spins < yields) {
+			Thread.yield();
+		} else {
+			int parks = Math.min(round - spins - yields, 30);
+			LockSupport.parkNanos(Math.min(maxParkNanos, 1000L << parks));
+		}
+	}
+	
+	/**
+	 * Returns whether this strategy parks the thread at some point, so it has to be woken up by {@link LockSupport#unpark(Thread) unpark}.
+	 * 
+	 * @return {@code true} if this strategy parks.
+	 */
+	public boolean parks() {
+		return spins != Integer.MAX_VALUE && maxParkNanos > 0;
+	}
+	
+	@Override
+	public String toString() {
+		return "IdleStrategy{spins=" + spins + ", yields=" + yields + ", maxParkNanos=" + maxParkNanos + "}";
+	}
+}
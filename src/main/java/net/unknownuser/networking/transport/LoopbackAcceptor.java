@@ -0,0 +1,108 @@
+package net.unknownuser.networking.transport;
+
+import java.io.*;
+import java.net.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import net.unknownuser.networking.*;
+
+/**
+ * Accepts {@link LoopbackTransport}s from clients in the same JVM. Loopback ports are independent of TCP ports.<br>
+ * Use {@code LoopbackAcceptor::new} as the {@link AcceptorFactory} of a {@link Server} and {@code LoopbackAcceptor::connect} as the {@link TransportFactory} of a
+ * {@link Client}.
+ */
+public class LoopbackAcceptor implements Acceptor {
+	private static final ConcurrentHashMap<Integer, LoopbackAcceptor> ACCEPTORS = new ConcurrentHashMap<>();
+	// identifies the client side of a connection, like the ephemeral port of a TCP client
+	private static final AtomicInteger NEXT_CLIENT_PORT = new AtomicInteger();
+	
+	private final int port;
+	private final int capacity;
+	private final IdleStrategy idleStrategy;
+	private final LinkedBlockingQueue<LoopbackTransport> pendingTransports = new LinkedBlockingQueue<>();
+	private volatile boolean closed = false;
+	
+	public LoopbackAcceptor(int port) throws IOException {
+		this(port, LoopbackTransport.DEFAULT_CAPACITY, IdleStrategy.BACKOFF);
+	}
+	
+	/**
+	 * Starts to accept loopback clients on the given port.
+	 * 
+	 * @param port         The loopback port.
+	 * @param capacity     The amount of messages, which may be in flight in each direction of a connection.
+	 * @param idleStrategy What the threads of a connection do, while they wait.
+	 * 
+	 * @throws IOException When the port is already used by another loopback server.
+	 */
+	public LoopbackAcceptor(int port, int capacity, IdleStrategy idleStrategy) throws IOException {
+		super();
+		this.port = port;
+		this.capacity = capacity;
+		this.idleStrategy = idleStrategy;
+		if(ACCEPTORS.putIfAbsent(port, this) != null) {
+			throw new BindException("loopback port " + port + " already in use");
+		}
+	}
+	
+	/**
+	 * Connects to a loopback server in this JVM.
+	 * 
+	 * @param ip   Ignored, loopback servers are only identified by their port.
+	 * @param port The loopback port of the server.
+	 * 
+	 * @return The client side of the new connection.
+	 * 
+	 * @throws IOException When no loopback server uses the port.
+	 */
+	public static Transport connect(String ip, int port) throws IOException {
+		LoopbackAcceptor acceptor = ACCEPTORS.get(port);
+		if(acceptor == null || acceptor.closed) {
+			throw new ConnectException("no loopback server at port " + port);
+		}
+		LoopbackTransport[] pair = LoopbackTransport.pair(Math.floorMod(NEXT_CLIENT_PORT.getAndIncrement(), 65535) + 1, port, acceptor.capacity, acceptor.idleStrategy);
+		acceptor.pendingTransports.offer(pair[1]);
+		return pair[0];
+	}
+	
+	@Override
+	public Transport accept() throws IOException {
+		try {
+			while(!closed) {
+				LoopbackTransport transport = pendingTransports.poll(100, TimeUnit.MILLISECONDS);
+				if(transport != null) {
+					return transport;
+				}
+			}
+		} catch(InterruptedException exc) {
+			// treated like a closed acceptor
+		}
+		throw new SocketException("Socket closed");
+	}
+	
+	@Override
+	public boolean isClosed() {
+		return closed;
+	}
+	
+	@Override
+	public int getPort() {
+		return port;
+	}
+	
+	@Override
+	public void close() {
+		closed = true;
+		ACCEPTORS.remove(port, this);
+		LoopbackTransport transport;
+		while((transport = pendingTransports.poll()) != null) {
+			transport.close();
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return "LoopbackAcceptor{closed=" + closed + ", port=" + port + "}";
+	}
+}
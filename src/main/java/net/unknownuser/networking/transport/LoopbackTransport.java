@@ -0,0 +1,134 @@
+package net.unknownuser.networking.transport;
+
+import java.io.*;
+import java.net.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+
+import net.unknownuser.networking.*;
+
+/**
+ * An in-memory transport between a {@link Client} and a {@link Server} in the same JVM.<br>
+ * Messages are passed by reference through two {@link SpscRingBuffer}s, one for each direction, without any copying or serialization. This means both sides share the
+ * content of a message, so it must not be modified after it has been sent.
+ */
+public class LoopbackTransport implements Transport {
+	public static final int DEFAULT_CAPACITY = 4096;
+	
+	private final SpscRingBuffer<Message<?, ?>> inbound;
+	private final SpscRingBuffer<Message<?, ?>> outbound;
+	private final AtomicBoolean closedByEitherSide;
+	private final InetSocketAddress remoteAddress;
+	private final IdleStrategy idleStrategy;
+	private LoopbackTransport peer;
+	
+	private volatile boolean closed = false;
+	private volatile Thread waitingReader = null;
+	private volatile Thread waitingWriter = null;
+	
+	private LoopbackTransport(SpscRingBuffer<Message<?, ?>> inbound, SpscRingBuffer<Message<?, ?>> outbound, AtomicBoolean closedByEitherSide, int remotePort, IdleStrategy idleStrategy) {
+		super();
+		this.inbound = inbound;
+		this.outbound = outbound;
+		this.closedByEitherSide = closedByEitherSide;
+		this.remoteAddress = new InetSocketAddress(InetAddress.getLoopbackAddress(), remotePort);
+		this.idleStrategy = idleStrategy;
+	}
+	
+	/**
+	 * Creates two connected transports.
+	 * 
+	 * @param clientPort   The port, which identifies the client side.
+	 * @param serverPort   The port, which identifies the server side.
+	 * @param capacity     The amount of messages, which may be in flight in each direction.
+	 * @param idleStrategy What the threads do, while they wait.
+	 * 
+	 * @return The client side at index {@code 0}, the server side at index {@code 1}.
+	 */
+	public static LoopbackTransport[] pair(int clientPort, int serverPort, int capacity, IdleStrategy idleStrategy) {
+		SpscRingBuffer<Message<?, ?>> toServer = new SpscRingBuffer<>(capacity);
+		SpscRingBuffer<Message<?, ?>> toClient = new SpscRingBuffer<>(capacity);
+		AtomicBoolean closed = new AtomicBoolean();
+		LoopbackTransport client = new LoopbackTransport(toClient, toServer, closed, serverPort, idleStrategy);
+		LoopbackTransport server = new LoopbackTransport(toServer, toClient, closed, clientPort, idleStrategy);
+		client.peer = server;
+		server.peer = client;
+		return new LoopbackTransport[] { client, server };
+	}
+	
+	@Override
+	public Message<?, ?> read() throws IOException {
+		int round = 0;
+		while(true) {
+			Message<?, ?> message = inbound.poll();
+			if(message != null) {
+				wake(peer.waitingWriter);
+				return message;
+			}
+			if(closed) {
+				throw new SocketException("Socket closed");
+			}
+			if(closedByEitherSide.get()) {
+				// everything sent before the close has been read
+				throw new EOFException();
+			}
+			
+			waitingReader = Thread.currentThread();
+			if(inbound.isEmpty() && !closedByEitherSide.get()) {
+				idleStrategy.idle(round++);
+			}
+			waitingReader = null;
+		}
+	}
+	
+	@Override
+	public void write(Message<?, ?> message) throws IOException {
+		int round = 0;
+		while(true) {
+			if(closed) {
+				throw new SocketException("Socket closed");
+			}
+			if(closedByEitherSide.get()) {
+				throw new SocketException("Connection reset");
+			}
+			if(outbound.offer(message)) {
+				wake(peer.waitingReader);
+				return;
+			}
+			
+			// the reader is too slow, wait for free space
+			waitingWriter = Thread.currentThread();
+			idleStrategy.idle(round++);
+			waitingWriter = null;
+		}
+	}
+	
+	private void wake(Thread thread) {
+		if(thread != null && idleStrategy.parks()) {
+			LockSupport.unpark(thread);
+		}
+	}
+	
+	@Override
+	public boolean isClosed() {
+		return closed;
+	}
+	
+	@Override
+	public InetSocketAddress getRemoteAddress() {
+		return remoteAddress;
+	}
+	
+	@Override
+	public void close() {
+		closed = true;
+		closedByEitherSide.set(true);
+		wake(peer.waitingReader);
+		wake(peer.waitingWriter);
+	}
+	
+	@Override
+	public String toString() {
+		return "LoopbackTransport{closed=" + closed + ", remote=" + remoteAddress + ", inbound=" + inbound.size() + ", outbound=" + outbound.size() + "}";
+	}
+}
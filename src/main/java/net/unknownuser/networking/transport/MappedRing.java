@@ -0,0 +1,148 @@
+package net.unknownuser.networking.transport;
+
+import java.lang.invoke.*;
+import java.nio.*;
+
+/**
+ * A lock-free ring of variable sized records inside a memory-mapped file, for exactly one producer and one consumer, which may live in different processes.<br>
+ * Both counters are stored in the file, each on its own cache line, and are published with release writes, so the records before them are visible to the other side.
+ * A record is {@code [int length][bytes]}, aligned to 8 bytes. A record, which doesn't fit before the end of the ring, is preceded by a padding marker and written
+ * at the start.
+ */
+class MappedRing {
+	private static final int PADDING = -1;
+	private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+	
+	private final ByteBuffer buffer;
+	private final int tailOffset;
+	private final int headOffset;
+	private final int dataOffset;
+	private final int capacity;
+	private final int mask;
+	
+	// each side only writes its own counter, so it keeps it in a field as well
+	private long tail;
+	private long head;
+	// cached copies of the counter of the other side, so the shared counters are only read when necessary
+	private long cachedHead;
+	private long cachedTail;
+	
+	/**
+	 * Creates a view of a ring in a mapped file.
+	 * 
+	 * @param buffer     The mapped file.
+	 * @param tailOffset The offset of the counter of the producer. Must be aligned to 8 bytes.
+	 * @param headOffset The offset of the counter of the consumer. Must be aligned to 8 bytes.
+	 * @param dataOffset The offset of the records.
+	 * @param capacity   The size of the records in bytes, a power of two.
+	 */
+	MappedRing(ByteBuffer buffer, int tailOffset, int headOffset, int dataOffset, int capacity) {
+		super();
+		this.buffer = buffer;
+		this.tailOffset = tailOffset;
+		this.headOffset = headOffset;
+		this.dataOffset = dataOffset;
+		this.capacity = capacity;
+		this.mask = capacity - 1;
+		this.tail = (long) LONGS.getAcquire(buffer, tailOffset);
+		this.head = (long) LONGS.getAcquire(buffer, headOffset);
+		this.cachedHead = head;
+		this.cachedTail = tail;
+	}
+	
+	private static int align(int size) {
+		return (size + 7) & ~7;
+	}
+	
+	/**
+	 * Gets the largest record, which always fits into the ring once it has been read.
+	 * 
+	 * @return The maximum length of the bytes of a record.
+	 */
+	int maxLength() {
+		// half of the ring, so a record still fits after the padding at the end
+		return capacity / 2 - Integer.BYTES;
+	}
+	
+	/**
+	 * Adds a record. Must only be called by the producer.
+	 * 
+	 * @param bytes  The array to copy from, starting at index {@code 0}.
+	 * @param length The amount of bytes, at most {@link #maxLength()}.
+	 * 
+	 * @return {@code true} if the record has been added, {@code false} if the ring is too full.
+	 */
+	boolean offer(byte[] bytes, int length) {
+		int record = align(Integer.BYTES + length);
+		int index = (int) (tail & mask);
+		int toEnd = capacity - index;
+		int needed = record <= toEnd ? record : toEnd + record;
+		if(tail + needed - cachedHead > capacity) {
+			cachedHead = (long) LONGS.getAcquire(buffer, headOffset);
+			if(tail + needed - cachedHead > capacity) {
+				return false;
+			}
+		}
+		if(record > toEnd) {
+			// records are aligned, so there is always room for the marker
+			buffer.putInt(dataOffset + index, PADDING);
+			tail += toEnd;
+			index = 0;
+		}
+		buffer.putInt(dataOffset + index, length);
+		buffer.put(dataOffset + index + Integer.BYTES, bytes, 0, length);
+		tail += record;
+		LONGS.setRelease(buffer, tailOffset, tail);
+		return true;
+	}
+	
+	/**
+	 * Gets the length of the next record. Must only be called by the consumer.
+	 * 
+	 * @return The length of the bytes of the record, or {@code -1} if the ring is empty.
+	 */
+	int available() {
+		while(true) {
+			if(head >= cachedTail) {
+				cachedTail = (long) LONGS.getAcquire(buffer, tailOffset);
+				if(head >= cachedTail) {
+					return -1;
+				}
+			}
+			int index = (int) (head & mask);
+			int length = buffer.getInt(dataOffset + index);
+			if(length != PADDING) {
+				return length;
+			}
+			head += capacity - index;
+			LONGS.setRelease(buffer, headOffset, head);
+		}
+	}
+	
+	/**
+	 * Copies the next record and frees its space. Must only be called by the consumer, after {@link #available()} has returned its length.
+	 * 
+	 * @param into   The array to copy to, starting at index {@code 0}.
+	 * @param length The length of the record.
+	 */
+	void take(byte[] into, int length) {
+		int index = (int) (head & mask);
+		buffer.get(dataOffset + index + Integer.BYTES, into, 0, length);
+		head += align(Integer.BYTES + length);
+		LONGS.setRelease(buffer, headOffset, head);
+	}
+	
+	/**
+	 * Gets the amount of bytes, which are used by records. May be called by any thread, the result may be outdated immediately.
+	 * 
+	 * @return The used bytes.
+	 */
+	long used() {
+		return (long) LONGS.getAcquire(buffer, tailOffset) - (long) LONGS.getAcquire(buffer, headOffset);
+	}
+	
+	@Override
+	public String toString() {
+		return "MappedRing{capacity=" + capacity + ", used=" + used() + "}";
+	}
+}
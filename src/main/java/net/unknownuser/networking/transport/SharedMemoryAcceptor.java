@@ -0,0 +1,153 @@
+package net.unknownuser.networking.transport;
+
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.concurrent.atomic.*;
+
+import net.unknownuser.networking.*;
+
+/**
+ * Accepts {@link SharedMemoryTransport}s from processes on the same host.<br>
+ * Clients hand over their mapped file via the Unix domain socket {@code networking-<port>-shm.sock} in the temporary directory. Use
+ * {@code SharedMemoryAcceptor::new} as the {@link AcceptorFactory} of a {@link Server} and {@code SharedMemoryTransport::connect} as the {@link TransportFactory} of
+ * a {@link Client}.
+ */
+public class SharedMemoryAcceptor implements Acceptor {
+	// identifies the client side of a connection, like the ephemeral port of a TCP client
+	private static final AtomicInteger NEXT_CLIENT_PORT = new AtomicInteger();
+	// a file name is short, anything longer isn't a client of this library
+	private static final int MAX_NAME_LENGTH = 4096;
+	
+	protected final ServerSocketChannel channel;
+	protected final Path path;
+	protected final int port;
+	private final IdleStrategy idleStrategy;
+	private final FrameCodec<?> codec;
+	
+	public SharedMemoryAcceptor(int port) throws IOException {
+		this(port, IdleStrategy.BACKOFF, null);
+	}
+	
+	/**
+	 * Starts to accept clients on the given port.
+	 * 
+	 * @param port         The port of the server.
+	 * @param idleStrategy What the threads of the server side of a connection do, while they wait.
+	 * @param codec        The codec of the message types, or {@code null} to send every message with Java serialization. Must match the one of the clients.
+	 * 
+	 * @throws IOException When the socket could not be bound, e.g. because another server is listening on it.
+	 */
+	public SharedMemoryAcceptor(int port, IdleStrategy idleStrategy, FrameCodec<?> codec) throws IOException {
+		super();
+		this.port = port;
+		this.path = pathOf(port);
+		this.idleStrategy = idleStrategy;
+		this.codec = codec;
+		this.channel = UnixDomainAcceptor.bind(path);
+	}
+	
+	/**
+	 * Gets the path of the socket, which is used for the handshake with the server on a port.
+	 * 
+	 * @param port The port.
+	 * 
+	 * @return The path in the temporary directory.
+	 */
+	public static Path pathOf(int port) {
+		return Path.of(System.getProperty("java.io.tmpdir"), "networking-" + port + "-shm.sock");
+	}
+	
+	@Override
+	public Transport accept() throws IOException {
+		SocketChannel accepted;
+		try {
+			accepted = channel.accept();
+		} catch(ClosedChannelException exc) {
+			throw UnixDomainTransport.closed(exc);
+		}
+		// the handshake waits for the client, so it is done when the transport is opened by the thread of its connection
+		return new SharedMemoryTransport(accepted, this, Math.floorMod(NEXT_CLIENT_PORT.getAndIncrement(), 65535) + 1, idleStrategy, codec);
+	}
+	
+	/**
+	 * Receives the file of a client and maps it.
+	 * 
+	 * @param accepted The socket of the client.
+	 * 
+	 * @return The mapped file.
+	 * 
+	 * @throws IOException When the client didn't send a valid file. The socket is closed.
+	 */
+	ByteBuffer handshake(SocketChannel accepted) throws IOException {
+		try {
+			ByteBuffer length = readFully(accepted, Integer.BYTES);
+			int nameLength = length.getInt();
+			if(nameLength <= 0 || nameLength > MAX_NAME_LENGTH) {
+				throw new StreamCorruptedException("invalid handshake");
+			}
+			String name = new String(readFully(accepted, nameLength).array(), StandardCharsets.UTF_8);
+			Path file;
+			try {
+				file = Path.of(name).normalize();
+			} catch(InvalidPathException exc) {
+				throw new StreamCorruptedException("invalid file name");
+			}
+			// only map the files of clients, not any file a local process names
+			Path parent = file.getParent();
+			if(parent == null || !parent.equals(SharedMemoryTransport.directory()) || !file.getFileName().toString().startsWith("networking-" + port + "-")) {
+				throw new StreamCorruptedException("unexpected file " + file);
+			}
+			ByteBuffer mapping;
+			try {
+				mapping = SharedMemoryTransport.map(file, 0, false);
+			} catch(IllegalArgumentException exc) {
+				// larger than a single mapping
+				throw new StreamCorruptedException("invalid file " + file);
+			}
+			if(mapping.capacity() < SharedMemoryTransport.HEADER || mapping.getInt(0) != SharedMemoryTransport.MAGIC || Integer.bitCount(mapping.getInt(4)) != 1
+					|| mapping.capacity() != SharedMemoryTransport.HEADER + 2L * mapping.getInt(4)) {
+				throw new StreamCorruptedException("invalid file " + file);
+			}
+			accepted.write(ByteBuffer.wrap(new byte[] { 1 }));
+			return mapping;
+		} catch(IOException exc) {
+			accepted.close();
+			throw exc;
+		}
+	}
+	
+	private static ByteBuffer readFully(SocketChannel channel, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while(buffer.hasRemaining()) {
+			if(channel.read(buffer) < 0) {
+				throw new EOFException();
+			}
+		}
+		return buffer.flip();
+	}
+	
+	@Override
+	public boolean isClosed() {
+		return !channel.isOpen();
+	}
+	
+	@Override
+	public int getPort() {
+		return port;
+	}
+	
+	@Override
+	public void close() throws IOException {
+		channel.close();
+		Files.deleteIfExists(path);
+	}
+	
+	@Override
+	public String toString() {
+		return "SharedMemoryAcceptor{channelStatus=" + channel.isOpen() + ", path=" + path + ", codec=" + codec + "}";
+	}
+}
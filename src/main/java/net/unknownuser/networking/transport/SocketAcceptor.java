@@ -0,0 +1,47 @@
+package net.unknownuser.networking.transport;
+
+import java.io.*;
+import java.net.*;
+
+import net.unknownuser.networking.*;
+
+/**
+ * The default acceptor, which accepts TCP connections.
+ */
+public class SocketAcceptor implements Acceptor {
+	protected final ServerSocket socket;
+	
+	public SocketAcceptor(int port) throws IOException {
+		this(new ServerSocket(port));
+	}
+	
+	public SocketAcceptor(ServerSocket socket) {
+		super();
+		this.socket = socket;
+	}
+	
+	@Override
+	public Transport accept() throws IOException {
+		return new SocketTransport(socket.accept());
+	}
+	
+	@Override
+	public boolean isClosed() {
+		return socket.isClosed();
+	}
+	
+	@Override
+	public int getPort() {
+		return socket.getLocalPort();
+	}
+	
+	@Override
+	public void close() throws IOException {
+		socket.close();
+	}
+	
+	@Override
+	public String toString() {
+		return "SocketAcceptor{socketStatus=" + !socket.isClosed() + ", port=" + socket.getLocalPort() + "}";
+	}
+}
@@ -0,0 +1,79 @@
+package net.unknownuser.networking.transport;
+
+import java.io.*;
+import java.net.*;
+
+import net.unknownuser.networking.*;
+
+/**
+ * The default transport, which sends serialized messages over a TCP socket.
+ */
+public class SocketTransport implements Transport {
+	protected final Socket socket;
+	protected ObjectOutputStream socketWriter;
+	protected ObjectInputStream socketReader;
+	
+	public SocketTransport(Socket socket) {
+		super();
+		this.socket = socket;
+	}
+	
+	/**
+	 * Connects to a server via TCP.
+	 * 
+	 * @param ip   The IP of the server.
+	 * @param port The port of the server.
+	 * 
+	 * @return The new transport.
+	 * 
+	 * @throws IOException When no connection could be made.
+	 */
+	public static SocketTransport connect(String ip, int port) throws IOException {
+		return new SocketTransport(new Socket(ip, port));
+	}
+	
+	@Override
+	public void open() throws IOException {
+		// the writer first, otherwise both sides wait for the header of the other one
+		this.socketWriter = new ObjectOutputStream(new DataOutputStream(socket.getOutputStream()));
+		this.socketReader = new ObjectInputStream(new DataInputStream(socket.getInputStream()));
+	}
+	
+	@Override
+	public Message<?, ?> read() throws IOException, ClassNotFoundException {
+		return (Message<?, ?>) socketReader.readObject();
+	}
+	
+	@Override
+	public void write(Message<?, ?> message) throws IOException {
+		socketWriter.writeObject(message);
+		socketWriter.flush();
+	}
+	
+	@Override
+	public boolean isClosed() {
+		return socket.isClosed();
+	}
+	
+	@Override
+	public InetSocketAddress getRemoteAddress() {
+		return (InetSocketAddress) socket.getRemoteSocketAddress();
+	}
+	
+	@Override
+	public void close() throws IOException {
+		socket.close();
+		
+		if(socketWriter != null) {
+			socketWriter.close();
+		}
+		if(socketReader != null) {
+			socketReader.close();
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return "SocketTransport{socketStatus=" + !socket.isClosed() + ", remote=" + socket.getRemoteSocketAddress() + "}";
+	}
+}
@@ -0,0 +1,102 @@
+package net.unknownuser.networking.transport;
+
+import java.util.concurrent.atomic.*;
+
+/**
+ * A lock-free, bounded queue for exactly one producer thread and one consumer thread.<br>
+ * The producer publishes an element with an ordered write of the tail counter, the consumer frees the slot with an ordered write of the head counter. Neither side ever
+ * takes a lock or allocates.
+ * 
+ * @param <E> The type of the elements.
+ */
+public class SpscRingBuffer<E> {
+	private final AtomicReferenceArray<E> elements;
+	private final int mask;
+	
+	// the counters only ever grow, the index is counter & mask
+	private final AtomicLong head = new AtomicLong();
+	private final AtomicLong tail = new AtomicLong();
+	
+	// cached copies of the counter of the other side, so the shared counters are only read when necessary
+	private long cachedHead = 0;
+	private long cachedTail = 0;
+	
+	/**
+	 * Creates a new ring buffer.
+	 * 
+	 * @param capacity The minimum capacity, rounded up to the next power of two.
+	 */
+	public SpscRingBuffer(int capacity) {
+		super();
+		int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+		elements = new AtomicReferenceArray<>(size);
+		mask = size - 1;
+	}
+	
+	/**
+	 * Adds an element. Must only be called by the producer thread.
+	 * 
+	 * @param element The element to add.
+	 * 
+	 * @return {@code true} if the element has been added, {@code false} if the buffer is full.
+	 */
+	public boolean offer(E element) {
+		long currentTail = tail.get();
+		if(currentTail - cachedHead > mask) {
+			cachedHead = head.get();
+			if(currentTail - cachedHead > mask) {
+				return false;
+			}
+		}
+		elements.lazySet((int) currentTail & mask, element);
+		tail.lazySet(currentTail + 1);
+		return true;
+	}
+	
+	/**
+	 * Removes the oldest element. Must only be called by the consumer thread.
+	 * 
+	 * @return The oldest element, or {@code null} if the buffer is empty.
+	 */
+	public E poll() {
+		long currentHead = head.get();
+		if(currentHead >= cachedTail) {
+			cachedTail = tail.get();
+			if(currentHead >= cachedTail) {
+				return null;
+			}
+		}
+		int index = (int) currentHead & mask;
+		E element = elements.get(index);
+		elements.lazySet(index, null);
+		head.lazySet(currentHead + 1);
+		return element;
+	}
+	
+	/**
+	 * Returns whether this buffer is empty. May be called by any thread, the result may be outdated immediately.
+	 * 
+	 * @return {@code true} if no element is waiting.
+	 */
+	public boolean isEmpty() {
+		return head.get() >= tail.get();
+	}
+	
+	/**
+	 * Gets the amount of waiting elements. May be called by any thread, the result may be outdated immediately.
+	 * 
+	 * @return The amount of elements.
+	 */
+	public int size() {
+		return (int) (tail.get() - head.get());
+	}
+	
+	/**
+	 * Gets the capacity of this buffer.
+	 * 
+	 * @return The maximum amount of elements.
+	 */
+	public int capacity() {
+		return mask + 1;
+	}
+}
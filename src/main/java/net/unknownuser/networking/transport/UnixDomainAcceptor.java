@@ -0,0 +1,120 @@
+package net.unknownuser.networking.transport;
+
+import java.io.*;
+import java.net.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.concurrent.atomic.*;
+
+import net.unknownuser.networking.*;
+
+/**
+ * Accepts {@link UnixDomainTransport}s from clients on the same host.<br>
+ * The socket is a file, by default {@code networking-<port>.sock} in the temporary directory, so servers and clients only have to agree on the port, like with TCP.
+ */
+public class UnixDomainAcceptor implements Acceptor {
+	// identifies the client side of a connection, like the ephemeral port of a TCP client
+	private static final AtomicInteger NEXT_CLIENT_PORT = new AtomicInteger();
+	
+	protected final ServerSocketChannel channel;
+	protected final Path path;
+	protected final int port;
+	
+	public UnixDomainAcceptor(int port) throws IOException {
+		this(port, pathOf(port));
+	}
+	
+	/**
+	 * Starts to accept clients on the given socket file.
+	 * 
+	 * @param port The port, which is reported by the server.
+	 * @param path The path of the socket file. A file left over from a server, which has not been shut down, is replaced.
+	 * 
+	 * @throws IOException When the socket could not be bound, e.g. because another server is listening on it.
+	 */
+	public UnixDomainAcceptor(int port, Path path) throws IOException {
+		super();
+		this.port = port;
+		this.path = path;
+		this.channel = bind(path);
+	}
+	
+	/**
+	 * Binds a server socket to a socket file. An existing file is only replaced, if no server is listening on it anymore.
+	 * 
+	 * @param path The path of the socket file.
+	 * 
+	 * @return The bound socket.
+	 * 
+	 * @throws IOException When the socket could not be bound.
+	 */
+	static ServerSocketChannel bind(Path path) throws IOException {
+		if(Files.exists(path)) {
+			try {
+				SocketChannel.open(UnixDomainSocketAddress.of(path)).close();
+				throw new BindException("socket file " + path + " is used by a running server");
+			} catch(ConnectException exc) {
+				// nobody listens, left over from a server, which has not been shut down
+				Files.deleteIfExists(path);
+			}
+		}
+		ServerSocketChannel channel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+		try {
+			channel.bind(UnixDomainSocketAddress.of(path));
+		} catch(IOException exc) {
+			channel.close();
+			throw exc;
+		}
+		return channel;
+	}
+	
+	/**
+	 * Gets the default path of the socket file of a port.
+	 * 
+	 * @param port The port.
+	 * 
+	 * @return The path in the temporary directory.
+	 */
+	public static Path pathOf(int port) {
+		return Path.of(System.getProperty("java.io.tmpdir"), "networking-" + port + ".sock");
+	}
+	
+	@Override
+	public Transport accept() throws IOException {
+		try {
+			return new UnixDomainTransport(channel.accept(), Math.floorMod(NEXT_CLIENT_PORT.getAndIncrement(), 65535) + 1);
+		} catch(ClosedChannelException exc) {
+			throw UnixDomainTransport.closed(exc);
+		}
+	}
+	
+	@Override
+	public boolean isClosed() {
+		return !channel.isOpen();
+	}
+	
+	@Override
+	public int getPort() {
+		return port;
+	}
+	
+	/**
+	 * Gets the path of the socket file.
+	 * 
+	 * @return The path.
+	 */
+	public Path getPath() {
+		return path;
+	}
+	
+	@Override
+	public void close() throws IOException {
+		channel.close();
+		Files.deleteIfExists(path);
+	}
+	
+	@Override
+	public String toString() {
+		return "UnixDomainAcceptor{channelStatus=" + channel.isOpen() + ", path=" + path + "}";
+	}
+}
@@ -0,0 +1,176 @@
+package net.unknownuser.networking.transport;
+
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+
+import net.unknownuser.networking.*;
+
+/**
+ * A transport for clients on the same host as the server, which sends serialized messages over a Unix domain socket.<br>
+ * This skips the TCP/IP stack of the kernel, so both latency and CPU usage are lower than over a loopback TCP connection. Use {@code UnixDomainAcceptor::new} as the
+ * {@link AcceptorFactory} of a {@link Server} and {@code UnixDomainTransport::connect} as the {@link TransportFactory} of a {@link Client}.
+ */
+public class UnixDomainTransport implements Transport {
+	private static final int BUFFER_SIZE = 8192;
+	
+	protected final SocketChannel channel;
+	protected final InetSocketAddress remoteAddress;
+	protected ObjectOutputStream channelWriter;
+	protected ObjectInputStream channelReader;
+	
+	/**
+	 * Wraps a connected Unix domain socket channel.
+	 * 
+	 * @param channel    The connected, blocking channel.
+	 * @param remotePort The port, which identifies the other side. Unix domain sockets have no port, but {@link Connection}s are told apart by it.
+	 */
+	public UnixDomainTransport(SocketChannel channel, int remotePort) {
+		super();
+		this.channel = channel;
+		this.remoteAddress = new InetSocketAddress(InetAddress.getLoopbackAddress(), remotePort);
+	}
+	
+	/**
+	 * Connects to a server on this host, which uses a {@link UnixDomainAcceptor} with the default path of the port.
+	 * 
+	 * @param ip   Ignored, Unix domain sockets only reach the same host.
+	 * @param port The port of the server.
+	 * 
+	 * @return The new transport.
+	 * 
+	 * @throws IOException When no connection could be made.
+	 */
+	public static UnixDomainTransport connect(String ip, int port) throws IOException {
+		return connect(UnixDomainAcceptor.pathOf(port), port);
+	}
+	
+	/**
+	 * Connects to a server on this host.
+	 * 
+	 * @param path The path of the socket file of the server.
+	 * @param port The port of the server.
+	 * 
+	 * @return The new transport.
+	 * 
+	 * @throws IOException When no connection could be made.
+	 */
+	public static UnixDomainTransport connect(Path path, int port) throws IOException {
+		SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+		try {
+			channel.connect(UnixDomainSocketAddress.of(path));
+		} catch(IOException exc) {
+			channel.close();
+			throw exc;
+		}
+		return new UnixDomainTransport(channel, port);
+	}
+	
+	@Override
+	public void open() throws IOException {
+		// the writer first, otherwise both sides wait for the header of the other one
+		this.channelWriter = new ObjectOutputStream(new BufferedOutputStream(new ChannelOutputStream(channel), BUFFER_SIZE));
+		this.channelWriter.flush();
+		this.channelReader = new ObjectInputStream(new BufferedInputStream(new ChannelInputStream(channel), BUFFER_SIZE));
+	}
+	
+	@Override
+	public Message<?, ?> read() throws IOException, ClassNotFoundException {
+		try {
+			return (Message<?, ?>) channelReader.readObject();
+		} catch(ClosedChannelException exc) {
+			throw closed(exc);
+		}
+	}
+	
+	@Override
+	public void write(Message<?, ?> message) throws IOException {
+		try {
+			channelWriter.writeObject(message);
+			channelWriter.flush();
+		} catch(ClosedChannelException exc) {
+			throw closed(exc);
+		}
+	}
+	
+	@Override
+	public boolean isClosed() {
+		return !channel.isOpen();
+	}
+	
+	@Override
+	public InetSocketAddress getRemoteAddress() {
+		return remoteAddress;
+	}
+	
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+	
+	/**
+	 * Converts the exception of a closed channel to the one of a closed socket, which the callers treat as a regular disconnect.
+	 */
+	static SocketException closed(ClosedChannelException cause) {
+		SocketException exc = new SocketException("Socket closed");
+		exc.initCause(cause);
+		return exc;
+	}
+	
+	@Override
+	public String toString() {
+		return "UnixDomainTransport{channelStatus=" + channel.isOpen() + ", remote=" + remoteAddress + "}";
+	}
+	
+	/*
+	 * The streams of java.nio.channels.Channels lock the channel for every read and write, so a blocked read would also block every write. These read and write
+	 * the channel directly, which a socket channel allows concurrently.
+	 */
+	
+	private static class ChannelInputStream extends InputStream {
+		private final SocketChannel channel;
+		
+		ChannelInputStream(SocketChannel channel) {
+			super();
+			this.channel = channel;
+		}
+		
+		@Override
+		public int read() throws IOException {
+			byte[] single = new byte[1];
+			return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+		}
+		
+		@Override
+		public int read(byte[] bytes, int offset, int length) throws IOException {
+			if(length == 0) {
+				return 0;
+			}
+			return channel.read(ByteBuffer.wrap(bytes, offset, length));
+		}
+	}
+	
+	private static class ChannelOutputStream extends OutputStream {
+		private final SocketChannel channel;
+		
+		ChannelOutputStream(SocketChannel channel) {
+			super();
+			this.channel = channel;
+		}
+		
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+		
+		@Override
+		public void write(byte[] bytes, int offset, int length) throws IOException {
+			ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, length);
+			while(buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+	}
+}
@@ -0,0 +1,73 @@
+package net.unknownuser.networking.transport;
+
+import java.io.*;
+import java.net.*;
+import java.util.function.*;
+
+import net.unknownuser.networking.*;
+
+/**
+ * Accepts WebSocket connections of browsers via {@link WebSocketTransport}. Their messages reach {@link Server#onMessageReceived(Message, Connection)
+ * onMessageReceived} like those of any other client, and broadcasts reach them as well, as far as their {@link WebSocketCodec} can encode them.<br>
+ * Use {@code port -> new WebSocketAcceptor(port, codec)} with {@link Server#addAcceptor(int, AcceptorFactory)} to serve browsers next to the regular clients of
+ * a server, or as the only {@link AcceptorFactory} of a server.
+ */
+public class WebSocketAcceptor implements Acceptor {
+	protected final ServerSocket socket;
+	protected final WebSocketCodec codec;
+	
+	private volatile int maxMessageSize = WebSocketTransport.DEFAULT_MAX_MESSAGE_SIZE;
+	private volatile Predicate<String> originFilter = origin -> true;
+	
+	public WebSocketAcceptor(int port, WebSocketCodec codec) throws IOException {
+		super();
+		this.socket = new ServerSocket(port);
+		this.codec = codec;
+	}
+	
+	@Override
+	public Transport accept() throws IOException {
+		Socket accepted = socket.accept();
+		// browsers expect every message right away
+		accepted.setTcpNoDelay(true);
+		return new WebSocketTransport(accepted, codec, maxMessageSize, originFilter);
+	}
+	
+	/**
+	 * Sets the maximum size of a message of a peer. Larger messages close the connection.
+	 * 
+	 * @param maxMessageSize The maximum size in bytes, after joining the fragments of a message.
+	 */
+	public void setMaxMessageSize(int maxMessageSize) {
+		this.maxMessageSize = Math.max(1, maxMessageSize);
+	}
+	
+	/**
+	 * Sets which pages may connect. Every origin is allowed by default, but a server, whose clients authenticate via cookies, should only allow its own pages.
+	 * 
+	 * @param originFilter Decides whether a browser may connect from the page of the given {@code Origin}, which is {@code null} for peers other than browsers.
+	 */
+	public void setOriginFilter(Predicate<String> originFilter) {
+		this.originFilter = originFilter;
+	}
+	
+	@Override
+	public boolean isClosed() {
+		return socket.isClosed();
+	}
+	
+	@Override
+	public int getPort() {
+		return socket.getLocalPort();
+	}
+	
+	@Override
+	public void close() throws IOException {
+		socket.close();
+	}
+	
+	@Override
+	public String toString() {
+		return "WebSocketAcceptor{socketStatus=" + !socket.isClosed() + ", port=" + socket.getLocalPort() + ", codec=" + codec + "}";
+	}
+}
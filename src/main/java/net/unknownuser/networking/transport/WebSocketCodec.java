@@ -0,0 +1,54 @@
+package net.unknownuser.networking.transport;
+
+import java.io.*;
+
+import net.unknownuser.networking.*;
+
+/**
+ * Maps the text and binary messages of WebSocket peers to {@link Message}s and back. Used by a {@link WebSocketTransport}.<br>
+ * Browsers don't know the contents of this library, so the codec decides which messages a browser can read. Messages, which it can't, are skipped by returning
+ * {@code null}. Fragmented WebSocket messages are joined before they are decoded.
+ */
+public interface WebSocketCodec {
+	/**
+	 * Decodes a text message.
+	 * 
+	 * @param text The text of the message.
+	 * 
+	 * @return The message, or {@code null} to ignore it.
+	 * 
+	 * @throws IOException When the text is no valid message. The connection is closed.
+	 */
+	Message<?, ?> decodeText(String text) throws IOException;
+	
+	/**
+	 * Decodes a binary message.
+	 * 
+	 * @param data The data of the message.
+	 * 
+	 * @return The message, or {@code null} to ignore it.
+	 * 
+	 * @throws IOException When the data is no valid message. The connection is closed.
+	 */
+	Message<?, ?> decodeBinary(byte[] data) throws IOException;
+	
+	/**
+	 * Encodes a message, which the server sends to the peer.
+	 * 
+	 * @param message The message.
+	 * 
+	 * @return The frame to send, or {@code null} to skip the message.
+	 * 
+	 * @throws IOException When the message could not be encoded.
+	 */
+	WebSocketFrame encode(Message<?, ?> message) throws IOException;
+	
+	/**
+	 * Gets the subprotocol, which the codec speaks. It is confirmed to peers, which request it in {@code Sec-WebSocket-Protocol}.
+	 * 
+	 * @return The name of the subprotocol, or {@code null} if the codec doesn't define one.
+	 */
+	default String getSubprotocol() {
+		return null;
+	}
+}
@@ -0,0 +1,44 @@
+package net.unknownuser.networking.transport;
+
+import java.nio.charset.*;
+
+/**
+ * The payload of a WebSocket message, as produced by a {@link WebSocketCodec}.
+ */
+public class WebSocketFrame {
+	public final boolean text;
+	public final byte[] payload;
+	
+	private WebSocketFrame(boolean text, byte[] payload) {
+		super();
+		this.text = text;
+		this.payload = payload;
+	}
+	
+	/**
+	 * Creates a text message.
+	 * 
+	 * @param text The text.
+	 * 
+	 * @return The frame.
+	 */
+	public static WebSocketFrame text(String text) {
+		return new WebSocketFrame(true, text.getBytes(StandardCharsets.UTF_8));
+	}
+	
+	/**
+	 * Creates a binary message.
+	 * 
+	 * @param data The data, which must not be changed afterwards.
+	 * 
+	 * @return The frame.
+	 */
+	public static WebSocketFrame binary(byte[] data) {
+		return new WebSocketFrame(false, data);
+	}
+	
+	@Override
+	public String toString() {
+		return "WebSocketFrame{text=" + text + ", length=" + payload.length + "}";
+	}
+}
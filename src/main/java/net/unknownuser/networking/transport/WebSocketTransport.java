@@ -0,0 +1,467 @@
+package net.unknownuser.networking.transport;
+
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.charset.*;
+import java.security.*;
+import java.util.*;
+import java.util.function.*;
+
+import net.unknownuser.networking.*;
+
+/**
+ * The server side of a WebSocket connection (RFC 6455), so browsers can be clients of a {@link Server} without a proxy. Accepted via a {@link WebSocketAcceptor}.
+ * <br>
+ * {@link #open()} answers the HTTP upgrade request. Afterwards, the text and binary messages of the peer are mapped to {@link Message}s by a {@link WebSocketCodec},
+ * fragmented messages are joined and pings are answered. Messages of the server are sent as single, unmasked frames.
+ */
+public class WebSocketTransport implements Transport {
+	private static final String ACCEPT_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+	private static final int MAX_HANDSHAKE_SIZE = 8192;
+	
+	private static final int CONTINUATION = 0x0;
+	private static final int TEXT = 0x1;
+	private static final int BINARY = 0x2;
+	private static final int CLOSE = 0x8;
+	private static final int PING = 0x9;
+	private static final int PONG = 0xA;
+	
+	// close codes
+	private static final int GOING_AWAY = 1001;
+	private static final int PROTOCOL_ERROR = 1002;
+	private static final int INVALID_DATA = 1007;
+	private static final int TOO_BIG = 1009;
+	
+	public static final int DEFAULT_MAX_MESSAGE_SIZE = 1024 * 1024;
+	public static final int DEFAULT_HANDSHAKE_TIMEOUT = 5000;
+	
+	protected final Socket socket;
+	protected final WebSocketCodec codec;
+	protected final int maxMessageSize;
+	protected final Predicate<String> originFilter;
+	protected DataOutputStream socketWriter;
+	protected DataInputStream socketReader;
+	
+	/**
+	 * Guards the writer, since pings are answered by the reading thread.
+	 */
+	private final Object writeLock = new Object();
+	private final byte[] mask = new byte[4];
+	private byte[] messageBuffer = new byte[1024];
+	private int messageLength = 0;
+	private int messageOpcode = -1;
+	private volatile boolean closeSent = false;
+	
+	private String path = null;
+	private String origin = null;
+	/**
+	 * The time by which the upgrade request has to be complete, as of {@link System#nanoTime()}.
+	 */
+	private long handshakeDeadline = 0;
+	
+	/**
+	 * Creates a transport, which accepts any origin and messages up to the default size.
+	 * 
+	 * @param socket The accepted socket.
+	 * @param codec  The mapping between WebSocket messages and {@link Message}s.
+	 */
+	public WebSocketTransport(Socket socket, WebSocketCodec codec) {
+		this(socket, codec, DEFAULT_MAX_MESSAGE_SIZE, origin -> true);
+	}
+	
+	/**
+	 * Creates a transport.
+	 * 
+	 * @param socket         The accepted socket.
+	 * @param codec          The mapping between WebSocket messages and {@link Message}s.
+	 * @param maxMessageSize The maximum size of a message of the peer in bytes, after joining its fragments. Larger messages close the connection.
+	 * @param originFilter   Decides whether a browser may connect from the page of the given {@code Origin}, which is {@code null} for peers other than browsers.
+	 */
+	public WebSocketTransport(Socket socket, WebSocketCodec codec, int maxMessageSize, Predicate<String> originFilter) {
+		super();
+		this.socket = socket;
+		this.codec = codec;
+		this.maxMessageSize = maxMessageSize;
+		this.originFilter = originFilter;
+	}
+	
+	/**
+	 * Answers the HTTP upgrade request of the peer. The whole request has to arrive within {@link #DEFAULT_HANDSHAKE_TIMEOUT} milliseconds.
+	 * 
+	 * @throws IOException When the request isn't a valid WebSocket upgrade, the origin isn't allowed or the request is too slow. The peer gets an HTTP error.
+	 */
+	@Override
+	public void open() throws IOException {
+		this.socketWriter = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+		this.socketReader = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+		
+		int timeout = socket.getSoTimeout();
+		// the server opens transports on the thread of the connection, but a peer, which never finishes its request, would still hold it and its admission
+		handshakeDeadline = System.nanoTime() + DEFAULT_HANDSHAKE_TIMEOUT * 1_000_000L;
+		try {
+			handshake();
+		} catch(SocketTimeoutException exc) {
+			throw new ProtocolException("no websocket upgrade request within " + DEFAULT_HANDSHAKE_TIMEOUT + "ms");
+		} finally {
+			socket.setSoTimeout(timeout);
+		}
+	}
+	
+	private void handshake() throws IOException {
+		int[] size = { 0 };
+		String requestLine = readLine(size);
+		String[] request = requestLine.split(" ");
+		if(request.length != 3 || !request[2].startsWith("HTTP/")) {
+			throw reject("400 Bad Request", "invalid request line " + requestLine);
+		}
+		HashMap<String, String> headers = new HashMap<>();
+		String line;
+		while(!(line = readLine(size)).isEmpty()) {
+			int split = line.indexOf(':');
+			if(split <= 0) {
+				throw reject("400 Bad Request", "invalid header " + line);
+			}
+			// repeated headers are joined as in a list
+			headers.merge(line.substring(0, split).trim().toLowerCase(Locale.ROOT), line.substring(split + 1).trim(), (first, second) -> first + ", " + second);
+		}
+		
+		if(!request[0].equals("GET")) {
+			throw reject("405 Method Not Allowed", "websocket upgrade with method " + request[0]);
+		}
+		if(!hasToken(headers.get("upgrade"), "websocket") || !hasToken(headers.get("connection"), "upgrade")) {
+			throw reject("426 Upgrade Required\r\nUpgrade: websocket", "not a websocket upgrade");
+		}
+		if(!"13".equals(headers.get("sec-websocket-version"))) {
+			throw reject("426 Upgrade Required\r\nSec-WebSocket-Version: 13", "unsupported websocket version " + headers.get("sec-websocket-version"));
+		}
+		String key = headers.get("sec-websocket-key");
+		try {
+			if(key == null || Base64.getDecoder().decode(key).length != 16) {
+				throw reject("400 Bad Request", "invalid websocket key " + key);
+			}
+		} catch(IllegalArgumentException exc) {
+			throw reject("400 Bad Request", "invalid websocket key " + key);
+		}
+		origin = headers.get("origin");
+		if(!originFilter.test(origin)) {
+			throw reject("403 Forbidden", "origin " + origin + " is not allowed");
+		}
+		path = request[1];
+		
+		StringBuilder response = new StringBuilder("HTTP/1.1 101 Switching Protocols\r\nUpgrade: websocket\r\nConnection: Upgrade\r\nSec-WebSocket-Accept: ");
+		response.append(acceptKey(key)).append("\r\n");
+		String subprotocol = codec.getSubprotocol();
+		if(subprotocol != null && hasToken(headers.get("sec-websocket-protocol"), subprotocol)) {
+			response.append("Sec-WebSocket-Protocol: ").append(subprotocol).append("\r\n");
+		}
+		response.append("\r\n");
+		synchronized (writeLock) {
+			socketWriter.write(response.toString().getBytes(StandardCharsets.ISO_8859_1));
+			socketWriter.flush();
+		}
+	}
+	
+	/**
+	 * Reads a line of the upgrade request.
+	 */
+	private String readLine(int[] size) throws IOException {
+		StringBuilder line = new StringBuilder();
+		int read;
+		while((read = readBefore(handshakeDeadline)) != '\n') {
+			if(read < 0) {
+				throw new EOFException("peer closed during websocket upgrade");
+			}
+			if(++size[0] > MAX_HANDSHAKE_SIZE) {
+				throw reject("431 Request Header Fields Too Large", "websocket upgrade request too large");
+			}
+			if(read != '\r') {
+				line.append((char) read);
+			}
+		}
+		return line.toString();
+	}
+	
+	/**
+	 * Reads a byte of the upgrade request. A read, which has to wait for the peer, may only wait until the deadline, so a peer, which sends its request a byte at a
+	 * time, can't stretch the handshake.
+	 */
+	private int readBefore(long deadline) throws IOException {
+		if(socketReader.available() == 0) {
+			long remaining = (deadline - System.nanoTime()) / 1_000_000;
+			if(remaining <= 0) {
+				throw new SocketTimeoutException();
+			}
+			socket.setSoTimeout((int) remaining);
+		}
+		return socketReader.read();
+	}
+	
+	private static boolean hasToken(String header, String token) {
+		if(header == null) {
+			return false;
+		}
+		for(String value : header.split(",")) {
+			if(value.trim().equalsIgnoreCase(token)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Computes the {@code Sec-WebSocket-Accept} of a key.
+	 */
+	static String acceptKey(String key) {
+		try {
+			MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+			return Base64.getEncoder().encodeToString(sha1.digest((key + ACCEPT_GUID).getBytes(StandardCharsets.ISO_8859_1)));
+		} catch(NoSuchAlgorithmException exc) {
+			// every JRE has SHA-1
+			throw new IllegalStateException(exc);
+		}
+	}
+	
+	/**
+	 * Answers the upgrade request with an HTTP error.
+	 * 
+	 * @return The exception to throw.
+	 */
+	private ProtocolException reject(String status, String reason) {
+		try {
+			synchronized (writeLock) {
+				socketWriter.write(("HTTP/1.1 " + status + "\r\nContent-Length: 0\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+				socketWriter.flush();
+			}
+		} catch(IOException exc) {
+			// the peer is gone anyway
+		}
+		return new ProtocolException(reason);
+	}
+	
+	/**
+	 * Waits for the next message of the peer, which the codec doesn't ignore. Control frames are handled in between.
+	 * 
+	 * @throws EOFException When the peer has closed the connection.
+	 */
+	@Override
+	public Message<?, ?> read() throws IOException, ClassNotFoundException {
+		while(true) {
+			int first = socketReader.read();
+			if(first < 0) {
+				throw new EOFException();
+			}
+			int second = socketReader.readUnsignedByte();
+			boolean fin = (first & 0x80) != 0;
+			int opcode = first & 0x0F;
+			if((first & 0x70) != 0) {
+				throw fail(PROTOCOL_ERROR, "reserved bits set without an extension");
+			}
+			if((second & 0x80) == 0) {
+				throw fail(PROTOCOL_ERROR, "unmasked frame from the peer");
+			}
+			long length = second & 0x7F;
+			if(length == 126) {
+				length = socketReader.readUnsignedShort();
+			} else if(length == 127) {
+				length = socketReader.readLong();
+			}
+			
+			if(opcode >= CLOSE) {
+				if(!fin || length > 125) {
+					throw fail(PROTOCOL_ERROR, "invalid control frame");
+				}
+				byte[] payload = readPayload((int) length);
+				switch(opcode) {
+					case CLOSE -> {
+						closeFrom(payload);
+						throw new EOFException("peer closed the websocket");
+					}
+					case PING -> writeFrame(PONG, payload);
+					case PONG -> {
+						// answers pings, which aren't sent by this side
+					}
+					default -> throw fail(PROTOCOL_ERROR, "unknown opcode " + opcode);
+				}
+				continue;
+			}
+			
+			if(opcode == CONTINUATION ? messageOpcode < 0 : messageOpcode >= 0 || (opcode != TEXT && opcode != BINARY)) {
+				throw fail(PROTOCOL_ERROR, "unexpected frame with opcode " + opcode);
+			}
+			if(length < 0 || length > maxMessageSize - messageLength) {
+				throw fail(TOO_BIG, "message larger than " + maxMessageSize + " bytes");
+			}
+			if(opcode != CONTINUATION) {
+				messageOpcode = opcode;
+			}
+			appendPayload((int) length);
+			if(!fin) {
+				continue;
+			}
+			
+			byte[] data = Arrays.copyOf(messageBuffer, messageLength);
+			boolean text = messageOpcode == TEXT;
+			messageOpcode = -1;
+			messageLength = 0;
+			Message<?, ?> message = text ? codec.decodeText(decodeText(data)) : codec.decodeBinary(data);
+			if(message != null) {
+				return message;
+			}
+		}
+	}
+	
+	private byte[] readPayload(int length) throws IOException {
+		socketReader.readFully(mask);
+		byte[] payload = new byte[length];
+		socketReader.readFully(payload);
+		for(int i = 0; i < length; i++) {
+			payload[i] ^= mask[i & 3];
+		}
+		return payload;
+	}
+	
+	/**
+	 * Reads the payload of a data frame into the buffer of the current message.
+	 */
+	private void appendPayload(int length) throws IOException {
+		socketReader.readFully(mask);
+		if(messageBuffer.length < messageLength + length) {
+			messageBuffer = Arrays.copyOf(messageBuffer, Math.max(messageLength + length, messageBuffer.length * 2));
+		}
+		socketReader.readFully(messageBuffer, messageLength, length);
+		for(int i = 0; i < length; i++) {
+			messageBuffer[messageLength + i] ^= mask[i & 3];
+		}
+		messageLength += length;
+	}
+	
+	private String decodeText(byte[] data) throws IOException {
+		try {
+			return StandardCharsets.UTF_8.newDecoder().onMalformedInput(CodingErrorAction.REPORT).onUnmappableCharacter(CodingErrorAction.REPORT)
+					.decode(ByteBuffer.wrap(data)).toString();
+		} catch(CharacterCodingException exc) {
+			throw fail(INVALID_DATA, "text message isn't valid UTF-8");
+		}
+	}
+	
+	/**
+	 * Answers the close frame of the peer with the same status code.
+	 */
+	private void closeFrom(byte[] payload) {
+		try {
+			writeFrame(CLOSE, payload.length >= 2 ? Arrays.copyOf(payload, 2) : new byte[0]);
+		} catch(IOException exc) {
+			// the peer has already gone
+		}
+	}
+	
+	/**
+	 * Closes the connection after a violation of the protocol.
+	 * 
+	 * @return The exception to throw.
+	 */
+	private ProtocolException fail(int code, String reason) {
+		try {
+			writeFrame(CLOSE, new byte[] { (byte) (code >>> 8), (byte) code });
+		} catch(IOException exc) {
+			// the connection is dropped anyway
+		}
+		return new ProtocolException(reason);
+	}
+	
+	/**
+	 * Writes a message, unless the codec skips it.
+	 */
+	@Override
+	public void write(Message<?, ?> message) throws IOException {
+		WebSocketFrame frame = codec.encode(message);
+		if(frame != null) {
+			writeFrame(frame.text ? TEXT : BINARY, frame.payload);
+		}
+	}
+	
+	/**
+	 * Sends a ping, which the peer answers with a pong. Browsers answer on their own, so this keeps idle connections alive through proxies.
+	 * 
+	 * @throws IOException When the ping could not be sent.
+	 */
+	public void ping() throws IOException {
+		writeFrame(PING, new byte[0]);
+	}
+	
+	private void writeFrame(int opcode, byte[] payload) throws IOException {
+		synchronized (writeLock) {
+			if(closeSent) {
+				return;
+			}
+			closeSent = opcode == CLOSE;
+			socketWriter.write(0x80 | opcode);
+			if(payload.length < 126) {
+				socketWriter.write(payload.length);
+			} else if(payload.length <= 0xFFFF) {
+				socketWriter.write(126);
+				socketWriter.writeShort(payload.length);
+			} else {
+				socketWriter.write(127);
+				socketWriter.writeLong(payload.length);
+			}
+			socketWriter.write(payload);
+			socketWriter.flush();
+		}
+	}
+	
+	/**
+	 * Sends a close frame, if none has been sent yet, and closes the socket.
+	 */
+	@Override
+	public void close() throws IOException {
+		if(socketWriter != null && !socket.isClosed()) {
+			try {
+				writeFrame(CLOSE, new byte[] { (byte) (GOING_AWAY >>> 8), (byte) GOING_AWAY });
+			} catch(IOException exc) {
+				// closing anyway
+			}
+		}
+		socket.close();
+	}
+	
+	@Override
+	public boolean isClosed() {
+		return socket.isClosed();
+	}
+	
+	@Override
+	public boolean handlesControlMessages() {
+		// browsers only know the messages of their codec
+		return false;
+	}
+	
+	@Override
+	public InetSocketAddress getRemoteAddress() {
+		return (InetSocketAddress) socket.getRemoteSocketAddress();
+	}
+	
+	/**
+	 * Gets the path, which the peer has requested in its upgrade request.
+	 * 
+	 * @return The path, or {@code null} before the transport has been opened.
+	 */
+	public String getPath() {
+		return path;
+	}
+	
+	/**
+	 * Gets the origin of the page, which opened the connection.
+	 * 
+	 * @return The value of the {@code Origin} header, or {@code null} if there was none.
+	 */
+	public String getOrigin() {
+		return origin;
+	}
+	
+	@Override
+	public String toString() {
+		return "WebSocketTransport{socketStatus=" + !socket.isClosed() + ", remote=" + socket.getRemoteSocketAddress() + ", path=" + path + "}";
+	}
+}
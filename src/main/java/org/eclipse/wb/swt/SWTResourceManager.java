@@ -13,8 +13,17 @@ package org.eclipse.wb.swt;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
 
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.graphics.Color;
@@ -26,6 +35,7 @@ import org.eclipse.swt.graphics.Image;
 import org.eclipse.swt.graphics.ImageData;
 import org.eclipse.swt.graphics.RGB;
 import org.eclipse.swt.graphics.Rectangle;
+import org.eclipse.swt.graphics.Resource;
 import org.eclipse.swt.widgets.Display;
 
 /**
@@ -35,18 +45,315 @@ import org.eclipse.swt.widgets.Display;
  * operating system resources managed by cached objects when those objects and OS resources are no longer
  * needed (e.g. on application shutdown)
  * <p>
+ * Every kind of resource is kept in a bounded {@link ResourceCache}, which disposes the least recently used
+ * resources once its bound is exceeded. A resource, which is kept beyond the current use (e.g. set on a
+ * long-living control), must be protected with {@link #acquire(Resource)} and given back with
+ * {@link #release(Resource)}, otherwise it may be disposed while still in use.
+ * <p>
  * This class may be freely distributed as part of any application or plugin.
  * <p>
  * @author scheglov_ke
  * @author Dan Rubel
  */
 public class SWTResourceManager {
+	////////////////////////////////////////////////////////////////////////////
+	//
+	// Cache
+	//
+	////////////////////////////////////////////////////////////////////////////
+	/**
+	 * A thread-safe cache of OS resources, which is bounded by the total weight of its resources. When the bound
+	 * is exceeded, the least recently used resources, which are not acquired, are removed and disposed.
+	 * 
+	 * @param <K>
+	 *            the type of the keys
+	 * @param <R>
+	 *            the type of the resources
+	 */
+	public static final class ResourceCache<K, R extends Resource> {
+		private static final class Entry<K, R> {
+			final K key;
+			final R resource;
+			final int weight;
+			int references;
+			boolean detached;
+			Entry(K key, R resource, int weight) {
+				this.key = key;
+				this.resource = resource;
+				this.weight = weight;
+			}
+		}
+		private final String m_name;
+		private final ToIntFunction<R> m_weigher;
+		/**
+		 * Entries in access order, so the least recently used ones come first.
+		 */
+		private final LinkedHashMap<K, Entry<K, R>> m_entries = new LinkedHashMap<K, Entry<K, R>>(16, 0.75f, true);
+		/**
+		 * All entries by resource, including the detached ones, which are still acquired.
+		 */
+		private final IdentityHashMap<R, Entry<K, R>> m_byResource = new IdentityHashMap<R, Entry<K, R>>();
+		private BiConsumer<K, R> m_removalListener;
+		private long m_maxWeight;
+		private long m_weight;
+		private long m_hits;
+		private long m_misses;
+		private long m_evictions;
+		ResourceCache(String name, long maxWeight, ToIntFunction<R> weigher) {
+			m_name = name;
+			m_maxWeight = maxWeight;
+			m_weigher = weigher;
+		}
+		/**
+		 * Returns the cached resource of the given key, or creates and caches it.
+		 * 
+		 * @param key
+		 *            the key of the resource
+		 * @param factory
+		 *            creates the resource, if it isn't cached
+		 * @return the resource
+		 */
+		synchronized R get(K key, Function<K, R> factory) {
+			Entry<K, R> entry = m_entries.get(key);
+			if (entry != null && !entry.resource.isDisposed()) {
+				m_hits++;
+				return entry.resource;
+			}
+			m_misses++;
+			if (entry != null) {
+				// disposed by the application
+				remove(entry);
+			}
+			R resource = factory.apply(key);
+			entry = new Entry<K, R>(key, resource, Math.max(1, m_weigher.applyAsInt(resource)));
+			m_entries.put(key, entry);
+			m_byResource.put(resource, entry);
+			m_weight += entry.weight;
+			evict();
+			return resource;
+		}
+		/**
+		 * Removes and disposes the least recently used resources, which are not acquired, until the weight is
+		 * within the bound.
+		 */
+		private void evict() {
+			Iterator<Entry<K, R>> iterator = m_entries.values().iterator();
+			List<Entry<K, R>> evicted = new ArrayList<Entry<K, R>>();
+			while (m_weight > m_maxWeight && iterator.hasNext()) {
+				Entry<K, R> entry = iterator.next();
+				if (entry.references > 0) {
+					continue;
+				}
+				iterator.remove();
+				m_byResource.remove(entry.resource);
+				m_weight -= entry.weight;
+				m_evictions++;
+				evicted.add(entry);
+			}
+			for (Entry<K, R> entry : evicted) {
+				dispose(entry);
+			}
+		}
+		private void remove(Entry<K, R> entry) {
+			m_entries.remove(entry.key);
+			m_byResource.remove(entry.resource);
+			m_weight -= entry.weight;
+			if (m_removalListener != null) {
+				m_removalListener.accept(entry.key, entry.resource);
+			}
+		}
+		private void dispose(Entry<K, R> entry) {
+			if (!entry.resource.isDisposed()) {
+				entry.resource.dispose();
+			}
+			if (m_removalListener != null) {
+				m_removalListener.accept(entry.key, entry.resource);
+			}
+		}
+		/**
+		 * Protects a cached resource from being evicted, until it has been released as often as it has been
+		 * acquired.
+		 * 
+		 * @param resource
+		 *            the resource
+		 * @return <code>true</code> if the resource is cached, <code>false</code> otherwise
+		 */
+		synchronized boolean acquire(R resource) {
+			Entry<K, R> entry = m_byResource.get(resource);
+			if (entry == null) {
+				return false;
+			}
+			entry.references++;
+			return true;
+		}
+		/**
+		 * Releases an acquired resource. A resource, which has been invalidated while acquired, is disposed once
+		 * it is released for the last time.
+		 * 
+		 * @param resource
+		 *            the resource
+		 * @return <code>true</code> if the resource is cached, <code>false</code> otherwise
+		 */
+		synchronized boolean release(R resource) {
+			Entry<K, R> entry = m_byResource.get(resource);
+			if (entry == null) {
+				return false;
+			}
+			if (entry.references > 0) {
+				entry.references--;
+			}
+			if (entry.references == 0) {
+				if (entry.detached) {
+					m_byResource.remove(resource);
+					dispose(entry);
+				} else {
+					evict();
+				}
+			}
+			return true;
+		}
+		/**
+		 * Removes the resource of the given key, which is disposed right away, or once it is released if it is
+		 * acquired.
+		 * 
+		 * @param key
+		 *            the key of the resource
+		 */
+		synchronized void invalidate(K key) {
+			Entry<K, R> entry = m_entries.remove(key);
+			if (entry == null) {
+				return;
+			}
+			m_weight -= entry.weight;
+			if (entry.references > 0) {
+				entry.detached = true;
+			} else {
+				m_byResource.remove(entry.resource);
+				dispose(entry);
+			}
+		}
+		/**
+		 * Disposes all resources, also the acquired ones.
+		 */
+		synchronized void clear() {
+			List<Entry<K, R>> entries = new ArrayList<Entry<K, R>>(m_byResource.values());
+			m_entries.clear();
+			m_byResource.clear();
+			m_weight = 0;
+			for (Entry<K, R> entry : entries) {
+				dispose(entry);
+			}
+		}
+		synchronized void setRemovalListener(BiConsumer<K, R> removalListener) {
+			m_removalListener = removalListener;
+		}
+		/**
+		 * Sets the bound of the total weight. Resources beyond it are evicted right away.
+		 * 
+		 * @param maxWeight
+		 *            the maximum total weight
+		 */
+		public synchronized void setMaxWeight(long maxWeight) {
+			m_maxWeight = Math.max(0, maxWeight);
+			evict();
+		}
+		public synchronized long getMaxWeight() {
+			return m_maxWeight;
+		}
+		/**
+		 * @return the total weight of the cached resources, which may exceed the bound while they are acquired
+		 */
+		public synchronized long getWeight() {
+			return m_weight;
+		}
+		public synchronized int size() {
+			return m_entries.size();
+		}
+		public synchronized long getHits() {
+			return m_hits;
+		}
+		public synchronized long getMisses() {
+			return m_misses;
+		}
+		public synchronized long getEvictions() {
+			return m_evictions;
+		}
+		@Override
+		public synchronized String toString() {
+			return "ResourceCache{name=" + m_name + ", size=" + m_entries.size() + ", weight=" + m_weight + "/" + m_maxWeight
+					+ ", hits=" + m_hits + ", misses=" + m_misses + ", evictions=" + m_evictions + "}";
+		}
+	}
+	/**
+	 * Weighs resources, which are bounded by their number.
+	 */
+	private static <R> int one(R resource) {
+		return 1;
+	}
+	/**
+	 * Weighs images by their approximate memory in bytes.
+	 */
+	private static int imageBytes(Image image) {
+		Rectangle bounds = image.getBounds();
+		return bounds.width * bounds.height * 4;
+	}
+	/**
+	 * Protects a cached resource from being evicted, until it is given back with {@link #release(Resource)}.
+	 * Resources, which aren't cached (e.g. system colors), are returned as they are.
+	 * 
+	 * @param resource
+	 *            the resource returned by one of the <code>get</code> methods
+	 * @return the given resource
+	 */
+	public static <R extends Resource> R acquire(R resource) {
+		if (resource instanceof Color) {
+			m_colorCache.acquire((Color) resource);
+		} else if (resource instanceof Image) {
+			if (!m_imageCache.acquire((Image) resource)) {
+				m_decoratedImageCache.acquire((Image) resource);
+			}
+		} else if (resource instanceof Font) {
+			if (!m_fontCache.acquire((Font) resource)) {
+				m_boldFontCache.acquire((Font) resource);
+			}
+		} else if (resource instanceof Cursor) {
+			m_cursorCache.acquire((Cursor) resource);
+		}
+		return resource;
+	}
+	/**
+	 * Gives back a resource protected with {@link #acquire(Resource)}, so it may be evicted again.
+	 * 
+	 * @param resource
+	 *            the acquired resource
+	 */
+	public static void release(Resource resource) {
+		if (resource instanceof Color) {
+			m_colorCache.release((Color) resource);
+		} else if (resource instanceof Image) {
+			if (!m_imageCache.release((Image) resource)) {
+				m_decoratedImageCache.release((Image) resource);
+			}
+		} else if (resource instanceof Font) {
+			if (!m_fontCache.release((Font) resource)) {
+				m_boldFontCache.release((Font) resource);
+			}
+		} else if (resource instanceof Cursor) {
+			m_cursorCache.release((Cursor) resource);
+		}
+	}
 	////////////////////////////////////////////////////////////////////////////
 	//
 	// Color
 	//
 	////////////////////////////////////////////////////////////////////////////
-	private static Map<RGB, Color> m_colorMap = new HashMap<RGB, Color>();
+	private static final ResourceCache<RGB, Color> m_colorCache = new ResourceCache<RGB, Color>("colors", 1024, SWTResourceManager::one);
+	/**
+	 * @return the cache of the {@link Color}'s, bounded by their number
+	 */
+	public static ResourceCache<RGB, Color> getColorCache() {
+		return m_colorCache;
+	}
 	/**
 	 * Returns the system {@link Color} matching the specific ID.
 	 * 
@@ -80,22 +387,13 @@ public class SWTResourceManager {
 	 * @return the {@link Color} matching the RGB value
 	 */
 	public static Color getColor(RGB rgb) {
-		Color color = m_colorMap.get(rgb);
-		if (color == null) {
-			Display display = Display.getCurrent();
-			color = new Color(display, rgb);
-			m_colorMap.put(rgb, color);
-		}
-		return color;
+		return m_colorCache.get(rgb, key -> new Color(Display.getCurrent(), key));
 	}
 	/**
 	 * Dispose of all the cached {@link Color}'s.
 	 */
 	public static void disposeColors() {
-		for (Color color : m_colorMap.values()) {
-			color.dispose();
-		}
-		m_colorMap.clear();
+		m_colorCache.clear();
 	}
 	////////////////////////////////////////////////////////////////////////////
 	//
@@ -105,7 +403,14 @@ public class SWTResourceManager {
 	/**
 	 * Maps image paths to images.
 	 */
-	private static Map<String, Image> m_imageMap = new HashMap<String, Image>();
+	private static final ResourceCache<String, Image> m_imageCache = new ResourceCache<String, Image>("images", 32 * 1024 * 1024,
+			SWTResourceManager::imageBytes);
+	/**
+	 * @return the cache of the loaded {@link Image}'s, bounded by their memory in bytes
+	 */
+	public static ResourceCache<String, Image> getImageCache() {
+		return m_imageCache;
+	}
 	/**
 	 * Returns an {@link Image} encoded by the specified {@link InputStream}.
 	 * 
@@ -133,17 +438,13 @@ public class SWTResourceManager {
 	 * @return the {@link Image} stored in the file at the specified path
 	 */
 	public static Image getImage(String path) {
-		Image image = m_imageMap.get(path);
-		if (image == null) {
+		return m_imageCache.get(path, key -> {
 			try {
-				image = getImage(new FileInputStream(path));
-				m_imageMap.put(path, image);
+				return getImage(new FileInputStream(path));
 			} catch (Exception e) {
-				image = getMissingImage();
-				m_imageMap.put(path, image);
+				return getMissingImage();
 			}
-		}
-		return image;
+		});
 	}
 	/**
 	 * Returns an {@link Image} stored in the file at the specified path relative to the specified class.
@@ -155,18 +456,13 @@ public class SWTResourceManager {
 	 * @return the {@link Image} stored in the file at the specified path
 	 */
 	public static Image getImage(Class<?> clazz, String path) {
-		String key = clazz.getName() + '|' + path;
-		Image image = m_imageMap.get(key);
-		if (image == null) {
+		return m_imageCache.get(clazz.getName() + '|' + path, key -> {
 			try {
-				image = getImage(clazz.getResourceAsStream(path));
-				m_imageMap.put(key, image);
+				return getImage(clazz.getResourceAsStream(path));
 			} catch (Exception e) {
-				image = getMissingImage();
-				m_imageMap.put(key, image);
+				return getMissingImage();
 			}
-		}
-		return image;
+		});
 	}
 	private static final int MISSING_IMAGE_SIZE = 10;
 	/**
@@ -203,10 +499,73 @@ public class SWTResourceManager {
 	 */
 	protected static final int LAST_CORNER_KEY = 5;
 	/**
-	 * Maps images to decorated images.
+	 * Identifies a decorated image by its base image, decorator and corner.
+	 */
+	private static final class DecorationKey {
+		final Image baseImage;
+		final Image decorator;
+		final int corner;
+		DecorationKey(Image baseImage, Image decorator, int corner) {
+			this.baseImage = baseImage;
+			this.decorator = decorator;
+			this.corner = corner;
+		}
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof DecorationKey)) {
+				return false;
+			}
+			DecorationKey key = (DecorationKey) obj;
+			// images are only equal to themselves
+			return baseImage == key.baseImage && decorator == key.decorator && corner == key.corner;
+		}
+		@Override
+		public int hashCode() {
+			return (System.identityHashCode(baseImage) * 31 + System.identityHashCode(decorator)) * 31 + corner;
+		}
+	}
+	/**
+	 * Maps base images, decorators and corners to decorated images.
+	 */
+	private static final ResourceCache<DecorationKey, Image> m_decoratedImageCache = new ResourceCache<DecorationKey, Image>(
+			"decorated images", 16 * 1024 * 1024, SWTResourceManager::imageBytes);
+	/**
+	 * Maps base images to the keys of their decorated images, so they are dropped with their base image.
 	 */
-	@SuppressWarnings("unchecked")
-	private static Map<Image, Map<Image, Image>>[] m_decoratedImageMap = new Map[LAST_CORNER_KEY];
+	private static final Map<Image, Set<DecorationKey>> m_decorationsByBaseImage = new IdentityHashMap<Image, Set<DecorationKey>>();
+	static {
+		m_decoratedImageCache.setRemovalListener((key, image) -> {
+			synchronized (m_decorationsByBaseImage) {
+				Set<DecorationKey> keys = m_decorationsByBaseImage.get(key.baseImage);
+				if (keys != null && keys.remove(key) && keys.isEmpty()) {
+					m_decorationsByBaseImage.remove(key.baseImage);
+				}
+			}
+		});
+		m_imageCache.setRemovalListener((path, image) -> invalidateDecorations(image));
+	}
+	/**
+	 * Drops the decorated images of a base image.
+	 */
+	private static void invalidateDecorations(Image baseImage) {
+		List<DecorationKey> keys;
+		synchronized (m_decorationsByBaseImage) {
+			Set<DecorationKey> decorations = m_decorationsByBaseImage.remove(baseImage);
+			if (decorations == null) {
+				return;
+			}
+			keys = new ArrayList<DecorationKey>(decorations);
+		}
+		for (DecorationKey key : keys) {
+			m_decoratedImageCache.invalidate(key);
+		}
+	}
+	/**
+	 * @return the cache of the decorated {@link Image}'s, bounded by their memory in bytes
+	 */
+	public static ResourceCache<?, Image> getDecoratedImageCache() {
+		return m_decoratedImageCache;
+	}
 	/**
 	 * Returns an {@link Image} composed of a base image decorated by another image.
 	 * 
@@ -234,23 +593,11 @@ public class SWTResourceManager {
 		if (corner <= 0 || corner >= LAST_CORNER_KEY) {
 			throw new IllegalArgumentException("Wrong decorate corner");
 		}
-		Map<Image, Map<Image, Image>> cornerDecoratedImageMap = m_decoratedImageMap[corner];
-		if (cornerDecoratedImageMap == null) {
-			cornerDecoratedImageMap = new HashMap<Image, Map<Image, Image>>();
-			m_decoratedImageMap[corner] = cornerDecoratedImageMap;
-		}
-		Map<Image, Image> decoratedMap = cornerDecoratedImageMap.get(baseImage);
-		if (decoratedMap == null) {
-			decoratedMap = new HashMap<Image, Image>();
-			cornerDecoratedImageMap.put(baseImage, decoratedMap);
-		}
-		//
-		Image result = decoratedMap.get(decorator);
-		if (result == null) {
+		return m_decoratedImageCache.get(new DecorationKey(baseImage, decorator, corner), key -> {
 			Rectangle bib = baseImage.getBounds();
 			Rectangle dib = decorator.getBounds();
 			//
-			result = new Image(Display.getCurrent(), bib.width, bib.height);
+			Image result = new Image(Display.getCurrent(), bib.width, bib.height);
 			//
 			GC gc = new GC(result);
 			gc.drawImage(baseImage, 0, 0);
@@ -265,33 +612,27 @@ public class SWTResourceManager {
 			}
 			gc.dispose();
 			//
-			decoratedMap.put(decorator, result);
-		}
-		return result;
+			synchronized (m_decorationsByBaseImage) {
+				Set<DecorationKey> keys = m_decorationsByBaseImage.get(baseImage);
+				if (keys == null) {
+					keys = new HashSet<DecorationKey>();
+					m_decorationsByBaseImage.put(baseImage, keys);
+				}
+				keys.add(key);
+			}
+			return result;
+		});
 	}
 	/**
 	 * Dispose all of the cached {@link Image}'s.
 	 */
 	public static void disposeImages() {
 		// dispose loaded images
-		{
-			for (Image image : m_imageMap.values()) {
-				image.dispose();
-			}
-			m_imageMap.clear();
-		}
+		m_imageCache.clear();
 		// dispose decorated images
-		for (int i = 0; i < m_decoratedImageMap.length; i++) {
-			Map<Image, Map<Image, Image>> cornerDecoratedImageMap = m_decoratedImageMap[i];
-			if (cornerDecoratedImageMap != null) {
-				for (Map<Image, Image> decoratedMap : cornerDecoratedImageMap.values()) {
-					for (Image image : decoratedMap.values()) {
-						image.dispose();
-					}
-					decoratedMap.clear();
-				}
-				cornerDecoratedImageMap.clear();
-			}
+		m_decoratedImageCache.clear();
+		synchronized (m_decorationsByBaseImage) {
+			m_decorationsByBaseImage.clear();
 		}
 	}
 	////////////////////////////////////////////////////////////////////////////
@@ -302,11 +643,27 @@ public class SWTResourceManager {
 	/**
 	 * Maps font names to fonts.
 	 */
-	private static Map<String, Font> m_fontMap = new HashMap<String, Font>();
+	private static final ResourceCache<String, Font> m_fontCache = new ResourceCache<String, Font>("fonts", 256, SWTResourceManager::one);
 	/**
 	 * Maps fonts to their bold versions.
 	 */
-	private static Map<Font, Font> m_fontToBoldFontMap = new HashMap<Font, Font>();
+	private static final ResourceCache<Font, Font> m_boldFontCache = new ResourceCache<Font, Font>("bold fonts", 256, SWTResourceManager::one);
+	static {
+		// the bold version of an evicted font can't be looked up anymore
+		m_fontCache.setRemovalListener((name, font) -> m_boldFontCache.invalidate(font));
+	}
+	/**
+	 * @return the cache of the {@link Font}'s, bounded by their number
+	 */
+	public static ResourceCache<String, Font> getFontCache() {
+		return m_fontCache;
+	}
+	/**
+	 * @return the cache of the bold versions of {@link Font}'s, bounded by their number
+	 */
+	public static ResourceCache<Font, Font> getBoldFontCache() {
+		return m_boldFontCache;
+	}
 	/**
 	 * Returns a {@link Font} based on its name, height and style.
 	 * 
@@ -339,8 +696,7 @@ public class SWTResourceManager {
 	 */
 	public static Font getFont(String name, int size, int style, boolean strikeout, boolean underline) {
 		String fontName = name + '|' + size + '|' + style + '|' + strikeout + '|' + underline;
-		Font font = m_fontMap.get(fontName);
-		if (font == null) {
+		return m_fontCache.get(fontName, key -> {
 			FontData fontData = new FontData(name, size, style);
 			if (strikeout || underline) {
 				try {
@@ -358,10 +714,8 @@ public class SWTResourceManager {
 					System.err.println("Unable to set underline or strikeout" + " (probably on a non-Windows platform). " + e); //$NON-NLS-1$ //$NON-NLS-2$
 				}
 			}
-			font = new Font(Display.getCurrent(), fontData);
-			m_fontMap.put(fontName, font);
-		}
-		return font;
+			return new Font(Display.getCurrent(), fontData);
+		});
 	}
 	/**
 	 * Returns a bold version of the given {@link Font}.
@@ -371,29 +725,20 @@ public class SWTResourceManager {
 	 * @return the bold version of the given {@link Font}
 	 */
 	public static Font getBoldFont(Font baseFont) {
-		Font font = m_fontToBoldFontMap.get(baseFont);
-		if (font == null) {
+		return m_boldFontCache.get(baseFont, key -> {
 			FontData fontDatas[] = baseFont.getFontData();
 			FontData data = fontDatas[0];
-			font = new Font(Display.getCurrent(), data.getName(), data.getHeight(), SWT.BOLD);
-			m_fontToBoldFontMap.put(baseFont, font);
-		}
-		return font;
+			return new Font(Display.getCurrent(), data.getName(), data.getHeight(), SWT.BOLD);
+		});
 	}
 	/**
 	 * Dispose all of the cached {@link Font}'s.
 	 */
 	public static void disposeFonts() {
 		// clear fonts
-		for (Font font : m_fontMap.values()) {
-			font.dispose();
-		}
-		m_fontMap.clear();
+		m_fontCache.clear();
 		// clear bold fonts
-		for (Font font : m_fontToBoldFontMap.values()) {
-			font.dispose();
-		}
-		m_fontToBoldFontMap.clear();
+		m_boldFontCache.clear();
 	}
 	////////////////////////////////////////////////////////////////////////////
 	//
@@ -403,7 +748,13 @@ public class SWTResourceManager {
 	/**
 	 * Maps IDs to cursors.
 	 */
-	private static Map<Integer, Cursor> m_idToCursorMap = new HashMap<Integer, Cursor>();
+	private static final ResourceCache<Integer, Cursor> m_cursorCache = new ResourceCache<Integer, Cursor>("cursors", 64, SWTResourceManager::one);
+	/**
+	 * @return the cache of the cursors, bounded by their number
+	 */
+	public static ResourceCache<Integer, Cursor> getCursorCache() {
+		return m_cursorCache;
+	}
 	/**
 	 * Returns the system cursor matching the specific ID.
 	 * 
@@ -412,22 +763,13 @@ public class SWTResourceManager {
 	 * @return Cursor The system cursor matching the specific ID
 	 */
 	public static Cursor getCursor(int id) {
-		Integer key = Integer.valueOf(id);
-		Cursor cursor = m_idToCursorMap.get(key);
-		if (cursor == null) {
-			cursor = new Cursor(Display.getDefault(), id);
-			m_idToCursorMap.put(key, cursor);
-		}
-		return cursor;
+		return m_cursorCache.get(Integer.valueOf(id), key -> new Cursor(Display.getDefault(), key.intValue()));
 	}
 	/**
 	 * Dispose all of the cached cursors.
 	 */
 	public static void disposeCursors() {
-		for (Cursor cursor : m_idToCursorMap.values()) {
-			cursor.dispose();
-		}
-		m_idToCursorMap.clear();
+		m_cursorCache.clear();
 	}
 	////////////////////////////////////////////////////////////////////////////
 	//
@@ -444,4 +786,4 @@ public class SWTResourceManager {
 		disposeFonts();
 		disposeCursors();
 	}
-}
\ No newline at end of file
+}